@@ -31,6 +31,7 @@ import com.ctrip.framework.apollo.common.dto.ReleaseDTO;
 import com.ctrip.framework.apollo.common.exception.NotFoundException;
 import com.ctrip.framework.apollo.common.utils.BeanUtils;
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -42,6 +43,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -114,6 +116,21 @@ public class ReleaseController {
     return BeanUtils.transform(ReleaseDTO.class, release);
   }
 
+  /**
+   * @return the latest active releases of the namespaces, the namespaces without active release are left out
+   */
+  @GetMapping("/apps/{appId}/clusters/{clusterName}/releases/latest")
+  public List<ReleaseDTO> findLatestReleases(@PathVariable("appId") String appId,
+                                             @PathVariable("clusterName") String clusterName,
+                                             @RequestParam("namespaceNames") String namespaceNames) {
+    Set<String> namespaceKeys = RELEASES_SPLITTER.splitToList(namespaceNames).stream()
+        .map(namespaceName -> ReleaseMessageKeyGenerator.generate(appId, clusterName, namespaceName))
+        .collect(Collectors.toSet());
+
+    Map<String, Release> releases = releaseService.findLatestActiveReleases(namespaceKeys);
+    return BeanUtils.batchTransform(ReleaseDTO.class, Lists.newArrayList(releases.values()));
+  }
+
   @Transactional
   @PostMapping("/apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/releases")
   public ReleaseDTO publish(@PathVariable("appId") String appId,
@@ -110,6 +110,36 @@ public class ReleaseControllerTest extends AbstractControllerTest {
     Assert.assertEquals(GSON.toJson(configurations), release.getConfigurations());
   }
 
+  @Test
+  @Sql(scripts = "/controller/test-release.sql", executionPhase = ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/controller/cleanup.sql", executionPhase = ExecutionPhase.AFTER_TEST_METHOD)
+  public void testFindLatestReleases() {
+    String appId = "someAppId";
+    String clusterName = "default";
+    String namespaceName = "application";
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+    MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+    parameters.add("name", "someReleaseName");
+    parameters.add("comment", "someComment");
+    parameters.add("operator", "test");
+    ResponseEntity<ReleaseDTO> response = restTemplate.postForEntity(
+        "http://localhost:" + port + "/apps/" + appId + "/clusters/" + clusterName
+            + "/namespaces/" + namespaceName + "/releases",
+        new HttpEntity<>(parameters, headers), ReleaseDTO.class);
+    Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+
+    ReleaseDTO[] releases = restTemplate.getForObject(
+        "http://localhost:" + port + "/apps/" + appId + "/clusters/" + clusterName
+            + "/releases/latest?namespaceNames=" + namespaceName + ",someNotExistNamespace",
+        ReleaseDTO[].class);
+
+    Assert.assertEquals(1, releases.length);
+    Assert.assertEquals(response.getBody().getId(), releases[0].getId());
+    Assert.assertEquals(namespaceName, releases[0].getNamespaceName());
+  }
+
   @Test
   public void testMessageSendAfterBuildRelease() throws Exception {
     String someAppId = "someAppId";
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.auth;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import java.util.List;
+
+/**
+ * Checks the admin service access tokens, which are also carried by the release messages pushed to config services
+ */
+public class AdminServiceAccessTokenChecker {
+
+  private static final Splitter ACCESS_TOKEN_SPLITTER = Splitter.on(",").omitEmptyStrings()
+      .trimResults();
+
+  private final BizConfig bizConfig;
+  private volatile String lastAccessTokens;
+  private volatile List<String> accessTokenList;
+
+  public AdminServiceAccessTokenChecker(BizConfig bizConfig) {
+    this.bizConfig = bizConfig;
+  }
+
+  public boolean isAccessControlEnabled() {
+    return bizConfig.isAdminServiceAccessControlEnabled();
+  }
+
+  public boolean checkAccessToken(String token) {
+    String accessTokens = bizConfig.getAdminServiceAccessTokens();
+
+    // if user forget to configure access tokens, then default to pass
+    if (Strings.isNullOrEmpty(accessTokens)) {
+      return true;
+    }
+
+    // no need to check
+    if (Strings.isNullOrEmpty(token)) {
+      return false;
+    }
+
+    return getAccessTokenList(accessTokens).contains(token);
+  }
+
+  /**
+   * @return the first access token configured, or null if access control is disabled or no access token is configured
+   */
+  public String getAccessToken() {
+    if (!isAccessControlEnabled()) {
+      return null;
+    }
+    String accessTokens = bizConfig.getAdminServiceAccessTokens();
+    if (Strings.isNullOrEmpty(accessTokens)) {
+      return null;
+    }
+    List<String> tokens = getAccessTokenList(accessTokens);
+    return tokens.isEmpty() ? null : tokens.get(0);
+  }
+
+  private List<String> getAccessTokenList(String accessTokens) {
+    // update cache
+    if (!accessTokens.equals(lastAccessTokens)) {
+      synchronized (this) {
+        List<String> tokens = ACCESS_TOKEN_SPLITTER.splitToList(accessTokens);
+        accessTokenList = tokens;
+        lastAccessTokens = accessTokens;
+        return tokens;
+      }
+    }
+    return accessTokenList;
+  }
+}
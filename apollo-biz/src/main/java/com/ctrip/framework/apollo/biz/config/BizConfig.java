@@ -43,9 +43,16 @@ public class BizConfig extends RefreshableConfig {
   private static final int DEFAULT_ACCESS_KEY_AUTH_TIME_DIFF_TOLERANCE = 60; //60s
   private static final int DEFAULT_RELEASE_MESSAGE_CACHE_SCAN_INTERVAL = 1; //1s
   private static final int DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS = 1000; //1000ms
+  private static final int DEFAULT_RELEASE_MESSAGE_RECONCILE_SCAN_INTERVAL_IN_MS = 10000; //10s
+  private static final int DEFAULT_RELEASE_MESSAGE_PUSH_TIMEOUT_IN_MS = 1000; //1000ms
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH = 100;
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI = 100;//100ms
+  private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_FAN_OUT_THREADS = Runtime.getRuntime().availableProcessors();
   private static final int DEFAULT_LONG_POLLING_TIMEOUT = 60; //60s
+  private static final int DEFAULT_CONFIG_SERVICE_CACHE_MAX_SIZE_IN_MB = 1024; //1GB
+  private static final int DEFAULT_CONFIG_SERVICE_CACHE_WARM_UP_MAX_NAMESPACES = 10000;
+  private static final int DEFAULT_CONFIG_SERVICE_CACHE_BATCH_LOAD_WINDOW_IN_MILLI = 5; //5ms
+  private static final String DEFAULT_CONFIG_SERVICE_CACHE_WARM_UP_KEYS_PATH = "/opt/data/apollo-configservice/config-cache-keys";
 
   private static final Gson GSON = new Gson();
 
@@ -179,6 +186,23 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 100, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS);
   }
 
+  public boolean isReleaseMessagePushEnabled() {
+    return getBooleanProperty("apollo.release-message.push.enabled", false);
+  }
+
+  /**
+   * when release messages are pushed to config services, database scanning is only a reconciliation path
+   */
+  public int releaseMessageReconcileScanIntervalInMilli() {
+    int interval = getIntProperty("apollo.release-message.push.reconcile-scan.interval", DEFAULT_RELEASE_MESSAGE_RECONCILE_SCAN_INTERVAL_IN_MS);
+    return checkInt(interval, 100, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_RECONCILE_SCAN_INTERVAL_IN_MS);
+  }
+
+  public int releaseMessagePushTimeoutInMilli() {
+    int timeout = getIntProperty("apollo.release-message.push.timeout", DEFAULT_RELEASE_MESSAGE_PUSH_TIMEOUT_IN_MS);
+    return checkInt(timeout, 10, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_PUSH_TIMEOUT_IN_MS);
+  }
+
   public int releaseMessageNotificationBatch() {
     int batch = getIntProperty("apollo.release-message.notification.batch", DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH);
     return checkInt(batch, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH);
@@ -189,10 +213,52 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 10, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI);
   }
 
+  public int releaseMessageNotificationFanOutThreads() {
+    int threads = getIntProperty("apollo.release-message.notification.fan-out.threads", DEFAULT_RELEASE_MESSAGE_NOTIFICATION_FAN_OUT_THREADS);
+    return checkInt(threads, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_FAN_OUT_THREADS);
+  }
+
   public boolean isConfigServiceCacheEnabled() {
     return getBooleanProperty("config-service.cache.enabled", false);
   }
 
+  /**
+   * @return the max size of the configurations cached, 0 means unlimited
+   */
+  public int configServiceCacheMaxSizeInMB() {
+    int size = getIntProperty("config-service.cache.max-size-in-mb", DEFAULT_CONFIG_SERVICE_CACHE_MAX_SIZE_IN_MB);
+    return checkInt(size, 0, Integer.MAX_VALUE, DEFAULT_CONFIG_SERVICE_CACHE_MAX_SIZE_IN_MB);
+  }
+
+  public boolean isConfigServiceCacheWarmUpEnabled() {
+    return getBooleanProperty("config-service.cache.warm-up.enabled", false);
+  }
+
+  public int configServiceCacheWarmUpMaxNamespaces() {
+    int max = getIntProperty("config-service.cache.warm-up.max-namespaces", DEFAULT_CONFIG_SERVICE_CACHE_WARM_UP_MAX_NAMESPACES);
+    return checkInt(max, 1, Integer.MAX_VALUE, DEFAULT_CONFIG_SERVICE_CACHE_WARM_UP_MAX_NAMESPACES);
+  }
+
+  /**
+   * @return the time to wait for the concurrent cache misses to be loaded together, 0 means no batch
+   */
+  public int configServiceCacheBatchLoadWindowInMilli() {
+    int window = getIntProperty("config-service.cache.batch-load.window", DEFAULT_CONFIG_SERVICE_CACHE_BATCH_LOAD_WINDOW_IN_MILLI);
+    return checkInt(window, 0, 1000, DEFAULT_CONFIG_SERVICE_CACHE_BATCH_LOAD_WINDOW_IN_MILLI);
+  }
+
+  public String configServiceCacheWarmUpKeysPath() {
+    return getValue("config-service.cache.warm-up.keys.path", DEFAULT_CONFIG_SERVICE_CACHE_WARM_UP_KEYS_PATH);
+  }
+
+  public boolean isConfigServiceResponseGzipEnabled() {
+    return getBooleanProperty("config-service.response.gzip.enabled", false);
+  }
+
+  public boolean isConfigServiceIncrementalChangeEnabled() {
+    return getBooleanProperty("config-service.incremental.change.enabled", false);
+  }
+
   int checkInt(int value, int min, int max, int defaultValue) {
     if (value >= min && value <= max) {
       return value;
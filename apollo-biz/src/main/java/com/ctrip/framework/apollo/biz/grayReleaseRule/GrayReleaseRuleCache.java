@@ -17,7 +17,11 @@
 package com.ctrip.framework.apollo.biz.grayReleaseRule;
 
 import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -31,6 +35,8 @@ public class GrayReleaseRuleCache implements Comparable<GrayReleaseRuleCache> {
   private long loadVersion;
   private int branchStatus;
   private Set<GrayReleaseRuleItemDTO> ruleItems;
+  //clientAppId -> the ips and labels of all the rule items of the client app, case insensitive
+  private final Map<String, ClientMatcher> clientMatchers;
 
   public GrayReleaseRuleCache(long ruleId, String branchName, String namespaceName, long
       releaseId, int branchStatus, long loadVersion, Set<GrayReleaseRuleItemDTO> ruleItems) {
@@ -41,6 +47,7 @@ public class GrayReleaseRuleCache implements Comparable<GrayReleaseRuleCache> {
     this.branchStatus = branchStatus;
     this.loadVersion = loadVersion;
     this.ruleItems = ruleItems;
+    this.clientMatchers = compileClientMatchers(ruleItems);
   }
 
   public long getRuleId() {
@@ -76,16 +83,62 @@ public class GrayReleaseRuleCache implements Comparable<GrayReleaseRuleCache> {
   }
 
   public boolean matches(String clientAppId, String clientIp, String clientLabel) {
-    for (GrayReleaseRuleItemDTO ruleItem : ruleItems) {
-      if (ruleItem.matches(clientAppId, clientIp, clientLabel)) {
-        return true;
-      }
+    if (clientAppId == null) {
+      return false;
     }
-    return false;
+    ClientMatcher clientMatcher = clientMatchers.get(clientAppId);
+    return clientMatcher != null && clientMatcher.matches(clientIp, clientLabel);
   }
 
   @Override
   public int compareTo(GrayReleaseRuleCache that) {
     return Long.compare(this.ruleId, that.ruleId);
   }
+
+  /**
+   * The rule items of the same client app are merged, as a client matches the rule if it matches any of them
+   */
+  private static Map<String, ClientMatcher> compileClientMatchers(Set<GrayReleaseRuleItemDTO> ruleItems) {
+    Map<String, Set<String>> clientIps = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+    Map<String, Set<String>> clientLabels = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+    for (GrayReleaseRuleItemDTO ruleItem : ruleItems) {
+      if (ruleItem.getClientAppId() == null) {
+        continue;
+      }
+      Set<String> ips = clientIps.computeIfAbsent(ruleItem.getClientAppId(), key -> Sets.newHashSet());
+      Set<String> labels = clientLabels.computeIfAbsent(ruleItem.getClientAppId(), key -> Sets.newHashSet());
+      if (ruleItem.getClientIpList() != null) {
+        ips.addAll(ruleItem.getClientIpList());
+      }
+      if (ruleItem.getClientLabelList() != null) {
+        labels.addAll(ruleItem.getClientLabelList());
+      }
+    }
+
+    ImmutableSortedMap.Builder<String, ClientMatcher> builder =
+        ImmutableSortedMap.orderedBy(String.CASE_INSENSITIVE_ORDER);
+    for (Map.Entry<String, Set<String>> entry : clientIps.entrySet()) {
+      builder.put(entry.getKey(), new ClientMatcher(entry.getValue(), clientLabels.get(entry.getKey())));
+    }
+    return builder.build();
+  }
+
+  private static class ClientMatcher {
+    private final boolean allIps;
+    private final Set<String> ips;
+    private final boolean allLabels;
+    private final Set<String> labels;
+
+    ClientMatcher(Set<String> ips, Set<String> labels) {
+      this.allIps = ips.contains(GrayReleaseRuleItemDTO.ALL_IP);
+      this.ips = ips;
+      this.allLabels = labels.contains(GrayReleaseRuleItemDTO.ALL_Label);
+      this.labels = labels;
+    }
+
+    boolean matches(String clientIp, String clientLabel) {
+      return allIps || allLabels || ips.contains(clientIp)
+          || labels.contains(clientLabel);
+    }
+  }
 }
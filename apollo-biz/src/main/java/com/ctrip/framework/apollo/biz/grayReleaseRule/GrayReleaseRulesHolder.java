@@ -19,9 +19,11 @@ package com.ctrip.framework.apollo.biz.grayReleaseRule;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
@@ -46,14 +48,26 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Holds the gray release rules in memory.
+ *
+ * <p>Gray release rules are never updated in place, every change of the rules inserts a new row with a greater id, so
+ * the periodic scan only loads the rows after the max id scanned, and a full scan is done every
+ * {@link #FULL_SCAN_CYCLES} cycles to pick up the rows committed out of id order. The rules are published as
+ * immutable snapshots, so the lookups of config requests are lock free.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class GrayReleaseRulesHolder implements ReleaseMessageListener, InitializingBean {
@@ -61,6 +75,8 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
   private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
+  private static final int SCAN_BATCH_SIZE = 500;
+  private static final int FULL_SCAN_CYCLES = 10;
 
   @Autowired
   private GrayReleaseRuleRepository grayReleaseRuleRepository;
@@ -69,19 +85,24 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
 
   private int databaseScanInterval;
   private ScheduledExecutorService executorService;
-  //store configAppId+configCluster+configNamespace -> GrayReleaseRuleCache map
-  private Multimap<String, GrayReleaseRuleCache> grayReleaseRuleCache;
-  //store clientAppId+clientNamespace+ip -> ruleId map
-  private Multimap<String, Long> reversedGrayReleaseRuleCache;
+  //store configAppId+configCluster+configNamespace -> GrayReleaseRuleCache map, guarded by this
+  private final Multimap<String, GrayReleaseRuleCache> grayReleaseRuleCache;
+  //store clientAppId+clientNamespace+ip -> ruleId map, guarded by this
+  private final Multimap<String, Long> reversedGrayReleaseRuleCache;
+  //the immutable snapshot of the active rules, ordered by rule id
+  private volatile Map<String, List<GrayReleaseRuleCache>> activeRulesSnapshot;
+  //the immutable snapshot of the keys of reversedGrayReleaseRuleCache
+  private volatile Set<String> reversedKeysSnapshot;
   //an auto increment version to indicate the age of rules
   private AtomicLong loadVersion;
+  private long maxIdScanned;
 
   public GrayReleaseRulesHolder() {
     loadVersion = new AtomicLong();
-    grayReleaseRuleCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
-    reversedGrayReleaseRuleCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+    grayReleaseRuleCache = TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural());
+    reversedGrayReleaseRuleCache = TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural());
+    activeRulesSnapshot = Collections.emptyMap();
+    reversedKeysSnapshot = Collections.emptySet();
     executorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
         .create("GrayReleaseRulesHolder", true));
   }
@@ -123,8 +144,12 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     Transaction transaction = Tracer.newTransaction("Apollo.GrayReleaseRulesScanner",
         "scanGrayReleaseRules");
     try {
-      loadVersion.incrementAndGet();
+      long currentLoadVersion = loadVersion.incrementAndGet();
+      if (currentLoadVersion % FULL_SCAN_CYCLES == 1) {
+        maxIdScanned = 0;
+      }
       scanGrayReleaseRules();
+      removeOutdatedInactiveRules();
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
       transaction.setStatus(ex);
@@ -137,16 +162,11 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
   public Long findReleaseIdFromGrayReleaseRule(String clientAppId, String clientIp, String clientLabel, String
       configAppId, String configCluster, String configNamespaceName) {
     String key = assembleGrayReleaseRuleKey(configAppId, configCluster, configNamespaceName);
-    if (!grayReleaseRuleCache.containsKey(key)) {
+    List<GrayReleaseRuleCache> rules = activeRulesSnapshot.get(key);
+    if (rules == null) {
       return null;
     }
-    //create a new list to avoid ConcurrentModificationException
-    List<GrayReleaseRuleCache> rules = Lists.newArrayList(grayReleaseRuleCache.get(key));
     for (GrayReleaseRuleCache rule : rules) {
-      //check branch status
-      if (rule.getBranchStatus() != NamespaceBranchStatus.ACTIVE) {
-        continue;
-      }
       if (rule.matches(clientAppId, clientIp, clientLabel)) {
         return rule.getReleaseId();
       }
@@ -160,14 +180,14 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
    * load gray releases. Because gray release rules actually apply to one more dimension - cluster.
    */
   public boolean hasGrayReleaseRule(String clientAppId, String clientIp, String namespaceName) {
-    return reversedGrayReleaseRuleCache.containsKey(assembleReversedGrayReleaseRuleKey(clientAppId,
-        namespaceName, clientIp)) || reversedGrayReleaseRuleCache.containsKey
+    Set<String> reversedKeys = reversedKeysSnapshot;
+    return reversedKeys.contains(assembleReversedGrayReleaseRuleKey(clientAppId,
+        namespaceName, clientIp)) || reversedKeys.contains
         (assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName, GrayReleaseRuleItemDTO
             .ALL_IP));
   }
 
   private void scanGrayReleaseRules() {
-    long maxIdScanned = 0;
     boolean hasMore = true;
 
     while (hasMore && !Thread.currentThread().isInterrupted()) {
@@ -179,15 +199,37 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
       mergeGrayReleaseRules(grayReleaseRules);
       int rulesScanned = grayReleaseRules.size();
       maxIdScanned = grayReleaseRules.get(rulesScanned - 1).getId();
-      //batch is 500
-      hasMore = rulesScanned == 500;
+      hasMore = rulesScanned == SCAN_BATCH_SIZE;
     }
   }
 
-  private void mergeGrayReleaseRules(List<GrayReleaseRule> grayReleaseRules) {
+  /**
+   * Inactive branch rules are kept for 2 update cycles, so that the older active rules of the branch scanned later
+   * would not be added back
+   */
+  private synchronized void removeOutdatedInactiveRules() {
+    boolean changed = false;
+    Iterator<Map.Entry<String, GrayReleaseRuleCache>> iterator = grayReleaseRuleCache.entries().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, GrayReleaseRuleCache> entry = iterator.next();
+      GrayReleaseRuleCache ruleCache = entry.getValue();
+      if (ruleCache.getBranchStatus() != NamespaceBranchStatus.ACTIVE
+          && (loadVersion.get() - ruleCache.getLoadVersion()) > 1) {
+        iterator.remove();
+        removeReversedCache(ruleCache);
+        changed = true;
+      }
+    }
+    if (changed) {
+      publishSnapshot();
+    }
+  }
+
+  private synchronized void mergeGrayReleaseRules(List<GrayReleaseRule> grayReleaseRules) {
     if (CollectionUtils.isEmpty(grayReleaseRules)) {
       return;
     }
+    boolean changed = false;
     for (GrayReleaseRule grayReleaseRule : grayReleaseRules) {
       if (grayReleaseRule.getReleaseId() == null || grayReleaseRule.getReleaseId() == 0) {
         //filter rules with no release id, i.e. never released
@@ -195,10 +237,8 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
       }
       String key = assembleGrayReleaseRuleKey(grayReleaseRule.getAppId(), grayReleaseRule
           .getClusterName(), grayReleaseRule.getNamespaceName());
-      //create a new list to avoid ConcurrentModificationException
-      List<GrayReleaseRuleCache> rules = Lists.newArrayList(grayReleaseRuleCache.get(key));
       GrayReleaseRuleCache oldRule = null;
-      for (GrayReleaseRuleCache ruleCache : rules) {
+      for (GrayReleaseRuleCache ruleCache : grayReleaseRuleCache.get(key)) {
         if (ruleCache.getBranchName().equals(grayReleaseRule.getBranchName())) {
           oldRule = ruleCache;
           break;
@@ -210,12 +250,13 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
         continue;
       }
 
-      //use id comparison to avoid synchronization
+      //rules are never updated in place, so the rows with the same or a smaller id are not parsed again
       if (oldRule == null || grayReleaseRule.getId() > oldRule.getRuleId()) {
-        addCache(key, transformRuleToRuleCache(grayReleaseRule));
         if (oldRule != null) {
           removeCache(key, oldRule);
         }
+        addCache(key, transformRuleToRuleCache(grayReleaseRule));
+        changed = true;
       } else {
         if (oldRule.getBranchStatus() == NamespaceBranchStatus.ACTIVE) {
           //update load version
@@ -223,9 +264,36 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
         } else if ((loadVersion.get() - oldRule.getLoadVersion()) > 1) {
           //remove outdated inactive branch rule after 2 update cycles
           removeCache(key, oldRule);
+          changed = true;
+        }
+      }
+    }
+    if (changed) {
+      publishSnapshot();
+    }
+  }
+
+  /**
+   * Copy the active rules and the reversed keys into immutable snapshots, must be called with the lock held
+   */
+  private void publishSnapshot() {
+    SortedMap<String, List<GrayReleaseRuleCache>> activeRules = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+    for (Map.Entry<String, Collection<GrayReleaseRuleCache>> entry : grayReleaseRuleCache.asMap().entrySet()) {
+      ImmutableList.Builder<GrayReleaseRuleCache> rules = ImmutableList.builder();
+      boolean hasActiveRule = false;
+      for (GrayReleaseRuleCache ruleCache : entry.getValue()) {
+        if (ruleCache.getBranchStatus() == NamespaceBranchStatus.ACTIVE) {
+          rules.add(ruleCache);
+          hasActiveRule = true;
         }
       }
+      if (hasActiveRule) {
+        activeRules.put(entry.getKey(), rules.build());
+      }
     }
+    activeRulesSnapshot = ImmutableSortedMap.copyOfSorted(activeRules);
+    reversedKeysSnapshot = ImmutableSortedSet.copyOf(String.CASE_INSENSITIVE_ORDER,
+        reversedGrayReleaseRuleCache.keySet());
   }
 
   private void addCache(String key, GrayReleaseRuleCache ruleCache) {
@@ -242,6 +310,10 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
 
   private void removeCache(String key, GrayReleaseRuleCache ruleCache) {
     grayReleaseRuleCache.remove(key, ruleCache);
+    removeReversedCache(ruleCache);
+  }
+
+  private void removeReversedCache(GrayReleaseRuleCache ruleCache) {
     for (GrayReleaseRuleItemDTO ruleItemDTO : ruleCache.getRuleItems()) {
       for (String clientIp : ruleItemDTO.getClientIpList()) {
         reversedGrayReleaseRuleCache.remove(assembleReversedGrayReleaseRuleKey(ruleItemDTO
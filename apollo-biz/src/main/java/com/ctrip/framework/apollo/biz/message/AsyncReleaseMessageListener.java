@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.collect.Maps;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifies the delegate listener in its own thread, so that a slow listener doesn't delay the other listeners.
+ *
+ * <p>Pending messages are coalesced by their content, i.e. the delegate is notified once with the latest message if
+ * the same key is released several times before it catches up. When the pending keys reach the capacity, the message
+ * is handled in the caller thread, so no message is dropped.</p>
+ */
+public class AsyncReleaseMessageListener implements ReleaseMessageListener {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncReleaseMessageListener.class);
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  private final ReleaseMessageListener delegate;
+  private final String delegateName;
+  private final int capacity;
+  private final ExecutorService executorService;
+  // channel+message => pending message, guarded by this
+  private final Map<String, PendingMessage> pendingMessages;
+  // guarded by this
+  private boolean dispatchScheduled;
+
+  public AsyncReleaseMessageListener(ReleaseMessageListener delegate, int capacity) {
+    this.delegate = delegate;
+    this.delegateName = delegate.getClass().getSimpleName();
+    this.capacity = capacity;
+    this.executorService = Executors.newSingleThreadExecutor(ApolloThreadFactory
+        .create("ReleaseMessageListener-" + delegateName, true));
+    this.pendingMessages = Maps.newLinkedHashMap();
+  }
+
+  ReleaseMessageListener getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String key = channel + ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR + message.getMessage();
+    boolean full = false;
+    boolean scheduleDispatch = false;
+    synchronized (this) {
+      PendingMessage pendingMessage = pendingMessages.get(key);
+      if (pendingMessage != null) {
+        Tracer.logEvent("Apollo.ReleaseMessageListener.Coalesced", delegateName);
+        // missing messages might be scanned later than the newer ones
+        if (message.getId() > pendingMessage.message.getId()) {
+          pendingMessage.message = message;
+        }
+      } else if (pendingMessages.size() >= capacity) {
+        full = true;
+      } else {
+        pendingMessages.put(key, new PendingMessage(message, channel, System.currentTimeMillis()));
+      }
+      if (!full && !dispatchScheduled) {
+        dispatchScheduled = true;
+        scheduleDispatch = true;
+      }
+    }
+
+    if (full) {
+      Tracer.logEvent("Apollo.ReleaseMessageListener.QueueFull", delegateName);
+      dispatch(new PendingMessage(message, channel, System.currentTimeMillis()));
+      return;
+    }
+    if (scheduleDispatch) {
+      executorService.execute(this::dispatchPendingMessages);
+    }
+  }
+
+  private void dispatchPendingMessages() {
+    while (!Thread.currentThread().isInterrupted()) {
+      PendingMessage pendingMessage;
+      synchronized (this) {
+        Iterator<PendingMessage> iterator = pendingMessages.values().iterator();
+        if (!iterator.hasNext()) {
+          dispatchScheduled = false;
+          return;
+        }
+        pendingMessage = iterator.next();
+        iterator.remove();
+      }
+      dispatch(pendingMessage);
+    }
+  }
+
+  private void dispatch(PendingMessage pendingMessage) {
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageListener", delegateName);
+    transaction.addData("LagInMillis", System.currentTimeMillis() - pendingMessage.enqueueTime);
+    try {
+      delegate.handleMessage(pendingMessage.message, pendingMessage.channel);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      Tracer.logError(ex);
+      logger.error("Failed to invoke message listener {}", delegate.getClass(), ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private static class PendingMessage {
+    private ReleaseMessage message;
+    private final String channel;
+    private final long enqueueTime;
+
+    PendingMessage(ReleaseMessage message, String channel, long enqueueTime) {
+      this.message = message;
+      this.channel = channel;
+      this.enqueueTime = enqueueTime;
+    }
+  }
+}
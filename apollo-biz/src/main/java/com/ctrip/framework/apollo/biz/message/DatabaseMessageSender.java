@@ -48,11 +48,14 @@ public class DatabaseMessageSender implements MessageSender {
   private final AtomicBoolean cleanStopped;
 
   private final ReleaseMessageRepository releaseMessageRepository;
+  private final ReleaseMessagePusher releaseMessagePusher;
 
-  public DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository) {
+  public DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository,
+      final ReleaseMessagePusher releaseMessagePusher) {
     cleanExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create("DatabaseMessageSender", true));
     cleanStopped = new AtomicBoolean(false);
     this.releaseMessageRepository = releaseMessageRepository;
+    this.releaseMessagePusher = releaseMessagePusher;
   }
 
   @Override
@@ -69,6 +72,7 @@ public class DatabaseMessageSender implements MessageSender {
     try {
       ReleaseMessage newMessage = releaseMessageRepository.save(new ReleaseMessage(message));
       toClean.offer(newMessage.getId());
+      releaseMessagePusher.push(newMessage);
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
       logger.error("Sending message to database failed", ex);
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.auth.AdminServiceAccessTokenChecker;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.core.ServiceNameConsts;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Pushes the ids of sent release messages to all the config service instances, so that they could scan the new
+ * messages right away instead of waiting for the next database scan.
+ *
+ * <p>The push is only a hint, config services always read the messages from database, so a lost push is recovered by
+ * the periodic reconciliation scan.</p>
+ *
+ * <p>The config service instances are looked up from the service registry, so nothing is pushed without a
+ * {@link DiscoveryClient}, and config services keep scanning database at the normal interval in that case.</p>
+ */
+@Component
+public class ReleaseMessagePusher {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseMessagePusher.class);
+  static final String PUSH_PATH = "/release-messages/push?id={id}";
+  private static final int PUSH_QUEUE_MAX_SIZE = 1000;
+
+  private final BizConfig bizConfig;
+  private final AdminServiceAccessTokenChecker accessTokenChecker;
+  private final ObjectProvider<DiscoveryClient> discoveryClientProvider;
+  private final ExecutorService pushExecutorService;
+  private volatile RestTemplate restTemplate;
+  private volatile int restTemplateTimeout;
+  private volatile boolean discoveryClientAbsenceWarned;
+
+  public ReleaseMessagePusher(final BizConfig bizConfig,
+      final ObjectProvider<DiscoveryClient> discoveryClientProvider) {
+    this.bizConfig = bizConfig;
+    this.accessTokenChecker = new AdminServiceAccessTokenChecker(bizConfig);
+    this.discoveryClientProvider = discoveryClientProvider;
+    // drop the push when overloaded, the message will be picked up by the reconciliation scan anyway
+    this.pushExecutorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(PUSH_QUEUE_MAX_SIZE),
+        ApolloThreadFactory.create("ReleaseMessagePusher", true), new ThreadPoolExecutor.DiscardPolicy());
+  }
+
+  /**
+   * Push the release message once the current transaction, if any, is committed
+   */
+  public void push(ReleaseMessage releaseMessage) {
+    if (!bizConfig.isReleaseMessagePushEnabled()) {
+      return;
+    }
+    long id = releaseMessage.getId();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          pushAsync(id);
+        }
+      });
+      return;
+    }
+    pushAsync(id);
+  }
+
+  private void pushAsync(long id) {
+    pushExecutorService.execute(() -> doPush(id));
+  }
+
+  private void doPush(long id) {
+    List<ServiceInstance> instances = getConfigServiceInstances();
+    if (instances.isEmpty()) {
+      return;
+    }
+    RestTemplate template = getRestTemplate();
+    HttpEntity<Void> request = new HttpEntity<>(assembleHeaders());
+    for (ServiceInstance instance : instances) {
+      try {
+        template.postForLocation(instance.getUri().toString() + PUSH_PATH, request, id);
+      } catch (Throwable ex) {
+        // the config service will find the message in the next reconciliation scan
+        logger.warn("Push release message {} to {} failed", id, instance.getUri(), ex);
+        Tracer.logEvent("Apollo.ReleaseMessage.PushFailed", String.valueOf(instance.getUri()));
+      }
+    }
+  }
+
+  private List<ServiceInstance> getConfigServiceInstances() {
+    DiscoveryClient discoveryClient = discoveryClientProvider.getIfAvailable();
+    if (discoveryClient == null) {
+      if (!discoveryClientAbsenceWarned) {
+        discoveryClientAbsenceWarned = true;
+        logger.warn("Release message push is enabled but there is no discovery client to find config services, "
+            + "config services will find the release messages in the periodic database scan");
+      }
+      return Collections.emptyList();
+    }
+    try {
+      return discoveryClient.getInstances(ServiceNameConsts.APOLLO_CONFIGSERVICE);
+    } catch (Throwable ex) {
+      logger.warn("Get config service instances failed", ex);
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * config services accept the same access tokens as admin services
+   */
+  private HttpHeaders assembleHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    String accessToken = accessTokenChecker.getAccessToken();
+    if (accessToken != null) {
+      headers.set(HttpHeaders.AUTHORIZATION, accessToken);
+    }
+    return headers;
+  }
+
+  private RestTemplate getRestTemplate() {
+    int timeout = bizConfig.releaseMessagePushTimeoutInMilli();
+    if (restTemplate == null || restTemplateTimeout != timeout) {
+      SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+      requestFactory.setConnectTimeout(timeout);
+      requestFactory.setReadTimeout(timeout);
+      restTemplate = new RestTemplate(requestFactory);
+      restTemplateTimeout = timeout;
+    }
+    return restTemplate;
+  }
+}
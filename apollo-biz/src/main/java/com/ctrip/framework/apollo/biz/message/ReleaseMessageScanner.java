@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,40 +52,93 @@ public class ReleaseMessageScanner implements InitializingBean {
   @Autowired
   private ReleaseMessageRepository releaseMessageRepository;
   private int databaseScanInterval;
+  private int reconcileScanInterval;
+  private volatile boolean releaseMessagePushReceived;
+  private long lastPeriodicScanTime;
   private final List<ReleaseMessageListener> listeners;
+  private final Map<ReleaseMessageListener, AsyncReleaseMessageListener> asyncListeners;
   private final ScheduledExecutorService executorService;
   private final Map<Long, Integer> missingReleaseMessages; // missing release message id => age counter
+  private final AtomicBoolean scanRequested;
   private long maxIdScanned;
 
   public ReleaseMessageScanner() {
     listeners = Lists.newCopyOnWriteArrayList();
+    asyncListeners = Maps.newConcurrentMap();
     executorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
         .create("ReleaseMessageScanner", true));
     missingReleaseMessages = Maps.newHashMap();
+    scanRequested = new AtomicBoolean(false);
   }
 
   @Override
   public void afterPropertiesSet() throws Exception {
     databaseScanInterval = bizConfig.releaseMessageScanIntervalInMilli();
+    // release messages pushed by admin services trigger the scan immediately, so the periodic scan is only for
+    // reconciliation, but only after the pushes are actually received, e.g. admin services may have no service registry
+    reconcileScanInterval = bizConfig.isReleaseMessagePushEnabled() ?
+        bizConfig.releaseMessageReconcileScanIntervalInMilli() : databaseScanInterval;
     maxIdScanned = loadLargestMessageId();
-    executorService.scheduleWithFixedDelay(() -> {
-      Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanMessage");
-      try {
-        scanMissingMessages();
-        scanMessages();
-        transaction.setStatus(Transaction.SUCCESS);
-      } catch (Throwable ex) {
-        transaction.setStatus(ex);
-        logger.error("Scan and send message failed", ex);
-      } finally {
-        transaction.complete();
-      }
-    }, databaseScanInterval, databaseScanInterval, TimeUnit.MILLISECONDS);
+    lastPeriodicScanTime = System.currentTimeMillis();
+    executorService.scheduleWithFixedDelay(this::scanPeriodically, databaseScanInterval, databaseScanInterval,
+        TimeUnit.MILLISECONDS);
+  }
 
+  /**
+   * Scan messages as soon as possible, e.g. when notified that new release messages are sent.
+   * Requests arriving before the pending scan starts are coalesced. When release message push is enabled, the periodic
+   * scan slows down to the reconciliation interval once requested. If the requested scan finds no new messages, e.g.
+   * the pushed message is not visible yet as read from a lagging database replica, messages are scanned once more
+   * after the normal scan interval.
+   */
+  public void scanNow() {
+    if (scanRequested.compareAndSet(false, true)) {
+      executorService.execute(() -> {
+        scanRequested.set(false);
+        releaseMessagePushReceived = true;
+        long previousMaxIdScanned = maxIdScanned;
+        scan(false);
+        if (maxIdScanned == previousMaxIdScanned) {
+          executorService.schedule(() -> scan(false), databaseScanInterval, TimeUnit.MILLISECONDS);
+        }
+      });
+    }
+  }
+
+  private void scanPeriodically() {
+    long now = System.currentTimeMillis();
+    if (releaseMessagePushReceived && now - lastPeriodicScanTime < reconcileScanInterval) {
+      return;
+    }
+    lastPeriodicScanTime = now;
+    long previousMaxIdScanned = maxIdScanned;
+    scan(true);
+    // the new messages found by the periodic scan were not pushed, so scan at the normal interval until the next push
+    if (maxIdScanned != previousMaxIdScanned) {
+      releaseMessagePushReceived = false;
+    }
   }
 
   /**
-   * add message listeners for release message
+   * @param periodic whether it's the periodic scan, only which grows the age of missing messages
+   */
+  private void scan(boolean periodic) {
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanMessage");
+    try {
+      scanMissingMessages(periodic);
+      scanMessages();
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Scan and send message failed", ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  /**
+   * add message listeners for release message, the listeners are notified one by one in the scanner thread, in the
+   * order they are added, so a listener sees the effects of the listeners added before it
    * @param listener
    */
   public void addMessageListener(ReleaseMessageListener listener) {
@@ -93,6 +147,17 @@ public class ReleaseMessageScanner implements InitializingBean {
     }
   }
 
+  /**
+   * add message listeners for release message, which are notified in their own threads with coalesced messages.
+   * The listeners added after it don't wait for it, so it should only be used by the listeners whose effects are not
+   * required to be visible before the clients are notified, e.g. cache warm up
+   * @param listener
+   */
+  public void addAsyncMessageListener(ReleaseMessageListener listener) {
+    addMessageListener(asyncListeners.computeIfAbsent(listener,
+        key -> new AsyncReleaseMessageListener(key, AsyncReleaseMessageListener.DEFAULT_CAPACITY)));
+  }
+
   /**
    * Scan messages, continue scanning until there is no more messages
    */
@@ -126,7 +191,7 @@ public class ReleaseMessageScanner implements InitializingBean {
     return messageScanned == 500;
   }
 
-  private void scanMissingMessages() {
+  private void scanMissingMessages(boolean growAge) {
     Set<Long> missingReleaseMessageIds = missingReleaseMessages.keySet();
     Iterable<ReleaseMessage> releaseMessages = releaseMessageRepository
         .findAllById(missingReleaseMessageIds);
@@ -134,7 +199,9 @@ public class ReleaseMessageScanner implements InitializingBean {
     releaseMessages.forEach(releaseMessage -> {
       missingReleaseMessageIds.remove(releaseMessage.getId());
     });
-    growAndCleanMissingMessages();
+    if (growAge) {
+      growAndCleanMissingMessages();
+    }
   }
 
   private void growAndCleanMissingMessages() {
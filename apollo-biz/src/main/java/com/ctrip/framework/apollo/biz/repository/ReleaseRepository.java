@@ -24,6 +24,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -47,6 +48,11 @@ public interface ReleaseRepository extends PagingAndSortingRepository<Release, L
 
   List<Release> findByIdIn(Set<Long> releaseIds);
 
+  @Query("select appId, clusterName, namespaceName, max(id) from Release where appId in :appIds and clusterName in :clusterNames"
+      + " and namespaceName in :namespaceNames and isAbandoned = false group by appId, clusterName, namespaceName")
+  List<Object[]> findLatestActiveReleaseIdsGroupByNamespace(@Param("appIds") Collection<String> appIds,
+      @Param("clusterNames") Collection<String> clusterNames, @Param("namespaceNames") Collection<String> namespaceNames);
+
   @Modifying
   @Query("update Release set IsDeleted = 1, DeletedAt = ROUND(UNIX_TIMESTAMP(NOW(4))*1000), DataChange_LastModifiedBy = ?4 where appId=?1 and clusterName=?2 and namespaceName = ?3 and IsDeleted = 0")
   int batchDelete(String appId, String clusterName, String namespaceName, String operator);
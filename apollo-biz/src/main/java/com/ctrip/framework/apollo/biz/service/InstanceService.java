@@ -35,7 +35,9 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -77,6 +79,13 @@ public class InstanceService {
             instanceId, configAppId, configNamespaceName);
   }
 
+  public List<InstanceConfig> findInstanceConfigsByInstanceIds(Set<Long> instanceIds) {
+    if (CollectionUtils.isEmpty(instanceIds)) {
+      return Collections.emptyList();
+    }
+    return instanceConfigRepository.findByInstanceIdIn(instanceIds);
+  }
+
   public Page<InstanceConfig> findActiveInstanceConfigsByReleaseKey(String releaseKey, Pageable
       pageable) {
     return instanceConfigRepository.findByReleaseKeyAndDataChangeLastModifiedTimeAfter(releaseKey,
@@ -185,6 +194,45 @@ public class InstanceService {
     return instanceConfigRepository.save(existedInstanceConfig);
   }
 
+  /**
+   * Create the instance configs in one transaction
+   */
+  @Transactional
+  public List<InstanceConfig> batchCreateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    for (InstanceConfig instanceConfig : instanceConfigs) {
+      instanceConfig.setId(0); //protection
+    }
+
+    return Lists.newArrayList(instanceConfigRepository.saveAll(instanceConfigs));
+  }
+
+  /**
+   * Update the instance configs in one transaction, same as {@link #updateInstanceConfig(InstanceConfig)} for each
+   */
+  @Transactional
+  public List<InstanceConfig> batchUpdateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    Set<Long> ids = instanceConfigs.stream().map(InstanceConfig::getId).collect(Collectors.toSet());
+    Map<Long, InstanceConfig> existedInstanceConfigs = Lists
+        .newArrayList(instanceConfigRepository.findAllById(ids)).stream()
+        .collect(Collectors.toMap(InstanceConfig::getId, Function.identity()));
+
+    List<InstanceConfig> toUpdate = Lists.newArrayListWithCapacity(instanceConfigs.size());
+    for (InstanceConfig instanceConfig : instanceConfigs) {
+      InstanceConfig existedInstanceConfig = existedInstanceConfigs.get(instanceConfig.getId());
+      Preconditions.checkArgument(existedInstanceConfig != null, String.format(
+          "Instance config %d doesn't exist", instanceConfig.getId()));
+
+      existedInstanceConfig.setConfigClusterName(instanceConfig.getConfigClusterName());
+      existedInstanceConfig.setReleaseKey(instanceConfig.getReleaseKey());
+      existedInstanceConfig.setReleaseDeliveryTime(instanceConfig.getReleaseDeliveryTime());
+      existedInstanceConfig.setDataChangeLastModifiedTime(instanceConfig
+          .getDataChangeLastModifiedTime());
+      toUpdate.add(existedInstanceConfig);
+    }
+
+    return Lists.newArrayList(instanceConfigRepository.saveAll(toUpdate));
+  }
+
   @Transactional
   public int batchDeleteInstanceConfig(String configAppId, String configClusterName, String configNamespaceName){
     return instanceConfigRepository.batchDelete(configAppId, configClusterName, configNamespaceName);
@@ -25,6 +25,7 @@ import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
 import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
 import com.ctrip.framework.apollo.biz.utils.ReleaseKeyGenerator;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.common.constants.GsonType;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperation;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperationContext;
@@ -32,7 +33,9 @@ import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.common.exception.NotFoundException;
 import com.ctrip.framework.apollo.common.utils.GrayReleaseRuleItemTransformer;
+import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -62,6 +65,8 @@ public class ReleaseService {
           ReleaseOperation.MATER_ROLLBACK_MERGE_TO_GRAY);
   private static final Pageable FIRST_ITEM = PageRequest.of(0, 1);
   private static final Type OPERATION_CONTEXT_TYPE_REFERENCE = new TypeToken<Map<String, Object>>() { }.getType();
+  private static final Splitter NAMESPACE_KEY_SPLITTER =
+      Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
 
   private final ReleaseRepository releaseRepository;
   private final ItemService itemService;
@@ -112,6 +117,53 @@ public class ReleaseService {
     return releaseRepository.findByReleaseKeyIn(releaseKeys);
   }
 
+  /**
+   * @param namespaceKeys the appId+clusterName+namespaceName keys, see {@link ReleaseMessageKeyGenerator}
+   * @return the latest active releases keyed by the given keys, the namespaces without active release are left out
+   */
+  public Map<String, Release> findLatestActiveReleases(Set<String> namespaceKeys) {
+    //the keys differing only in case are matched by the same row, as the database is case insensitive
+    Map<String, List<String>> requestedKeys = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+    Set<String> appIds = Sets.newHashSet();
+    Set<String> clusterNames = Sets.newHashSet();
+    Set<String> namespaceNames = Sets.newHashSet();
+    for (String namespaceKey : namespaceKeys) {
+      List<String> namespaceInfo = NAMESPACE_KEY_SPLITTER.splitToList(namespaceKey);
+      if (namespaceInfo.size() != 3) {
+        continue;
+      }
+      requestedKeys.computeIfAbsent(namespaceKey, key -> Lists.newArrayListWithCapacity(1)).add(namespaceKey);
+      appIds.add(namespaceInfo.get(0));
+      clusterNames.add(namespaceInfo.get(1));
+      namespaceNames.add(namespaceInfo.get(2));
+    }
+    if (appIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<Long, List<String>> releaseIds = Maps.newHashMap();
+    //the combinations not requested are filtered out below
+    for (Object[] row : releaseRepository.findLatestActiveReleaseIdsGroupByNamespace(appIds, clusterNames,
+        namespaceNames)) {
+      List<String> matchedKeys = requestedKeys.get(
+          ReleaseMessageKeyGenerator.generate((String) row[0], (String) row[1], (String) row[2]));
+      if (matchedKeys != null) {
+        releaseIds.put((Long) row[3], matchedKeys);
+      }
+    }
+    if (releaseIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, Release> releases = Maps.newHashMapWithExpectedSize(releaseIds.size());
+    for (Release release : releaseRepository.findByIdIn(releaseIds.keySet())) {
+      for (String namespaceKey : releaseIds.get(release.getId())) {
+        releases.put(namespaceKey, release);
+      }
+    }
+    return releases;
+  }
+
   public Release findLatestActiveRelease(Namespace namespace) {
     return findLatestActiveRelease(namespace.getAppId(),
                                    namespace.getClusterName(), namespace.getNamespaceName());
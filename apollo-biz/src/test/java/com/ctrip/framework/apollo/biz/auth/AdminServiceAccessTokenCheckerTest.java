@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class AdminServiceAccessTokenCheckerTest extends AbstractUnitTest {
+
+  @Mock
+  private BizConfig bizConfig;
+
+  private AdminServiceAccessTokenChecker accessTokenChecker;
+
+  @Before
+  public void setUp() throws Exception {
+    accessTokenChecker = new AdminServiceAccessTokenChecker(bizConfig);
+  }
+
+  @Test
+  public void testCheckAccessToken() throws Exception {
+    String someToken = "someToken";
+    String anotherToken = "anotherToken";
+    String yetAnotherToken = "yetAnotherToken";
+
+    when(bizConfig.getAdminServiceAccessTokens())
+        .thenReturn(String.format("%s, %s", someToken, anotherToken))
+        .thenReturn(yetAnotherToken);
+
+    assertTrue(accessTokenChecker.checkAccessToken(anotherToken));
+    assertFalse(accessTokenChecker.checkAccessToken(someToken));
+    assertTrue(accessTokenChecker.checkAccessToken(yetAnotherToken));
+    assertFalse(accessTokenChecker.checkAccessToken(null));
+  }
+
+  @Test
+  public void testCheckAccessTokenWithNoTokenSpecified() throws Exception {
+    when(bizConfig.getAdminServiceAccessTokens()).thenReturn(null);
+
+    assertTrue(accessTokenChecker.checkAccessToken(null));
+    assertTrue(accessTokenChecker.checkAccessToken("someToken"));
+  }
+
+  @Test
+  public void testGetAccessToken() throws Exception {
+    String someToken = "someToken";
+    String anotherToken = "anotherToken";
+
+    when(bizConfig.isAdminServiceAccessControlEnabled()).thenReturn(true);
+    when(bizConfig.getAdminServiceAccessTokens())
+        .thenReturn(String.format("%s,%s", someToken, anotherToken));
+
+    assertEquals(someToken, accessTokenChecker.getAccessToken());
+  }
+
+  @Test
+  public void testGetAccessTokenWithAccessControlDisabled() throws Exception {
+    when(bizConfig.isAdminServiceAccessControlEnabled()).thenReturn(false);
+
+    assertNull(accessTokenChecker.getAccessToken());
+  }
+
+  @Test
+  public void testGetAccessTokenWithNoTokenSpecified() throws Exception {
+    when(bizConfig.isAdminServiceAccessControlEnabled()).thenReturn(true);
+    when(bizConfig.getAdminServiceAccessTokens()).thenReturn(" , ");
+
+    assertNull(accessTokenChecker.getAccessToken());
+  }
+}
@@ -18,6 +18,7 @@ package com.ctrip.framework.apollo.biz.grayReleaseRule;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 
@@ -46,6 +47,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -162,6 +165,57 @@ public class GrayReleaseRulesHolderTest {
         anotherNamespaceName));
   }
 
+  @Test
+  public void testScanGrayReleaseRulesIncrementally() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someNamespaceName = "someNamespaceName";
+    Long someReleaseId = 1L;
+    String someClientAppId = "clientAppId1";
+    String someClientIp = "1.1.1.1";
+    String someClientLabel = "myLabel";
+
+    GrayReleaseRule someRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId, Sets.newHashSet
+            (someClientIp), Sets.newHashSet(someClientLabel))), someReleaseId, NamespaceBranchStatus.ACTIVE);
+    GrayReleaseRule deletedRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId, Sets.newHashSet
+            (someClientIp), Sets.newHashSet(someClientLabel))), someReleaseId, NamespaceBranchStatus.DELETED);
+
+    when(bizConfig.grayReleaseRuleScanInterval()).thenReturn(30);
+    when(grayReleaseRuleRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(Lists
+        .newArrayList(someRule));
+    when(grayReleaseRuleRepository.findFirst500ByIdGreaterThanOrderByIdAsc(someRule.getId()))
+        .thenReturn(Lists.newArrayList(deletedRule));
+
+    grayReleaseRulesHolder.afterPropertiesSet();
+
+    assertEquals(someReleaseId, grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule
+        (someClientAppId, someClientIp, someClientLabel, someAppId, someClusterName, someNamespaceName));
+    assertTrue(grayReleaseRulesHolder.hasGrayReleaseRule(someClientAppId, someClientIp,
+        someNamespaceName));
+
+    //only the rules after the max id scanned are loaded
+    ReflectionTestUtils.invokeMethod(grayReleaseRulesHolder, "periodicScanRules");
+
+    assertNull(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule
+        (someClientAppId, someClientIp, someClientLabel, someAppId, someClusterName, someNamespaceName));
+    assertFalse(grayReleaseRulesHolder.hasGrayReleaseRule(someClientAppId, someClientIp,
+        someNamespaceName));
+
+    Multimap<String, GrayReleaseRuleCache> ruleCache = (Multimap<String, GrayReleaseRuleCache>)
+        ReflectionTestUtils.getField(grayReleaseRulesHolder, "grayReleaseRuleCache");
+    assertEquals(1, ruleCache.size());
+
+    //the inactive rule is removed after 2 update cycles, even it is not scanned again
+    ReflectionTestUtils.invokeMethod(grayReleaseRulesHolder, "periodicScanRules");
+    assertEquals(1, ruleCache.size());
+    ReflectionTestUtils.invokeMethod(grayReleaseRulesHolder, "periodicScanRules");
+    assertTrue(ruleCache.isEmpty());
+
+    verify(grayReleaseRuleRepository, times(1)).findFirst500ByIdGreaterThanOrderByIdAsc(0L);
+  }
+
   private GrayReleaseRule assembleGrayReleaseRule(String appId, String clusterName, String
       namespaceName, List<GrayReleaseRuleItemDTO> ruleItems, long releaseId, int branchStatus) {
     GrayReleaseRule rule = new GrayReleaseRule();
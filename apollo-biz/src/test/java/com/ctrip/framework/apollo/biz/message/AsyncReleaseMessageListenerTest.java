@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncReleaseMessageListenerTest {
+  private List<ReleaseMessage> receivedMessages;
+  private List<Thread> receivedThreads;
+  private CountDownLatch blockingLatch;
+  private CountDownLatch firstMessageLatch;
+  private ReleaseMessageListener someListener;
+  private Thread testThread;
+
+  @Before
+  public void setUp() throws Exception {
+    receivedMessages = Lists.newCopyOnWriteArrayList();
+    receivedThreads = Lists.newCopyOnWriteArrayList();
+    blockingLatch = new CountDownLatch(1);
+    firstMessageLatch = new CountDownLatch(1);
+    testThread = Thread.currentThread();
+    someListener = (message, channel) -> {
+      receivedMessages.add(message);
+      receivedThreads.add(Thread.currentThread());
+      firstMessageLatch.countDown();
+      if (Thread.currentThread() == testThread) {
+        return;
+      }
+      try {
+        blockingLatch.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  @Test
+  public void testCoalesceMessagesOfSameKey() throws Exception {
+    AsyncReleaseMessageListener asyncListener = new AsyncReleaseMessageListener(someListener, 10);
+
+    ReleaseMessage someMessage = assembleReleaseMessage(1, "someKey");
+    ReleaseMessage anotherMessage = assembleReleaseMessage(2, "anotherKey");
+    ReleaseMessage someNewerMessage = assembleReleaseMessage(3, "someKey");
+    ReleaseMessage someLatestMessage = assembleReleaseMessage(4, "someKey");
+
+    asyncListener.handleMessage(someMessage, Topics.APOLLO_RELEASE_TOPIC);
+    //wait until the first message is in process
+    firstMessageLatch.await(5, TimeUnit.SECONDS);
+
+    asyncListener.handleMessage(anotherMessage, Topics.APOLLO_RELEASE_TOPIC);
+    asyncListener.handleMessage(someLatestMessage, Topics.APOLLO_RELEASE_TOPIC);
+    //the missing message scanned later should not override the newer one
+    asyncListener.handleMessage(someNewerMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    blockingLatch.countDown();
+
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertEquals(3, receivedMessages.size()));
+    assertSame(someMessage, receivedMessages.get(0));
+    assertSame(anotherMessage, receivedMessages.get(1));
+    assertSame(someLatestMessage, receivedMessages.get(2));
+  }
+
+  @Test
+  public void testHandleMessageInCallerThreadWhenFull() throws Exception {
+    AsyncReleaseMessageListener asyncListener = new AsyncReleaseMessageListener(someListener, 1);
+
+    ReleaseMessage someMessage = assembleReleaseMessage(1, "someKey");
+    ReleaseMessage anotherMessage = assembleReleaseMessage(2, "anotherKey");
+    ReleaseMessage yetAnotherMessage = assembleReleaseMessage(3, "yetAnotherKey");
+
+    asyncListener.handleMessage(someMessage, Topics.APOLLO_RELEASE_TOPIC);
+    firstMessageLatch.await(5, TimeUnit.SECONDS);
+
+    asyncListener.handleMessage(anotherMessage, Topics.APOLLO_RELEASE_TOPIC);
+    //the queue is full, so it's handled in the caller thread
+    asyncListener.handleMessage(yetAnotherMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(2, receivedMessages.size());
+    assertSame(yetAnotherMessage, receivedMessages.get(1));
+    assertSame(testThread, receivedThreads.get(1));
+
+    blockingLatch.countDown();
+
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertEquals(3, receivedMessages.size()));
+    assertSame(anotherMessage, receivedMessages.get(2));
+  }
+
+  private ReleaseMessage assembleReleaseMessage(long id, String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+}
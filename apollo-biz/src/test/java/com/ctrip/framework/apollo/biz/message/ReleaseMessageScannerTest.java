@@ -36,6 +36,7 @@ import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.when;
 
@@ -182,6 +183,132 @@ public class ReleaseMessageScannerTest extends AbstractUnitTest {
     });
   }
 
+  @Test
+  public void testScanNowWhenReleaseMessagePushEnabled() throws Exception {
+    int someReconcileScanInterval = 60000;
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessageReconcileScanIntervalInMilli()).thenReturn(someReconcileScanInterval);
+
+    ReleaseMessageScanner anotherReleaseMessageScanner = new ReleaseMessageScanner();
+    ReflectionTestUtils
+        .setField(anotherReleaseMessageScanner, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(anotherReleaseMessageScanner, "bizConfig", bizConfig);
+    anotherReleaseMessageScanner.afterPropertiesSet();
+
+    SettableFuture<ReleaseMessage> someListenerFuture = SettableFuture.create();
+    ReleaseMessageListener someListener = (message, channel) -> someListenerFuture.set(message);
+    anotherReleaseMessageScanner.addMessageListener(someListener);
+
+    String someMessage = "someMessage";
+    long someId = 100;
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(someId, someMessage);
+
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+
+    anotherReleaseMessageScanner.scanNow();
+
+    //should not wait for the reconciliation scan
+    ReleaseMessage someListenerMessage =
+        someListenerFuture.get(databaseScanInterval * 5, TimeUnit.MILLISECONDS);
+
+    assertSame(someReleaseMessage, someListenerMessage);
+  }
+
+  @Test
+  public void testScanAtNormalIntervalBeforeReleaseMessagePushReceived() throws Exception {
+    int someReconcileScanInterval = 60000;
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessageReconcileScanIntervalInMilli()).thenReturn(someReconcileScanInterval);
+
+    ReleaseMessageScanner anotherReleaseMessageScanner = new ReleaseMessageScanner();
+    ReflectionTestUtils
+        .setField(anotherReleaseMessageScanner, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(anotherReleaseMessageScanner, "bizConfig", bizConfig);
+    anotherReleaseMessageScanner.afterPropertiesSet();
+
+    SettableFuture<ReleaseMessage> someListenerFuture = SettableFuture.create();
+    ReleaseMessageListener someListener = (message, channel) -> someListenerFuture.set(message);
+    anotherReleaseMessageScanner.addMessageListener(someListener);
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(100, "someMessage");
+
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+
+    //no push received yet, e.g. admin services could not find config services, so should not wait for reconciliation
+    ReleaseMessage someListenerMessage =
+        someListenerFuture.get(databaseScanInterval * 5, TimeUnit.MILLISECONDS);
+
+    assertSame(someReleaseMessage, someListenerMessage);
+  }
+
+  @Test
+  public void testScanAtReconcileIntervalAfterReleaseMessagePushReceived() throws Exception {
+    int someReconcileScanInterval = 60000;
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessageReconcileScanIntervalInMilli()).thenReturn(someReconcileScanInterval);
+
+    ReleaseMessageScanner anotherReleaseMessageScanner = new ReleaseMessageScanner();
+    ReflectionTestUtils
+        .setField(anotherReleaseMessageScanner, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(anotherReleaseMessageScanner, "bizConfig", bizConfig);
+    anotherReleaseMessageScanner.afterPropertiesSet();
+
+    SettableFuture<ReleaseMessage> someListenerFuture = SettableFuture.create();
+    ReleaseMessageListener someListener = (message, channel) -> someListenerFuture.set(message);
+    anotherReleaseMessageScanner.addMessageListener(someListener);
+
+    anotherReleaseMessageScanner.scanNow();
+
+    await().untilAsserted(() -> assertEquals(true,
+        ReflectionTestUtils.getField(anotherReleaseMessageScanner, "releaseMessagePushReceived")));
+    //wait for the scan once more after the push found nothing
+    TimeUnit.MILLISECONDS.sleep(databaseScanInterval * 2);
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(100, "someMessage");
+
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+
+    TimeUnit.MILLISECONDS.sleep(databaseScanInterval * 5);
+
+    //the periodic scan only runs for reconciliation now
+    assertFalse(someListenerFuture.isDone());
+
+    anotherReleaseMessageScanner.scanNow();
+
+    assertSame(someReleaseMessage, someListenerFuture.get(databaseScanInterval * 5, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testScanOnceMoreAfterReleaseMessagePushFoundNothing() throws Exception {
+    int someReconcileScanInterval = 60000;
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessageReconcileScanIntervalInMilli()).thenReturn(someReconcileScanInterval);
+
+    ReleaseMessageScanner anotherReleaseMessageScanner = new ReleaseMessageScanner();
+    ReflectionTestUtils
+        .setField(anotherReleaseMessageScanner, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(anotherReleaseMessageScanner, "bizConfig", bizConfig);
+
+    SettableFuture<ReleaseMessage> someListenerFuture = SettableFuture.create();
+    ReleaseMessageListener someListener = (message, channel) -> someListenerFuture.set(message);
+    anotherReleaseMessageScanner.addMessageListener(someListener);
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(100, "someMessage");
+
+    //the pushed message is not visible at first, e.g. read from a lagging replica
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        new ArrayList<>(), Lists.newArrayList(someReleaseMessage));
+
+    anotherReleaseMessageScanner.afterPropertiesSet();
+    anotherReleaseMessageScanner.scanNow();
+
+    //should not wait for the reconciliation scan
+    assertSame(someReleaseMessage, someListenerFuture.get(databaseScanInterval * 5, TimeUnit.MILLISECONDS));
+  }
+
   private ReleaseMessage assembleReleaseMessage(long id, String message) {
     ReleaseMessage releaseMessage = new ReleaseMessage();
     releaseMessage.setId(id);
@@ -253,6 +253,44 @@ public class InstanceServiceTest extends AbstractIntegrationTest {
     assertEquals(Lists.newArrayList(someInstanceConfig, anotherInstanceConfig), instanceConfigs);
   }
 
+  @Test
+  @Rollback
+  public void testBatchCreateAndUpdateInstanceConfigs() throws Exception {
+    long someInstanceId = 1;
+    long anotherInstanceId = 2;
+    String someConfigAppId = "someConfigAppId";
+    String someConfigClusterName = "someConfigClusterName";
+    String someConfigNamespaceName = "someConfigNamespaceName";
+    String anotherConfigNamespaceName = "anotherConfigNamespaceName";
+    String someReleaseKey = "someReleaseKey";
+    String anotherReleaseKey = "anotherReleaseKey";
+
+    instanceService.batchCreateInstanceConfigs(Lists.newArrayList(
+        assembleInstanceConfig(someInstanceId, someConfigAppId, someConfigClusterName,
+            someConfigNamespaceName, someReleaseKey),
+        assembleInstanceConfig(someInstanceId, someConfigAppId, someConfigClusterName,
+            anotherConfigNamespaceName, someReleaseKey),
+        assembleInstanceConfig(anotherInstanceId, someConfigAppId, someConfigClusterName,
+            someConfigNamespaceName, someReleaseKey)));
+
+    List<InstanceConfig> instanceConfigs = instanceService
+        .findInstanceConfigsByInstanceIds(Sets.newHashSet(someInstanceId));
+
+    assertEquals(2, instanceConfigs.size());
+
+    for (InstanceConfig instanceConfig : instanceConfigs) {
+      instanceConfig.setReleaseKey(anotherReleaseKey);
+    }
+    instanceService.batchUpdateInstanceConfigs(instanceConfigs);
+
+    assertEquals(anotherReleaseKey, instanceService.findInstanceConfig(someInstanceId,
+        someConfigAppId, someConfigNamespaceName).getReleaseKey());
+    assertEquals(anotherReleaseKey, instanceService.findInstanceConfig(someInstanceId,
+        someConfigAppId, anotherConfigNamespaceName).getReleaseKey());
+    assertEquals(someReleaseKey, instanceService.findInstanceConfig(anotherInstanceId,
+        someConfigAppId, someConfigNamespaceName).getReleaseKey());
+  }
+
   private InstanceConfig prepareInstanceConfigForInstance(long instanceId, String configAppId,
                                                           String configClusterName, String
                                                               configNamespace, String releaseKey,
@@ -36,6 +36,7 @@ import org.springframework.data.domain.PageRequest;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -239,5 +240,41 @@ public class ReleaseServiceTest extends AbstractUnitTest {
     assertEquals(someReleases, result);
   }
 
+  @Test
+  public void testFindLatestActiveReleases() throws Exception {
+    String someKey = String.join("+", appId, clusterName, namespaceName);
+    String anotherNamespaceName = "another-namespace";
+    String anotherKey = String.join("+", appId, clusterName, anotherNamespaceName);
+    String notRequestedNamespaceName = "not-requested-namespace";
+    long notRequestedReleaseId = 3;
+
+    when(releaseRepository.findLatestActiveReleaseIdsGroupByNamespace(Sets.newHashSet(appId),
+        Sets.newHashSet(clusterName), Sets.newHashSet(namespaceName, anotherNamespaceName))).thenReturn(
+        Lists.newArrayList(new Object[]{appId, clusterName, namespaceName.toUpperCase(), releaseId},
+            new Object[]{appId, clusterName, notRequestedNamespaceName, notRequestedReleaseId}));
+    when(releaseRepository.findByIdIn(Sets.newHashSet(releaseId))).thenReturn(Lists.newArrayList(firstRelease));
+
+    Map<String, Release> result = releaseService.findLatestActiveReleases(Sets.newHashSet(someKey, anotherKey));
+
+    assertEquals(1, result.size());
+    assertEquals(firstRelease, result.get(someKey));
+  }
+
+  @Test
+  public void testFindLatestActiveReleasesWithKeysDifferingInCase() throws Exception {
+    String someKey = String.join("+", appId, clusterName, namespaceName);
+    String anotherKey = String.join("+", appId.toUpperCase(), clusterName, namespaceName);
 
+    when(releaseRepository.findLatestActiveReleaseIdsGroupByNamespace(
+        Sets.newHashSet(appId, appId.toUpperCase()), Sets.newHashSet(clusterName),
+        Sets.newHashSet(namespaceName))).thenReturn(
+        Lists.<Object[]>newArrayList(new Object[]{appId, clusterName, namespaceName, releaseId}));
+    when(releaseRepository.findByIdIn(Sets.newHashSet(releaseId))).thenReturn(Lists.newArrayList(firstRelease));
+
+    Map<String, Release> result = releaseService.findLatestActiveReleases(Sets.newHashSet(someKey, anotherKey));
+
+    assertEquals(2, result.size());
+    assertEquals(firstRelease, result.get(someKey));
+    assertEquals(firstRelease, result.get(anotherKey));
+  }
 }
@@ -18,16 +18,26 @@ package com.ctrip.framework.apollo.config.data.extension.websocket;
 
 import com.ctrip.framework.apollo.config.data.extension.initialize.ApolloClientExtensionInitializer;
 import com.ctrip.framework.apollo.config.data.extension.properties.ApolloClientProperties;
+import com.ctrip.framework.apollo.config.data.injector.ApolloConfigDataInjectorCustomizer;
+import com.ctrip.framework.apollo.internals.RemoteConfigLongPollService;
 import org.apache.commons.logging.Log;
 import org.springframework.boot.ConfigurableBootstrapContext;
 import org.springframework.boot.context.properties.bind.BindHandler;
 import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
 
 /**
  * @author vdisk <vdisk@foxmail.com>
  */
 public class ApolloClientWebsocketExtensionInitializer implements ApolloClientExtensionInitializer {
 
+  private static final String REACTOR_NETTY_WEBSOCKET_CLIENT_CLASS =
+      "org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient";
+
+  private static final String REACTOR_NETTY_HTTP_CLIENT_CLASS = "reactor.netty.http.client.HttpClient";
+
   private final Log log;
 
   private final ConfigurableBootstrapContext bootstrapContext;
@@ -41,6 +51,26 @@ public class ApolloClientWebsocketExtensionInitializer implements ApolloClientEx
   @Override
   public void initialize(ApolloClientProperties apolloClientProperties, Binder binder,
       BindHandler bindHandler) {
-    throw new UnsupportedOperationException("apollo client websocket support is not complete yet.");
+    // spring-webflux and reactor-netty-http are optional dependencies
+    ClassLoader classLoader = ApolloClientWebsocketExtensionInitializer.class.getClassLoader();
+    if (!ClassUtils.isPresent(REACTOR_NETTY_WEBSOCKET_CLIENT_CLASS, classLoader)
+        || !ClassUtils.isPresent(REACTOR_NETTY_HTTP_CLIENT_CLASS, classLoader)) {
+      this.log.warn("apollo client websocket extension requires spring-webflux and reactor-netty-http, "
+          + "fall back to http long polling");
+      return;
+    }
+    this.log.debug("apollo client receives notifications over websocket");
+    ApolloConfigDataInjectorCustomizer.registerIfAbsent(RemoteConfigLongPollService.class,
+        () -> new ApolloWebSocketLongPollService(WebSocketClientFactory.create()));
+  }
+
+  /**
+   * Only loaded when the optional dependencies are present
+   */
+  private static class WebSocketClientFactory {
+
+    static WebSocketClient create() {
+      return new ReactorNettyWebSocketClient();
+    }
   }
 }
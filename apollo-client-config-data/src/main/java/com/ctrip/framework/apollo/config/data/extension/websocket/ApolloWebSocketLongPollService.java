@@ -0,0 +1,248 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.config.data.extension.websocket;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
+import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
+import com.ctrip.framework.apollo.core.signature.Signature;
+import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.internals.RemoteConfigLongPollService;
+import com.ctrip.framework.apollo.internals.RemoteConfigRepository;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Receives the notifications over one persistent WebSocket connection instead of long polling, see the
+ * {@code NotificationWebSocketHandler} of config service.
+ *
+ * <p>The notification ids held by the client are sent on every connection, so a reconnected client resumes from
+ * where it was. A heartbeat is sent periodically, and the connection is considered dead if nothing is received for
+ * {@link #HEARTBEAT_TIMEOUT}. Falls back to long polling if the config services do not support WebSocket.</p>
+ */
+public class ApolloWebSocketLongPollService extends RemoteConfigLongPollService {
+  private static final Logger logger = LoggerFactory.getLogger(ApolloWebSocketLongPollService.class);
+  private static final Joiner.MapJoiner MAP_JOINER = Joiner.on("&").withKeyValueSeparator("=");
+  private static final Escaper queryParamEscaper = UrlEscapers.urlFormParameterEscaper();
+  private static final String WEBSOCKET_PATH = "notifications/v2/ws";
+  private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
+  private static final Duration HEARTBEAT_TIMEOUT = HEARTBEAT_INTERVAL.multipliedBy(3);
+  //fall back to long polling after the handshakes keep failing, e.g. the config services are of older versions
+  private static final int MAX_HANDSHAKE_FAILURES = 3;
+  private static final Gson GSON = new Gson();
+
+  private final WebSocketClient webSocketClient;
+  private final ConfigUtil configUtil;
+  private final SchedulePolicy failSchedulePolicyInSecond;
+  private final Type notificationsType;
+  private volatile Sinks.Many<String> subscriptionSink;
+
+  public ApolloWebSocketLongPollService(WebSocketClient webSocketClient) {
+    this.webSocketClient = webSocketClient;
+    this.configUtil = ApolloInjector.getInstance(ConfigUtil.class);
+    this.failSchedulePolicyInSecond = new ExponentialSchedulePolicy(1, 120);
+    this.notificationsType = new TypeToken<List<ApolloConfigNotification>>() {
+    }.getType();
+  }
+
+  @Override
+  public boolean submit(String namespace, RemoteConfigRepository remoteConfigRepository) {
+    boolean added = super.submit(namespace, remoteConfigRepository);
+    if (added) {
+      //subscribe the new namespace on the current connection
+      subscribe();
+    }
+    return added;
+  }
+
+  @Override
+  protected void doLongPollingRefresh(String appId, String cluster, String dataCenter, String secret) {
+    final Random random = new Random();
+    int handshakeFailures = 0;
+    while (!isLongPollingStopped() && !Thread.currentThread().isInterrupted()) {
+      List<ServiceDTO> configServices;
+      try {
+        configServices = getConfigServices();
+      } catch (Throwable ex) {
+        failAndWait(appId, cluster, null, ex);
+        continue;
+      }
+      ServiceDTO serviceDto = configServices.get(random.nextInt(configServices.size()));
+      String url = assembleWebSocketUrl(serviceDto.getHomepageUrl(), appId, cluster, dataCenter);
+
+      AtomicBoolean established = new AtomicBoolean(false);
+      try {
+        connect(serviceDto, url, appId, secret, () -> established.set(true));
+      } catch (Throwable ex) {
+        if (established.get()) {
+          handshakeFailures = 0;
+        } else if (++handshakeFailures >= MAX_HANDSHAKE_FAILURES) {
+          logger.warn("WebSocket is not available on config services, falling back to long polling, reason: {}",
+              ExceptionUtil.getDetailMessage(ex));
+          Tracer.logEvent("Apollo.WebSocket.FallbackToLongPolling", appId);
+          super.doLongPollingRefresh(appId, cluster, dataCenter, secret);
+          return;
+        }
+        failAndWait(appId, cluster, url, ex);
+      }
+    }
+  }
+
+  /**
+   * Connect to the config service and block until the connection is closed
+   *
+   * @throws ApolloConfigException always, as the connection is not expected to be closed
+   */
+  private void connect(ServiceDTO serviceDto, String url, String appId, String secret, Runnable onEstablished) {
+    HttpHeaders headers = new HttpHeaders();
+    if (!StringUtils.isBlank(secret)) {
+      //the signature only covers the path and query, which are the same as the http url
+      headers.setAll(Signature.buildHttpHeaders(toHttpUrl(url), appId, secret));
+    }
+
+    logger.debug("Connecting to {}", url);
+
+    webSocketClient.execute(URI.create(url), headers, session -> {
+      onEstablished.run();
+      failSchedulePolicyInSecond.success();
+      Tracer.logEvent("Apollo.WebSocket.Connected", url);
+
+      Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+      subscriptionSink = sink;
+      //resume from the notification ids held by the client
+      subscribe();
+
+      AtomicLong lastReceivedTime = new AtomicLong(System.currentTimeMillis());
+      Flux<WebSocketMessage> heartbeats = Flux.interval(HEARTBEAT_INTERVAL).map(tick -> {
+        if (System.currentTimeMillis() - lastReceivedTime.get() > HEARTBEAT_TIMEOUT.toMillis()) {
+          throw new ApolloConfigException("No heartbeat received from " + url);
+        }
+        return session.pingMessage(factory -> factory.allocateBuffer(0));
+      });
+      Mono<Void> output = session.send(Flux.merge(sink.asFlux().map(session::textMessage), heartbeats));
+      Mono<Void> input = session.receive().doOnNext(message -> {
+        lastReceivedTime.set(System.currentTimeMillis());
+        if (message.getType() == WebSocketMessage.Type.TEXT) {
+          onMessage(serviceDto, message.getPayloadAsText());
+        }
+      }).then();
+
+      return Mono.firstWithSignal(output, input).doFinally(signal -> {
+        synchronized (this) {
+          if (subscriptionSink == sink) {
+            subscriptionSink = null;
+          }
+        }
+      });
+    }).block();
+
+    throw new ApolloConfigException("WebSocket connection closed by " + url);
+  }
+
+  private void onMessage(ServiceDTO serviceDto, String payload) {
+    try {
+      List<ApolloConfigNotification> notifications = GSON.fromJson(payload, notificationsType);
+      if (notifications != null && !notifications.isEmpty()) {
+        Tracer.logEvent("Apollo.WebSocket.Notified", notifications.toString());
+        onNotifications(serviceDto, notifications);
+      }
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+  }
+
+  private synchronized void subscribe() {
+    Sinks.Many<String> sink = subscriptionSink;
+    if (sink != null) {
+      sink.tryEmitNext(assembleNotifications());
+    }
+  }
+
+  private void failAndWait(String appId, String cluster, String url, Throwable ex) {
+    Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
+    long sleepTimeInSecond = failSchedulePolicyInSecond.fail();
+    logger.warn("WebSocket connection failed, will retry in {} seconds. appId: {}, cluster: {}, url: {}, reason: {}",
+        sleepTimeInSecond, appId, cluster, url, ExceptionUtil.getDetailMessage(ex));
+    try {
+      TimeUnit.SECONDS.sleep(sleepTimeInSecond);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  String assembleWebSocketUrl(String uri, String appId, String cluster, String dataCenter) {
+    Map<String, String> queryParams = Maps.newLinkedHashMap();
+    queryParams.put("appId", queryParamEscaper.escape(appId));
+    queryParams.put("cluster", queryParamEscaper.escape(cluster));
+    if (!Strings.isNullOrEmpty(dataCenter)) {
+      queryParams.put("dataCenter", queryParamEscaper.escape(dataCenter));
+    }
+    String localIp = configUtil.getLocalIp();
+    if (!Strings.isNullOrEmpty(localIp)) {
+      queryParams.put("ip", queryParamEscaper.escape(localIp));
+    }
+
+    if (!uri.endsWith("/")) {
+      uri += "/";
+    }
+    if (uri.startsWith("https://")) {
+      uri = "wss://" + uri.substring("https://".length());
+    } else if (uri.startsWith("http://")) {
+      uri = "ws://" + uri.substring("http://".length());
+    }
+    return uri + WEBSOCKET_PATH + "?" + MAP_JOINER.join(queryParams);
+  }
+
+  private static String toHttpUrl(String url) {
+    if (url.startsWith("wss://")) {
+      return "https://" + url.substring("wss://".length());
+    }
+    if (url.startsWith("ws://")) {
+      return "http://" + url.substring("ws://".length());
+    }
+    return url;
+  }
+}
@@ -180,6 +180,70 @@ public interface Config {
    */
   long getDurationProperty(String key, long defaultValue);
 
+  /**
+   * Return the int property value with the given key, or {@code defaultValue} if the key doesn't
+   * exist. Same as {@link #getIntProperty(String, Integer)}, but the default value is not boxed,
+   * and a value parsed before is returned without boxing it again.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property value as int
+   *
+   * @since 2.1.0
+   */
+  default int getInt(String key, int defaultValue) {
+    Integer value = getIntProperty(key, null);
+    return value == null ? defaultValue : value;
+  }
+
+  /**
+   * Return the long property value with the given key, or {@code defaultValue} if the key doesn't
+   * exist. Same as {@link #getLongProperty(String, Long)}, but the default value is not boxed,
+   * and a value parsed before is returned without boxing it again.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property value as long
+   *
+   * @since 2.1.0
+   */
+  default long getLong(String key, long defaultValue) {
+    Long value = getLongProperty(key, null);
+    return value == null ? defaultValue : value;
+  }
+
+  /**
+   * Return the double property value with the given key, or {@code defaultValue} if the key
+   * doesn't exist. Same as {@link #getDoubleProperty(String, Double)}, but the default value is
+   * not boxed, and a value parsed before is returned without boxing it again.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property value as double
+   *
+   * @since 2.1.0
+   */
+  default double getDouble(String key, double defaultValue) {
+    Double value = getDoubleProperty(key, null);
+    return value == null ? defaultValue : value;
+  }
+
+  /**
+   * Return the boolean property value with the given key, or {@code defaultValue} if the key
+   * doesn't exist. Same as {@link #getBooleanProperty(String, Boolean)}, but the default value is
+   * not boxed, and a value parsed before is returned without boxing it again.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property value as boolean
+   *
+   * @since 2.1.0
+   */
+  default boolean getBoolean(String key, boolean defaultValue) {
+    Boolean value = getBooleanProperty(key, null);
+    return value == null ? defaultValue : value;
+  }
+
   /**
    * Add change listener to this config instance, will be notified when any key is changed in this namespace.
    *
@@ -22,6 +22,7 @@ import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
 import com.ctrip.framework.apollo.internals.ConfigManager;
 import com.ctrip.framework.apollo.spi.ConfigFactory;
 import com.ctrip.framework.apollo.spi.ConfigRegistry;
+import java.util.Collection;
 
 /**
  * Entry point for client config use
@@ -81,6 +82,17 @@ public class ConfigService {
     return s_instance.getManager().getConfigFile(namespace, configFileFormat);
   }
 
+  /**
+   * Load the config instances for the namespaces concurrently, so that the following {@link #getConfig(String)} calls
+   * return right away, e.g. before getting the configs of all the namespaces one by one during application startup.
+   *
+   * @param namespaces the namespaces of the configs
+   * @since 2.1.0
+   */
+  public static void preloadConfigs(Collection<String> namespaces) {
+    s_instance.getManager().preloadConfigs(namespaces);
+  }
+
   static void setConfig(Config config) {
     setConfig(ConfigConsts.NAMESPACE_APPLICATION, config);
   }
@@ -19,7 +19,6 @@ package com.ctrip.framework.apollo.internals;
 import com.ctrip.framework.apollo.Config;
 import com.ctrip.framework.apollo.ConfigChangeListener;
 import com.ctrip.framework.apollo.build.ApolloInjector;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.enums.PropertyChangeType;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.model.ConfigChange;
@@ -32,8 +31,6 @@ import com.ctrip.framework.apollo.util.function.Functions;
 import com.ctrip.framework.apollo.util.parser.Parsers;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -43,47 +40,25 @@ import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
-
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
 public abstract class AbstractConfig implements Config {
   private static final Logger logger = LoggerFactory.getLogger(AbstractConfig.class);
 
-  private static final ExecutorService m_executorService;
-
   private final List<ConfigChangeListener> m_listeners = Lists.newCopyOnWriteArrayList();
   private final Map<ConfigChangeListener, Set<String>> m_interestedKeys = Maps.newConcurrentMap();
   private final Map<ConfigChangeListener, Set<String>> m_interestedKeyPrefixes = Maps.newConcurrentMap();
   private final ConfigUtil m_configUtil;
-  private volatile Cache<String, Integer> m_integerCache;
-  private volatile Cache<String, Long> m_longCache;
-  private volatile Cache<String, Short> m_shortCache;
-  private volatile Cache<String, Float> m_floatCache;
-  private volatile Cache<String, Double> m_doubleCache;
-  private volatile Cache<String, Byte> m_byteCache;
-  private volatile Cache<String, Boolean> m_booleanCache;
-  private volatile Cache<String, Date> m_dateCache;
-  private volatile Cache<String, Long> m_durationCache;
-  private final Map<String, Cache<String, String[]>> m_arrayCache;
-  private final List<Cache> allCaches;
-  private final AtomicLong m_configVersion; //indicate config version
+  private final ChangeListenerDispatcher m_listenerDispatcher;
+  private volatile TypedValueCache m_typedValueCache; //replaced when config changes
 
   protected PropertiesFactory propertiesFactory;
 
-  static {
-    m_executorService = Executors.newCachedThreadPool(ApolloThreadFactory
-        .create("Config", true));
-  }
-
   public AbstractConfig() {
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
-    m_configVersion = new AtomicLong();
-    m_arrayCache = Maps.newConcurrentMap();
-    allCaches = Lists.newArrayList();
+    m_listenerDispatcher = ApolloInjector.getInstance(ChangeListenerDispatcher.class);
+    m_typedValueCache = newTypedValueCache();
     propertiesFactory = ApolloInjector.getInstance(PropertiesFactory.class);
   }
 
@@ -120,15 +95,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Integer getIntProperty(String key, Integer defaultValue) {
     try {
-      if (m_integerCache == null) {
-        synchronized (this) {
-          if (m_integerCache == null) {
-            m_integerCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_INT_FUNCTION, m_integerCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_INT_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getIntProperty for %s failed, return default value %d", key,
@@ -137,18 +104,46 @@ public abstract class AbstractConfig implements Config {
     return defaultValue;
   }
 
+  @Override
+  public int getInt(String key, int defaultValue) {
+    Integer value = m_typedValueCache.get(Functions.TO_INT_FUNCTION, key);
+    if (value == null) {
+      value = getIntProperty(key, null);
+    }
+    return value == null ? defaultValue : value;
+  }
+
+  @Override
+  public long getLong(String key, long defaultValue) {
+    Long value = m_typedValueCache.get(Functions.TO_LONG_FUNCTION, key);
+    if (value == null) {
+      value = getLongProperty(key, null);
+    }
+    return value == null ? defaultValue : value;
+  }
+
+  @Override
+  public double getDouble(String key, double defaultValue) {
+    Double value = m_typedValueCache.get(Functions.TO_DOUBLE_FUNCTION, key);
+    if (value == null) {
+      value = getDoubleProperty(key, null);
+    }
+    return value == null ? defaultValue : value;
+  }
+
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue) {
+    Boolean value = m_typedValueCache.get(Functions.TO_BOOLEAN_FUNCTION, key);
+    if (value == null) {
+      value = getBooleanProperty(key, null);
+    }
+    return value == null ? defaultValue : value;
+  }
+
   @Override
   public Long getLongProperty(String key, Long defaultValue) {
     try {
-      if (m_longCache == null) {
-        synchronized (this) {
-          if (m_longCache == null) {
-            m_longCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_LONG_FUNCTION, m_longCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_LONG_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getLongProperty for %s failed, return default value %d", key,
@@ -160,15 +155,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Short getShortProperty(String key, Short defaultValue) {
     try {
-      if (m_shortCache == null) {
-        synchronized (this) {
-          if (m_shortCache == null) {
-            m_shortCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_SHORT_FUNCTION, m_shortCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_SHORT_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getShortProperty for %s failed, return default value %d", key,
@@ -180,15 +167,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Float getFloatProperty(String key, Float defaultValue) {
     try {
-      if (m_floatCache == null) {
-        synchronized (this) {
-          if (m_floatCache == null) {
-            m_floatCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_FLOAT_FUNCTION, m_floatCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_FLOAT_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getFloatProperty for %s failed, return default value %f", key,
@@ -200,15 +179,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Double getDoubleProperty(String key, Double defaultValue) {
     try {
-      if (m_doubleCache == null) {
-        synchronized (this) {
-          if (m_doubleCache == null) {
-            m_doubleCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_DOUBLE_FUNCTION, m_doubleCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_DOUBLE_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getDoubleProperty for %s failed, return default value %f", key,
@@ -220,15 +191,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Byte getByteProperty(String key, Byte defaultValue) {
     try {
-      if (m_byteCache == null) {
-        synchronized (this) {
-          if (m_byteCache == null) {
-            m_byteCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_BYTE_FUNCTION, m_byteCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_BYTE_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getByteProperty for %s failed, return default value %d", key,
@@ -240,15 +203,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Boolean getBooleanProperty(String key, Boolean defaultValue) {
     try {
-      if (m_booleanCache == null) {
-        synchronized (this) {
-          if (m_booleanCache == null) {
-            m_booleanCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_BOOLEAN_FUNCTION, m_booleanCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_BOOLEAN_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getBooleanProperty for %s failed, return default value %b", key,
@@ -260,22 +215,14 @@ public abstract class AbstractConfig implements Config {
   @Override
   public String[] getArrayProperty(String key, final String delimiter, String[] defaultValue) {
     try {
-      if (!m_arrayCache.containsKey(delimiter)) {
-        synchronized (this) {
-          if (!m_arrayCache.containsKey(delimiter)) {
-            m_arrayCache.put(delimiter, this.<String[]>newCache());
-          }
-        }
-      }
-
-      Cache<String, String[]> cache = m_arrayCache.get(delimiter);
-      String[] result = cache.getIfPresent(key);
+      TypedValueCache cache = m_typedValueCache;
+      String[] result = cache.get(delimiter, key);
 
       if (result != null) {
         return result;
       }
 
-      return getValueAndStoreToCache(key, new Function<String, String[]>() {
+      return getValueAndStoreToCache(key, delimiter, new Function<String, String[]>() {
         @Override
         public String[] apply(String input) {
           return input.split(delimiter);
@@ -308,15 +255,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Date getDateProperty(String key, Date defaultValue) {
     try {
-      if (m_dateCache == null) {
-        synchronized (this) {
-          if (m_dateCache == null) {
-            m_dateCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_DATE_FUNCTION, m_dateCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_DATE_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getDateProperty for %s failed, return default value %s", key,
@@ -363,15 +302,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public long getDurationProperty(String key, long defaultValue) {
     try {
-      if (m_durationCache == null) {
-        synchronized (this) {
-          if (m_durationCache == null) {
-            m_durationCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_DURATION_FUNCTION, m_durationCache, defaultValue);
+      return getValueFromCache(key, Functions.TO_DURATION_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getDurationProperty for %s failed, return default value %d", key,
@@ -398,29 +329,27 @@ public abstract class AbstractConfig implements Config {
     return defaultValue;
   }
 
-  private <T> T getValueFromCache(String key, Function<String, T> parser, Cache<String, T> cache, T defaultValue) {
-    T result = cache.getIfPresent(key);
+  private <T> T getValueFromCache(String key, Function<String, T> parser, T defaultValue) {
+    TypedValueCache cache = m_typedValueCache;
+    T result = cache.get(parser, key);
 
     if (result != null) {
       return result;
     }
 
-    return getValueAndStoreToCache(key, parser, cache, defaultValue);
+    return getValueAndStoreToCache(key, parser, parser, cache, defaultValue);
   }
 
-  private <T> T getValueAndStoreToCache(String key, Function<String, T> parser, Cache<String, T> cache, T defaultValue) {
-    long currentConfigVersion = m_configVersion.get();
+  private <T> T getValueAndStoreToCache(String key, Object valueType, Function<String, T> parser,
+      TypedValueCache cache, T defaultValue) {
     String value = getProperty(key, null);
 
     if (value != null) {
       T result = parser.apply(value);
 
       if (result != null) {
-        synchronized (this) {
-          if (m_configVersion.get() == currentConfigVersion) {
-            cache.put(key, result);
-          }
-        }
+        // the cache is replaced once config changes, so a stale value never reaches the current cache
+        cache.put(valueType, key, result);
         return result;
       }
     }
@@ -428,13 +357,8 @@ public abstract class AbstractConfig implements Config {
     return defaultValue;
   }
 
-  private <T> Cache<String, T> newCache() {
-    Cache<String, T> cache = CacheBuilder.newBuilder()
-        .maximumSize(m_configUtil.getMaxConfigCacheSize())
-        .expireAfterAccess(m_configUtil.getConfigCacheExpireTime(), m_configUtil.getConfigCacheExpireTimeUnit())
-        .build();
-    allCaches.add(cache);
-    return cache;
+  private TypedValueCache newTypedValueCache() {
+    return new TypedValueCache(m_configUtil.getMaxConfigCacheSize());
   }
 
   /**
@@ -442,12 +366,18 @@ public abstract class AbstractConfig implements Config {
    */
   protected void clearConfigCache() {
     synchronized (this) {
-      for (Cache c : allCaches) {
-        if (c != null) {
-          c.invalidateAll();
-        }
-      }
-      m_configVersion.incrementAndGet();
+      m_typedValueCache = newTypedValueCache();
+    }
+  }
+
+  /**
+   * Clear config cache of the changed keys, the cached values of other keys are kept
+   *
+   * @param changedKeys the keys whose values are changed
+   */
+  protected void clearConfigCache(Collection<String> changedKeys) {
+    synchronized (this) {
+      m_typedValueCache = m_typedValueCache.copyWithout(changedKeys);
     }
   }
 
@@ -458,12 +388,12 @@ public abstract class AbstractConfig implements Config {
     final Set<String> changedKeys = changes.keySet();
     final List<ConfigChangeListener> listeners = this.findMatchedConfigChangeListeners(changedKeys);
 
-    // notify those listeners
-    for (ConfigChangeListener listener : listeners) {
+    // notify those listeners, the sync ones first
+    for (ConfigChangeListener listener : sortSyncListenersFirst(listeners)) {
       Set<String> interestedChangedKeys = resolveInterestedChangedKeys(listener, changedKeys);
       InterestedConfigChangeEvent interestedConfigChangeEvent = new InterestedConfigChangeEvent(
           namespace, changes, interestedChangedKeys);
-      this.notifyAsync(listener, interestedConfigChangeEvent);
+      this.notify(listener, interestedConfigChangeEvent);
     }
   }
 
@@ -474,10 +404,28 @@ public abstract class AbstractConfig implements Config {
     final List<ConfigChangeListener> listeners = this
         .findMatchedConfigChangeListeners(changeEvent.changedKeys());
 
-    // notify those listeners
+    // notify those listeners, the sync ones first
+    for (ConfigChangeListener listener : sortSyncListenersFirst(listeners)) {
+      this.notify(listener, changeEvent);
+    }
+  }
+
+  private List<ConfigChangeListener> sortSyncListenersFirst(List<ConfigChangeListener> listeners) {
+    List<ConfigChangeListener> sorted = new ArrayList<>(listeners.size());
     for (ConfigChangeListener listener : listeners) {
-      this.notifyAsync(listener, changeEvent);
+      if (listener instanceof SyncConfigChangeListener) {
+        sorted.add(listener);
+      }
+    }
+    if (sorted.isEmpty()) {
+      return listeners;
+    }
+    for (ConfigChangeListener listener : listeners) {
+      if (!(listener instanceof SyncConfigChangeListener)) {
+        sorted.add(listener);
+      }
     }
+    return sorted;
   }
 
   private List<ConfigChangeListener> findMatchedConfigChangeListeners(Set<String> changedKeys) {
@@ -491,26 +439,34 @@ public abstract class AbstractConfig implements Config {
     return configChangeListeners;
   }
 
-  private void notifyAsync(final ConfigChangeListener listener, final ConfigChangeEvent changeEvent) {
-    m_executorService.submit(new Runnable() {
+  private void notify(final ConfigChangeListener listener, final ConfigChangeEvent changeEvent) {
+    if (listener instanceof SyncConfigChangeListener) {
+      doNotify(listener, changeEvent);
+      return;
+    }
+    m_listenerDispatcher.dispatch(changeEvent.getNamespace(), listener, new Runnable() {
       @Override
       public void run() {
-        String listenerName = listener.getClass().getName();
-        Transaction transaction = Tracer.newTransaction("Apollo.ConfigChangeListener", listenerName);
-        try {
-          listener.onChange(changeEvent);
-          transaction.setStatus(Transaction.SUCCESS);
-        } catch (Throwable ex) {
-          transaction.setStatus(ex);
-          Tracer.logError(ex);
-          logger.error("Failed to invoke config change listener {}", listenerName, ex);
-        } finally {
-          transaction.complete();
-        }
+        doNotify(listener, changeEvent);
       }
     });
   }
 
+  private void doNotify(ConfigChangeListener listener, ConfigChangeEvent changeEvent) {
+    String listenerName = listener.getClass().getName();
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigChangeListener", listenerName);
+    try {
+      listener.onChange(changeEvent);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      Tracer.logError(ex);
+      logger.error("Failed to invoke config change listener {}", listenerName, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
   private boolean isConfigChangeListenerInterested(ConfigChangeListener configChangeListener, Set<String> changedKeys) {
     Set<String> interestedKeys = m_interestedKeys.get(configChangeListener);
     Set<String> interestedKeyPrefixes = m_interestedKeyPrefixes.get(configChangeListener);
@@ -608,4 +564,35 @@ public abstract class AbstractConfig implements Config {
 
     return changes;
   }
+
+  /**
+   * Same as {@link #calcPropertyChanges(String, Properties, Properties)}, but only the given keys are compared
+   *
+   * @param keys the keys which might be changed, e.g. the ones in {@link RepositoryChangeSet#getChangedKeys()}
+   */
+  List<ConfigChange> calcPropertyChanges(String namespace, Properties previous,
+                                         Properties current, Set<String> keys) {
+    if (previous == null) {
+      previous = propertiesFactory.getPropertiesInstance();
+    }
+
+    if (current == null) {
+      current =  propertiesFactory.getPropertiesInstance();
+    }
+
+    List<ConfigChange> changes = Lists.newArrayListWithCapacity(keys.size());
+
+    for (String key : keys) {
+      String previousValue = previous.getProperty(key);
+      String currentValue = current.getProperty(key);
+      if (Objects.equal(previousValue, currentValue)) {
+        continue;
+      }
+      PropertyChangeType changeType = previousValue == null ? PropertyChangeType.ADDED
+          : currentValue == null ? PropertyChangeType.DELETED : PropertyChangeType.MODIFIED;
+      changes.add(new ConfigChange(namespace, key, previousValue, currentValue, changeType));
+    }
+
+    return changes;
+  }
 }
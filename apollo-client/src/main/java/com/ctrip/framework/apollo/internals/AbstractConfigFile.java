@@ -22,15 +22,12 @@ import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 
 import com.ctrip.framework.apollo.ConfigFile;
 import com.ctrip.framework.apollo.ConfigFileChangeListener;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.enums.PropertyChangeType;
 import com.ctrip.framework.apollo.model.ConfigFileChangeEvent;
 import com.ctrip.framework.apollo.tracer.Tracer;
@@ -43,25 +40,21 @@ import com.google.common.collect.Lists;
  */
 public abstract class AbstractConfigFile implements ConfigFile, RepositoryChangeListener {
   private static final Logger logger = DeferredLoggerFactory.getLogger(AbstractConfigFile.class);
-  private static ExecutorService m_executorService;
   protected final ConfigRepository m_configRepository;
   protected final String m_namespace;
   protected final AtomicReference<Properties> m_configProperties;
   private final List<ConfigFileChangeListener> m_listeners = Lists.newCopyOnWriteArrayList();
   protected final PropertiesFactory propertiesFactory;
+  private final ChangeListenerDispatcher m_listenerDispatcher;
 
   private volatile ConfigSourceType m_sourceType = ConfigSourceType.NONE;
 
-  static {
-    m_executorService = Executors.newCachedThreadPool(ApolloThreadFactory
-        .create("ConfigFile", true));
-  }
-
   public AbstractConfigFile(String namespace, ConfigRepository configRepository) {
     m_configRepository = configRepository;
     m_namespace = namespace;
     m_configProperties = new AtomicReference<>();
     propertiesFactory = ApolloInjector.getInstance(PropertiesFactory.class);
+    m_listenerDispatcher = ApolloInjector.getInstance(ChangeListenerDispatcher.class);
     initialize();
   }
 
@@ -134,7 +127,7 @@ public abstract class AbstractConfigFile implements ConfigFile, RepositoryChange
 
   private void fireConfigChange(final ConfigFileChangeEvent changeEvent) {
     for (final ConfigFileChangeListener listener : m_listeners) {
-      m_executorService.submit(new Runnable() {
+      m_listenerDispatcher.dispatch(changeEvent.getNamespace(), listener, new Runnable() {
         @Override
         public void run() {
           String listenerName = listener.getClass().getName();
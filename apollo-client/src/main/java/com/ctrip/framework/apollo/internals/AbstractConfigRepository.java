@@ -64,9 +64,17 @@ public abstract class AbstractConfigRepository implements ConfigRepository {
   }
 
   protected void fireRepositoryChange(String namespace, Properties newProperties) {
+    fireRepositoryChange(namespace, newProperties, null);
+  }
+
+  protected void fireRepositoryChange(String namespace, Properties newProperties, RepositoryChangeSet changeSet) {
     for (RepositoryChangeListener listener : m_listeners) {
       try {
-        listener.onRepositoryChange(namespace, newProperties);
+        if (listener instanceof IncrementalRepositoryChangeListener) {
+          ((IncrementalRepositoryChangeListener) listener).onRepositoryChange(namespace, newProperties, changeSet);
+        } else {
+          listener.onRepositoryChange(namespace, newProperties);
+        }
       } catch (Throwable ex) {
         Tracer.logError(ex);
         logger.error("Failed to invoke repository change listener {}", listener.getClass(), ex);
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.core.utils.DeferredLoggerFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.collect.Maps;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+
+/**
+ * Notifies the change listeners asynchronously with a bounded number of threads.
+ *
+ * <p>The notifications of the same namespace and listener are run one by one in the order they are dispatched, so a
+ * listener never sees the changes of a namespace out of order, while the other listeners are not blocked by a slow
+ * one.</p>
+ *
+ * <p>The threads are shared by all the namespaces, a slow listener holds one of them until its notifications are run,
+ * so the drains longer than {@value #SLOW_DRAIN_MILLIS} ms are reported.</p>
+ */
+public class ChangeListenerDispatcher {
+  private static final Logger logger = DeferredLoggerFactory.getLogger(ChangeListenerDispatcher.class);
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final long SLOW_DRAIN_MILLIS = 1000;
+
+  private final ExecutorService m_executorService;
+  private final int m_threads;
+  //the pending notifications by namespace and listener, present as long as they are being drained
+  private final ConcurrentMap<ListenerKey, Deque<Runnable>> m_pendingNotifications;
+
+  public ChangeListenerDispatcher() {
+    int threads = Math.max(1, ApolloInjector.getInstance(ConfigUtil.class).getChangeListenerThreads());
+    m_threads = threads;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(), ApolloThreadFactory.create("Config", true));
+    executor.allowCoreThreadTimeOut(true);
+    m_executorService = executor;
+    m_pendingNotifications = Maps.newConcurrentMap();
+  }
+
+  /**
+   * Run the notification after the ones of the same namespace and listener dispatched before
+   */
+  void dispatch(String namespace, Object listener, Runnable notification) {
+    ListenerKey key = new ListenerKey(namespace, listener);
+    int[] pending = new int[1];
+    m_pendingNotifications.compute(key, (k, notifications) -> {
+      if (notifications == null) {
+        notifications = new ArrayDeque<>();
+      }
+      notifications.add(notification);
+      pending[0] = notifications.size();
+      return notifications;
+    });
+
+    if (pending[0] == 1) {
+      //no notification is being drained, otherwise the new one is picked up by the drain
+      m_executorService.execute(() -> drain(key));
+    } else {
+      Tracer.logEvent("Apollo.ConfigChangeListener.QueueDepth", String.valueOf(pending[0]));
+    }
+  }
+
+  private void drain(ListenerKey key) {
+    long start = System.currentTimeMillis();
+    int count = 0;
+    Runnable notification = next(key, false);
+    while (notification != null) {
+      try {
+        notification.run();
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+      }
+      count++;
+      notification = next(key, true);
+    }
+
+    long elapsed = System.currentTimeMillis() - start;
+    if (elapsed > SLOW_DRAIN_MILLIS) {
+      Tracer.logEvent("Apollo.ConfigChangeListener.SlowDrain",
+          String.format("%s+%s", key.namespace, key.listener.getClass().getName()));
+      logger.warn("Running {} change notifications of listener {} for namespace {} took {} ms, which holds one of "
+              + "the {} threads shared by all the namespaces, please consider running the slow work asynchronously "
+              + "or increasing apollo.changeListenerThreads", count, key.listener, key.namespace, elapsed,
+          m_threads);
+    }
+  }
+
+  /**
+   * The head is kept until it is run, so the notifications dispatched meanwhile are queued behind it instead of
+   * starting another drain
+   *
+   * @param removeHead whether to remove the head, i.e. the notification just run
+   * @return the next notification to run, null if none
+   */
+  private Runnable next(ListenerKey key, boolean removeHead) {
+    Runnable[] next = new Runnable[1];
+    m_pendingNotifications.computeIfPresent(key, (k, notifications) -> {
+      if (removeHead) {
+        notifications.poll();
+      }
+      next[0] = notifications.peek();
+      return notifications.isEmpty() ? null : notifications;
+    });
+    return next[0];
+  }
+
+  private static class ListenerKey {
+    private final String namespace;
+    private final Object listener;
+
+    ListenerKey(String namespace, Object listener) {
+      this.namespace = namespace;
+      this.listener = listener;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ListenerKey)) {
+        return false;
+      }
+      ListenerKey that = (ListenerKey) o;
+      return listener == that.listener && Objects.equals(namespace, that.namespace);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Objects.hashCode(namespace) + System.identityHashCode(listener);
+    }
+  }
+}
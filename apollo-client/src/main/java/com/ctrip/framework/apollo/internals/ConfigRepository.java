@@ -53,4 +53,15 @@ public interface ConfigRepository {
    * @return the config's source type
    */
   ConfigSourceType getSourceType();
+
+  /**
+   * Return the content hash of the config, see {@link RepositoryChangeSet}
+   *
+   * @return the content hash, null if unknown
+   *
+   * @since 2.1.0
+   */
+  default String getContentHash() {
+    return null;
+  }
 }
@@ -16,8 +16,10 @@
  */
 package com.ctrip.framework.apollo.internals;
 
+import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.utils.DeferredLoggerFactory;
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
+import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.io.IOException;
@@ -43,7 +45,7 @@ import com.google.common.util.concurrent.RateLimiter;
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
-public class DefaultConfig extends AbstractConfig implements RepositoryChangeListener {
+public class DefaultConfig extends AbstractConfig implements IncrementalRepositoryChangeListener {
 
   private static final Logger logger = DeferredLoggerFactory.getLogger(DefaultConfig.class);
   private final String m_namespace;
@@ -51,8 +53,13 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
   private final AtomicReference<Properties> m_configProperties;
   private final ConfigRepository m_configRepository;
   private final RateLimiter m_warnLogRateLimiter;
+  private final boolean m_resolutionSnapshotEnabled;
+  //all the resolved properties, only built when the resolution snapshot is enabled
+  private volatile Map<String, String> m_resolvedProperties;
 
   private volatile ConfigSourceType m_sourceType = ConfigSourceType.NONE;
+  //the content hash of m_configProperties, null if unknown
+  private volatile String m_contentHash;
 
   /**
    * Constructor.
@@ -66,12 +73,16 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
     m_configRepository = configRepository;
     m_configProperties = new AtomicReference<>();
     m_warnLogRateLimiter = RateLimiter.create(0.017); // 1 warning log output per minute
+    m_resolutionSnapshotEnabled = ApolloInjector.getInstance(ConfigUtil.class)
+        .isPropertyResolutionSnapshotEnabled();
     initialize();
   }
 
   private void initialize() {
     try {
-      updateConfig(m_configRepository.getConfig(), m_configRepository.getSourceType());
+      //read the content hash first, so it is never newer than the config
+      String contentHash = m_configRepository.getContentHash();
+      updateConfig(m_configRepository.getConfig(), m_configRepository.getSourceType(), contentHash);
     } catch (Throwable ex) {
       Tracer.logError(ex);
       logger.warn("Init Apollo Local Config failed - namespace: {}, reason: {}.",
@@ -152,6 +163,13 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
 
   @Override
   public String getProperty(String key, String defaultValue) {
+    Map<String, String> resolvedProperties = m_resolvedProperties;
+    if (resolvedProperties != null) {
+      String value = resolvedProperties.get(key);
+      this.tryWarnLog(value);
+      return value == null ? defaultValue : value;
+    }
+
     // step 1: check system properties, i.e. -Dkey=value
     String value = System.getProperty(key);
 
@@ -216,8 +234,18 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
   }
 
   @Override
-  public synchronized void onRepositoryChange(String namespace, Properties newProperties) {
-    if (newProperties.equals(m_configProperties.get())) {
+  public void onRepositoryChange(String namespace, Properties newProperties) {
+    onRepositoryChange(namespace, newProperties, null);
+  }
+
+  @Override
+  public synchronized void onRepositoryChange(String namespace, Properties newProperties,
+      RepositoryChangeSet changeSet) {
+    String contentHash = changeSet == null ? null : changeSet.getContentHash();
+    //only the changed keys are compared if the change set is based on the current properties
+    boolean incremental = changeSet != null && changeSet.isApplicableTo(m_contentHash);
+    if (incremental ? changeSet.getChangedKeys().isEmpty() : newProperties.equals(m_configProperties.get())) {
+      m_contentHash = contentHash;
       return;
     }
 
@@ -225,8 +253,13 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
     Properties newConfigProperties = propertiesFactory.getPropertiesInstance();
     newConfigProperties.putAll(newProperties);
 
-    Map<String, ConfigChange> actualChanges = updateAndCalcConfigChanges(newConfigProperties,
-        sourceType);
+    List<ConfigChange> configChanges = incremental
+        ? calcPropertyChanges(m_namespace, m_configProperties.get(), newConfigProperties,
+        changeSet.getChangedKeys())
+        : calcPropertyChanges(m_namespace, m_configProperties.get(), newConfigProperties);
+
+    Map<String, ConfigChange> actualChanges = updateAndCalcConfigChanges(configChanges,
+        newConfigProperties, sourceType, contentHash);
 
     //check double checked result
     if (actualChanges.isEmpty()) {
@@ -238,16 +271,47 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
     Tracer.logEvent("Apollo.Client.ConfigChanges", m_namespace);
   }
 
-  private void updateConfig(Properties newConfigProperties, ConfigSourceType sourceType) {
+  private void updateConfig(Properties newConfigProperties, ConfigSourceType sourceType,
+      String contentHash) {
     m_configProperties.set(newConfigProperties);
+    m_contentHash = contentHash;
     m_sourceType = sourceType;
+    if (m_resolutionSnapshotEnabled) {
+      m_resolvedProperties = resolveAllProperties();
+      //the snapshot captures the system properties and environment variables again, so any key might be changed
+      clearConfigCache();
+    }
   }
 
-  private Map<String, ConfigChange> updateAndCalcConfigChanges(Properties newConfigProperties,
-      ConfigSourceType sourceType) {
-    List<ConfigChange> configChanges =
-        calcPropertyChanges(m_namespace, m_configProperties.get(), newConfigProperties);
+  /**
+   * Resolve all the properties in the same order as {@link #getProperty(String, String)}. The system properties and
+   * environment variables are captured at this moment, so the ones changed afterwards are only visible after the next
+   * config change.
+   */
+  private Map<String, String> resolveAllProperties() {
+    Map<String, String> resolved = Maps.newHashMap();
+    // from the lowest priority to the highest, so that the higher ones override
+    putAllStringProperties(resolved, m_resourceProperties);
+    resolved.putAll(System.getenv());
+    putAllStringProperties(resolved, m_configProperties.get());
+    putAllStringProperties(resolved, System.getProperties());
+    return ImmutableMap.copyOf(resolved);
+  }
 
+  private void putAllStringProperties(Map<String, String> target, Properties properties) {
+    if (properties == null) {
+      return;
+    }
+    for (String key : properties.stringPropertyNames()) {
+      String value = properties.getProperty(key);
+      if (value != null) {
+        target.put(key, value);
+      }
+    }
+  }
+
+  private Map<String, ConfigChange> updateAndCalcConfigChanges(List<ConfigChange> configChanges,
+      Properties newConfigProperties, ConfigSourceType sourceType, String contentHash) {
     ImmutableMap.Builder<String, ConfigChange> actualChanges =
         new ImmutableMap.Builder<>();
 
@@ -259,8 +323,14 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
     }
 
     //2. update m_configProperties
-    updateConfig(newConfigProperties, sourceType);
-    clearConfigCache();
+    updateConfig(newConfigProperties, sourceType, contentHash);
+    if (!m_resolutionSnapshotEnabled) {
+      Set<String> changedKeys = Sets.newHashSetWithExpectedSize(configChanges.size());
+      for (ConfigChange change : configChanges) {
+        changedKeys.add(change.getPropertyName());
+      }
+      clearConfigCache(changedKeys);
+    }
 
     //3. use getProperty to update configChange's new value and calc the final changes
     for (ConfigChange change : configChanges) {
@@ -16,23 +16,41 @@
  */
 package com.ctrip.framework.apollo.internals;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.ctrip.framework.apollo.Config;
 import com.ctrip.framework.apollo.ConfigFile;
 import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.core.utils.DeferredLoggerFactory;
 import com.ctrip.framework.apollo.spi.ConfigFactory;
 import com.ctrip.framework.apollo.spi.ConfigFactoryManager;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
 public class DefaultConfigManager implements ConfigManager {
+  private static final Logger logger = DeferredLoggerFactory.getLogger(DefaultConfigManager.class);
+  private static final int MAX_PRELOAD_PARALLELISM = 8;
   private ConfigFactoryManager m_factoryManager;
 
   private Map<String, Config> m_configs = Maps.newConcurrentMap();
+  //the same namespace is only created once, different namespaces could be created concurrently
+  private Map<String, Object> m_configLocks = Maps.newConcurrentMap();
   private Map<String, ConfigFile> m_configFiles = Maps.newConcurrentMap();
 
   public DefaultConfigManager() {
@@ -44,7 +62,7 @@ public class DefaultConfigManager implements ConfigManager {
     Config config = m_configs.get(namespace);
 
     if (config == null) {
-      synchronized (this) {
+      synchronized (m_configLocks.computeIfAbsent(namespace, key -> new Object())) {
         config = m_configs.get(namespace);
 
         if (config == null) {
@@ -59,6 +77,43 @@ public class DefaultConfigManager implements ConfigManager {
     return config;
   }
 
+  @Override
+  public void preloadConfigs(Collection<String> namespaces) {
+    Set<String> namespacesToLoad = Sets.newLinkedHashSet();
+    for (String namespace : namespaces) {
+      if (!m_configs.containsKey(namespace)) {
+        namespacesToLoad.add(namespace);
+      }
+    }
+    if (namespacesToLoad.size() <= 1) {
+      ConfigManager.super.preloadConfigs(namespacesToLoad);
+      return;
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(
+        Math.min(namespacesToLoad.size(), MAX_PRELOAD_PARALLELISM),
+        ApolloThreadFactory.create("ConfigPreloader", true));
+    try {
+      List<Future<Config>> futures = Lists.newArrayListWithCapacity(namespacesToLoad.size());
+      for (String namespace : namespacesToLoad) {
+        futures.add(executorService.submit(() -> getConfig(namespace)));
+      }
+      for (Future<Config> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          //the failed ones are left to getConfig
+          Tracer.logError(ex.getCause());
+          logger.warn("Preload config failed, reason: {}", ExceptionUtil.getDetailMessage(ex.getCause()));
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   @Override
   public ConfigFile getConfigFile(String namespace, ConfigFileFormat configFileFormat) {
     String namespaceFileName = String.format("%s.%s", namespace, configFileFormat.getValue());
@@ -103,6 +103,8 @@ public class DefaultInjector implements Injector {
       bind(HttpClient.class).to(DefaultHttpClient.class).in(Singleton.class);
       bind(ConfigServiceLocator.class).in(Singleton.class);
       bind(RemoteConfigLongPollService.class).in(Singleton.class);
+      bind(RemoteConfigBatchLoader.class).in(Singleton.class);
+      bind(ChangeListenerDispatcher.class).in(Singleton.class);
       bind(YamlParser.class).in(Singleton.class);
       bind(PropertiesFactory.class).to(DefaultPropertiesFactory.class).in(Singleton.class);
     }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import java.util.Properties;
+
+/**
+ * A {@link RepositoryChangeListener} notified with the keys changed as well, so it could skip the comparison of the
+ * whole properties if it holds the properties before the change.
+ *
+ * @since 2.1.0
+ */
+public interface IncrementalRepositoryChangeListener extends RepositoryChangeListener {
+  /**
+   * Invoked when config repository changes.
+   * @param namespace the namespace of this repository change
+   * @param newProperties the properties after change
+   * @param changeSet the keys changed, null if unknown
+   */
+  void onRepositoryChange(String namespace, Properties newProperties, RepositoryChangeSet changeSet);
+}
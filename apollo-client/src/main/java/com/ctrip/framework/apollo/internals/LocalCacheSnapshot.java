@@ -0,0 +1,184 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import com.google.common.base.Strings;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * The binary format of the local cache files.
+ *
+ * <p>A file consists of a header with the magic number, the format version, the content hash, the entry count and the
+ * CRC32 checksum of the body, followed by the body of length-prefixed UTF-8 keys and values. Files are written to a
+ * temp file first and then moved in place, so a reader never sees a partially written file, and the ones corrupted
+ * anyway are detected by the checksum.</p>
+ */
+final class LocalCacheSnapshot {
+  static final String FILE_EXTENSION = "snapshot";
+  private static final int MAGIC = 0x41504C53; // "APLS"
+  private static final short VERSION = 1;
+
+  private final String contentHash;
+  private final Properties properties;
+
+  LocalCacheSnapshot(String contentHash, Properties properties) {
+    this.contentHash = contentHash;
+    this.properties = properties;
+  }
+
+  /**
+   * @return the content hash of the properties, null if unknown
+   */
+  String getContentHash() {
+    return contentHash;
+  }
+
+  Properties getProperties() {
+    return properties;
+  }
+
+  /**
+   * @param file   the snapshot file
+   * @param target the properties instance to load the entries into
+   * @throws IOException if the file could not be read or is corrupted
+   */
+  static LocalCacheSnapshot read(File file, Properties target) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot file is too large: " + size);
+      }
+      buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        //read till the end
+      }
+      buffer.flip();
+    }
+
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a snapshot file");
+      }
+      short version = buffer.getShort();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version: " + version);
+      }
+      String contentHash = Strings.emptyToNull(readString(buffer));
+      int count = buffer.getInt();
+      long checksum = buffer.getLong();
+
+      CRC32 crc32 = new CRC32();
+      crc32.update(buffer.duplicate());
+      if (crc32.getValue() != checksum) {
+        throw new IOException("Snapshot checksum mismatch");
+      }
+
+      for (int i = 0; i < count; i++) {
+        String key = readString(buffer);
+        target.setProperty(key, readString(buffer));
+      }
+      return new LocalCacheSnapshot(contentHash, target);
+    } catch (RuntimeException ex) {
+      //e.g. BufferUnderflowException of truncated files
+      throw new IOException("Snapshot file is corrupted", ex);
+    }
+  }
+
+  /**
+   * Write the snapshot to the file atomically
+   */
+  void write(File file) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream bodyOut = new DataOutputStream(body);
+    int count = 0;
+    for (String key : properties.stringPropertyNames()) {
+      writeString(bodyOut, key);
+      writeString(bodyOut, properties.getProperty(key));
+      count++;
+    }
+    bodyOut.flush();
+    byte[] bodyBytes = body.toByteArray();
+    CRC32 crc32 = new CRC32();
+    crc32.update(bodyBytes);
+
+    File tempFile = assembleTempFile(file);
+    try {
+      try (FileOutputStream fileOut = new FileOutputStream(tempFile);
+          DataOutputStream out = new DataOutputStream(fileOut)) {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        writeString(out, Strings.nullToEmpty(contentHash));
+        out.writeInt(count);
+        out.writeLong(crc32.getValue());
+        out.write(bodyBytes);
+        out.flush();
+        fileOut.getFD().sync();
+      }
+      moveAtomically(tempFile, file);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  /**
+   * The temp file to write before moving in place, the name is fixed so the one left by a crash is overwritten next
+   * time
+   */
+  static File assembleTempFile(File file) {
+    return new File(file.getParentFile(), file.getName() + ".tmp");
+  }
+
+  /**
+   * Replace the target file with the source file, atomically if supported by the file system
+   */
+  static void moveAtomically(File source, File target) throws IOException {
+    try {
+      Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+        StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
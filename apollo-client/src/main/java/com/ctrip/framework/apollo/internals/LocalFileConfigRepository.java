@@ -46,13 +46,15 @@ import com.google.common.base.Preconditions;
  * @author Jason Song(song_s@ctrip.com)
  */
 public class LocalFileConfigRepository extends AbstractConfigRepository
-    implements RepositoryChangeListener {
+    implements IncrementalRepositoryChangeListener {
   private static final Logger logger = DeferredLoggerFactory.getLogger(LocalFileConfigRepository.class);
   private static final String CONFIG_DIR = "/config-cache";
   private final String m_namespace;
   private File m_baseDir;
   private final ConfigUtil m_configUtil;
   private volatile Properties m_fileProperties;
+  //the content hash of m_fileProperties, null if unknown
+  private volatile String m_contentHash;
   private volatile ConfigRepository m_upstream;
 
   private volatile ConfigSourceType m_sourceType = ConfigSourceType.LOCAL;
@@ -127,15 +129,29 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     return m_sourceType;
   }
 
+  @Override
+  public String getContentHash() {
+    return m_contentHash;
+  }
+
   @Override
   public void onRepositoryChange(String namespace, Properties newProperties) {
-    if (newProperties.equals(m_fileProperties)) {
+    onRepositoryChange(namespace, newProperties, null);
+  }
+
+  @Override
+  public void onRepositoryChange(String namespace, Properties newProperties, RepositoryChangeSet changeSet) {
+    String contentHash = changeSet == null ? null : changeSet.getContentHash();
+    //the full comparison is skipped if the change set is based on the current properties
+    boolean incremental = changeSet != null && changeSet.isApplicableTo(m_contentHash);
+    if (incremental ? changeSet.getChangedKeys().isEmpty() : newProperties.equals(m_fileProperties)) {
+      m_contentHash = contentHash;
       return;
     }
     Properties newFileProperties = propertiesFactory.getPropertiesInstance();
     newFileProperties.putAll(newProperties);
-    updateFileProperties(newFileProperties, m_upstream.getSourceType());
-    this.fireRepositoryChange(namespace, newProperties);
+    updateFileProperties(newFileProperties, m_upstream.getSourceType(), contentHash, false);
+    this.fireRepositoryChange(namespace, newProperties, changeSet);
   }
 
   @Override
@@ -151,7 +167,9 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     Throwable exception = null;
     try {
       transaction.addData("Basedir", m_baseDir.getAbsolutePath());
-      m_fileProperties = this.loadFromLocalCacheFile(m_baseDir, m_namespace);
+      LocalCacheSnapshot snapshot = this.loadFromLocalCacheFile(m_baseDir, m_namespace);
+      m_fileProperties = snapshot.getProperties();
+      m_contentHash = snapshot.getContentHash();
       m_sourceType = ConfigSourceType.LOCAL;
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
@@ -175,7 +193,9 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
       return false;
     }
     try {
-      updateFileProperties(m_upstream.getConfig(), m_upstream.getSourceType());
+      //read the content hash first, so it is never newer than the config
+      String contentHash = m_upstream.getContentHash();
+      updateFileProperties(m_upstream.getConfig(), m_upstream.getSourceType(), contentHash, true);
       return true;
     } catch (Throwable ex) {
       Tracer.logError(ex);
@@ -186,19 +206,41 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     return false;
   }
 
-  private synchronized void updateFileProperties(Properties newProperties, ConfigSourceType sourceType) {
+  private synchronized void updateFileProperties(Properties newProperties, ConfigSourceType sourceType,
+      String contentHash, boolean checkEquality) {
     this.m_sourceType = sourceType;
-    if (newProperties.equals(m_fileProperties)) {
+    if (checkEquality && newProperties.equals(m_fileProperties)) {
+      this.m_contentHash = contentHash;
       return;
     }
     this.m_fileProperties = newProperties;
+    this.m_contentHash = contentHash;
     persistLocalCacheFile(m_baseDir, m_namespace);
   }
 
-  private Properties loadFromLocalCacheFile(File baseDir, String namespace) throws IOException {
+  private LocalCacheSnapshot loadFromLocalCacheFile(File baseDir, String namespace) throws IOException {
     Preconditions.checkNotNull(baseDir, "Basedir cannot be null");
 
     File file = assembleLocalCacheFile(baseDir, namespace);
+    //only the file of the enabled format is kept, the snapshot file is also read if it is persisted before the binary
+    //format is disabled
+    if (m_configUtil.isBinaryCacheFileEnabled() || !file.exists()) {
+      File snapshotFile = assembleLocalCacheSnapshotFile(baseDir, namespace);
+      if (snapshotFile.isFile() && snapshotFile.canRead()) {
+        try {
+          LocalCacheSnapshot snapshot = LocalCacheSnapshot
+              .read(snapshotFile, propertiesFactory.getPropertiesInstance());
+          logger.debug("Loading local config snapshot file {} successfully!", snapshotFile.getAbsolutePath());
+          return snapshot;
+        } catch (IOException ex) {
+          //fall back to the properties file, e.g. the one persisted before the binary format is enabled
+          Tracer.logError(ex);
+          logger.warn("Loading local config snapshot file {} failed, reason: {}.",
+              snapshotFile.getAbsolutePath(), ExceptionUtil.getDetailMessage(ex));
+        }
+      }
+    }
+
     Properties properties = null;
 
     if (file.isFile() && file.canRead()) {
@@ -227,22 +269,29 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
           String.format("Cannot read from local cache file %s", file.getAbsolutePath()));
     }
 
-    return properties;
+    //the properties file has no content hash
+    return new LocalCacheSnapshot(null, properties);
   }
 
   void persistLocalCacheFile(File baseDir, String namespace) {
     if (baseDir == null) {
       return;
     }
-    File file = assembleLocalCacheFile(baseDir, namespace);
-
-    OutputStream out = null;
+    boolean binary = m_configUtil.isBinaryCacheFileEnabled();
+    File snapshotFile = assembleLocalCacheSnapshotFile(baseDir, namespace);
+    File propertiesFile = assembleLocalCacheFile(baseDir, namespace);
+    File file = binary ? snapshotFile : propertiesFile;
 
     Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "persistLocalConfigFile");
     transaction.addData("LocalConfigFile", file.getAbsolutePath());
     try {
-      out = new FileOutputStream(file);
-      m_fileProperties.store(out, "Persisted by DefaultConfig");
+      if (binary) {
+        new LocalCacheSnapshot(m_contentHash, m_fileProperties).write(file);
+      } else {
+        persistPropertiesFile(file);
+      }
+      //remove the file of the other format, so a stale one is never loaded after the format is switched back
+      Files.deleteIfExists((binary ? propertiesFile : snapshotFile).toPath());
       transaction.setStatus(Transaction.SUCCESS);
     } catch (IOException ex) {
       ApolloConfigException exception =
@@ -253,17 +302,25 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
       logger.warn("Persist local cache file {} failed, reason: {}.", file.getAbsolutePath(),
           ExceptionUtil.getDetailMessage(ex));
     } finally {
-      if (out != null) {
-        try {
-          out.close();
-        } catch (IOException ex) {
-          //ignore
-        }
-      }
       transaction.complete();
     }
   }
 
+  /**
+   * Write to a temp file and then move it in place, so the file is never left partially written
+   */
+  private void persistPropertiesFile(File file) throws IOException {
+    File tempFile = LocalCacheSnapshot.assembleTempFile(file);
+    try {
+      try (OutputStream out = new FileOutputStream(tempFile)) {
+        m_fileProperties.store(out, "Persisted by DefaultConfig");
+      }
+      LocalCacheSnapshot.moveAtomically(tempFile, file);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
   private void checkLocalConfigCacheDir(File baseDir) {
     if (baseDir.exists()) {
       return;
@@ -294,4 +351,11 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
             .join(m_configUtil.getAppId(), m_configUtil.getCluster(), namespace));
     return new File(baseDir, fileName);
   }
+
+  File assembleLocalCacheSnapshotFile(File baseDir, String namespace) {
+    String fileName =
+        String.format("%s.%s", Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+            .join(m_configUtil.getAppId(), m_configUtil.getCluster(), namespace), LocalCacheSnapshot.FILE_EXTENSION);
+    return new File(baseDir, fileName);
+  }
 }
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.signature.Signature;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.core.utils.DeferredLoggerFactory;
+import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.ctrip.framework.apollo.util.http.HttpClient;
+import com.ctrip.framework.apollo.util.http.HttpRequest;
+import com.ctrip.framework.apollo.util.http.HttpResponse;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+
+/**
+ * Loads the configs of multiple namespaces in one request, so that the cold start and the namespaces notified by long
+ * polling do not cost one round trip per namespace.
+ *
+ * <p>Any namespace failed to load in batch falls back to the loading of its own {@link RemoteConfigRepository}.</p>
+ */
+public class RemoteConfigBatchLoader {
+  private static final Logger logger = DeferredLoggerFactory.getLogger(RemoteConfigBatchLoader.class);
+  private static final Joiner COMMA_JOINER = Joiner.on(",");
+  private static final Joiner.MapJoiner MAP_JOINER = Joiner.on("&").withKeyValueSeparator("=");
+  private static final Escaper pathEscaper = UrlEscapers.urlPathSegmentEscaper();
+  private static final Escaper queryParamEscaper = UrlEscapers.urlFormParameterEscaper();
+  private static final String NO_RELEASE_KEY = "-1";
+  //keep the url within the default header size limit of web servers
+  private static final int MAX_NAMESPACES_PER_REQUEST = 20;
+  private static final Gson GSON = new Gson();
+
+  private final ConfigUtil m_configUtil;
+  private final HttpClient m_httpClient;
+  private final ConfigServiceLocator m_serviceLocator;
+  private final ExecutorService m_executorService;
+  private final Map<String, ApolloConfig> m_prefetchedConfigs;
+  private final Type m_responseType;
+
+  public RemoteConfigBatchLoader() {
+    m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
+    m_httpClient = ApolloInjector.getInstance(HttpClient.class);
+    m_serviceLocator = ApolloInjector.getInstance(ConfigServiceLocator.class);
+    m_executorService = Executors.newSingleThreadExecutor(
+        ApolloThreadFactory.create("RemoteConfigBatchLoader", true));
+    m_prefetchedConfigs = Maps.newConcurrentMap();
+    m_responseType = new TypeToken<Map<String, ApolloConfig>>() {
+    }.getType();
+  }
+
+  /**
+   * Load the configs of the namespaces before their repositories are created, the repositories would take the
+   * prefetched configs instead of loading them one by one.
+   */
+  public void prefetch(Collection<String> namespaces) {
+    if (namespaces.isEmpty()) {
+      return;
+    }
+    try {
+      m_prefetchedConfigs.putAll(load(Sets.newLinkedHashSet(namespaces), Collections.emptyMap(), null, null));
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.warn("Prefetch configs failed, namespaces will be loaded one by one, reason: {}",
+          ExceptionUtil.getDetailMessage(ex));
+    }
+  }
+
+  /**
+   * Drop the prefetched configs not taken by any repository
+   */
+  public void clearPrefetched() {
+    m_prefetchedConfigs.clear();
+  }
+
+  ApolloConfig takePrefetched(String namespace) {
+    return m_prefetchedConfigs.remove(namespace);
+  }
+
+  /**
+   * Refresh the repositories notified by long polling in batch asynchronously
+   *
+   * @param longPollNotifiedServiceDto the config service which notifies the client
+   * @param repositories               the repositories to refresh, with their remote notification messages
+   */
+  void refresh(ServiceDTO longPollNotifiedServiceDto,
+      Map<RemoteConfigRepository, ApolloNotificationMessages> repositories) {
+    m_executorService.submit(() -> doRefresh(longPollNotifiedServiceDto, repositories));
+  }
+
+  private void doRefresh(ServiceDTO longPollNotifiedServiceDto,
+      Map<RemoteConfigRepository, ApolloNotificationMessages> repositories) {
+    Map<String, String> releaseKeys = Maps.newLinkedHashMap();
+    ApolloNotificationMessages remoteMessages = new ApolloNotificationMessages();
+    for (Map.Entry<RemoteConfigRepository, ApolloNotificationMessages> entry : repositories.entrySet()) {
+      String namespace = entry.getKey().getNamespace();
+      ApolloConfig current = entry.getKey().getCurrentConfig();
+      if (current != null) {
+        releaseKeys.put(namespace, current.getReleaseKey());
+      }
+      if (entry.getValue() != null) {
+        remoteMessages.mergeFrom(entry.getValue());
+      }
+    }
+
+    Set<String> namespaces = Sets.newLinkedHashSet();
+    for (RemoteConfigRepository repository : repositories.keySet()) {
+      namespaces.add(repository.getNamespace());
+    }
+
+    Map<String, ApolloConfig> configs;
+    try {
+      configs = load(namespaces, releaseKeys, remoteMessages.isEmpty() ? null : remoteMessages,
+          longPollNotifiedServiceDto);
+    } catch (Throwable ex) {
+      logger.warn("Load configs in batch failed, namespaces will be loaded one by one, reason: {}",
+          ExceptionUtil.getDetailMessage(ex));
+      configs = Collections.emptyMap();
+    }
+
+    for (Map.Entry<RemoteConfigRepository, ApolloNotificationMessages> entry : repositories.entrySet()) {
+      RemoteConfigRepository repository = entry.getKey();
+      ApolloConfig apolloConfig = configs.get(repository.getNamespace());
+      try {
+        if (apolloConfig != null) {
+          repository.onBatchLoaded(apolloConfig, entry.getValue());
+          continue;
+        }
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+      }
+      repository.onLongPollNotified(longPollNotifiedServiceDto, entry.getValue());
+    }
+  }
+
+  /**
+   * @return the configs keyed by namespace, the not found ones are left out
+   */
+  Map<String, ApolloConfig> load(Set<String> namespaces, Map<String, String> releaseKeys,
+      ApolloNotificationMessages remoteMessages, ServiceDTO preferredServiceDto) {
+    Map<String, ApolloConfig> result = Maps.newHashMap();
+    for (List<String> partition : Iterables.partition(namespaces, MAX_NAMESPACES_PER_REQUEST)) {
+      result.putAll(doLoad(partition, releaseKeys, remoteMessages, preferredServiceDto));
+    }
+    return result;
+  }
+
+  private Map<String, ApolloConfig> doLoad(List<String> namespaces, Map<String, String> releaseKeys,
+      ApolloNotificationMessages remoteMessages, ServiceDTO preferredServiceDto) {
+    String appId = m_configUtil.getAppId();
+    String cluster = m_configUtil.getCluster();
+    String secret = m_configUtil.getAccessKeySecret();
+
+    List<ServiceDTO> configServices = Lists.newLinkedList(getConfigServices());
+    Collections.shuffle(configServices);
+    //Access the server which notifies the client first
+    if (preferredServiceDto != null) {
+      configServices.add(0, preferredServiceDto);
+    }
+
+    String url = null;
+    Throwable exception = null;
+    for (ServiceDTO configService : configServices) {
+      url = assembleQueryConfigsUrl(configService.getHomepageUrl(), appId, cluster, namespaces, releaseKeys,
+          m_configUtil.getDataCenter(), remoteMessages);
+
+      logger.debug("Loading configs from {}", url);
+
+      HttpRequest request = new HttpRequest(url);
+      if (!StringUtils.isBlank(secret)) {
+        request.setHeaders(Signature.buildHttpHeaders(url, appId, secret));
+      }
+
+      Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "queryConfigs");
+      transaction.addData("Url", url);
+      try {
+        HttpResponse<Map<String, ApolloConfig>> response = m_httpClient.doGet(request, m_responseType);
+        transaction.addData("StatusCode", response.getStatusCode());
+        transaction.setStatus(Transaction.SUCCESS);
+        return response.getBody() == null ? Collections.emptyMap() : response.getBody();
+      } catch (Throwable ex) {
+        Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
+        transaction.setStatus(ex);
+        exception = ex;
+      } finally {
+        transaction.complete();
+      }
+    }
+
+    throw new ApolloConfigException(String.format(
+        "Load Apollo Configs failed - appId: %s, cluster: %s, namespaces: %s, url: %s", appId, cluster,
+        COMMA_JOINER.join(namespaces), url), exception);
+  }
+
+  String assembleQueryConfigsUrl(String uri, String appId, String cluster, List<String> namespaces,
+      Map<String, String> releaseKeys, String dataCenter, ApolloNotificationMessages remoteMessages) {
+    String path = String.format("configs/%s/%s", pathEscaper.escape(appId), pathEscaper.escape(cluster));
+    Map<String, String> queryParams = Maps.newLinkedHashMap();
+    queryParams.put("namespaces", queryParamEscaper.escape(COMMA_JOINER.join(namespaces)));
+
+    if (!releaseKeys.isEmpty()) {
+      List<String> releaseKeyList = Lists.newArrayListWithCapacity(namespaces.size());
+      for (String namespace : namespaces) {
+        releaseKeyList.add(releaseKeys.getOrDefault(namespace, NO_RELEASE_KEY));
+      }
+      queryParams.put("releaseKeys", queryParamEscaper.escape(COMMA_JOINER.join(releaseKeyList)));
+      if (m_configUtil.isIncrementalSyncEnabled()) {
+        queryParams.put("incrementalSync", "true");
+      }
+    }
+
+    if (!Strings.isNullOrEmpty(dataCenter)) {
+      queryParams.put("dataCenter", queryParamEscaper.escape(dataCenter));
+    }
+
+    String localIp = m_configUtil.getLocalIp();
+    if (!Strings.isNullOrEmpty(localIp)) {
+      queryParams.put("ip", queryParamEscaper.escape(localIp));
+    }
+
+    String label = m_configUtil.getApolloLabel();
+    if (!Strings.isNullOrEmpty(label)) {
+      queryParams.put("label", queryParamEscaper.escape(label));
+    }
+
+    if (remoteMessages != null) {
+      queryParams.put("messages", queryParamEscaper.escape(GSON.toJson(remoteMessages)));
+    }
+
+    if (!uri.endsWith("/")) {
+      uri += "/";
+    }
+    return uri + path + "?" + MAP_JOINER.join(queryParams);
+  }
+
+  private List<ServiceDTO> getConfigServices() {
+    List<ServiceDTO> services = m_serviceLocator.getConfigServices();
+    if (services.size() == 0) {
+      throw new ApolloConfigException("No available config service");
+    }
+
+    return services;
+  }
+}
@@ -152,7 +152,14 @@ public class RemoteConfigLongPollService {
     this.m_longPollingStopped.compareAndSet(false, true);
   }
 
-  private void doLongPollingRefresh(String appId, String cluster, String dataCenter, String secret) {
+  protected boolean isLongPollingStopped() {
+    return m_longPollingStopped.get();
+  }
+
+  /**
+   * Poll the notifications until stopped, runs in the long polling thread
+   */
+  protected void doLongPollingRefresh(String appId, String cluster, String dataCenter, String secret) {
     final Random random = new Random();
     ServiceDTO lastServiceDto = null;
     while (!m_longPollingStopped.get() && !Thread.currentThread().isInterrupted()) {
@@ -191,10 +198,8 @@ public class RemoteConfigLongPollService {
 
         logger.debug("Long polling response: {}, url: {}", response.getStatusCode(), url);
         if (response.getStatusCode() == 200 && response.getBody() != null) {
-          updateNotifications(response.getBody());
-          updateRemoteNotifications(response.getBody());
           transaction.addData("Result", response.getBody().toString());
-          notify(lastServiceDto, response.getBody());
+          onNotifications(lastServiceDto, response.getBody());
         }
 
         //try to load balance
@@ -224,10 +229,26 @@ public class RemoteConfigLongPollService {
     }
   }
 
+  /**
+   * Record the notifications received from the config service and notify the repositories
+   *
+   * @param serviceDto    the config service which sends the notifications
+   * @param notifications the notifications
+   */
+  protected void onNotifications(ServiceDTO serviceDto, List<ApolloConfigNotification> notifications) {
+    updateNotifications(notifications);
+    updateRemoteNotifications(notifications);
+    notify(serviceDto, notifications);
+  }
+
   private void notify(ServiceDTO lastServiceDto, List<ApolloConfigNotification> notifications) {
     if (notifications == null || notifications.isEmpty()) {
       return;
     }
+    if (m_configUtil.isBatchFetchEnabled()) {
+      notifyInBatch(lastServiceDto, notifications);
+      return;
+    }
     for (ApolloConfigNotification notification : notifications) {
       String namespaceName = notification.getNamespaceName();
       //create a new list to avoid ConcurrentModificationException
@@ -248,6 +269,31 @@ public class RemoteConfigLongPollService {
     }
   }
 
+  private void notifyInBatch(ServiceDTO lastServiceDto, List<ApolloConfigNotification> notifications) {
+    Map<RemoteConfigRepository, ApolloNotificationMessages> toBeNotified = Maps.newLinkedHashMap();
+    for (ApolloConfigNotification notification : notifications) {
+      String namespaceName = notification.getNamespaceName();
+      ApolloNotificationMessages originalMessages = m_remoteNotificationMessages.get(namespaceName);
+      ApolloNotificationMessages remoteMessages = originalMessages == null ? null : originalMessages.clone();
+      //create a new list to avoid ConcurrentModificationException
+      List<RemoteConfigRepository> repositories = Lists.newArrayList(m_longPollNamespaces.get(namespaceName));
+      //since .properties are filtered out by default, so we need to check if there is any listener for it
+      repositories.addAll(m_longPollNamespaces
+          .get(String.format("%s.%s", namespaceName, ConfigFileFormat.Properties.getValue())));
+      for (RemoteConfigRepository repository : repositories) {
+        toBeNotified.put(repository, remoteMessages);
+      }
+    }
+    if (toBeNotified.isEmpty()) {
+      return;
+    }
+    try {
+      ApolloInjector.getInstance(RemoteConfigBatchLoader.class).refresh(lastServiceDto, toBeNotified);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+  }
+
   private void updateNotifications(List<ApolloConfigNotification> deltaNotifications) {
     for (ApolloConfigNotification notification : deltaNotifications) {
       if (Strings.isNullOrEmpty(notification.getNamespaceName())) {
@@ -315,6 +361,13 @@ public class RemoteConfigLongPollService {
     return uri + "notifications/v2?" + params;
   }
 
+  /**
+   * @return the json of the notification ids held by the client, i.e. where the client should resume from
+   */
+  protected String assembleNotifications() {
+    return assembleNotifications(m_notifications);
+  }
+
   String assembleNotifications(Map<String, Long> notificationsMap) {
     List<ApolloConfigNotification> notifications = Lists.newArrayList();
     for (Map.Entry<String, Long> entry : notificationsMap.entrySet()) {
@@ -324,7 +377,7 @@ public class RemoteConfigLongPollService {
     return GSON.toJson(notifications);
   }
 
-  private List<ServiceDTO> getConfigServices() {
+  protected List<ServiceDTO> getConfigServices() {
     List<ServiceDTO> services = m_serviceLocator.getConfigServices();
     if (services.size() == 0) {
       throw new ApolloConfigException("No available config service");
@@ -21,7 +21,9 @@ import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
 import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
 import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
 import com.ctrip.framework.apollo.core.signature.Signature;
@@ -42,6 +44,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.escape.Escaper;
 import com.google.common.net.UrlEscapers;
 import com.google.common.util.concurrent.RateLimiter;
@@ -49,7 +52,9 @@ import com.google.gson.Gson;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -79,6 +84,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   private final RateLimiter m_loadConfigRateLimiter;
   private final AtomicBoolean m_configNeedForceRefresh;
   private final SchedulePolicy m_loadConfigFailSchedulePolicy;
+  private final RemoteConfigBatchLoader m_batchLoader;
   private static final Gson GSON = new Gson();
 
   static {
@@ -98,6 +104,8 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     m_httpClient = ApolloInjector.getInstance(HttpClient.class);
     m_serviceLocator = ApolloInjector.getInstance(ConfigServiceLocator.class);
     remoteConfigLongPollService = ApolloInjector.getInstance(RemoteConfigLongPollService.class);
+    m_batchLoader = m_configUtil.isBatchFetchEnabled() ?
+        ApolloInjector.getInstance(RemoteConfigBatchLoader.class) : null;
     m_longPollServiceDto = new AtomicReference<>();
     m_remoteMessages = new AtomicReference<>();
     m_loadConfigRateLimiter = RateLimiter.create(m_configUtil.getLoadConfigQPS());
@@ -127,6 +135,15 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     return ConfigSourceType.REMOTE;
   }
 
+  /**
+   * The release key identifies the configurations, as releases are immutable
+   */
+  @Override
+  public String getContentHash() {
+    ApolloConfig current = m_configCache.get();
+    return current == null ? null : current.getReleaseKey();
+  }
+
   private void schedulePeriodicRefresh() {
     logger.debug("Schedule periodic refresh with interval: {} {}",
         m_configUtil.getRefreshInterval(), m_configUtil.getRefreshIntervalTimeUnit());
@@ -154,8 +171,12 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
       //reference equals means HTTP 304
       if (previous != current) {
         logger.debug("Remote Config refreshed!");
+        RepositoryChangeSet changeSet = calcChangeSet(previous, current);
+        if (current != null && current.getConfigSyncType() == ConfigSyncType.INCREMENTAL_SYNC) {
+          current = applyConfigurationChanges(previous, current);
+        }
         m_configCache.set(current);
-        this.fireRepositoryChange(m_namespace, this.getConfig());
+        this.fireRepositoryChange(m_namespace, this.getConfig(), changeSet);
       }
 
       if (current != null) {
@@ -179,6 +200,13 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   }
 
   private ApolloConfig loadApolloConfig() {
+    if (m_batchLoader != null && m_configCache.get() == null) {
+      ApolloConfig prefetched = m_batchLoader.takePrefetched(m_namespace);
+      if (prefetched != null) {
+        logger.debug("Loaded prefetched config for {}: {}", m_namespace, prefetched);
+        return prefetched;
+      }
+    }
     if (!m_loadConfigRateLimiter.tryAcquire(5, TimeUnit.SECONDS)) {
       //wait at most 5 seconds
       try {
@@ -299,6 +327,9 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
 
     if (previousConfig != null) {
       queryParams.put("releaseKey", queryParamEscaper.escape(previousConfig.getReleaseKey()));
+      if (m_configUtil.isIncrementalSyncEnabled()) {
+        queryParams.put("incrementalSync", "true");
+      }
     }
 
     if (!Strings.isNullOrEmpty(dataCenter)) {
@@ -330,6 +361,78 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     return uri + pathExpanded;
   }
 
+  /**
+   * @param previous the config held locally
+   * @param loaded   the config loaded, either a full one or the changes of an incremental sync response
+   * @return the keys changed from the previous config to the loaded one, null if unknown
+   */
+  RepositoryChangeSet calcChangeSet(ApolloConfig previous, ApolloConfig loaded) {
+    if (previous == null || previous.getConfigurations() == null || loaded == null) {
+      return null;
+    }
+
+    Set<String> changedKeys = Sets.newHashSet();
+    if (loaded.getConfigSyncType() == ConfigSyncType.INCREMENTAL_SYNC) {
+      if (loaded.getConfigurationChanges() != null) {
+        for (ConfigurationChange change : loaded.getConfigurationChanges()) {
+          changedKeys.add(change.getKey());
+        }
+      }
+    } else {
+      Map<String, String> previousConfigurations = previous.getConfigurations();
+      Map<String, String> configurations = loaded.getConfigurations() == null ? Collections.emptyMap()
+          : loaded.getConfigurations();
+      for (Map.Entry<String, String> entry : configurations.entrySet()) {
+        if (!Objects.equals(previousConfigurations.get(entry.getKey()), entry.getValue())) {
+          changedKeys.add(entry.getKey());
+        }
+      }
+      for (String key : previousConfigurations.keySet()) {
+        if (!configurations.containsKey(key)) {
+          changedKeys.add(key);
+        }
+      }
+    }
+    return new RepositoryChangeSet(previous.getReleaseKey(), loaded.getReleaseKey(), changedKeys);
+  }
+
+  /**
+   * Apply the configuration changes of an incremental sync response to the configurations held locally
+   */
+  ApolloConfig applyConfigurationChanges(ApolloConfig previousConfig, ApolloConfig incrementalConfig) {
+    if (previousConfig == null || previousConfig.getConfigurations() == null) {
+      throw new ApolloConfigException(String.format(
+          "Incremental sync is not applicable as there is no previous config for namespace %s", m_namespace));
+    }
+
+    Map<String, String> configurations = Maps.newLinkedHashMap(previousConfig.getConfigurations());
+    if (incrementalConfig.getConfigurationChanges() != null) {
+      for (ConfigurationChange change : incrementalConfig.getConfigurationChanges()) {
+        if (change.getChangeType() == null) {
+          throw new ApolloConfigException(String.format(
+              "Unknown change type of key %s in namespace %s", change.getKey(), m_namespace));
+        }
+        switch (change.getChangeType()) {
+          case ADDED:
+          case MODIFIED:
+            configurations.put(change.getKey(), change.getNewValue());
+            break;
+          case DELETED:
+            configurations.remove(change.getKey());
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    ApolloConfig result = new ApolloConfig(incrementalConfig.getAppId(), incrementalConfig.getCluster(),
+        incrementalConfig.getNamespaceName(), incrementalConfig.getReleaseKey());
+    result.setConfigurations(configurations);
+    result.setConfigSyncType(ConfigSyncType.FULL_SYNC);
+    return result;
+  }
+
   private void scheduleLongPollingRefresh() {
     remoteConfigLongPollService.submit(m_namespace, this);
   }
@@ -346,6 +449,40 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     });
   }
 
+  /**
+   * Apply the config loaded by {@link RemoteConfigBatchLoader}
+   */
+  void onBatchLoaded(ApolloConfig apolloConfig, ApolloNotificationMessages remoteMessages) {
+    m_remoteMessages.set(remoteMessages);
+    synchronized (this) {
+      ApolloConfig previous = m_configCache.get();
+      if (previous != null && Objects.equals(previous.getReleaseKey(), apolloConfig.getReleaseKey())) {
+        //not modified
+        return;
+      }
+
+      ApolloConfig current = apolloConfig;
+      RepositoryChangeSet changeSet = calcChangeSet(previous, current);
+      if (current.getConfigSyncType() == ConfigSyncType.INCREMENTAL_SYNC) {
+        current = applyConfigurationChanges(previous, current);
+      }
+
+      logger.debug("Remote Config refreshed in batch!");
+      m_configCache.set(current);
+      this.fireRepositoryChange(m_namespace, this.getConfig(), changeSet);
+      Tracer.logEvent(String.format("Apollo.Client.Configs.%s", current.getNamespaceName()),
+          current.getReleaseKey());
+    }
+  }
+
+  String getNamespace() {
+    return m_namespace;
+  }
+
+  ApolloConfig getCurrentConfig() {
+    return m_configCache.get();
+  }
+
   private List<ServiceDTO> getConfigServices() {
     List<ServiceDTO> services = m_serviceLocator.getConfigServices();
     if (services.size() == 0) {
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The keys changed by a repository change. The properties before and after the change are identified by their content
+ * hashes, so a listener could only diff the changed keys if it holds the properties of the previous content hash.
+ *
+ * @since 2.1.0
+ */
+public class RepositoryChangeSet {
+  private final String previousContentHash;
+  private final String contentHash;
+  private final Set<String> changedKeys;
+
+  public RepositoryChangeSet(String previousContentHash, String contentHash, Set<String> changedKeys) {
+    this.previousContentHash = previousContentHash;
+    this.contentHash = contentHash;
+    this.changedKeys = Collections.unmodifiableSet(changedKeys);
+  }
+
+  /**
+   * @return the content hash of the properties before the change, null if unknown
+   */
+  public String getPreviousContentHash() {
+    return previousContentHash;
+  }
+
+  /**
+   * @return the content hash of the properties after the change, null if unknown
+   */
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public Set<String> getChangedKeys() {
+    return changedKeys;
+  }
+
+  /**
+   * @param currentContentHash the content hash of the properties held by the listener
+   * @return whether the changed keys are all the differences from the properties held by the listener
+   */
+  public boolean isApplicableTo(String currentContentHash) {
+    return previousContentHash != null && contentHash != null
+        && Objects.equals(previousContentHash, currentContentHash);
+  }
+
+  @Override
+  public String toString() {
+    return "RepositoryChangeSet{" +
+        "previousContentHash='" + previousContentHash + '\'' +
+        ", contentHash='" + contentHash + '\'' +
+        ", changedKeys=" + changedKeys +
+        '}';
+  }
+}
@@ -109,7 +109,7 @@ public class SimpleConfig extends AbstractConfig implements RepositoryChangeList
         });
 
     updateConfig(newConfigProperties, m_configRepository.getSourceType());
-    clearConfigCache();
+    clearConfigCache(changeMap.keySet());
 
     this.fireConfigChange(m_namespace, changeMap);
 
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.ConfigChangeListener;
+
+/**
+ * A {@link ConfigChangeListener} notified in the thread updating the config, before the other listeners are notified
+ * asynchronously. So the listeners notified asynchronously always see the state updated by it.
+ *
+ * <p>It is for the internal caches derived from the configs only, which must be fast and never block.</p>
+ *
+ * @since 2.1.0
+ */
+public interface SyncConfigChangeListener extends ConfigChangeListener {
+}
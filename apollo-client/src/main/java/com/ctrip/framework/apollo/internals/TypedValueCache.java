@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the parsed property values of one config version, e.g. integer, long, boolean, etc.
+ *
+ * <p>The values are kept in plain concurrent maps without any eviction or expiry, so a read is two map lookups and
+ * never writes anything. Once the cache is full, the new values are simply not cached any more.</p>
+ *
+ * <p>The cache is never invalidated in place, {@link AbstractConfig} replaces it with a new instance when the config
+ * is changed. Values parsed from a stale version are put into the replaced instance and simply dropped.</p>
+ */
+class TypedValueCache {
+  private final long m_maxSize;
+  private final AtomicLong m_size;
+  //value type, e.g. the parser or the array delimiter -> property key -> parsed value
+  private final ConcurrentMap<Object, ConcurrentMap<String, Object>> m_values;
+
+  TypedValueCache(long maxSize) {
+    m_maxSize = maxSize;
+    m_size = new AtomicLong();
+    m_values = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @param valueType identifies how the value is parsed, e.g. the parser or the array delimiter
+   * @return the cached value, or null if not cached
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(Object valueType, String key) {
+    ConcurrentMap<String, Object> values = m_values.get(valueType);
+    if (values == null) {
+      return null;
+    }
+    return (T) values.get(key);
+  }
+
+  /**
+   * Put the value if the cache is not full yet, concurrent puts may exceed the max size slightly
+   */
+  void put(Object valueType, String key, Object value) {
+    if (m_size.get() >= m_maxSize) {
+      return;
+    }
+    ConcurrentMap<String, Object> values = m_values.get(valueType);
+    if (values == null) {
+      values = m_values.computeIfAbsent(valueType, type -> new ConcurrentHashMap<>());
+    }
+    if (values.putIfAbsent(key, value) == null) {
+      m_size.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return a new cache with the values of this cache, except the ones of the changed keys
+   */
+  TypedValueCache copyWithout(Collection<String> changedKeys) {
+    TypedValueCache copy = new TypedValueCache(m_maxSize);
+    for (Map.Entry<Object, ConcurrentMap<String, Object>> entry : m_values.entrySet()) {
+      ConcurrentMap<String, Object> copiedValues = new ConcurrentHashMap<>(entry.getValue());
+      copiedValues.keySet().removeAll(changedKeys);
+      if (copiedValues.isEmpty()) {
+        continue;
+      }
+      copy.m_values.put(entry.getKey(), copiedValues);
+      copy.m_size.addAndGet(copiedValues.size());
+    }
+    return copy;
+  }
+}
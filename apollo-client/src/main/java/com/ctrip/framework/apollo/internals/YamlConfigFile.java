@@ -17,6 +17,7 @@
 package com.ctrip.framework.apollo.internals;
 
 import com.ctrip.framework.apollo.util.ExceptionUtil;
+import java.util.Objects;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -35,6 +36,8 @@ import com.ctrip.framework.apollo.util.yaml.YamlParser;
 public class YamlConfigFile extends PlainTextConfigFile implements PropertiesCompatibleConfigFile {
   private static final Logger logger = LoggerFactory.getLogger(YamlConfigFile.class);
   private volatile Properties cachedProperties;
+  //the content which the cached properties are transformed from
+  private volatile String cachedContent;
 
   public YamlConfigFile(String namespace, ConfigRepository configRepository) {
     super(namespace, configRepository);
@@ -72,16 +75,22 @@ public class YamlConfigFile extends PlainTextConfigFile implements PropertiesCom
   }
 
   private synchronized void transformToProperties() {
-    cachedProperties = toProperties();
+    String content = getContent();
+    //skip the parsing if the content is not changed
+    if (cachedProperties != null && Objects.equals(content, cachedContent)) {
+      return;
+    }
+    cachedProperties = toProperties(content);
+    cachedContent = content;
   }
 
-  private Properties toProperties() {
-    if (!this.hasContent()) {
+  private Properties toProperties(String content) {
+    if (content == null) {
       return propertiesFactory.getPropertiesInstance();
     }
 
     try {
-      return ApolloInjector.getInstance(YamlParser.class).yamlToProperties(getContent());
+      return ApolloInjector.getInstance(YamlParser.class).yamlToProperties(content);
     } catch (Throwable ex) {
       ApolloConfigException exception = new ApolloConfigException(
           "Parse yaml file content failed for namespace: " + m_namespace, ex);
@@ -23,6 +23,7 @@ import com.ctrip.framework.apollo.core.ApolloClientSystemConsts;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.NamespaceDTO;
 import com.ctrip.framework.apollo.core.utils.DeferredLogger;
+import com.ctrip.framework.apollo.internals.RemoteConfigBatchLoader;
 import com.ctrip.framework.apollo.internals.RemoteNamespaceRepository;
 import com.ctrip.framework.apollo.spring.config.CachedCompositePropertySource;
 import com.ctrip.framework.apollo.spring.config.ConfigPropertySourceFactory;
@@ -96,7 +97,11 @@ public class ApolloApplicationContextInitializer implements
             ApolloClientSystemConsts.APOLLO_META,
             ApolloClientSystemConsts.APOLLO_CONFIG_SERVICE,
             ApolloClientSystemConsts.APOLLO_PROPERTY_ORDER_ENABLE,
-            ApolloClientSystemConsts.APOLLO_PROPERTY_NAMES_CACHE_ENABLE};
+            ApolloClientSystemConsts.APOLLO_PROPERTY_NAMES_CACHE_ENABLE,
+            ApolloClientSystemConsts.APOLLO_INCREMENTAL_SYNC_ENABLE,
+            ApolloClientSystemConsts.APOLLO_BATCH_FETCH_ENABLE,
+            ApolloClientSystemConsts.APOLLO_PROPERTY_RESOLUTION_SNAPSHOT_ENABLE,
+            ApolloClientSystemConsts.APOLLO_CACHE_FILE_BINARY_ENABLE};
 
     private final ConfigPropertySourceFactory configPropertySourceFactory = SpringInjector
             .getInstance(ConfigPropertySourceFactory.class);
@@ -154,11 +159,21 @@ public class ApolloApplicationContextInitializer implements
         } else {
             composite = new CompositePropertySource(PropertySourcesConstants.APOLLO_BOOTSTRAP_PROPERTY_SOURCE_NAME);
         }
+        RemoteConfigBatchLoader batchLoader = null;
+        if (configUtil.isBatchFetchEnabled()) {
+            //load all the namespaces in one round trip instead of one by one
+            batchLoader = ApolloInjector.getInstance(RemoteConfigBatchLoader.class);
+            batchLoader.prefetch(namespaceList);
+        }
+        ConfigService.preloadConfigs(namespaceList);
         for (String namespace : namespaceList) {
             Config config = ConfigService.getConfig(namespace);
 
             composite.addPropertySource(configPropertySourceFactory.getConfigPropertySource(namespace, config));
         }
+        if (batchLoader != null) {
+            batchLoader.clearPrefetched();
+        }
 
         environment.getPropertySources().addFirst(composite);
     }
@@ -16,21 +16,72 @@
  */
 package com.ctrip.framework.apollo.spring.config;
 
-import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.internals.SyncConfigChangeListener;
 import com.ctrip.framework.apollo.model.ConfigChangeEvent;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Map;
+import java.util.Set;
 import org.springframework.core.env.CompositePropertySource;
 import org.springframework.core.env.PropertySource;
 
 /**
+ * Caches the property names of the Apollo property sources.
+ *
+ * <p>With the property resolution snapshot enabled, see {@link ConfigUtil#isPropertyResolutionSnapshotEnabled()},
+ * the properties of all the namespaces are also merged by their precedence into an immutable map, so a lookup costs
+ * one map access no matter how many namespaces there are. The map is rebuilt once any namespace changes, before the
+ * other config change listeners are notified. The rebuilds are serialized, and a map built lazily by a reader is only
+ * kept if no namespace changed meanwhile, so an outdated map is never published.</p>
+ *
  * @author Shawyeok (shawyeok@outlook.com)
  */
 public class CachedCompositePropertySource extends CompositePropertySource implements
-    ConfigChangeListener {
+    SyncConfigChangeListener {
+
+  private final boolean flattenEnabled;
 
   private volatile String[] names;
 
+  //the merged properties, null if not built yet or not flattenable
+  private volatile Map<String, Object> flattenedProperties;
+
+  //bumped once the property sources are added or changed, guarded by flattenLock
+  private long flattenGeneration;
+
+  private final Object flattenLock = new Object();
+
+  //only the changes of the apollo property sources are notified, so the others are not flattenable
+  private volatile boolean flattenable = true;
+
   public CachedCompositePropertySource(String name) {
+    this(name, ApolloInjector.getInstance(ConfigUtil.class).isPropertyResolutionSnapshotEnabled());
+  }
+
+  CachedCompositePropertySource(String name, boolean flattenEnabled) {
     super(name);
+    this.flattenEnabled = flattenEnabled;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    Map<String, Object> properties = getFlattenedProperties();
+    if (properties != null) {
+      return properties.get(name);
+    }
+    return super.getProperty(name);
+  }
+
+  @Override
+  public boolean containsProperty(String name) {
+    Map<String, Object> properties = getFlattenedProperties();
+    if (properties != null) {
+      return properties.containsKey(name);
+    }
+    return super.containsProperty(name);
   }
 
   @Override
@@ -45,22 +96,79 @@ public class CachedCompositePropertySource extends CompositePropertySource imple
   @Override
   public void addPropertySource(PropertySource<?> propertySource) {
     super.addPropertySource(propertySource);
-    if (propertySource instanceof ConfigPropertySource) {
-      ((ConfigPropertySource) propertySource).addChangeListener(this);
-    }
+    onPropertySourceAdded(propertySource);
   }
 
   @Override
   public void addFirstPropertySource(PropertySource<?> propertySource) {
     super.addFirstPropertySource(propertySource);
-    if (propertySource instanceof ConfigPropertySource) {
-      ((ConfigPropertySource) propertySource).addChangeListener(this);
-    }
+    onPropertySourceAdded(propertySource);
   }
 
   @Override
   public void onChange(ConfigChangeEvent changeEvent) {
     // clear property names cache if any sources has changed
     this.names = null;
+    synchronized (flattenLock) {
+      flattenGeneration++;
+      if (this.flattenedProperties != null) {
+        this.flattenedProperties = flatten();
+      }
+    }
+  }
+
+  private void onPropertySourceAdded(PropertySource<?> propertySource) {
+    if (propertySource instanceof ConfigPropertySource) {
+      ((ConfigPropertySource) propertySource).addChangeListener(this);
+    } else {
+      this.flattenable = false;
+    }
+    this.names = null;
+    synchronized (flattenLock) {
+      flattenGeneration++;
+      this.flattenedProperties = null;
+    }
+  }
+
+  private Map<String, Object> getFlattenedProperties() {
+    if (!flattenEnabled || !flattenable) {
+      return null;
+    }
+    Map<String, Object> properties = this.flattenedProperties;
+    if (properties != null) {
+      return properties;
+    }
+
+    long generation;
+    synchronized (flattenLock) {
+      generation = flattenGeneration;
+    }
+    properties = flatten();
+    synchronized (flattenLock) {
+      // the properties may be outdated if any property source is added or changed meanwhile
+      if (generation == flattenGeneration && this.flattenedProperties == null) {
+        this.flattenedProperties = properties;
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Resolve every property through the property sources in order, the system properties and environment variables
+   * are included as they are resolved by the namespaces as well
+   */
+  private Map<String, Object> flatten() {
+    Set<String> propertyNames = Sets.newHashSet(super.getPropertyNames());
+    propertyNames.addAll(System.getenv().keySet());
+    propertyNames.addAll(System.getProperties().stringPropertyNames());
+
+    Map<String, Object> properties = Maps.newHashMapWithExpectedSize(propertyNames.size());
+    for (String propertyName : propertyNames) {
+      Object value = super.getProperty(propertyName);
+      if (value != null) {
+        properties.put(propertyName, value);
+      }
+    }
+    return ImmutableMap.copyOf(properties);
   }
 }
@@ -94,6 +94,9 @@ public class PropertySourcesProcessor implements BeanFactoryPostProcessor, Envir
     ImmutableSortedSet<Integer> orders = ImmutableSortedSet.copyOf(NAMESPACE_NAMES.keySet());
     Iterator<Integer> iterator = orders.iterator();
 
+    //load the configs concurrently instead of one by one
+    ConfigService.preloadConfigs(NAMESPACE_NAMES.values());
+
     while (iterator.hasNext()) {
       int order = iterator.next();
       for (String namespace : NAMESPACE_NAMES.get(order)) {
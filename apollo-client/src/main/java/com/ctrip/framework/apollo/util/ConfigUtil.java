@@ -54,11 +54,16 @@ public class ConfigUtil {
     private long configCacheExpireTime = 1;//1 minute
     private TimeUnit configCacheExpireTimeUnit = TimeUnit.MINUTES;//1 minute
     private long longPollingInitialDelayInMills = 2000;//2 seconds
+    private int changeListenerThreads = 8;
     private boolean autoUpdateInjectedSpringProperties = true;
     private final RateLimiter warnLogRateLimiter;
     private boolean propertiesOrdered = false;
     private boolean propertyNamesCacheEnabled = false;
     private boolean propertyFileCacheEnabled = true;
+    private boolean incrementalSyncEnabled = false;
+    private boolean batchFetchEnabled = false;
+    private boolean propertyResolutionSnapshotEnabled = false;
+    private boolean binaryCacheFileEnabled = false;
 
     public ConfigUtil() {
         warnLogRateLimiter = RateLimiter.create(0.017); // 1 warning log output per minute
@@ -69,10 +74,15 @@ public class ConfigUtil {
         initQPS();
         initMaxConfigCacheSize();
         initLongPollingInitialDelayInMills();
+        initChangeListenerThreads();
         initAutoUpdateInjectedSpringProperties();
         initPropertiesOrdered();
         initPropertyNamesCacheEnabled();
         initPropertyFileCacheEnabled();
+        initIncrementalSyncEnabled();
+        initBatchFetchEnabled();
+        initPropertyResolutionSnapshotEnabled();
+        initBinaryCacheFileEnabled();
     }
 
     /**
@@ -318,6 +328,25 @@ public class ConfigUtil {
         return longPollingInitialDelayInMills;
     }
 
+    private void initChangeListenerThreads() {
+        String customizedChangeListenerThreads = System.getProperty("apollo.changeListenerThreads");
+        if (!Strings.isNullOrEmpty(customizedChangeListenerThreads)) {
+            try {
+                changeListenerThreads = Math.max(1, Integer.parseInt(customizedChangeListenerThreads));
+            } catch (Throwable ex) {
+                logger.error("Config for apollo.changeListenerThreads is invalid: {}",
+                        customizedChangeListenerThreads);
+            }
+        }
+    }
+
+    /**
+     * @return the max number of threads notifying the config change listeners
+     */
+    public int getChangeListenerThreads() {
+        return changeListenerThreads;
+    }
+
     private void initAutoUpdateInjectedSpringProperties() {
         // 1. Get from System Property
         String enableAutoUpdate = System.getProperty("apollo.autoUpdateInjectedSpringProperties");
@@ -364,6 +393,22 @@ public class ConfigUtil {
         return propertyFileCacheEnabled;
     }
 
+    public boolean isIncrementalSyncEnabled() {
+        return incrementalSyncEnabled;
+    }
+
+    public boolean isBatchFetchEnabled() {
+        return batchFetchEnabled;
+    }
+
+    public boolean isPropertyResolutionSnapshotEnabled() {
+        return propertyResolutionSnapshotEnabled;
+    }
+
+    public boolean isBinaryCacheFileEnabled() {
+        return binaryCacheFileEnabled;
+    }
+
     private void initPropertyNamesCacheEnabled() {
         propertyNamesCacheEnabled = getPropertyBoolean(ApolloClientSystemConsts.APOLLO_PROPERTY_NAMES_CACHE_ENABLE,
                 ApolloClientSystemConsts.APOLLO_PROPERTY_NAMES_CACHE_ENABLE_ENVIRONMENT_VARIABLES,
@@ -376,6 +421,31 @@ public class ConfigUtil {
                 propertyFileCacheEnabled);
     }
 
+    private void initIncrementalSyncEnabled() {
+        incrementalSyncEnabled = getPropertyBoolean(ApolloClientSystemConsts.APOLLO_INCREMENTAL_SYNC_ENABLE,
+                ApolloClientSystemConsts.APOLLO_INCREMENTAL_SYNC_ENABLE_ENVIRONMENT_VARIABLES,
+                incrementalSyncEnabled);
+    }
+
+    private void initBatchFetchEnabled() {
+        batchFetchEnabled = getPropertyBoolean(ApolloClientSystemConsts.APOLLO_BATCH_FETCH_ENABLE,
+                ApolloClientSystemConsts.APOLLO_BATCH_FETCH_ENABLE_ENVIRONMENT_VARIABLES,
+                batchFetchEnabled);
+    }
+
+    private void initPropertyResolutionSnapshotEnabled() {
+        propertyResolutionSnapshotEnabled = getPropertyBoolean(
+                ApolloClientSystemConsts.APOLLO_PROPERTY_RESOLUTION_SNAPSHOT_ENABLE,
+                ApolloClientSystemConsts.APOLLO_PROPERTY_RESOLUTION_SNAPSHOT_ENABLE_ENVIRONMENT_VARIABLES,
+                propertyResolutionSnapshotEnabled);
+    }
+
+    private void initBinaryCacheFileEnabled() {
+        binaryCacheFileEnabled = getPropertyBoolean(ApolloClientSystemConsts.APOLLO_CACHE_FILE_BINARY_ENABLE,
+                ApolloClientSystemConsts.APOLLO_CACHE_FILE_BINARY_ENABLE_ENVIRONMENT_VARIABLES,
+                binaryCacheFileEnabled);
+    }
+
     private boolean getPropertyBoolean(String propertyName, String envName, boolean defaultVal) {
         String enablePropertyNamesCache = System.getProperty(propertyName);
         if (Strings.isNullOrEmpty(enablePropertyNamesCache)) {
@@ -21,16 +21,18 @@ import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.google.common.base.Function;
-import com.google.common.io.CharStreams;
+import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -38,6 +40,7 @@ import java.util.Map;
 public class DefaultHttpClient implements HttpClient {
   private ConfigUtil m_configUtil;
   private static final Gson GSON = new Gson();
+  private static final String GZIP = "gzip";
 
   /**
    * Constructor.
@@ -56,9 +59,9 @@ public class DefaultHttpClient implements HttpClient {
    */
   @Override
   public <T> HttpResponse<T> doGet(HttpRequest httpRequest, final Class<T> responseType) {
-    Function<String, T> convertResponse = new Function<String, T>() {
+    Function<Reader, T> convertResponse = new Function<Reader, T>() {
       @Override
-      public T apply(String input) {
+      public T apply(Reader input) {
         return GSON.fromJson(input, responseType);
       }
     };
@@ -76,9 +79,9 @@ public class DefaultHttpClient implements HttpClient {
    */
   @Override
   public <T> HttpResponse<T> doGet(HttpRequest httpRequest, final Type responseType) {
-    Function<String, T> convertResponse = new Function<String, T>() {
+    Function<Reader, T> convertResponse = new Function<Reader, T>() {
       @Override
-      public T apply(String input) {
+      public T apply(Reader input) {
         return GSON.fromJson(input, responseType);
       }
     };
@@ -87,14 +90,16 @@ public class DefaultHttpClient implements HttpClient {
   }
 
   private <T> HttpResponse<T> doGetWithSerializeFunction(HttpRequest httpRequest,
-                                                         Function<String, T> serializeFunction) {
-    InputStreamReader isr = null;
-    InputStreamReader esr = null;
+                                                         Function<Reader, T> serializeFunction) {
+    InputStream is = null;
+    InputStream es = null;
     int statusCode;
     try {
       HttpURLConnection conn = (HttpURLConnection) new URL(httpRequest.getUrl()).openConnection();
 
       conn.setRequestMethod("GET");
+      // config services might compress large responses, see config-service.response.gzip.enabled
+      conn.setRequestProperty("Accept-Encoding", GZIP);
 
       Map<String, String> headers = httpRequest.getHeaders();
       if (headers != null && headers.size() > 0) {
@@ -119,23 +124,20 @@ public class DefaultHttpClient implements HttpClient {
       conn.connect();
 
       statusCode = conn.getResponseCode();
-      String response;
 
       try {
-        isr = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
-        response = CharStreams.toString(isr);
+        is = conn.getInputStream();
       } catch (IOException ex) {
         /**
          * according to https://docs.oracle.com/javase/7/docs/technotes/guides/net/http-keepalive.html,
          * we should clean up the connection by reading the response body so that the connection
          * could be reused.
          */
-        InputStream errorStream = conn.getErrorStream();
+        es = conn.getErrorStream();
 
-        if (errorStream != null) {
-          esr = new InputStreamReader(errorStream, StandardCharsets.UTF_8);
+        if (es != null) {
           try {
-            CharStreams.toString(esr);
+            ByteStreams.exhaust(es);
           } catch (IOException ioe) {
             //ignore
           }
@@ -150,10 +152,22 @@ public class DefaultHttpClient implements HttpClient {
       }
 
       if (statusCode == 200) {
-        return new HttpResponse<>(statusCode, serializeFunction.apply(response));
+        InputStream bodyStream = is;
+        if (GZIP.equalsIgnoreCase(conn.getContentEncoding())) {
+          bodyStream = new GZIPInputStream(bodyStream);
+        }
+        // closing the reader closes the whole chain, including the inflater of the gzip stream
+        try (Reader reader = new InputStreamReader(bodyStream, StandardCharsets.UTF_8)) {
+          // decode while reading instead of buffering the whole body as a string first
+          T body = serializeFunction.apply(reader);
+          // consume the rest so that the keep-alive connection could be reused
+          ByteStreams.exhaust(bodyStream);
+          return new HttpResponse<>(statusCode, body);
+        }
       }
 
       if (statusCode == 304) {
+        ByteStreams.exhaust(is);
         return new HttpResponse<>(statusCode, null);
       }
     } catch (ApolloConfigStatusCodeException ex) {
@@ -161,17 +175,17 @@ public class DefaultHttpClient implements HttpClient {
     } catch (Throwable ex) {
       throw new ApolloConfigException("Could not complete get operation", ex);
     } finally {
-      if (isr != null) {
+      if (is != null) {
         try {
-          isr.close();
+          is.close();
         } catch (IOException ex) {
           // ignore
         }
       }
 
-      if (esr != null) {
+      if (es != null) {
         try {
-          esr.close();
+          es.close();
         } catch (IOException ex) {
           // ignore
         }
@@ -46,18 +46,23 @@ public class YamlParser {
 
   private PropertiesFactory propertiesFactory = ApolloInjector.getInstance(PropertiesFactory.class);
 
+  //Yaml is not thread safe but could be reused to load multiple contents
+  private final ThreadLocal<Yaml> yaml = ThreadLocal.withInitial(this::createYaml);
+
   /**
    * Transform yaml content to properties
    */
   public Properties yamlToProperties(String yamlContent) {
-    Yaml yaml = createYaml();
-    final Properties result = propertiesFactory.getPropertiesInstance();
+    //flatten all the documents into an unsynchronized map first, then copy into the properties at once
+    final Map<String, Object> flattened = new LinkedHashMap<>();
     process(new MatchCallback() {
       @Override
-      public void process(Properties properties, Map<String, Object> map) {
-        result.putAll(properties);
+      public void process(Map<String, Object> map) {
+        buildFlattenedMap(flattened, map, null);
       }
-    }, yaml, yamlContent);
+    }, yaml.get(), yamlContent);
+    Properties result = propertiesFactory.getPropertiesInstance();
+    result.putAll(flattened);
     return result;
   }
 
@@ -114,22 +119,13 @@ public class YamlParser {
   }
 
   private boolean process(Map<String, Object> map, MatchCallback callback) {
-    Properties properties = propertiesFactory.getPropertiesInstance();
-    properties.putAll(getFlattenedMap(map));
-
     if (logger.isDebugEnabled()) {
       logger.debug("Merging document (no matchers set): " + map);
     }
-    callback.process(properties, map);
+    callback.process(map);
     return true;
   }
 
-  private Map<String, Object> getFlattenedMap(Map<String, Object> source) {
-    Map<String, Object> result = new LinkedHashMap<>();
-    buildFlattenedMap(result, source, null);
-    return result;
-  }
-
   private void buildFlattenedMap(Map<String, Object> result, Map<String, Object> source, String path) {
     for (Map.Entry<String, Object> entry : source.entrySet()) {
       String key = entry.getKey();
@@ -163,7 +159,7 @@ public class YamlParser {
   }
 
   private interface MatchCallback {
-    void process(Properties properties, Map<String, Object> map);
+    void process(Map<String, Object> map);
   }
 
 }
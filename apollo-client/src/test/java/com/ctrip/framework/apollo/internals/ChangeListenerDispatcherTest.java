@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeListenerDispatcherTest {
+  private ChangeListenerDispatcher changeListenerDispatcher;
+  private String someNamespace;
+
+  @Before
+  public void setUp() throws Exception {
+    someNamespace = "someNamespace";
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    changeListenerDispatcher = new ChangeListenerDispatcher();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    MockInjector.reset();
+  }
+
+  @Test
+  public void testDispatchInOrder() throws Exception {
+    Object someListener = new Object();
+    int notifications = 100;
+    List<Integer> notified = Collections.synchronizedList(Lists.newArrayList());
+    CountDownLatch latch = new CountDownLatch(notifications);
+
+    for (int i = 0; i < notifications; i++) {
+      int index = i;
+      changeListenerDispatcher.dispatch(someNamespace, someListener, () -> {
+        notified.add(index);
+        latch.countDown();
+      });
+    }
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < notifications; i++) {
+      assertEquals(i, notified.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void testSlowListenerNotBlockingOthers() throws Exception {
+    Object someListener = new Object();
+    Object anotherListener = new Object();
+    CountDownLatch blocker = new CountDownLatch(1);
+    CountDownLatch anotherNotified = new CountDownLatch(1);
+
+    changeListenerDispatcher.dispatch(someNamespace, someListener, () -> {
+      try {
+        blocker.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    changeListenerDispatcher.dispatch(someNamespace, anotherListener, anotherNotified::countDown);
+
+    try {
+      assertTrue(anotherNotified.await(5, TimeUnit.SECONDS));
+    } finally {
+      blocker.countDown();
+    }
+  }
+
+  @Test
+  public void testDispatchAfterFailure() throws Exception {
+    Object someListener = new Object();
+    CountDownLatch notified = new CountDownLatch(1);
+
+    changeListenerDispatcher.dispatch(someNamespace, someListener, () -> {
+      throw new RuntimeException("some exception");
+    });
+    changeListenerDispatcher.dispatch(someNamespace, someListener, notified::countDown);
+
+    assertTrue(notified.await(5, TimeUnit.SECONDS));
+  }
+
+  public static class MockConfigUtil extends ConfigUtil {
+    @Override
+    public int getChangeListenerThreads() {
+      return 2;
+    }
+  }
+}
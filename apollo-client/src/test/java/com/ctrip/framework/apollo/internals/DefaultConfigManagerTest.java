@@ -22,8 +22,12 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
+import com.google.common.collect.Lists;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -69,6 +73,40 @@ public class DefaultConfigManagerTest {
     assertEquals(anotherNamespace + ":" + someKey, anotherConfig.getProperty(someKey, null));
   }
 
+  @Test
+  public void testPreloadConfigs() throws Exception {
+    String someNamespace = "someName";
+    String anotherNamespace = "anotherName";
+    String yetAnotherNamespace = "yetAnotherName";
+    String someKey = "someKey";
+    final ConcurrentMap<String, AtomicInteger> createTimes = new ConcurrentHashMap<>();
+
+    MockInjector.setInstance(ConfigFactoryManager.class, new MockConfigFactoryManager() {
+      @Override
+      public ConfigFactory getFactory(String namespace) {
+        createTimes.computeIfAbsent(namespace, key -> new AtomicInteger()).incrementAndGet();
+        return super.getFactory(namespace);
+      }
+    });
+    defaultConfigManager = new DefaultConfigManager();
+
+    defaultConfigManager.preloadConfigs(
+        Lists.newArrayList(someNamespace, anotherNamespace, someNamespace, yetAnotherNamespace));
+
+    Config config = defaultConfigManager.getConfig(someNamespace);
+    Config anotherConfig = defaultConfigManager.getConfig(anotherNamespace);
+    Config yetAnotherConfig = defaultConfigManager.getConfig(yetAnotherNamespace);
+
+    assertEquals(someNamespace + ":" + someKey, config.getProperty(someKey, null));
+    assertEquals(anotherNamespace + ":" + someKey, anotherConfig.getProperty(someKey, null));
+    assertEquals(yetAnotherNamespace + ":" + someKey, yetAnotherConfig.getProperty(someKey, null));
+
+    assertEquals(3, createTimes.size());
+    assertEquals(1, createTimes.get(someNamespace).get());
+    assertEquals(1, createTimes.get(anotherNamespace).get());
+    assertEquals(1, createTimes.get(yetAnotherNamespace).get());
+  }
+
   @Test
   public void testGetConfigMultipleTimesWithSameNamespace() throws Exception {
     String someNamespace = "someName";
@@ -16,12 +16,15 @@
  */
 package com.ctrip.framework.apollo.internals;
 
-import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -44,7 +47,6 @@ import java.util.concurrent.TimeUnit;
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
-import org.awaitility.core.ThrowingRunnable;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -161,6 +163,102 @@ public class DefaultConfigTest {
     assertEquals(someSourceType, defaultConfig.getSourceType());
   }
 
+  @Test
+  public void testGetIntPropertyWithResolutionSnapshotRefreshed() throws Exception {
+    String someKey = "someKey";
+    String anotherKey = "anotherKey";
+
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtilWithResolutionSnapshot());
+
+    System.setProperty(someKey, "1");
+
+    someProperties = new Properties();
+    someProperties.setProperty(anotherKey, "someValue");
+    when(configRepository.getConfig()).thenReturn(someProperties);
+
+    DefaultConfig defaultConfig = new DefaultConfig(someNamespace, configRepository);
+
+    Integer someValue = defaultConfig.getIntProperty(someKey, null);
+
+    //the system property is only captured by the next snapshot, which is not a change of the repository
+    System.setProperty(someKey, "2");
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(anotherKey, "anotherValue");
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties);
+
+    Integer anotherValue = defaultConfig.getIntProperty(someKey, null);
+
+    //clean up
+    System.clearProperty(someKey);
+
+    assertEquals(1, (int) someValue);
+    assertEquals(2, (int) anotherValue);
+  }
+
+  @Test
+  public void testGetPropertyWithResolutionSnapshot() throws Exception {
+    String someKey = "someKey";
+    String someSystemPropertyValue = "system-property-value";
+
+    String anotherKey = "anotherKey";
+    String someLocalFileValue = "local-file-value";
+    String anotherLocalFileValue = "another-local-file-value";
+
+    String lastKey = "lastKey";
+    String someResourceValue = "resource-value";
+
+    String someLaterKey = "someLaterKey";
+    String someLaterValue = "later-value";
+
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtilWithResolutionSnapshot());
+
+    //set up system property
+    System.setProperty(someKey, someSystemPropertyValue);
+
+    //set up config repo
+    someProperties = new Properties();
+    someProperties.setProperty(someKey, someLocalFileValue);
+    someProperties.setProperty(anotherKey, someLocalFileValue);
+    when(configRepository.getConfig()).thenReturn(someProperties);
+
+    //set up resource file
+    File resourceFile = new File(someResourceDir, someNamespace + ".properties");
+    Files.write(someKey + "=" + someResourceValue, resourceFile, Charsets.UTF_8);
+    Files.append(System.getProperty("line.separator"), resourceFile, Charsets.UTF_8);
+    Files.append(lastKey + "=" + someResourceValue, resourceFile, Charsets.UTF_8);
+
+    DefaultConfig defaultConfig =
+        new DefaultConfig(someNamespace, configRepository);
+
+    System.setProperty(someLaterKey, someLaterValue);
+
+    String someKeyValue = defaultConfig.getProperty(someKey, null);
+    String anotherKeyValue = defaultConfig.getProperty(anotherKey, null);
+    String lastKeyValue = defaultConfig.getProperty(lastKey, null);
+    String someLaterKeyValue = defaultConfig.getProperty(someLaterKey, null);
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(someKey, someLocalFileValue);
+    anotherProperties.setProperty(anotherKey, anotherLocalFileValue);
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties);
+
+    String anotherKeyNewValue = defaultConfig.getProperty(anotherKey, null);
+    String someLaterKeyNewValue = defaultConfig.getProperty(someLaterKey, null);
+
+    //clean up
+    System.clearProperty(someKey);
+    System.clearProperty(someLaterKey);
+
+    assertEquals(someSystemPropertyValue, someKeyValue);
+    assertEquals(someLocalFileValue, anotherKeyValue);
+    assertEquals(someResourceValue, lastKeyValue);
+    //system properties set later are only visible after the next change
+    assertNull(someLaterKeyValue);
+    assertEquals(anotherLocalFileValue, anotherKeyNewValue);
+    assertEquals(someLaterValue, someLaterKeyNewValue);
+  }
+
   @Test
   public void testGetIntProperty() throws Exception {
     String someStringKey = "someStringKey";
@@ -232,6 +330,71 @@ public class DefaultConfigTest {
     assertEquals(anotherValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
   }
 
+  @Test
+  public void testGetIntPropertyMultipleTimesWithOtherPropertyChanges() throws Exception {
+    String someKey = "someKey";
+    Integer someValue = 2;
+
+    String anotherKey = "anotherKey";
+    Integer anotherValue = 3;
+    Integer yetAnotherValue = 4;
+
+    Integer someDefaultValue = -1;
+
+    //set up config repo
+    someProperties = new Properties();
+    someProperties.setProperty(someKey, String.valueOf(someValue));
+    someProperties.setProperty(anotherKey, String.valueOf(anotherValue));
+    when(configRepository.getConfig()).thenReturn(someProperties);
+
+    DefaultConfig defaultConfig =
+        new DefaultConfig(someNamespace, configRepository);
+
+    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    assertEquals(anotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
+
+    Properties newProperties = spy(new Properties());
+    when(propertiesFactory.getPropertiesInstance()).thenReturn(newProperties);
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(someKey, String.valueOf(someValue));
+    anotherProperties.setProperty(anotherKey, String.valueOf(yetAnotherValue));
+
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties);
+    clearInvocations(newProperties);
+
+    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    assertEquals(yetAnotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
+    assertEquals(yetAnotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
+
+    verify(newProperties, never()).getProperty(someKey);
+    verify(newProperties, times(1)).getProperty(anotherKey);
+  }
+
+  @Test
+  public void testGetInt() throws Exception {
+    String someKey = "someKey";
+    int someValue = 2;
+
+    String someStringKey = "someStringKey";
+    String someStringValue = "someStringValue";
+
+    int someDefaultValue = -1;
+
+    //set up config repo
+    someProperties = new Properties();
+    someProperties.setProperty(someKey, String.valueOf(someValue));
+    someProperties.setProperty(someStringKey, someStringValue);
+    when(configRepository.getConfig()).thenReturn(someProperties);
+
+    DefaultConfig defaultConfig =
+        new DefaultConfig(someNamespace, configRepository);
+
+    assertEquals(someValue, defaultConfig.getInt(someKey, someDefaultValue));
+    assertEquals(someDefaultValue, defaultConfig.getInt(someStringKey, someDefaultValue));
+    assertEquals(someDefaultValue, defaultConfig.getInt("someNotExistingKey", someDefaultValue));
+  }
+
   @Test
   public void testGetIntPropertyMultipleTimesWithSmallCache() throws Exception {
     String someKey = "someKey";
@@ -258,14 +421,15 @@ public class DefaultConfigTest {
 
     verify(someProperties, times(1)).getProperty(someKey);
 
+    //the cache is full, so the value is not cached
     assertEquals(anotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
     assertEquals(anotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
 
-    verify(someProperties, times(1)).getProperty(anotherKey);
+    verify(someProperties, times(2)).getProperty(anotherKey);
 
     assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
 
-    verify(someProperties, times(2)).getProperty(someKey);
+    verify(someProperties, times(1)).getProperty(someKey);
   }
 
   @Test
@@ -290,15 +454,12 @@ public class DefaultConfigTest {
 
     verify(someProperties, times(1)).getProperty(someKey);
 
-    await().atMost(500, TimeUnit.MILLISECONDS).untilAsserted(new ThrowingRunnable() {
-      @Override
-      public void run() throws Throwable {
-        assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
-        assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    TimeUnit.MILLISECONDS.sleep(100);
 
-        verify(someProperties, times(2)).getProperty(someKey);
-      }
-    });
+    //the cached values don't expire, they are only dropped when the config is changed
+    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+
+    verify(someProperties, times(1)).getProperty(someKey);
   }
 
   @Test
@@ -705,6 +866,66 @@ public class DefaultConfigTest {
     assertEquals(anotherSourceType, defaultConfig.getSourceType());
   }
 
+  @Test
+  public void testOnRepositoryChangeWithChangeSet() throws Exception {
+    String someKey = "someKey";
+    String someValue = "someValue";
+    String someNewValue = "someNewValue";
+    String anotherKey = "anotherKey";
+    String anotherValue = "anotherValue";
+    String anotherNewValue = "anotherNewValue";
+    String keyToBeDeleted = "keyToBeDeleted";
+    String newKey = "newKey";
+    String someContentHash = "someContentHash";
+    String anotherContentHash = "anotherContentHash";
+
+    //set up config repo
+    someProperties = new Properties();
+    someProperties.putAll(ImmutableMap.of(someKey, someValue, anotherKey, anotherValue, keyToBeDeleted, someValue));
+    when(configRepository.getConfig()).thenReturn(someProperties);
+    when(configRepository.getContentHash()).thenReturn(someContentHash);
+
+    DefaultConfig defaultConfig =
+        new DefaultConfig(someNamespace, configRepository);
+
+    final SettableFuture<ConfigChangeEvent> configChangeFuture = SettableFuture.create();
+    ConfigChangeListener someListener = configChangeFuture::set;
+    defaultConfig.addChangeListener(someListener);
+
+    Properties newProperties = new Properties();
+    newProperties.putAll(ImmutableMap.of(someKey, someNewValue, anotherKey, anotherValue, newKey, someValue));
+
+    defaultConfig.onRepositoryChange(someNamespace, newProperties, new RepositoryChangeSet(someContentHash,
+        anotherContentHash, Sets.newHashSet(someKey, keyToBeDeleted, newKey)));
+
+    ConfigChangeEvent changeEvent = configChangeFuture.get(500, TimeUnit.MILLISECONDS);
+
+    assertEquals(Sets.newHashSet(someKey, keyToBeDeleted, newKey), changeEvent.changedKeys());
+    assertEquals(PropertyChangeType.MODIFIED, changeEvent.getChange(someKey).getChangeType());
+    assertEquals(someNewValue, changeEvent.getChange(someKey).getNewValue());
+    assertEquals(PropertyChangeType.DELETED, changeEvent.getChange(keyToBeDeleted).getChangeType());
+    assertEquals(PropertyChangeType.ADDED, changeEvent.getChange(newKey).getChangeType());
+    assertEquals(someNewValue, defaultConfig.getProperty(someKey, null));
+    assertNull(defaultConfig.getProperty(keyToBeDeleted, null));
+
+    defaultConfig.removeChangeListener(someListener);
+    final SettableFuture<ConfigChangeEvent> anotherConfigChangeFuture = SettableFuture.create();
+    defaultConfig.addChangeListener(anotherConfigChangeFuture::set);
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.putAll(newProperties);
+    anotherProperties.setProperty(anotherKey, anotherNewValue);
+
+    //the change set is not based on the current properties, so all the keys are compared
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties, new RepositoryChangeSet("unknownContentHash",
+        "yetAnotherContentHash", Collections.<String>emptySet()));
+
+    ConfigChangeEvent anotherChangeEvent = anotherConfigChangeFuture.get(500, TimeUnit.MILLISECONDS);
+
+    assertEquals(Collections.singleton(anotherKey), anotherChangeEvent.changedKeys());
+    assertEquals(anotherNewValue, defaultConfig.getProperty(anotherKey, null));
+  }
+
   @Test
   public void testFireConfigChangeWithInterestedKeys() throws Exception {
     String someKeyChanged = "someKeyChanged";
@@ -984,6 +1205,13 @@ public class DefaultConfigTest {
     }
   }
 
+  public static class MockConfigUtilWithResolutionSnapshot extends MockConfigUtil {
+    @Override
+    public boolean isPropertyResolutionSnapshotEnabled() {
+      return true;
+    }
+  }
+
   public static class MockConfigUtilWithShortExpireTime extends MockConfigUtil {
     @Override
     public long getConfigCacheExpireTime() {
@@ -17,6 +17,9 @@
 package com.ctrip.framework.apollo.internals;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -209,6 +212,115 @@ public class LocalFileConfigRepositoryTest {
     assertEquals(anotherSourceType, localFileConfigRepository.getSourceType());
   }
 
+  @Test
+  public void testPersistAndLoadBinaryCacheFile() throws Exception {
+    String someContentHash = "someReleaseKey";
+    MockInjector.setInstance(ConfigUtil.class, new BinaryCacheFileMockConfigUtil());
+    when(upstreamRepo.getContentHash()).thenReturn(someContentHash);
+
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+    localRepo.setLocalCacheDir(someBaseDir, true);
+    localRepo.persistLocalCacheFile(someBaseDir, someNamespace);
+
+    assertTrue(localRepo.assembleLocalCacheSnapshotFile(someBaseDir, someNamespace).isFile());
+
+    LocalFileConfigRepository anotherLocalRepoWithNoFallback = new LocalFileConfigRepository(someNamespace);
+    anotherLocalRepoWithNoFallback.setLocalCacheDir(someBaseDir, true);
+
+    assertEquals(someProperties, anotherLocalRepoWithNoFallback.getConfig());
+    assertEquals(someContentHash, anotherLocalRepoWithNoFallback.getContentHash());
+    assertEquals(ConfigSourceType.LOCAL, anotherLocalRepoWithNoFallback.getSourceType());
+  }
+
+  @Test
+  public void testLoadCorruptedBinaryCacheFile() throws Exception {
+    String someKey = "someKey";
+    String someValue = "someValue";
+    MockInjector.setInstance(ConfigUtil.class, new BinaryCacheFileMockConfigUtil());
+
+    Properties properties = new Properties();
+    properties.setProperty(someKey, someValue);
+    createLocalCachePropertyFile(properties);
+
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace);
+    Files.write("corrupted", localRepo.assembleLocalCacheSnapshotFile(someBaseDir, someNamespace), Charsets.UTF_8);
+    localRepo.setLocalCacheDir(someBaseDir, true);
+
+    //falls back to the properties file
+    assertEquals(someValue, localRepo.getConfig().getProperty(someKey));
+    assertNull(localRepo.getContentHash());
+  }
+
+  @Test
+  public void testPersistRemovesCacheFileOfTheOtherFormat() throws Exception {
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(defaultKey, "anotherValue");
+    MockInjector.setInstance(ConfigUtil.class, new BinaryCacheFileMockConfigUtil());
+
+    LocalFileConfigRepository binaryLocalRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+    binaryLocalRepo.setLocalCacheDir(someBaseDir, true);
+    binaryLocalRepo.persistLocalCacheFile(someBaseDir, someNamespace);
+
+    assertTrue(binaryLocalRepo.assembleLocalCacheSnapshotFile(someBaseDir, someNamespace).isFile());
+
+    //the binary format is disabled
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    ConfigRepository anotherUpstreamRepo = mock(ConfigRepository.class);
+    when(anotherUpstreamRepo.getConfig()).thenReturn(anotherProperties);
+    when(anotherUpstreamRepo.getSourceType()).thenReturn(someSourceType);
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, anotherUpstreamRepo);
+    localRepo.setLocalCacheDir(someBaseDir, true);
+    localRepo.persistLocalCacheFile(someBaseDir, someNamespace);
+
+    assertTrue(localRepo.assembleLocalCacheFile(someBaseDir, someNamespace).isFile());
+    assertFalse(localRepo.assembleLocalCacheSnapshotFile(someBaseDir, someNamespace).exists());
+
+    //the binary format is enabled again
+    MockInjector.setInstance(ConfigUtil.class, new BinaryCacheFileMockConfigUtil());
+    LocalFileConfigRepository anotherLocalRepoWithNoFallback = new LocalFileConfigRepository(someNamespace);
+    anotherLocalRepoWithNoFallback.setLocalCacheDir(someBaseDir, true);
+
+    assertEquals(anotherProperties, anotherLocalRepoWithNoFallback.getConfig());
+  }
+
+  @Test
+  public void testLoadBinaryCacheFileAfterBinaryFormatDisabled() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new BinaryCacheFileMockConfigUtil());
+    LocalFileConfigRepository binaryLocalRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+    binaryLocalRepo.setLocalCacheDir(someBaseDir, true);
+    binaryLocalRepo.persistLocalCacheFile(someBaseDir, someNamespace);
+
+    assertFalse(binaryLocalRepo.assembleLocalCacheFile(someBaseDir, someNamespace).exists());
+
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    LocalFileConfigRepository localRepoWithNoFallback = new LocalFileConfigRepository(someNamespace);
+    localRepoWithNoFallback.setLocalCacheDir(someBaseDir, true);
+
+    assertEquals(someProperties, localRepoWithNoFallback.getConfig());
+  }
+
+  @Test
+  public void testPersistOverwritesTempFileLeftBehind() throws Exception {
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+    localRepo.setLocalCacheDir(someBaseDir, true);
+    File file = localRepo.assembleLocalCacheFile(someBaseDir, someNamespace);
+    File tempFile = new File(someBaseDir, file.getName() + ".tmp");
+    Files.write("left by a crash", tempFile, Charsets.UTF_8);
+
+    localRepo.persistLocalCacheFile(someBaseDir, someNamespace);
+
+    assertTrue(file.isFile());
+    assertFalse(tempFile.exists());
+    assertEquals(1, someBaseDir.listFiles().length);
+  }
+
+  public static class BinaryCacheFileMockConfigUtil extends MockConfigUtil {
+    @Override
+    public boolean isBinaryCacheFileEnabled() {
+      return true;
+    }
+  }
+
   public static class MockConfigUtil extends ConfigUtil {
     @Override
     public String getAppId() {
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.http.HttpClient;
+import com.ctrip.framework.apollo.util.http.HttpRequest;
+import com.ctrip.framework.apollo.util.http.HttpResponse;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RemoteConfigBatchLoaderTest {
+  private RemoteConfigBatchLoader remoteConfigBatchLoader;
+  @Mock
+  private HttpClient httpClient;
+  @Mock
+  private ConfigServiceLocator configServiceLocator;
+  @Mock
+  private HttpResponse<Map<String, ApolloConfig>> someResponse;
+
+  private static String someAppId;
+  private static String someCluster;
+  private String someServerUrl;
+  private String someNamespace;
+  private String anotherNamespace;
+
+  @Before
+  public void setUp() throws Exception {
+    someAppId = "someAppId";
+    someCluster = "someCluster";
+    someServerUrl = "http://someServer";
+    someNamespace = "someNamespace";
+    anotherNamespace = "anotherNamespace";
+
+    ServiceDTO serviceDTO = mock(ServiceDTO.class);
+    when(serviceDTO.getHomepageUrl()).thenReturn(someServerUrl);
+    when(configServiceLocator.getConfigServices()).thenReturn(Lists.newArrayList(serviceDTO));
+
+    MockInjector.setInstance(HttpClient.class, httpClient);
+    MockInjector.setInstance(ConfigServiceLocator.class, configServiceLocator);
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+
+    remoteConfigBatchLoader = new RemoteConfigBatchLoader();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    MockInjector.reset();
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    ApolloConfig someApolloConfig = new ApolloConfig(someAppId, someCluster, someNamespace, "someReleaseKey");
+    when(someResponse.getBody()).thenReturn(ImmutableMap.of(someNamespace, someApolloConfig));
+    when(httpClient.doGet(any(HttpRequest.class), any(Type.class))).thenReturn(someResponse);
+
+    Map<String, ApolloConfig> result = remoteConfigBatchLoader.load(
+        Sets.newLinkedHashSet(Lists.newArrayList(someNamespace, anotherNamespace)),
+        ImmutableMap.of(someNamespace, "someOldReleaseKey"), null, null);
+
+    assertEquals(1, result.size());
+    assertEquals(someApolloConfig, result.get(someNamespace));
+
+    ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+    verify(httpClient, times(1)).doGet(requestCaptor.capture(), any(Type.class));
+    String url = requestCaptor.getValue().getUrl();
+    assertTrue(url.startsWith(someServerUrl + "/configs/someAppId/someCluster?"));
+    assertTrue(url.contains("namespaces=someNamespace%2CanotherNamespace"));
+    assertTrue(url.contains("releaseKeys=someOldReleaseKey%2C-1"));
+  }
+
+  @Test
+  public void testLoadWithManyNamespaces() throws Exception {
+    when(httpClient.doGet(any(HttpRequest.class), any(Type.class))).thenReturn(someResponse);
+
+    remoteConfigBatchLoader.load(Sets.newHashSet(assembleNamespaces(30)), Collections.emptyMap(), null, null);
+
+    verify(httpClient, times(2)).doGet(any(HttpRequest.class), any(Type.class));
+  }
+
+  @Test(expected = ApolloConfigException.class)
+  public void testLoadWithServerError() throws Exception {
+    when(httpClient.doGet(any(HttpRequest.class), any(Type.class)))
+        .thenThrow(new ApolloConfigException("some error"));
+
+    remoteConfigBatchLoader.load(Sets.newHashSet(someNamespace), Collections.emptyMap(), null, null);
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    ApolloConfig someApolloConfig = new ApolloConfig(someAppId, someCluster, someNamespace, "someReleaseKey");
+    when(someResponse.getBody()).thenReturn(ImmutableMap.of(someNamespace, someApolloConfig));
+    when(httpClient.doGet(any(HttpRequest.class), any(Type.class))).thenReturn(someResponse);
+
+    remoteConfigBatchLoader.prefetch(Lists.newArrayList(someNamespace, anotherNamespace));
+
+    assertEquals(someApolloConfig, remoteConfigBatchLoader.takePrefetched(someNamespace));
+    assertNull(remoteConfigBatchLoader.takePrefetched(someNamespace));
+    assertNull(remoteConfigBatchLoader.takePrefetched(anotherNamespace));
+
+    ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+    verify(httpClient, times(1)).doGet(requestCaptor.capture(), any(Type.class));
+    assertFalse(requestCaptor.getValue().getUrl().contains("releaseKeys"));
+  }
+
+  private List<String> assembleNamespaces(int size) {
+    List<String> namespaces = Lists.newArrayList();
+    for (int i = 0; i < size; i++) {
+      namespaces.add("namespace" + i);
+    }
+    return namespaces;
+  }
+
+  public static class MockConfigUtil extends ConfigUtil {
+    @Override
+    public String getAppId() {
+      return someAppId;
+    }
+
+    @Override
+    public String getCluster() {
+      return someCluster;
+    }
+
+    @Override
+    public String getAccessKeySecret() {
+      return null;
+    }
+
+    @Override
+    public String getDataCenter() {
+      return null;
+    }
+  }
+}
@@ -34,7 +34,10 @@ import com.ctrip.framework.apollo.build.MockInjector;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
 import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
@@ -271,6 +274,38 @@ public class RemoteConfigRepositoryTest {
     remoteConfigLongPollService.stopLongPollingRefresh();
   }
 
+  @Test
+  public void testRepositoryChangeWithIncrementalSync() throws Exception {
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue", "anotherKey", "anotherValue");
+    ApolloConfig someApolloConfig = assembleApolloConfig(configurations);
+
+    when(someResponse.getStatusCode()).thenReturn(200);
+    when(someResponse.getBody()).thenReturn(someApolloConfig);
+
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+
+    ApolloConfig incrementalApolloConfig = new ApolloConfig("appId", "cluster", someNamespace, "2");
+    incrementalApolloConfig.setConfigSyncType(ConfigSyncType.INCREMENTAL_SYNC);
+    incrementalApolloConfig.setConfigurationChanges(Lists.newArrayList(
+        new ConfigurationChange("someKey", "someNewValue", ConfigurationChangeType.MODIFIED),
+        new ConfigurationChange("anotherKey", null, ConfigurationChangeType.DELETED),
+        new ConfigurationChange("newKey", "newValue", ConfigurationChangeType.ADDED)));
+
+    when(someResponse.getBody()).thenReturn(incrementalApolloConfig);
+
+    remoteConfigRepository.sync();
+
+    assertEquals(ImmutableMap.of("someKey", "someNewValue", "newKey", "newValue"),
+        remoteConfigRepository.getConfig());
+
+    final ArgumentCaptor<HttpRequest> httpRequestArgumentCaptor = ArgumentCaptor
+        .forClass(HttpRequest.class);
+    verify(httpClient, atLeast(2)).doGet(httpRequestArgumentCaptor.capture(), eq(ApolloConfig.class));
+    assertTrue(httpRequestArgumentCaptor.getValue().getUrl().contains("incrementalSync=true"));
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+  }
+
   @Test
   public void testLongPollingRefresh() throws Exception {
     Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
@@ -421,6 +456,11 @@ public class RemoteConfigRepositoryTest {
     public long getLongPollingInitialDelayInMills() {
       return 0;
     }
+
+    @Override
+    public boolean isIncrementalSyncEnabled() {
+      return true;
+    }
   }
 
   public static class MockHttpClient implements HttpClient {
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TypedValueCacheTest {
+  private Object someValueType;
+  private Object anotherValueType;
+  private String someKey;
+  private String anotherKey;
+
+  @Before
+  public void setUp() throws Exception {
+    someValueType = new Object();
+    anotherValueType = new Object();
+    someKey = "someKey";
+    anotherKey = "anotherKey";
+  }
+
+  @Test
+  public void testGetAndPut() throws Exception {
+    TypedValueCache typedValueCache = new TypedValueCache(10);
+
+    assertNull(typedValueCache.get(someValueType, someKey));
+
+    typedValueCache.put(someValueType, someKey, 1);
+    typedValueCache.put(anotherValueType, someKey, 2L);
+
+    assertEquals(1, (int) typedValueCache.<Integer>get(someValueType, someKey));
+    assertEquals(2L, (long) typedValueCache.<Long>get(anotherValueType, someKey));
+    assertNull(typedValueCache.get(someValueType, anotherKey));
+  }
+
+  @Test
+  public void testStopPuttingWhenFull() throws Exception {
+    TypedValueCache typedValueCache = new TypedValueCache(2);
+    String yetAnotherKey = "yetAnotherKey";
+
+    typedValueCache.put(someValueType, someKey, 1);
+    typedValueCache.put(anotherValueType, anotherKey, 2L);
+    typedValueCache.put(someValueType, yetAnotherKey, 3);
+
+    assertEquals(1, (int) typedValueCache.<Integer>get(someValueType, someKey));
+    assertEquals(2L, (long) typedValueCache.<Long>get(anotherValueType, anotherKey));
+    assertNull(typedValueCache.get(someValueType, yetAnotherKey));
+  }
+
+  @Test
+  public void testCopyWithoutFreesTheChangedKeys() throws Exception {
+    TypedValueCache typedValueCache = new TypedValueCache(2);
+    String yetAnotherKey = "yetAnotherKey";
+
+    typedValueCache.put(someValueType, someKey, 1);
+    typedValueCache.put(someValueType, anotherKey, 2);
+
+    TypedValueCache copy = typedValueCache.copyWithout(Sets.newHashSet(anotherKey));
+    copy.put(someValueType, yetAnotherKey, 3);
+
+    assertEquals(3, (int) copy.<Integer>get(someValueType, yetAnotherKey));
+  }
+
+  @Test
+  public void testCopyWithout() throws Exception {
+    TypedValueCache typedValueCache = new TypedValueCache(10);
+
+    typedValueCache.put(someValueType, someKey, 1);
+    typedValueCache.put(someValueType, anotherKey, 2);
+    typedValueCache.put(anotherValueType, anotherKey, 3L);
+
+    TypedValueCache copy = typedValueCache.copyWithout(Sets.newHashSet(anotherKey));
+
+    assertEquals(1, (int) copy.<Integer>get(someValueType, someKey));
+    assertNull(copy.get(someValueType, anotherKey));
+    assertNull(copy.get(anotherValueType, anotherKey));
+
+    copy.put(someValueType, anotherKey, 4);
+
+    //the original cache is not affected
+    assertEquals(2, (int) typedValueCache.<Integer>get(someValueType, anotherKey));
+  }
+}
@@ -17,6 +17,8 @@
 package com.ctrip.framework.apollo.internals;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.ctrip.framework.apollo.build.MockInjector;
@@ -90,6 +92,33 @@ public class YamlConfigFileTest {
     assertSame(yamlProperties, configFile.asProperties());
   }
 
+  @Test
+  public void testSkipTransformWhenContentUnchanged() throws Exception {
+    Properties someProperties = new Properties();
+    String key = ConfigConsts.CONFIG_FILE_CONTENT_KEY;
+    String someContent = "someKey: 'someValue'";
+    someProperties.setProperty(key, someContent);
+    someSourceType = ConfigSourceType.LOCAL;
+
+    Properties yamlProperties = new Properties();
+    yamlProperties.setProperty("someKey", "someValue");
+
+    when(configRepository.getConfig()).thenReturn(someProperties);
+    when(configRepository.getSourceType()).thenReturn(someSourceType);
+    when(yamlParser.yamlToProperties(someContent)).thenReturn(yamlProperties);
+
+    YamlConfigFile configFile = new YamlConfigFile(someNamespace, configRepository);
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.putAll(someProperties);
+    anotherProperties.setProperty("someOtherKey", "someOtherValue");
+
+    configFile.onRepositoryChange(someNamespace, anotherProperties);
+
+    assertSame(yamlProperties, configFile.asProperties());
+    verify(yamlParser, times(1)).yamlToProperties(someContent);
+  }
+
   @Test
   public void testWhenHasContentWithOrder() throws Exception {
     when(propertiesFactory.getPropertiesInstance()).thenAnswer(new Answer<Properties>() {
@@ -18,6 +18,8 @@ package com.ctrip.framework.apollo.spring.config;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,6 +34,11 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.assertj.core.util.Arrays;
 import org.junit.Before;
 import org.junit.Test;
@@ -119,4 +126,72 @@ public class CachedCompositePropertySourceTest {
     assertSame(anotherSource, it.next());
     assertSame(configPropertySource, it.next());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGetPropertyFlattened() {
+    CachedCompositePropertySource flattenedSource = new CachedCompositePropertySource("flattenedSource", true);
+    ConfigPropertySource someSource = mock(ConfigPropertySource.class);
+    ConfigPropertySource anotherSource = mock(ConfigPropertySource.class);
+    final List<ConfigChangeListener> someListeners = new LinkedList<>();
+    Mockito.doAnswer(invocation -> someListeners.add(invocation.getArgument(0, ConfigChangeListener.class)))
+        .when(someSource).addChangeListener(any(ConfigChangeListener.class));
+    when(someSource.getPropertyNames()).thenReturn(Arrays.array("someKey", "sharedKey"));
+    when(anotherSource.getPropertyNames()).thenReturn(Arrays.array("sharedKey", "anotherKey"));
+    when(someSource.getProperty("someKey")).thenReturn("someValue", "someNewValue");
+    when(someSource.getProperty("sharedKey")).thenReturn("sharedValue");
+    when(anotherSource.getProperty("anotherKey")).thenReturn("anotherValue");
+    flattenedSource.addPropertySource(someSource);
+    flattenedSource.addPropertySource(anotherSource);
+
+    assertEquals("someValue", flattenedSource.getProperty("someKey"));
+    assertEquals("sharedValue", flattenedSource.getProperty("sharedKey"));
+    assertEquals("anotherValue", flattenedSource.getProperty("anotherKey"));
+    assertEquals("anotherValue", flattenedSource.getProperty("anotherKey"));
+    assertNull(flattenedSource.getProperty("missingKey"));
+    assertTrue(flattenedSource.containsProperty("anotherKey"));
+    assertFalse(flattenedSource.containsProperty("missingKey"));
+    // resolved once when flattened
+    verify(anotherSource, times(1)).getProperty("anotherKey");
+
+    someListeners.get(0).onChange(new ConfigChangeEvent(null, null));
+
+    assertEquals("someNewValue", flattenedSource.getProperty("someKey"));
+    verify(anotherSource, times(2)).getProperty("anotherKey");
+  }
+
+  @Test
+  public void testGetPropertyFlattenedWhileChanged() throws Exception {
+    CachedCompositePropertySource flattenedSource = new CachedCompositePropertySource("flattenedSource", true);
+    ConfigPropertySource someSource = mock(ConfigPropertySource.class);
+    final List<ConfigChangeListener> someListeners = new LinkedList<>();
+    Mockito.doAnswer(invocation -> someListeners.add(invocation.getArgument(0, ConfigChangeListener.class)))
+        .when(someSource).addChangeListener(any(ConfigChangeListener.class));
+    when(someSource.getPropertyNames()).thenReturn(Arrays.array("someKey"));
+    final CountDownLatch flattening = new CountDownLatch(1);
+    final CountDownLatch changed = new CountDownLatch(1);
+    when(someSource.getProperty("someKey")).thenAnswer(invocation -> {
+      if (flattening.getCount() > 0) {
+        flattening.countDown();
+        changed.await();
+        return "someValue";
+      }
+      return "someNewValue";
+    });
+    flattenedSource.addPropertySource(someSource);
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> lazyRead = executorService.submit(() -> flattenedSource.getProperty("someKey"));
+      assertTrue(flattening.await(5, TimeUnit.SECONDS));
+
+      someListeners.get(0).onChange(new ConfigChangeEvent(null, null));
+      changed.countDown();
+
+      assertEquals("someValue", lazyRead.get(5, TimeUnit.SECONDS));
+      // the map built before the change is not kept
+      assertEquals("someNewValue", flattenedSource.getProperty("someKey"));
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.util.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.ctrip.framework.apollo.BaseIntegrationTest;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultHttpClientTest extends BaseIntegrationTest {
+  private static final String SOME_PATH = "/configs/someAppId/default/application";
+
+  private DefaultHttpClient defaultHttpClient;
+  private ApolloConfig someApolloConfig;
+  private String someUrl;
+
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    defaultHttpClient = new DefaultHttpClient();
+
+    Map<String, String> someConfigurations = Maps.newHashMap();
+    someConfigurations.put("someKey", "someValue");
+    someConfigurations.put("anotherKey", "中文");
+    someApolloConfig = new ApolloConfig("someAppId", "default", "application", "someReleaseKey");
+    someApolloConfig.setConfigurations(someConfigurations);
+
+    someUrl = System.getProperty(ConfigConsts.APOLLO_META_KEY) + SOME_PATH;
+  }
+
+  @Test
+  public void testDoGet() throws Exception {
+    startServerWithHandlers(mockConfigServerHandler(HttpServletResponse.SC_OK, false));
+
+    HttpResponse<ApolloConfig> response = defaultHttpClient.doGet(new HttpRequest(someUrl), ApolloConfig.class);
+
+    assertEquals(HttpServletResponse.SC_OK, response.getStatusCode());
+    assertEquals(someApolloConfig.getReleaseKey(), response.getBody().getReleaseKey());
+    assertEquals(someApolloConfig.getConfigurations(), response.getBody().getConfigurations());
+  }
+
+  @Test
+  public void testDoGetWithGzipResponse() throws Exception {
+    startServerWithHandlers(mockConfigServerHandler(HttpServletResponse.SC_OK, true));
+
+    // several times, so the connections reused after the gzip streams are closed also work
+    for (int i = 0; i < 3; i++) {
+      HttpResponse<ApolloConfig> response = defaultHttpClient.doGet(new HttpRequest(someUrl),
+          ApolloConfig.class);
+
+      assertEquals(HttpServletResponse.SC_OK, response.getStatusCode());
+      assertEquals(someApolloConfig.getReleaseKey(), response.getBody().getReleaseKey());
+      assertEquals(someApolloConfig.getConfigurations(), response.getBody().getConfigurations());
+    }
+  }
+
+  @Test
+  public void testDoGetWithNotModified() throws Exception {
+    startServerWithHandlers(mockConfigServerHandler(HttpServletResponse.SC_NOT_MODIFIED, false));
+
+    HttpResponse<ApolloConfig> response = defaultHttpClient.doGet(new HttpRequest(someUrl), ApolloConfig.class);
+
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatusCode());
+    assertNull(response.getBody());
+  }
+
+  @Test
+  public void testDoGetWithNotFound() throws Exception {
+    startServerWithHandlers(mockConfigServerHandler(HttpServletResponse.SC_NOT_FOUND, false));
+
+    try {
+      defaultHttpClient.doGet(new HttpRequest(someUrl), ApolloConfig.class);
+      fail("should throw the status code exception");
+    } catch (ApolloConfigStatusCodeException ex) {
+      assertEquals(HttpServletResponse.SC_NOT_FOUND, ex.getStatusCode());
+    }
+  }
+
+  private ContextHandler mockConfigServerHandler(final int statusCode, final boolean gzip) {
+    ContextHandler context = new ContextHandler(SOME_PATH);
+    context.setHandler(new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+          HttpServletResponse response) throws IOException {
+        response.setStatus(statusCode);
+        if (statusCode == HttpServletResponse.SC_OK) {
+          response.setContentType("application/json;charset=UTF-8");
+          byte[] body = gson.toJson(someApolloConfig).getBytes(StandardCharsets.UTF_8);
+          String acceptEncoding = request.getHeader("Accept-Encoding");
+          if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            try (OutputStream out = new GZIPOutputStream(response.getOutputStream())) {
+              out.write(body);
+            }
+          } else {
+            response.getOutputStream().write(body);
+          }
+        }
+        baseRequest.setHandled(true);
+      }
+    });
+    return context;
+  }
+}
@@ -19,19 +19,29 @@ package com.ctrip.framework.apollo.configservice;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.configservice.controller.ApolloConfigHttpMessageConverter;
 import com.ctrip.framework.apollo.configservice.controller.ConfigFileController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.configservice.controller.NotificationWebSocketHandler;
 import com.ctrip.framework.apollo.configservice.filter.ClientAuthenticationFilter;
+import com.ctrip.framework.apollo.configservice.filter.ReleaseMessagePushAuthenticationFilter;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.DefaultConfigService;
 import com.ctrip.framework.apollo.configservice.util.AccessKeyUtil;
+import java.util.List;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -75,28 +85,70 @@ public class ConfigServiceAutoConfiguration {
     return filterRegistrationBean;
   }
 
+  @Bean
+  public FilterRegistrationBean<ReleaseMessagePushAuthenticationFilter> releaseMessagePushAuthenticationFilter() {
+    FilterRegistrationBean<ReleaseMessagePushAuthenticationFilter> filterRegistrationBean = new FilterRegistrationBean<>();
+
+    filterRegistrationBean.setFilter(new ReleaseMessagePushAuthenticationFilter(bizConfig));
+    filterRegistrationBean.addUrlPatterns("/release-messages/*");
+
+    return filterRegistrationBean;
+  }
+
+  @Bean
+  public WebMvcConfigurer apolloConfigHttpMessageConverterConfigurer(ConfigResponseCache configResponseCache) {
+    return new WebMvcConfigurer() {
+      @Override
+      public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new ApolloConfigHttpMessageConverter(configResponseCache, bizConfig));
+      }
+    };
+  }
+
+  @Configuration
+  @EnableWebSocket
+  static class WebSocketConfiguration implements WebSocketConfigurer {
+    private final NotificationWebSocketHandler notificationWebSocketHandler;
+
+    public WebSocketConfiguration(final NotificationWebSocketHandler notificationWebSocketHandler) {
+      this.notificationWebSocketHandler = notificationWebSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+      //authenticated by the client authentication filter of /notifications/v2/*
+      registry.addHandler(notificationWebSocketHandler, NotificationWebSocketHandler.PATH);
+    }
+  }
+
   @Configuration
   static class MessageScannerConfiguration {
     private final NotificationController notificationController;
     private final ConfigFileController configFileController;
     private final NotificationControllerV2 notificationControllerV2;
+    private final NotificationWebSocketHandler notificationWebSocketHandler;
     private final GrayReleaseRulesHolder grayReleaseRulesHolder;
     private final ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
     private final ConfigService configService;
+    private final ConfigResponseCache configResponseCache;
 
     public MessageScannerConfiguration(
         final NotificationController notificationController,
         final ConfigFileController configFileController,
         final NotificationControllerV2 notificationControllerV2,
+        final NotificationWebSocketHandler notificationWebSocketHandler,
         final GrayReleaseRulesHolder grayReleaseRulesHolder,
         final ReleaseMessageServiceWithCache releaseMessageServiceWithCache,
-        final ConfigService configService) {
+        final ConfigService configService,
+        final ConfigResponseCache configResponseCache) {
       this.notificationController = notificationController;
       this.configFileController = configFileController;
       this.notificationControllerV2 = notificationControllerV2;
+      this.notificationWebSocketHandler = notificationWebSocketHandler;
       this.grayReleaseRulesHolder = grayReleaseRulesHolder;
       this.releaseMessageServiceWithCache = releaseMessageServiceWithCache;
       this.configService = configService;
+      this.configResponseCache = configResponseCache;
     }
 
     @Bean
@@ -104,13 +156,15 @@ public class ConfigServiceAutoConfiguration {
       ReleaseMessageScanner releaseMessageScanner = new ReleaseMessageScanner();
       //0. handle release message cache
       releaseMessageScanner.addMessageListener(releaseMessageServiceWithCache);
-      //1. handle gray release rule
+      //1. handle gray release rule, clients should not be notified before the rules are reloaded
       releaseMessageScanner.addMessageListener(grayReleaseRulesHolder);
       //2. handle server cache
       releaseMessageScanner.addMessageListener(configService);
       releaseMessageScanner.addMessageListener(configFileController);
+      releaseMessageScanner.addMessageListener(configResponseCache);
       //3. notify clients
       releaseMessageScanner.addMessageListener(notificationControllerV2);
+      releaseMessageScanner.addMessageListener(notificationWebSocketHandler);
       releaseMessageScanner.addMessageListener(notificationController);
       return releaseMessageScanner;
     }
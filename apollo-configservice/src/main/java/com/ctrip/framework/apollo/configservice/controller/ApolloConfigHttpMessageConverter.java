@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Writes {@link ApolloConfig} responses with the pre-encoded bytes kept in {@link ConfigResponseCache}, so the
+ * configurations of a release are only serialized once. The merged release key is sent as the ETag, which is
+ * honored in the If-None-Match header by {@link ConfigController}.
+ */
+public class ApolloConfigHttpMessageConverter extends AbstractHttpMessageConverter<ApolloConfig> {
+  private static final String GZIP = "gzip";
+
+  private final ConfigResponseCache configResponseCache;
+  private final BizConfig bizConfig;
+
+  public ApolloConfigHttpMessageConverter(final ConfigResponseCache configResponseCache,
+      final BizConfig bizConfig) {
+    super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON);
+    this.configResponseCache = configResponseCache;
+    this.bizConfig = bizConfig;
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return ApolloConfig.class == clazz;
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected ApolloConfig readInternal(Class<? extends ApolloConfig> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("ApolloConfig is not readable by this converter", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(ApolloConfig apolloConfig, HttpOutputMessage outputMessage) throws IOException {
+    boolean gzipEnabled = bizConfig.isConfigServiceResponseGzipEnabled();
+    boolean gzip = gzipEnabled && acceptsGzip();
+    byte[] body = configResponseCache.getEncodedConfig(apolloConfig, gzip);
+
+    HttpHeaders headers = outputMessage.getHeaders();
+    if (apolloConfig.getReleaseKey() != null) {
+      headers.setETag("\"" + apolloConfig.getReleaseKey() + "\"");
+    }
+    if (gzipEnabled) {
+      headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    if (gzip) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+    }
+    headers.setContentLength(body.length);
+    StreamUtils.copy(body, outputMessage.getBody());
+  }
+
+  private boolean acceptsGzip() {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (!(requestAttributes instanceof ServletRequestAttributes)) {
+      return false;
+    }
+    HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return !Strings.isNullOrEmpty(acceptEncoding) && acceptEncoding.toLowerCase().contains(GZIP);
+  }
+}
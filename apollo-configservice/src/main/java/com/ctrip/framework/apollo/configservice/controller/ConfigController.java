@@ -16,22 +16,29 @@
  */
 package com.ctrip.framework.apollo.configservice.controller;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -42,6 +49,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,10 +63,17 @@ import java.util.stream.Collectors;
 public class ConfigController {
   private static final Splitter X_FORWARDED_FOR_SPLITTER = Splitter.on(",").omitEmptyStrings()
       .trimResults();
+  private static final Splitter RELEASE_KEY_SPLITTER = Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+      .omitEmptyStrings();
+  private static final Splitter BATCH_PARAM_SPLITTER = Splitter.on(",").omitEmptyStrings().trimResults();
+  private static final String NO_CLIENT_SIDE_RELEASE_KEY = "-1";
+  private static final String WEAK_ETAG_PREFIX = "W/";
   private final ConfigService configService;
   private final AppNamespaceServiceWithCache appNamespaceService;
   private final NamespaceUtil namespaceUtil;
   private final InstanceConfigAuditUtil instanceConfigAuditUtil;
+  private final ConfigResponseCache configResponseCache;
+  private final BizConfig bizConfig;
   private final Gson gson;
 
   private static final Type configurationTypeReference = new TypeToken<Map<String, String>>() {
@@ -69,28 +84,100 @@ public class ConfigController {
       final AppNamespaceServiceWithCache appNamespaceService,
       final NamespaceUtil namespaceUtil,
       final InstanceConfigAuditUtil instanceConfigAuditUtil,
+      final ConfigResponseCache configResponseCache,
+      final BizConfig bizConfig,
       final Gson gson) {
     this.configService = configService;
     this.appNamespaceService = appNamespaceService;
     this.namespaceUtil = namespaceUtil;
     this.instanceConfigAuditUtil = instanceConfigAuditUtil;
+    this.configResponseCache = configResponseCache;
+    this.bizConfig = bizConfig;
     this.gson = gson;
   }
 
+  public ApolloConfig queryConfig(String appId, String clusterName, String namespace, String dataCenter,
+                                  String clientSideReleaseKey, String clientIp, String clientLabel,
+                                  String messagesAsString, HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+    return queryConfig(appId, clusterName, namespace, dataCenter, clientSideReleaseKey, clientIp, clientLabel,
+        messagesAsString, false, request, response);
+  }
+
+  /**
+   * @param incrementalSync whether the client could apply the changes relative to the release it holds, only
+   *                        honored when config-service.incremental.change.enabled is on
+   */
   @GetMapping(value = "/{appId}/{clusterName}/{namespace:.+}")
   public ApolloConfig queryConfig(@PathVariable String appId, @PathVariable String clusterName,
                                   @PathVariable String namespace,
                                   @RequestParam(value = "dataCenter", required = false) String dataCenter,
-                                  @RequestParam(value = "releaseKey", defaultValue = "-1") String clientSideReleaseKey,
+                                  @RequestParam(value = "releaseKey", defaultValue = NO_CLIENT_SIDE_RELEASE_KEY) String clientSideReleaseKey,
                                   @RequestParam(value = "ip", required = false) String clientIp,
                                   @RequestParam(value = "label", required = false) String clientLabel,
                                   @RequestParam(value = "messages", required = false) String messagesAsString,
+                                  @RequestParam(value = "incrementalSync", defaultValue = "false") boolean incrementalSync,
                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String originalNamespace = namespace;
-    //strip out .properties suffix
-    namespace = namespaceUtil.filterNamespaceName(namespace);
-    //fix the character case issue, such as FX.apollo <-> fx.apollo
-    namespace = namespaceUtil.normalizeNamespace(appId, namespace);
+    if (Strings.isNullOrEmpty(clientIp)) {
+      clientIp = tryToGetClientIp(request);
+    }
+
+    ApolloNotificationMessages clientMessages = transformMessages(messagesAsString);
+
+    if (NO_CLIENT_SIDE_RELEASE_KEY.equals(clientSideReleaseKey)) {
+      // the merged release key is sent as the ETag, see ApolloConfigHttpMessageConverter
+      String eTagReleaseKey = parseIfNoneMatch(request.getHeader(HttpHeaders.IF_NONE_MATCH));
+      if (eTagReleaseKey != null) {
+        clientSideReleaseKey = eTagReleaseKey;
+      }
+    }
+
+    ApolloConfig apolloConfig = loadApolloConfig(appId, clusterName, namespace, dataCenter, clientSideReleaseKey,
+        clientIp, clientLabel, clientMessages, incrementalSync);
+
+    if (apolloConfig == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+          String.format(
+              "Could not load configurations with appId: %s, clusterName: %s, namespace: %s",
+              appId, clusterName, namespace));
+      return null;
+    }
+
+    if (apolloConfig.getReleaseKey().equals(clientSideReleaseKey)) {
+      // Client side configuration is the same with server side, return 304
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return null;
+    }
+
+    return apolloConfig;
+  }
+
+  /**
+   * Query the configs of multiple namespaces in one request, public namespace fallback and gray release rules are
+   * applied the same way as {@link #queryConfig}.
+   *
+   * @param namespaces  the namespace names, separated by comma
+   * @param releaseKeys the client side release keys of the namespaces in the same order, -1 if not loaded yet
+   * @return the configs keyed by the requested namespace names, the ones not found are left out, and the ones not
+   * modified are returned with the client side release key and no configurations
+   */
+  @GetMapping(value = "/{appId}/{clusterName}")
+  public Map<String, ApolloConfig> queryConfigs(@PathVariable String appId, @PathVariable String clusterName,
+                                                @RequestParam(value = "namespaces") String namespaces,
+                                                @RequestParam(value = "releaseKeys", required = false) String releaseKeys,
+                                                @RequestParam(value = "dataCenter", required = false) String dataCenter,
+                                                @RequestParam(value = "ip", required = false) String clientIp,
+                                                @RequestParam(value = "label", required = false) String clientLabel,
+                                                @RequestParam(value = "messages", required = false) String messagesAsString,
+                                                @RequestParam(value = "incrementalSync", defaultValue = "false") boolean incrementalSync,
+                                                HttpServletRequest request) {
+    List<String> namespaceList = BATCH_PARAM_SPLITTER.splitToList(namespaces);
+    List<String> releaseKeyList = Strings.isNullOrEmpty(releaseKeys) ? Collections.emptyList() :
+        BATCH_PARAM_SPLITTER.splitToList(releaseKeys);
+    if (!releaseKeyList.isEmpty() && releaseKeyList.size() != namespaceList.size()) {
+      throw new BadRequestException("The size of release keys %s does not match the size of namespaces %s",
+          releaseKeyList.size(), namespaceList.size());
+    }
 
     if (Strings.isNullOrEmpty(clientIp)) {
       clientIp = tryToGetClientIp(request);
@@ -98,6 +185,32 @@ public class ConfigController {
 
     ApolloNotificationMessages clientMessages = transformMessages(messagesAsString);
 
+    Map<String, ApolloConfig> result = Maps.newLinkedHashMap();
+    for (int i = 0; i < namespaceList.size(); i++) {
+      String namespace = namespaceList.get(i);
+      String clientSideReleaseKey = releaseKeyList.isEmpty() ? NO_CLIENT_SIDE_RELEASE_KEY : releaseKeyList.get(i);
+      ApolloConfig apolloConfig = loadApolloConfig(appId, clusterName, namespace, dataCenter, clientSideReleaseKey,
+          clientIp, clientLabel, clientMessages, incrementalSync);
+      if (apolloConfig != null) {
+        result.put(namespace, apolloConfig);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * @return the config, or null if not found. If the config is not modified, only the release key is returned.
+   */
+  private ApolloConfig loadApolloConfig(String appId, String clusterName, String namespace, String dataCenter,
+      String clientSideReleaseKey, String clientIp, String clientLabel, ApolloNotificationMessages clientMessages,
+      boolean incrementalSync) {
+    String originalNamespace = namespace;
+    //strip out .properties suffix
+    namespace = namespaceUtil.filterNamespaceName(namespace);
+    //fix the character case issue, such as FX.apollo <-> fx.apollo
+    namespace = namespaceUtil.normalizeNamespace(appId, namespace);
+
     List<Release> releases = Lists.newLinkedList();
 
     String appClusterNameLoaded = clusterName;
@@ -122,10 +235,6 @@ public class ConfigController {
     }
 
     if (releases.isEmpty()) {
-      response.sendError(HttpServletResponse.SC_NOT_FOUND,
-          String.format(
-              "Could not load configurations with appId: %s, clusterName: %s, namespace: %s",
-              appId, clusterName, originalNamespace));
       Tracer.logEvent("Apollo.Config.NotFound",
           assembleKey(appId, clusterName, originalNamespace, dataCenter));
       return null;
@@ -137,16 +246,28 @@ public class ConfigController {
             .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
 
     if (mergedReleaseKey.equals(clientSideReleaseKey)) {
-      // Client side configuration is the same with server side, return 304
-      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
       Tracer.logEvent("Apollo.Config.NotModified",
           assembleKey(appId, appClusterNameLoaded, originalNamespace, dataCenter));
-      return null;
+      return new ApolloConfig(appId, appClusterNameLoaded, originalNamespace, mergedReleaseKey);
     }
 
     ApolloConfig apolloConfig = new ApolloConfig(appId, appClusterNameLoaded, originalNamespace,
         mergedReleaseKey);
-    apolloConfig.setConfigurations(mergeReleaseConfigurations(releases));
+    Map<String, String> configurations =
+        configResponseCache.getConfigurations(mergedReleaseKey, releases, this::mergeReleaseConfigurations);
+
+    List<ConfigurationChange> configurationChanges = null;
+    if (incrementalSync && bizConfig.isConfigServiceIncrementalChangeEnabled()) {
+      configurationChanges = findConfigurationChanges(clientSideReleaseKey, releases, mergedReleaseKey,
+          configurations);
+    }
+
+    if (configurationChanges != null) {
+      apolloConfig.setConfigSyncType(ConfigSyncType.INCREMENTAL_SYNC);
+      apolloConfig.setConfigurationChanges(configurationChanges);
+    } else {
+      apolloConfig.setConfigurations(configurations);
+    }
 
     Tracer.logEvent("Apollo.Config.Found", assembleKey(appId, appClusterNameLoaded,
         originalNamespace, dataCenter));
@@ -189,6 +310,51 @@ public class ConfigController {
         clientMessages);
   }
 
+  /**
+   * Calculate the changes from the releases held by the client, which are looked up by the client side release key
+   *
+   * @param releases the releases being served, the client side releases must be of the same app, cluster and
+   *                 namespace one by one
+   * @return the changes, or null if the client side releases could not be found or don't match and full sync is
+   * required
+   */
+  private List<ConfigurationChange> findConfigurationChanges(String clientSideReleaseKey, List<Release> releases,
+      String mergedReleaseKey, Map<String, String> configurations) {
+    if (Strings.isNullOrEmpty(clientSideReleaseKey) || NO_CLIENT_SIDE_RELEASE_KEY.equals(clientSideReleaseKey)) {
+      return null;
+    }
+
+    List<String> clientSideReleaseKeys = RELEASE_KEY_SPLITTER.splitToList(clientSideReleaseKey);
+    if (clientSideReleaseKeys.size() != releases.size()) {
+      return null;
+    }
+    Map<String, Release> releasesFound =
+        configService.findReleasesByReleaseKeys(Sets.newHashSet(clientSideReleaseKeys));
+
+    List<Release> clientSideReleases = Lists.newArrayListWithCapacity(clientSideReleaseKeys.size());
+    for (int i = 0; i < clientSideReleaseKeys.size(); i++) {
+      Release release = releasesFound.get(clientSideReleaseKeys.get(i));
+      // the release keys are sent by the client, so never diff against the releases of other apps or namespaces
+      if (release == null || !isSameNamespace(release, releases.get(i))) {
+        Tracer.logEvent("Apollo.Config.IncrementalSync.Mismatch", clientSideReleaseKeys.get(i));
+        return null;
+      }
+      clientSideReleases.add(release);
+    }
+
+    Map<String, String> clientSideConfigurations = configResponseCache.getConfigurations(clientSideReleaseKey,
+        clientSideReleases, this::mergeReleaseConfigurations);
+
+    return configResponseCache.getConfigurationChanges(clientSideReleaseKey, clientSideConfigurations,
+        mergedReleaseKey, configurations);
+  }
+
+  private boolean isSameNamespace(Release release, Release anotherRelease) {
+    return release.getAppId().equalsIgnoreCase(anotherRelease.getAppId())
+        && release.getClusterName().equalsIgnoreCase(anotherRelease.getClusterName())
+        && release.getNamespaceName().equalsIgnoreCase(anotherRelease.getNamespaceName());
+  }
+
   /**
    * Merge configurations of releases.
    * Release in lower index override those in higher index
@@ -222,6 +388,24 @@ public class ConfigController {
     }
   }
 
+  /**
+   * @return the release key in the If-None-Match header, or null if absent or not a single entity tag
+   */
+  private String parseIfNoneMatch(String ifNoneMatch) {
+    if (Strings.isNullOrEmpty(ifNoneMatch)) {
+      return null;
+    }
+    String eTag = ifNoneMatch.trim();
+    if (eTag.startsWith(WEAK_ETAG_PREFIX)) {
+      eTag = eTag.substring(WEAK_ETAG_PREFIX.length());
+    }
+    if (eTag.length() < 2 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+      return null;
+    }
+    eTag = eTag.substring(1, eTag.length() - 1);
+    return eTag.isEmpty() || eTag.contains("\"") ? null : eTag;
+  }
+
   private String tryToGetClientIp(HttpServletRequest request) {
     String forwardedFor = request.getHeader("X-FORWARDED-FOR");
     if (!Strings.isNullOrEmpty(forwardedFor)) {
@@ -24,21 +24,19 @@ import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.NotificationFanOutEngine;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.CaseInsensitiveShardedMultimap;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.slf4j.Logger;
@@ -58,9 +56,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -70,15 +65,15 @@ import java.util.function.Function;
 @RequestMapping("/notifications/v2")
 public class NotificationControllerV2 implements ReleaseMessageListener {
   private static final Logger logger = LoggerFactory.getLogger(NotificationControllerV2.class);
-  private final Multimap<String, DeferredResultWrapper> deferredResults =
-      Multimaps.synchronizedSetMultimap(TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+  private final CaseInsensitiveShardedMultimap<DeferredResultWrapper> deferredResults =
+      new CaseInsensitiveShardedMultimap<>();
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
   private static final Type notificationsTypeReference =
       new TypeToken<List<ApolloConfigNotification>>() {
       }.getType();
 
-  private final ExecutorService largeNotificationBatchExecutorService;
+  private final NotificationFanOutEngine largeNotificationFanOutEngine;
 
   private final WatchKeysUtil watchKeysUtil;
   private final ReleaseMessageServiceWithCache releaseMessageService;
@@ -95,8 +90,10 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       final NamespaceUtil namespaceUtil,
       final Gson gson,
       final BizConfig bizConfig) {
-    largeNotificationBatchExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create
-        ("NotificationControllerV2", true));
+    largeNotificationFanOutEngine = new NotificationFanOutEngine(
+        bizConfig.releaseMessageNotificationFanOutThreads(),
+        bizConfig::releaseMessageNotificationBatch,
+        bizConfig::releaseMessageNotificationBatchIntervalInMilli);
     this.watchKeysUtil = watchKeysUtil;
     this.releaseMessageService = releaseMessageService;
     this.entityManagerUtil = entityManagerUtil;
@@ -200,8 +197,8 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     return deferredResultWrapper.getResult();
   }
 
-  private Map<String, ApolloConfigNotification> filterNotifications(String appId,
-                                                                    List<ApolloConfigNotification> notifications) {
+  Map<String, ApolloConfigNotification> filterNotifications(String appId,
+                                                            List<ApolloConfigNotification> notifications) {
     Map<String, ApolloConfigNotification> filteredNotifications = Maps.newHashMap();
     for (ApolloConfigNotification notification : notifications) {
       if (Strings.isNullOrEmpty(notification.getNamespaceName())) {
@@ -226,10 +223,10 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     return filteredNotifications;
   }
 
-  private List<ApolloConfigNotification> getApolloConfigNotifications(Set<String> namespaces,
-                                                                      Map<String, Long> clientSideNotifications,
-                                                                      Multimap<String, String> watchedKeysMap,
-                                                                      List<ReleaseMessage> latestReleaseMessages) {
+  List<ApolloConfigNotification> getApolloConfigNotifications(Set<String> namespaces,
+                                                              Map<String, Long> clientSideNotifications,
+                                                              Multimap<String, String> watchedKeysMap,
+                                                              List<ReleaseMessage> latestReleaseMessages) {
     List<ApolloConfigNotification> newNotifications = Lists.newArrayList();
     if (!CollectionUtils.isEmpty(latestReleaseMessages)) {
       Map<String, Long> latestNotifications = Maps.newHashMap();
@@ -280,7 +277,7 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       return;
     }
 
-    //create a new list to avoid ConcurrentModificationException
+    //create a new list as the registered results are unregistered concurrently when completed
     List<DeferredResultWrapper> results = Lists.newArrayList(deferredResults.get(content));
 
     ApolloConfigNotification configNotification = new ApolloConfigNotification(changedNamespace, message.getId());
@@ -288,21 +285,11 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
 
     //do async notification if too many clients
     if (results.size() > bizConfig.releaseMessageNotificationBatch()) {
-      largeNotificationBatchExecutorService.submit(() -> {
-        logger.debug("Async notify {} clients for key {} with batch {}", results.size(), content,
-            bizConfig.releaseMessageNotificationBatch());
-        for (int i = 0; i < results.size(); i++) {
-          if (i > 0 && i % bizConfig.releaseMessageNotificationBatch() == 0) {
-            try {
-              TimeUnit.MILLISECONDS.sleep(bizConfig.releaseMessageNotificationBatchIntervalInMilli());
-            } catch (InterruptedException e) {
-              //ignore
-            }
-          }
-          logger.debug("Async notify {}", results.get(i));
-          results.get(i).setResult(configNotification);
-        }
-      });
+      List<Runnable> notifications = Lists.newArrayListWithCapacity(results.size());
+      for (DeferredResultWrapper result : results) {
+        notifications.add(() -> result.setResult(configNotification));
+      }
+      largeNotificationFanOutEngine.fanOut(content, notifications);
       return;
     }
 
@@ -314,7 +301,7 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     logger.debug("Notification completed");
   }
 
-  private static final Function<String, String> retrieveNamespaceFromReleaseMessage =
+  static final Function<String, String> retrieveNamespaceFromReleaseMessage =
       releaseMessage -> {
         if (Strings.isNullOrEmpty(releaseMessage)) {
           return null;
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.configservice.util.NotificationFanOutEngine;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.CaseInsensitiveShardedMultimap;
+import com.ctrip.framework.apollo.configservice.wrapper.WebSocketSessionWrapper;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Pushes the notifications of {@link NotificationControllerV2} over WebSocket, so that a client keeps one connection
+ * instead of reconnecting every long polling timeout.
+ *
+ * <p>The client connects with the {@code appId}, {@code cluster}, {@code dataCenter} and {@code ip} query parameters
+ * of long polling, then sends the same json list of {@link ApolloConfigNotification} as the {@code notifications}
+ * parameter, and may send the updated list again at any time. The notifications newer than the sent ones are pushed
+ * right away, the later ones are pushed once their release messages are received.</p>
+ */
+@Component
+public class NotificationWebSocketHandler extends TextWebSocketHandler implements ReleaseMessageListener {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationWebSocketHandler.class);
+  public static final String PATH = "/notifications/v2/ws";
+  //clients send a heartbeat every 30 seconds, so the dead connections are closed within 2 minutes
+  private static final long MAX_SESSION_IDLE_TIMEOUT_IN_MILLI = 2 * 60 * 1000;
+  private static final int SEND_TIME_LIMIT_IN_MILLI = 10 * 1000;
+  private static final int SEND_BUFFER_SIZE_LIMIT = 512 * 1024;
+  private static final Type notificationsTypeReference =
+      new TypeToken<List<ApolloConfigNotification>>() {
+      }.getType();
+
+  private final ConcurrentMap<String, WebSocketSessionWrapper> sessions = new ConcurrentHashMap<>();
+  private final CaseInsensitiveShardedMultimap<WebSocketSessionWrapper> subscriptions =
+      new CaseInsensitiveShardedMultimap<>();
+  private final NotificationFanOutEngine notificationFanOutEngine;
+
+  private final NotificationControllerV2 notificationControllerV2;
+  private final WatchKeysUtil watchKeysUtil;
+  private final ReleaseMessageServiceWithCache releaseMessageService;
+  private final Gson gson;
+
+  public NotificationWebSocketHandler(
+      final NotificationControllerV2 notificationControllerV2,
+      final WatchKeysUtil watchKeysUtil,
+      final ReleaseMessageServiceWithCache releaseMessageService,
+      final Gson gson,
+      final BizConfig bizConfig) {
+    notificationFanOutEngine = new NotificationFanOutEngine(
+        bizConfig.releaseMessageNotificationFanOutThreads(),
+        bizConfig::releaseMessageNotificationBatch,
+        bizConfig::releaseMessageNotificationBatchIntervalInMilli);
+    this.notificationControllerV2 = notificationControllerV2;
+    this.watchKeysUtil = watchKeysUtil;
+    this.releaseMessageService = releaseMessageService;
+    this.gson = gson;
+  }
+
+  @Override
+  public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+    MultiValueMap<String, String> queryParams = session.getUri() == null ? null :
+        UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+    String appId = queryParams == null ? null : decode(queryParams.getFirst("appId"));
+    String cluster = queryParams == null ? null : decode(queryParams.getFirst("cluster"));
+    if (Strings.isNullOrEmpty(appId) || Strings.isNullOrEmpty(cluster)) {
+      session.close(CloseStatus.BAD_DATA.withReason("appId and cluster are required"));
+      return;
+    }
+    String dataCenter = decode(queryParams.getFirst("dataCenter"));
+
+    if (session instanceof NativeWebSocketSession) {
+      javax.websocket.Session nativeSession =
+          ((NativeWebSocketSession) session).getNativeSession(javax.websocket.Session.class);
+      if (nativeSession != null) {
+        nativeSession.setMaxIdleTimeout(MAX_SESSION_IDLE_TIMEOUT_IN_MILLI);
+      }
+    }
+
+    sessions.put(session.getId(), new WebSocketSessionWrapper(session, SEND_TIME_LIMIT_IN_MILLI,
+        SEND_BUFFER_SIZE_LIMIT, appId, cluster, dataCenter));
+    Tracer.logEvent("Apollo.WebSocket.Connected", appId);
+  }
+
+  @Override
+  protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+    WebSocketSessionWrapper wrapper = sessions.get(session.getId());
+    if (wrapper == null) {
+      return;
+    }
+
+    List<ApolloConfigNotification> notifications = null;
+    try {
+      notifications = gson.fromJson(message.getPayload(), notificationsTypeReference);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+
+    Map<String, ApolloConfigNotification> filteredNotifications = CollectionUtils.isEmpty(notifications) ? null :
+        notificationControllerV2.filterNotifications(wrapper.getAppId(), notifications);
+
+    if (CollectionUtils.isEmpty(filteredNotifications)) {
+      wrapper.close(CloseStatus.BAD_DATA.withReason("Invalid format of notifications"));
+      return;
+    }
+
+    Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
+    Map<String, Long> clientSideNotifications = Maps.newHashMapWithExpectedSize(filteredNotifications.size());
+    Map<String, String> normalizedNamespaceNameToOriginalNamespaceName = Maps.newHashMap();
+
+    for (Map.Entry<String, ApolloConfigNotification> notificationEntry : filteredNotifications.entrySet()) {
+      String normalizedNamespace = notificationEntry.getKey();
+      ApolloConfigNotification notification = notificationEntry.getValue();
+      namespaces.add(normalizedNamespace);
+      clientSideNotifications.put(normalizedNamespace, notification.getNotificationId());
+      if (!Objects.equals(notification.getNamespaceName(), normalizedNamespace)) {
+        normalizedNamespaceNameToOriginalNamespaceName.put(normalizedNamespace, notification.getNamespaceName());
+      }
+    }
+
+    Multimap<String, String> watchedKeysMap = watchKeysUtil.assembleAllWatchKeys(wrapper.getAppId(),
+        wrapper.getCluster(), namespaces, wrapper.getDataCenter());
+    Set<String> watchedKeys = Sets.newHashSet(watchedKeysMap.values());
+
+    //register before the check, so that no release message is missed in between
+    Set<String> previousWatchedKeys = wrapper.subscribe(watchedKeys, normalizedNamespaceNameToOriginalNamespaceName);
+    for (String key : watchedKeys) {
+      subscriptions.put(key, wrapper);
+    }
+    for (String key : previousWatchedKeys) {
+      if (!watchedKeys.contains(key)) {
+        subscriptions.remove(key, wrapper);
+      }
+    }
+    if (!sessions.containsKey(session.getId())) {
+      //closed concurrently
+      unsubscribe(wrapper);
+      return;
+    }
+
+    logger.debug("Listening {} over WebSocket from appId: {}, cluster: {}, namespace: {}, datacenter: {}",
+        watchedKeys, wrapper.getAppId(), wrapper.getCluster(), namespaces, wrapper.getDataCenter());
+
+    List<ReleaseMessage> latestReleaseMessages =
+        releaseMessageService.findLatestReleaseMessagesGroupByMessages(watchedKeys);
+
+    List<ApolloConfigNotification> newNotifications = notificationControllerV2
+        .getApolloConfigNotifications(namespaces, clientSideNotifications, watchedKeysMap, latestReleaseMessages);
+
+    if (!CollectionUtils.isEmpty(newNotifications)) {
+      wrapper.send(newNotifications);
+    }
+  }
+
+  @Override
+  public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+    logger.debug("WebSocket transport error, session: {}", session.getId(), exception);
+    session.close(CloseStatus.SERVER_ERROR);
+  }
+
+  @Override
+  public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+    WebSocketSessionWrapper wrapper = sessions.remove(session.getId());
+    if (wrapper != null) {
+      unsubscribe(wrapper);
+    }
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String content = message.getMessage();
+    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+
+    String changedNamespace = NotificationControllerV2.retrieveNamespaceFromReleaseMessage.apply(content);
+    if (Strings.isNullOrEmpty(changedNamespace) || !subscriptions.containsKey(content)) {
+      return;
+    }
+
+    //create a new list as the subscriptions are changed concurrently
+    List<WebSocketSessionWrapper> wrappers = Lists.newArrayList(subscriptions.get(content));
+
+    ApolloConfigNotification configNotification = new ApolloConfigNotification(changedNamespace, message.getId());
+    configNotification.addMessage(content, message.getId());
+
+    //always notify asynchronously, as the first send to a stalled client blocks until the send time limit, which
+    //should never block the release message scanner
+    List<Runnable> notifications = Lists.newArrayListWithCapacity(wrappers.size());
+    for (WebSocketSessionWrapper wrapper : wrappers) {
+      notifications.add(() -> wrapper.send(configNotification));
+    }
+    notificationFanOutEngine.fanOut(content, notifications);
+  }
+
+  private void unsubscribe(WebSocketSessionWrapper wrapper) {
+    for (String key : wrapper.getWatchedKeys()) {
+      subscriptions.remove(key, wrapper);
+    }
+  }
+
+  private static String decode(String value) {
+    return value == null ? null : UriUtils.decode(value, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Receives the release messages pushed by admin services, see
+ * {@link com.ctrip.framework.apollo.biz.message.ReleaseMessagePusher}
+ */
+@RestController
+@RequestMapping("/release-messages")
+public class ReleaseMessagePushController {
+  private final ReleaseMessageScanner releaseMessageScanner;
+
+  public ReleaseMessagePushController(final ReleaseMessageScanner releaseMessageScanner) {
+    this.releaseMessageScanner = releaseMessageScanner;
+  }
+
+  /**
+   * The message itself is always loaded from database, so that the ordering and the gap handling of the scanner are
+   * kept
+   */
+  @PostMapping("/push")
+  public void onReleaseMessagePushed(@RequestParam("id") long id) {
+    Tracer.logEvent("Apollo.ReleaseMessage.Pushed", String.valueOf(id));
+    releaseMessageScanner.scanNow();
+  }
+}
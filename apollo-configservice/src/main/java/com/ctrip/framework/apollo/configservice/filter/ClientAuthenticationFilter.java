@@ -20,10 +20,13 @@ import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.configservice.util.AccessKeyUtil;
 import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.net.HttpHeaders;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -42,13 +45,25 @@ import org.springframework.util.CollectionUtils;
 public class ClientAuthenticationFilter implements Filter {
 
   private static final Logger logger = LoggerFactory.getLogger(ClientAuthenticationFilter.class);
+  private static final long MAX_VERIFIED_SIGNATURES = 10000;
+  // the timestamp is always checked before, so this only bounds how long an entry is kept
+  private static final long VERIFIED_SIGNATURE_EXPIRE_SECONDS = 60;
 
   private final BizConfig bizConfig;
   private final AccessKeyUtil accessKeyUtil;
+  /**
+   * the verified requests, i.e. timestamp + path with query + authorization -> the secret which verified it, so that
+   * the identical requests, e.g. long polls of clients sharing the same notifications, skip the computation
+   */
+  private final Cache<String, String> verifiedSignatures;
 
   public ClientAuthenticationFilter(BizConfig bizConfig, AccessKeyUtil accessKeyUtil) {
     this.bizConfig = bizConfig;
     this.accessKeyUtil = accessKeyUtil;
+    this.verifiedSignatures = CacheBuilder.newBuilder()
+        .maximumSize(MAX_VERIFIED_SIGNATURES)
+        .expireAfterWrite(VERIFIED_SIGNATURE_EXPIRE_SECONDS, TimeUnit.SECONDS)
+        .build();
   }
 
   @Override
@@ -121,10 +136,21 @@ public class ClientAuthenticationFilter implements Filter {
         signature = split[1];
       }
     }
+    if (signature == null) {
+      return false;
+    }
+
+    String verifiedKey = timestamp + "\n" + path + "?" + query + "\n" + authorization;
+    String verifiedSecret = verifiedSignatures.getIfPresent(verifiedKey);
+    // the secret might be disabled or deleted since verified
+    if (verifiedSecret != null && availableSecrets.contains(verifiedSecret)) {
+      return true;
+    }
 
     for (String secret : availableSecrets) {
       String availableSignature = accessKeyUtil.buildSignature(path, query, timestamp, secret);
       if (Objects.equals(signature, availableSignature)) {
+        verifiedSignatures.put(verifiedKey, secret);
         return true;
       }
     }
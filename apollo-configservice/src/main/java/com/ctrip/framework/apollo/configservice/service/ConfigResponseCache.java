@@ -0,0 +1,291 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches the merged configurations of releases and their encoded responses, keyed by the merged release key.
+ *
+ * <p>Releases are immutable, so a merged release key always maps to the same configurations. Entries are
+ * invalidated once a new release message of any of the merged releases is received, as they are unlikely to be
+ * requested again.</p>
+ */
+@Service
+public class ConfigResponseCache implements ReleaseMessageListener {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigResponseCache.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final long MAX_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+  private static final long EXPIRE_AFTER_ACCESS = 30;
+  private static final String TRACER_EVENT_CACHE_HIT = "Apollo.ConfigResponseCache.Hit";
+  private static final String TRACER_EVENT_CACHE_MISS = "Apollo.ConfigResponseCache.Miss";
+  private static final String TRACER_EVENT_CACHE_INVALIDATE = "Apollo.ConfigResponseCache.Invalidate";
+  private static final Gson GSON = new Gson();
+
+  private final Cache<String, CachedConfig> localCache;
+  private final Multimap<String, String>
+      watchedKeys2CacheKey = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+  private final Multimap<String, String>
+      cacheKey2WatchedKeys = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+
+  public ConfigResponseCache() {
+    localCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .weigher((Weigher<String, CachedConfig>) (key, value) -> value.weight)
+        .maximumWeight(MAX_CACHE_SIZE)
+        .removalListener(notification -> {
+          // replaced when re-weighed, the watched keys are still valid
+          if (notification.getCause() == RemovalCause.REPLACED) {
+            return;
+          }
+          String cacheKey = notification.getKey();
+          if (!cacheKey2WatchedKeys.containsKey(cacheKey)) {
+            return;
+          }
+          //create a new list to avoid ConcurrentModificationException
+          List<String> watchedKeys = new ArrayList<>(cacheKey2WatchedKeys.get(cacheKey));
+          for (String watchedKey : watchedKeys) {
+            watchedKeys2CacheKey.remove(watchedKey, cacheKey);
+          }
+          cacheKey2WatchedKeys.removeAll(cacheKey);
+        })
+        .build();
+  }
+
+  /**
+   * @param mergedReleaseKey the release keys of the releases, joined in order
+   * @param releases         the releases to merge
+   * @param merger           merges the configurations of the releases when not cached
+   * @return the unmodifiable merged configurations
+   */
+  public Map<String, String> getConfigurations(String mergedReleaseKey, List<Release> releases,
+      Function<List<Release>, Map<String, String>> merger) {
+    CachedConfig cachedConfig = localCache.getIfPresent(mergedReleaseKey);
+    if (cachedConfig != null) {
+      Tracer.logEvent(TRACER_EVENT_CACHE_HIT, mergedReleaseKey);
+      return cachedConfig.configurations;
+    }
+
+    Tracer.logEvent(TRACER_EVENT_CACHE_MISS, mergedReleaseKey);
+    cachedConfig = new CachedConfig(merger.apply(releases));
+    localCache.put(mergedReleaseKey, cachedConfig);
+
+    for (Release release : releases) {
+      String watchedKey = ReleaseMessageKeyGenerator.generate(release.getAppId(), release.getClusterName(),
+          release.getNamespaceName());
+      watchedKeys2CacheKey.put(watchedKey, mergedReleaseKey);
+      cacheKey2WatchedKeys.put(mergedReleaseKey, watchedKey);
+    }
+
+    return cachedConfig.configurations;
+  }
+
+  /**
+   * @return the UTF-8 json of the config, gzipped if required
+   */
+  public byte[] getEncodedConfig(ApolloConfig apolloConfig, boolean gzip) {
+    CachedConfig cachedConfig = apolloConfig.getReleaseKey() == null ? null :
+        localCache.getIfPresent(apolloConfig.getReleaseKey());
+    // the response has the client side namespace name, which might differ in case or suffix
+    String encodingKey = STRING_JOINER.join(apolloConfig.getAppId(), apolloConfig.getCluster(),
+        apolloConfig.getNamespaceName(), gzip);
+    if (cachedConfig == null || cachedConfig.configurations != apolloConfig.getConfigurations()) {
+      return encode(apolloConfig, gzip);
+    }
+    byte[] encoded = cachedConfig.encodedResponses.get(encodingKey);
+    if (encoded == null) {
+      encoded = encode(apolloConfig, gzip);
+      byte[] previous = cachedConfig.encodedResponses.putIfAbsent(encodingKey, encoded);
+      if (previous != null) {
+        return previous;
+      }
+      reweigh(apolloConfig.getReleaseKey(), cachedConfig);
+    }
+    return encoded;
+  }
+
+  /**
+   * @param previousMergedReleaseKey the merged release key held by the client
+   * @param previous                 the configurations held by the client
+   * @param mergedReleaseKey         the latest merged release key
+   * @param latest                   the latest configurations
+   * @return the changes from the previous configurations to the latest ones
+   */
+  public List<ConfigurationChange> getConfigurationChanges(String previousMergedReleaseKey,
+      Map<String, String> previous, String mergedReleaseKey, Map<String, String> latest) {
+    CachedConfig cachedConfig = localCache.getIfPresent(mergedReleaseKey);
+    if (cachedConfig == null || cachedConfig.configurations != latest) {
+      return calcConfigurationChanges(previous, latest);
+    }
+    List<ConfigurationChange> changes = cachedConfig.configurationChanges.get(previousMergedReleaseKey);
+    if (changes == null) {
+      changes = calcConfigurationChanges(previous, latest);
+      List<ConfigurationChange> existing =
+          cachedConfig.configurationChanges.putIfAbsent(previousMergedReleaseKey, changes);
+      if (existing != null) {
+        return existing;
+      }
+      reweigh(mergedReleaseKey, cachedConfig);
+    }
+    return changes;
+  }
+
+  /**
+   * Guava only weighs an entry when it's put, so the entry is replaced by a copy sharing the same content to count
+   * the newly added encoded response or changes towards the maximum weight
+   */
+  private void reweigh(String mergedReleaseKey, CachedConfig cachedConfig) {
+    localCache.asMap().replace(mergedReleaseKey, cachedConfig, new CachedConfig(cachedConfig));
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String content = message.getMessage();
+    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+
+    if (!watchedKeys2CacheKey.containsKey(content)) {
+      return;
+    }
+
+    //create a new list to avoid ConcurrentModificationException
+    List<String> cacheKeys = new ArrayList<>(watchedKeys2CacheKey.get(content));
+
+    for (String cacheKey : cacheKeys) {
+      logger.debug("invalidate cache key: {}", cacheKey);
+      Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, cacheKey);
+      localCache.invalidate(cacheKey);
+    }
+  }
+
+  static List<ConfigurationChange> calcConfigurationChanges(Map<String, String> previous,
+      Map<String, String> latest) {
+    List<ConfigurationChange> changes = Lists.newArrayList();
+    for (Map.Entry<String, String> entry : latest.entrySet()) {
+      if (!previous.containsKey(entry.getKey())) {
+        changes.add(new ConfigurationChange(entry.getKey(), entry.getValue(), ConfigurationChangeType.ADDED));
+      } else if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+        changes.add(new ConfigurationChange(entry.getKey(), entry.getValue(), ConfigurationChangeType.MODIFIED));
+      }
+    }
+    for (String key : previous.keySet()) {
+      if (!latest.containsKey(key)) {
+        changes.add(new ConfigurationChange(key, null, ConfigurationChangeType.DELETED));
+      }
+    }
+    return Collections.unmodifiableList(changes);
+  }
+
+  private byte[] encode(ApolloConfig apolloConfig, boolean gzip) {
+    byte[] json = GSON.toJson(apolloConfig).getBytes(StandardCharsets.UTF_8);
+    if (!gzip) {
+      return json;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+      gzipOut.write(json);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return out.toByteArray();
+  }
+
+  private static class CachedConfig {
+    private final Map<String, String> configurations;
+    private final ConcurrentMap<String, byte[]> encodedResponses;
+    private final ConcurrentMap<String, List<ConfigurationChange>> configurationChanges;
+    private final int configurationsWeight;
+    private final int weight;
+
+    CachedConfig(Map<String, String> configurations) {
+      this.configurations = Collections.unmodifiableMap(configurations);
+      this.encodedResponses = new ConcurrentHashMap<>();
+      this.configurationChanges = new ConcurrentHashMap<>();
+      int size = 0;
+      for (Map.Entry<String, String> entry : configurations.entrySet()) {
+        size += weigh(entry.getKey(), entry.getValue());
+      }
+      this.configurationsWeight = size;
+      this.weight = size;
+    }
+
+    /**
+     * @param source the cached config to copy, the content is shared and weighed again
+     */
+    CachedConfig(CachedConfig source) {
+      this.configurations = source.configurations;
+      this.encodedResponses = source.encodedResponses;
+      this.configurationChanges = source.configurationChanges;
+      this.configurationsWeight = source.configurationsWeight;
+      long size = configurationsWeight;
+      for (byte[] encoded : encodedResponses.values()) {
+        size += encoded.length;
+      }
+      for (List<ConfigurationChange> changes : configurationChanges.values()) {
+        for (ConfigurationChange change : changes) {
+          size += weigh(change.getKey(), change.getNewValue());
+        }
+      }
+      this.weight = (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * java strings take 2 bytes per char
+     */
+    private static int weigh(String key, String value) {
+      return (key.length() + (value == null ? 0 : value.length())) * 2;
+    }
+  }
+}
@@ -22,8 +22,10 @@ import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Sets;
 
 import java.util.Objects;
+import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -36,6 +38,18 @@ public abstract class AbstractConfigService implements ConfigService {
   @Override
   public Release loadConfig(String clientAppId, String clientIp, String clientLabel, String configAppId, String configClusterName,
       String configNamespace, String dataCenter, ApolloNotificationMessages clientMessages) {
+    Set<String> configClusterNames = Sets.newLinkedHashSet();
+    if (!Objects.equals(ConfigConsts.CLUSTER_NAME_DEFAULT, configClusterName)) {
+      configClusterNames.add(configClusterName);
+    }
+    if (!Strings.isNullOrEmpty(dataCenter) && !Objects.equals(dataCenter, configClusterName)) {
+      configClusterNames.add(dataCenter);
+    }
+    configClusterNames.add(ConfigConsts.CLUSTER_NAME_DEFAULT);
+    if (configClusterNames.size() > 1) {
+      prefetchLatestActiveReleases(configAppId, configClusterNames, configNamespace);
+    }
+
     // load from specified cluster first
     if (!Objects.equals(ConfigConsts.CLUSTER_NAME_DEFAULT, configClusterName)) {
       Release clusterRelease = findRelease(clientAppId, clientIp, clientLabel, configAppId, configClusterName, configNamespace,
@@ -90,6 +104,18 @@ public abstract class AbstractConfigService implements ConfigService {
     return release;
   }
 
+  /**
+   * Prepare the latest active releases of the clusters which might be looked up one by one, e.g. load them in batch.
+   * Does nothing by default.
+   *
+   * @param configAppId        the requested config's app id
+   * @param configClusterNames the cluster names in the order of lookup
+   * @param configNamespace    the requested config's namespace name
+   */
+  protected void prefetchLatestActiveReleases(String configAppId, Set<String> configClusterNames,
+      String configNamespace) {
+  }
+
   /**
    * Find active release by id
    */
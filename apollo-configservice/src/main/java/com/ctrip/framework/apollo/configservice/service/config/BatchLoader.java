@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import com.google.common.collect.Sets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Batches the loads of the keys arriving within a short window into one bulk load, so that the concurrent cache
+ * misses, e.g. when the config service is just started, cost one database round trip instead of one per key.
+ *
+ * <p>The first caller of a batch waits for the window and loads all the keys collected, the other callers of the
+ * batch wait for its result. The first caller doesn't wait if there is no other load in flight, so a single cache
+ * miss is loaded right away.</p>
+ */
+class BatchLoader<K, V> {
+  private final Function<Set<K>, Map<K, V>> bulkLoader;
+  private final long windowInMillis;
+  private final int maxBatchSize;
+  private final AtomicInteger loadsInFlight = new AtomicInteger();
+  // guarded by this
+  private Batch<K, V> currentBatch;
+
+  /**
+   * @param bulkLoader     loads the values of the keys, should return a value for each key
+   * @param windowInMillis the time to wait for the other keys of the batch
+   * @param maxBatchSize   the max number of keys loaded at once
+   */
+  BatchLoader(Function<Set<K>, Map<K, V>> bulkLoader, long windowInMillis, int maxBatchSize) {
+    this.bulkLoader = bulkLoader;
+    this.windowInMillis = windowInMillis;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  V load(K key) throws Exception {
+    loadsInFlight.incrementAndGet();
+    try {
+      return doLoad(key);
+    } finally {
+      loadsInFlight.decrementAndGet();
+    }
+  }
+
+  private V doLoad(K key) throws Exception {
+    Batch<K, V> batch;
+    boolean leader = false;
+    synchronized (this) {
+      if (currentBatch == null || currentBatch.keys.size() >= maxBatchSize) {
+        currentBatch = new Batch<>();
+        leader = true;
+      }
+      batch = currentBatch;
+      batch.keys.add(key);
+    }
+
+    if (leader) {
+      loadBatch(batch);
+    }
+
+    try {
+      return batch.values.get().get(key);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private void loadBatch(Batch<K, V> batch) {
+    // only wait for the other keys when the misses are concurrent
+    if (loadsInFlight.get() > 1) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(windowInMillis);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (this) {
+      // no more keys could be added to the batch afterwards
+      if (currentBatch == batch) {
+        currentBatch = null;
+      }
+    }
+
+    try {
+      batch.values.complete(bulkLoader.apply(batch.keys));
+    } catch (Throwable ex) {
+      batch.values.completeExceptionally(ex);
+    }
+  }
+
+  private static class Batch<K, V> {
+    private final Set<K> keys = Sets.newLinkedHashSet();
+    private final CompletableFuture<Map<K, V>> values = new CompletableFuture<>();
+  }
+}
@@ -18,13 +18,21 @@ package com.ctrip.framework.apollo.configservice.service.config;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.AsyncReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
@@ -34,20 +42,41 @@ import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 /**
  * config service with guava cache
  *
+ * <p>The cache is bounded by the size of the configurations cached. If warm up is enabled, the keys cached are saved
+ * when the config service stops, and the latest releases of them are loaded in batch before the next start completes,
+ * i.e. before the config service is registered. The keys are not ranked, they are all the keys accessed within the
+ * expiry time, and an arbitrary subset of them if there are more than the max namespaces to warm up.</p>
+ *
+ * <p>The entry of a release message is invalidated in the scanner thread before the clients are notified, so the
+ * requests without notification messages, e.g. of /configfiles, never load the outdated release again. Only reloading
+ * the entry is done asynchronously.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class ConfigServiceWithCache extends AbstractConfigService {
@@ -58,6 +87,11 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   private static final String TRACER_EVENT_CACHE_LOAD_ID = "ConfigCache.LoadFromDBById";
   private static final String TRACER_EVENT_CACHE_GET = "ConfigCache.Get";
   private static final String TRACER_EVENT_CACHE_GET_ID = "ConfigCache.GetById";
+  private static final String TRACER_EVENT_CACHE_LOAD_RELEASE_KEY = "ConfigCache.LoadFromDBByReleaseKey";
+  private static final String TRACER_EVENT_CACHE_WARM_UP = "ConfigCache.WarmUp";
+  private static final String TRACER_EVENT_CACHE_BATCH_LOAD = "ConfigCache.BatchLoadFromDB";
+  private static final int BATCH_LOAD_MAX_SIZE = 100;
+  private static final long DEFAULT_RELEASE_KEY_CACHE_MAX_SIZE = 10000;
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
 
@@ -67,57 +101,62 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   @Autowired
   private ReleaseMessageService releaseMessageService;
 
+  @Autowired
+  private BizConfig bizConfig;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
   private LoadingCache<String, ConfigCacheEntry> configCache;
 
+  //batches the concurrent cache misses, null if disabled
+  private BatchLoader<String, ConfigCacheEntry> batchLoader;
+
   private LoadingCache<Long, Optional<Release>> configIdCache;
 
+  //releases are immutable, so no invalidation is needed
+  private Cache<String, Release> releaseKeyCache;
+
   private ConfigCacheEntry nullConfigCacheEntry;
 
+  //reloads the invalidated entries off the scanner thread
+  private final ReleaseMessageListener cacheReloader;
+
   public ConfigServiceWithCache() {
     nullConfigCacheEntry = new ConfigCacheEntry(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER, null);
+    cacheReloader = new AsyncReleaseMessageListener(new ConfigCacheReloader(),
+        AsyncReleaseMessageListener.DEFAULT_CAPACITY);
   }
 
   @PostConstruct
   void initialize() {
-    configCache = CacheBuilder.newBuilder()
+    CacheBuilder<Object, Object> configCacheBuilder = CacheBuilder.newBuilder()
         .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .recordStats();
+    int maxSizeInMB = bizConfig.configServiceCacheMaxSizeInMB();
+    if (maxSizeInMB > 0) {
+      configCacheBuilder.maximumWeight(maxSizeInMB * 1024L * 1024L)
+          .weigher((Weigher<Object, Object>) (key, value) -> ((ConfigCacheEntry) value).getWeight());
+    }
+    int batchLoadWindow = bizConfig.configServiceCacheBatchLoadWindowInMilli();
+    if (batchLoadWindow > 0) {
+      batchLoader = new BatchLoader<>(this::loadConfigCacheEntries, batchLoadWindow, BATCH_LOAD_MAX_SIZE);
+    }
+    configCache = configCacheBuilder
         .build(new CacheLoader<String, ConfigCacheEntry>() {
           @Override
           public ConfigCacheEntry load(String key) throws Exception {
-            List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
-            if (namespaceInfo.size() != 3) {
-              Tracer.logError(
-                  new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
-              return nullConfigCacheEntry;
-            }
-
-            Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
-            try {
-              ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
-                  .newArrayList(key));
-              Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
-                  namespaceInfo.get(2));
-
-              transaction.setStatus(Transaction.SUCCESS);
-
-              long notificationId = latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestReleaseMessage
-                  .getId();
-
-              if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
-                return nullConfigCacheEntry;
-              }
+            return batchLoader == null ? loadConfigCacheEntry(key) : batchLoader.load(key);
+          }
 
-              return new ConfigCacheEntry(notificationId, latestRelease);
-            } catch (Throwable ex) {
-              transaction.setStatus(ex);
-              throw ex;
-            } finally {
-              transaction.complete();
-            }
+          @Override
+          public Map<String, ConfigCacheEntry> loadAll(Iterable<? extends String> keys) {
+            return loadConfigCacheEntries(Sets.newLinkedHashSet(keys));
           }
         });
     configIdCache = CacheBuilder.newBuilder()
         .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
         .build(new CacheLoader<Long, Optional<Release>>() {
           @Override
           public Optional<Release> load(Long key) throws Exception {
@@ -136,6 +175,196 @@ public class ConfigServiceWithCache extends AbstractConfigService {
             }
           }
         });
+    releaseKeyCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .maximumSize(DEFAULT_RELEASE_KEY_CACHE_MAX_SIZE)
+        .build();
+
+    if (meterRegistry != null) {
+      GuavaCacheMetrics.monitor(meterRegistry, configCache, "apollo.config-service.config-cache");
+      GuavaCacheMetrics.monitor(meterRegistry, configIdCache, "apollo.config-service.config-id-cache");
+    }
+
+    if (bizConfig.isConfigServiceCacheWarmUpEnabled()) {
+      warmUp();
+    }
+  }
+
+  @PreDestroy
+  void saveWarmUpKeys() {
+    if (!bizConfig.isConfigServiceCacheWarmUpEnabled()) {
+      return;
+    }
+    //the cache doesn't keep the access order, so an arbitrary subset is saved if there are more keys than the limit
+    List<String> keys = Lists.newArrayList(Iterables.limit(configCache.asMap().keySet(),
+        bizConfig.configServiceCacheWarmUpMaxNamespaces()));
+    Path path = Paths.get(bizConfig.configServiceCacheWarmUpKeysPath());
+    try {
+      if (path.getParent() != null) {
+        Files.createDirectories(path.getParent());
+      }
+      Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+      Files.write(tmpPath, keys, StandardCharsets.UTF_8);
+      Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      logger.info("Saved {} config cache keys to {}", keys.size(), path);
+    } catch (Throwable ex) {
+      logger.warn("Save config cache keys to {} failed", path, ex);
+    }
+  }
+
+  private void warmUp() {
+    List<String> keys = loadWarmUpKeys();
+    if (keys.isEmpty()) {
+      return;
+    }
+
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_WARM_UP, String.valueOf(keys.size()));
+    try {
+      for (List<String> batch : Iterables.partition(keys, BATCH_LOAD_MAX_SIZE)) {
+        warmUp(Sets.newLinkedHashSet(batch));
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+      logger.info("Warmed up config cache with {} keys", keys.size());
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.warn("Warm up config cache failed", ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void warmUp(Set<String> keys) {
+    for (Map.Entry<String, ConfigCacheEntry> entry : bulkLoadConfigCacheEntries(keys).entrySet()) {
+      //the entries cached meanwhile, e.g. by requests or release messages, are newer than the ones loaded here
+      configCache.asMap().putIfAbsent(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private List<String> loadWarmUpKeys() {
+    Path path = Paths.get(bizConfig.configServiceCacheWarmUpKeysPath());
+    if (!Files.isReadable(path)) {
+      return Lists.newArrayList();
+    }
+    Set<String> keys = Sets.newLinkedHashSet();
+    try {
+      for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+        if (keys.size() >= bizConfig.configServiceCacheWarmUpMaxNamespaces()) {
+          break;
+        }
+        if (!Strings.isNullOrEmpty(line.trim())) {
+          keys.add(line.trim());
+        }
+      }
+    } catch (IOException ex) {
+      logger.warn("Load config cache keys from {} failed", path, ex);
+    }
+    return Lists.newArrayList(keys);
+  }
+
+  private ConfigCacheEntry loadConfigCacheEntry(String key) {
+    List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
+    if (namespaceInfo.size() != 3) {
+      Tracer.logError(
+          new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
+      return nullConfigCacheEntry;
+    }
+
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
+    try {
+      ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
+          .newArrayList(key));
+      Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
+          namespaceInfo.get(2));
+
+      transaction.setStatus(Transaction.SUCCESS);
+
+      long notificationId = latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestReleaseMessage
+          .getId();
+
+      if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
+        return nullConfigCacheEntry;
+      }
+
+      return new ConfigCacheEntry(notificationId, latestRelease);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private Map<String, ConfigCacheEntry> loadConfigCacheEntries(Set<String> keys) {
+    if (keys.size() == 1) {
+      String key = keys.iterator().next();
+      return Collections.singletonMap(key, loadConfigCacheEntry(key));
+    }
+    return bulkLoadConfigCacheEntries(keys);
+  }
+
+  /**
+   * Load the cache entries of the keys with 3 queries, no matter how many keys there are
+   */
+  private Map<String, ConfigCacheEntry> bulkLoadConfigCacheEntries(Set<String> keys) {
+    Map<String, ConfigCacheEntry> cacheEntries = Maps.newHashMapWithExpectedSize(keys.size());
+    Set<String> validKeys = Sets.newLinkedHashSet();
+    for (String key : keys) {
+      if (STRING_SPLITTER.splitToList(key).size() != 3) {
+        Tracer.logError(new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
+        cacheEntries.put(key, nullConfigCacheEntry);
+      } else {
+        validKeys.add(key);
+      }
+    }
+    if (validKeys.isEmpty()) {
+      return cacheEntries;
+    }
+
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_BATCH_LOAD, String.valueOf(validKeys.size()));
+    try {
+      //load the release messages first, same as the single load, so an outdated entry is always detectable
+      Map<String, Long> notificationIds = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+      for (ReleaseMessage releaseMessage : releaseMessageService.findLatestReleaseMessagesGroupByMessages(validKeys)) {
+        notificationIds.put(releaseMessage.getMessage(), releaseMessage.getId());
+      }
+      Map<String, Release> releases = releaseService.findLatestActiveReleases(validKeys);
+
+      for (String key : validKeys) {
+        Long notificationId = notificationIds.get(key);
+        Release release = releases.get(key);
+        cacheEntries.put(key, notificationId == null && release == null ? nullConfigCacheEntry :
+            new ConfigCacheEntry(notificationId == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : notificationId,
+                release));
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+    return cacheEntries;
+  }
+
+  @Override
+  protected void prefetchLatestActiveReleases(String configAppId, Set<String> configClusterNames,
+      String configNamespace) {
+    List<String> missingKeys = Lists.newArrayList();
+    for (String configClusterName : configClusterNames) {
+      String key = ReleaseMessageKeyGenerator.generate(configAppId, configClusterName, configNamespace);
+      if (!configCache.asMap().containsKey(key)) {
+        missingKeys.add(key);
+      }
+    }
+    if (missingKeys.size() < 2) {
+      return;
+    }
+    try {
+      configCache.getAll(missingKeys);
+    } catch (Throwable ex) {
+      //ignore, they will be loaded one by one
+      Tracer.logError(ex);
+    }
   }
 
   @Override
@@ -164,6 +393,32 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     return cacheEntry.getRelease();
   }
 
+  @Override
+  public Map<String, Release> findReleasesByReleaseKeys(Set<String> releaseKeys) {
+    Map<String, Release> releases = Maps.newHashMap(releaseKeyCache.getAllPresent(releaseKeys));
+    Set<String> missingReleaseKeys = Sets.difference(releaseKeys, releases.keySet()).immutableCopy();
+    if (missingReleaseKeys.isEmpty()) {
+      return releases;
+    }
+
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD_RELEASE_KEY,
+        String.join(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR, missingReleaseKeys));
+    try {
+      for (Release release : releaseService.findByReleaseKeys(missingReleaseKeys)) {
+        releaseKeyCache.put(release.getReleaseKey(), release);
+        releases.put(release.getReleaseKey(), release);
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+
+    return releases;
+  }
+
   private void invalidate(String key) {
     configCache.invalidate(key);
     Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, key);
@@ -178,21 +433,37 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
     try {
       invalidate(message.getMessage());
-
-      //warm up the cache
-      configCache.getUnchecked(message.getMessage());
     } catch (Throwable ex) {
       //ignore
     }
+
+    //warm up the cache
+    cacheReloader.handleMessage(message, channel);
+  }
+
+  private class ConfigCacheReloader implements ReleaseMessageListener {
+    @Override
+    public void handleMessage(ReleaseMessage message, String channel) {
+      try {
+        configCache.getUnchecked(message.getMessage());
+      } catch (Throwable ex) {
+        //ignore
+      }
+    }
   }
 
   private static class ConfigCacheEntry {
     private final long notificationId;
     private final Release release;
+    //the memory size of the configurations approximately
+    private final int weight;
 
     public ConfigCacheEntry(long notificationId, Release release) {
       this.notificationId = notificationId;
       this.release = release;
+      long size = release == null || release.getConfigurations() == null ? 0 :
+          release.getConfigurations().length() * 2L;
+      this.weight = (int) Math.min(Integer.MAX_VALUE, Math.max(1, size));
     }
 
     public long getNotificationId() {
@@ -202,5 +473,9 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     public Release getRelease() {
       return release;
     }
+
+    public int getWeight() {
+      return weight;
+    }
   }
 }
@@ -21,6 +21,10 @@ import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -45,6 +49,12 @@ public class DefaultConfigService extends AbstractConfigService {
         configNamespace);
   }
 
+  @Override
+  public Map<String, Release> findReleasesByReleaseKeys(Set<String> releaseKeys) {
+    return releaseService.findByReleaseKeys(releaseKeys).stream()
+        .collect(Collectors.toMap(Release::getReleaseKey, Function.identity(), (r1, r2) -> r1));
+  }
+
   @Override
   public void handleMessage(ReleaseMessage message, String channel) {
     // since there is no cache, so do nothing
@@ -21,7 +21,9 @@ import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
@@ -29,6 +31,7 @@ import com.ctrip.framework.apollo.biz.service.InstanceService;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -36,7 +39,9 @@ import org.springframework.stereotype.Service;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -44,11 +49,21 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Audits the configs loaded by client instances.
+ *
+ * <p>Audits are drained from the queue in batches, the duplicate ones of the same instance and namespace are
+ * coalesced, and then written by several workers, each of which owns a partition of the instances so that the audits
+ * of one instance are always written in order.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
 public class InstanceConfigAuditUtil implements InitializingBean {
   private static final int INSTANCE_CONFIG_AUDIT_MAX_SIZE = 10000;
+  private static final int INSTANCE_CONFIG_AUDIT_BATCH_SIZE = 100;
+  private static final int INSTANCE_CONFIG_AUDIT_WORKER_COUNT = 4;
+  //the batches waiting for each worker, the dispatcher blocks once it's full so that the audit queue is filled up
+  private static final int INSTANCE_CONFIG_AUDIT_WORKER_QUEUE_SIZE = 10;
   private static final int INSTANCE_CACHE_MAX_SIZE = 50000;
   private static final int INSTANCE_CONFIG_CACHE_MAX_SIZE = 50000;
   private static final long OFFER_TIME_LAST_MODIFIED_TIME_THRESHOLD_IN_MILLI = TimeUnit.MINUTES.toMillis(10);//10 minutes
@@ -57,6 +72,7 @@ public class InstanceConfigAuditUtil implements InitializingBean {
   private final AtomicBoolean auditStopped;
   private BlockingQueue<InstanceConfigAuditModel> audits = Queues.newLinkedBlockingQueue
       (INSTANCE_CONFIG_AUDIT_MAX_SIZE);
+  private final List<BlockingQueue<List<InstanceConfigAuditModel>>> workerAudits;
   private Cache<String, Long> instanceCache;
   private Cache<String, String> instanceConfigReleaseKeyCache;
 
@@ -64,9 +80,14 @@ public class InstanceConfigAuditUtil implements InitializingBean {
 
   public InstanceConfigAuditUtil(final InstanceService instanceService) {
     this.instanceService = instanceService;
-    auditExecutorService = Executors.newSingleThreadExecutor(
+    //one dispatcher and the workers
+    auditExecutorService = Executors.newFixedThreadPool(INSTANCE_CONFIG_AUDIT_WORKER_COUNT + 1,
         ApolloThreadFactory.create("InstanceConfigAuditUtil", true));
     auditStopped = new AtomicBoolean(false);
+    workerAudits = Lists.newArrayListWithCapacity(INSTANCE_CONFIG_AUDIT_WORKER_COUNT);
+    for (int i = 0; i < INSTANCE_CONFIG_AUDIT_WORKER_COUNT; i++) {
+      workerAudits.add(Queues.newArrayBlockingQueue(INSTANCE_CONFIG_AUDIT_WORKER_QUEUE_SIZE));
+    }
     instanceCache = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS)
         .maximumSize(INSTANCE_CACHE_MAX_SIZE).build();
     instanceConfigReleaseKeyCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.DAYS)
@@ -75,18 +96,16 @@ public class InstanceConfigAuditUtil implements InitializingBean {
 
   public boolean audit(String appId, String clusterName, String dataCenter, String
       ip, String configAppId, String configClusterName, String configNamespace, String releaseKey) {
-    return this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
+    boolean accepted = this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
         configAppId, configClusterName, configNamespace, releaseKey));
+    if (!accepted) {
+      Tracer.logEvent("Apollo.InstanceConfigAudit.Dropped", STRING_JOINER.join(configAppId, configNamespace));
+    }
+    return accepted;
   }
 
   void doAudit(InstanceConfigAuditModel auditModel) {
-    String instanceCacheKey = assembleInstanceKey(auditModel.getAppId(), auditModel
-        .getClusterName(), auditModel.getIp(), auditModel.getDataCenter());
-    Long instanceId = instanceCache.getIfPresent(instanceCacheKey);
-    if (instanceId == null) {
-      instanceId = prepareInstanceId(auditModel);
-      instanceCache.put(instanceCacheKey, instanceId);
-    }
+    long instanceId = getInstanceId(auditModel);
 
     //load instance config release key from cache, and check if release key is the same
     String instanceConfigCacheKey = assembleInstanceConfigKey(instanceId, auditModel
@@ -105,23 +124,129 @@ public class InstanceConfigAuditUtil implements InitializingBean {
         .getConfigAppId(), auditModel.getConfigNamespace());
 
     if (instanceConfig != null) {
-      if (!Objects.equals(instanceConfig.getReleaseKey(), auditModel.getReleaseKey())) {
-        instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
-        instanceConfig.setReleaseKey(auditModel.getReleaseKey());
-        instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
-      } else if (offerTimeAndLastModifiedTimeCloseEnough(auditModel.getOfferTime(),
-          instanceConfig.getDataChangeLastModifiedTime())) {
-        //when releaseKey is the same, optimize to reduce writes if the record was updated not long ago
-        return;
+      if (prepareInstanceConfigUpdate(instanceConfig, auditModel)) {
+        instanceService.updateInstanceConfig(instanceConfig);
+      }
+      return;
+    }
+
+    instanceConfig = assembleInstanceConfig(instanceId, auditModel);
+
+    try {
+      instanceService.createInstanceConfig(instanceConfig);
+    } catch (DataIntegrityViolationException ex) {
+      //concurrent insertion, safe to ignore
+    }
+  }
+
+  /**
+   * Same as {@link #doAudit(InstanceConfigAuditModel)} for each audit, but the instance configs are loaded and
+   * written in batch
+   */
+  void doAudits(List<InstanceConfigAuditModel> auditModels) {
+    if (auditModels.size() == 1) {
+      doAudit(auditModels.get(0));
+      return;
+    }
+    Transaction transaction = Tracer.newTransaction("Apollo.InstanceConfigAudit", "batch");
+    try {
+      transaction.addData("Size", auditModels.size());
+      transaction.addData("LagInMillis", System.currentTimeMillis() - auditModels.get(0).getOfferTime().getTime());
+
+      Map<String, InstanceConfigAuditModel> toAudit = Maps.newLinkedHashMap();
+      Map<String, Long> instanceIds = Maps.newHashMap();
+      for (InstanceConfigAuditModel auditModel : auditModels) {
+        long instanceId = getInstanceId(auditModel);
+        String instanceConfigCacheKey = assembleInstanceConfigKey(instanceId, auditModel
+            .getConfigAppId(), auditModel.getConfigNamespace());
+        String cacheReleaseKey = instanceConfigReleaseKeyCache.getIfPresent(instanceConfigCacheKey);
+
+        //if release key is the same, then skip audit
+        if (cacheReleaseKey != null && Objects.equals(cacheReleaseKey, auditModel.getReleaseKey())) {
+          continue;
+        }
+
+        toAudit.put(instanceConfigCacheKey, auditModel);
+        instanceIds.put(instanceConfigCacheKey, instanceId);
+      }
+
+      if (!toAudit.isEmpty()) {
+        writeInstanceConfigs(toAudit, instanceIds);
+        //only cached once written, so the audits are retried next time if the write fails
+        for (Map.Entry<String, InstanceConfigAuditModel> entry : toAudit.entrySet()) {
+          instanceConfigReleaseKeyCache.put(entry.getKey(), entry.getValue().getReleaseKey());
+        }
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void writeInstanceConfigs(Map<String, InstanceConfigAuditModel> toAudit, Map<String, Long> instanceIds) {
+    Map<String, InstanceConfig> existedInstanceConfigs = Maps.newHashMap();
+    for (InstanceConfig instanceConfig : instanceService
+        .findInstanceConfigsByInstanceIds(Sets.newHashSet(instanceIds.values()))) {
+      existedInstanceConfigs.put(assembleInstanceConfigKey(instanceConfig.getInstanceId(),
+          instanceConfig.getConfigAppId(), instanceConfig.getConfigNamespaceName()), instanceConfig);
+    }
+
+    List<InstanceConfig> toUpdate = Lists.newArrayList();
+    List<InstanceConfig> toCreate = Lists.newArrayList();
+    for (Map.Entry<String, InstanceConfigAuditModel> entry : toAudit.entrySet()) {
+      InstanceConfig instanceConfig = existedInstanceConfigs.get(entry.getKey());
+      if (instanceConfig == null) {
+        toCreate.add(assembleInstanceConfig(instanceIds.get(entry.getKey()), entry.getValue()));
+      } else if (prepareInstanceConfigUpdate(instanceConfig, entry.getValue())) {
+        toUpdate.add(instanceConfig);
       }
-      //we need to update no matter the release key is the same or not, to ensure the
-      //last modified time is updated each day
-      instanceConfig.setDataChangeLastModifiedTime(auditModel.getOfferTime());
-      instanceService.updateInstanceConfig(instanceConfig);
+    }
+
+    if (!toUpdate.isEmpty()) {
+      instanceService.batchUpdateInstanceConfigs(toUpdate);
+    }
+
+    if (toCreate.isEmpty()) {
       return;
     }
+    try {
+      instanceService.batchCreateInstanceConfigs(toCreate);
+    } catch (DataIntegrityViolationException ex) {
+      //concurrent insertion of some of them, fall back to create one by one
+      for (InstanceConfig instanceConfig : toCreate) {
+        try {
+          instanceService.createInstanceConfig(instanceConfig);
+        } catch (DataIntegrityViolationException e) {
+          //concurrent insertion, safe to ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whether the instance config needs to be updated
+   */
+  private boolean prepareInstanceConfigUpdate(InstanceConfig instanceConfig, InstanceConfigAuditModel auditModel) {
+    if (!Objects.equals(instanceConfig.getReleaseKey(), auditModel.getReleaseKey())) {
+      instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
+      instanceConfig.setReleaseKey(auditModel.getReleaseKey());
+      instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
+    } else if (offerTimeAndLastModifiedTimeCloseEnough(auditModel.getOfferTime(),
+        instanceConfig.getDataChangeLastModifiedTime())) {
+      //when releaseKey is the same, optimize to reduce writes if the record was updated not long ago
+      return false;
+    }
+    //we need to update no matter the release key is the same or not, to ensure the
+    //last modified time is updated each day
+    instanceConfig.setDataChangeLastModifiedTime(auditModel.getOfferTime());
+    return true;
+  }
 
-    instanceConfig = new InstanceConfig();
+  private InstanceConfig assembleInstanceConfig(long instanceId, InstanceConfigAuditModel auditModel) {
+    InstanceConfig instanceConfig = new InstanceConfig();
     instanceConfig.setInstanceId(instanceId);
     instanceConfig.setConfigAppId(auditModel.getConfigAppId());
     instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
@@ -129,12 +254,17 @@ public class InstanceConfigAuditUtil implements InitializingBean {
     instanceConfig.setReleaseKey(auditModel.getReleaseKey());
     instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
     instanceConfig.setDataChangeCreatedTime(auditModel.getOfferTime());
+    return instanceConfig;
+  }
 
-    try {
-      instanceService.createInstanceConfig(instanceConfig);
-    } catch (DataIntegrityViolationException ex) {
-      //concurrent insertion, safe to ignore
+  private long getInstanceId(InstanceConfigAuditModel auditModel) {
+    String instanceCacheKey = assembleInstanceKey(auditModel);
+    Long instanceId = instanceCache.getIfPresent(instanceCacheKey);
+    if (instanceId == null) {
+      instanceId = prepareInstanceId(auditModel);
+      instanceCache.put(instanceCacheKey, instanceId);
     }
+    return instanceId;
   }
 
   private boolean offerTimeAndLastModifiedTimeCloseEnough(Date offerTime, Date lastModifiedTime) {
@@ -166,11 +296,28 @@ public class InstanceConfigAuditUtil implements InitializingBean {
 
   @Override
   public void afterPropertiesSet() throws Exception {
+    for (BlockingQueue<List<InstanceConfigAuditModel>> batches : workerAudits) {
+      auditExecutorService.submit(() -> {
+        while (!auditStopped.get() && !Thread.currentThread().isInterrupted()) {
+          try {
+            doAudits(batches.take());
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } catch (Throwable ex) {
+            Tracer.logError(ex);
+          }
+        }
+      });
+    }
     auditExecutorService.submit(() -> {
       while (!auditStopped.get() && !Thread.currentThread().isInterrupted()) {
         try {
-          InstanceConfigAuditModel model = audits.take();
-          doAudit(model);
+          List<InstanceConfigAuditModel> models = Lists.newArrayListWithCapacity(INSTANCE_CONFIG_AUDIT_BATCH_SIZE);
+          models.add(audits.take());
+          audits.drainTo(models, INSTANCE_CONFIG_AUDIT_BATCH_SIZE - 1);
+          dispatch(models);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
         } catch (Throwable ex) {
           Tracer.logError(ex);
         }
@@ -178,6 +325,33 @@ public class InstanceConfigAuditUtil implements InitializingBean {
     });
   }
 
+  /**
+   * Coalesce the audits of the same instance and namespace, and hand them over to the workers by instance
+   */
+  void dispatch(List<InstanceConfigAuditModel> auditModels) throws InterruptedException {
+    List<Map<String, InstanceConfigAuditModel>> partitions = Lists.newArrayListWithCapacity(workerAudits.size());
+    for (int i = 0; i < workerAudits.size(); i++) {
+      partitions.add(Maps.newLinkedHashMap());
+    }
+    for (InstanceConfigAuditModel auditModel : auditModels) {
+      String instanceKey = assembleInstanceKey(auditModel);
+      int partition = Math.floorMod(instanceKey.hashCode(), partitions.size());
+      //the later one wins
+      partitions.get(partition).put(STRING_JOINER.join(instanceKey, auditModel.getConfigAppId(),
+          auditModel.getConfigNamespace()), auditModel);
+    }
+    for (int i = 0; i < partitions.size(); i++) {
+      if (!partitions.get(i).isEmpty()) {
+        workerAudits.get(i).put(Lists.newArrayList(partitions.get(i).values()));
+      }
+    }
+  }
+
+  private String assembleInstanceKey(InstanceConfigAuditModel auditModel) {
+    return assembleInstanceKey(auditModel.getAppId(), auditModel.getClusterName(), auditModel.getIp(),
+        auditModel.getDataCenter());
+  }
+
   private String assembleInstanceKey(String appId, String cluster, String ip, String datacenter) {
     List<String> keyParts = Lists.newArrayList(appId, cluster, ip);
     if (!Strings.isNullOrEmpty(datacenter)) {
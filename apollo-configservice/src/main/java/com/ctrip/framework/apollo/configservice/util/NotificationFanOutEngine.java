@@ -0,0 +1,260 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Fans out release notifications to a large number of watchers.
+ *
+ * <p>Every watch key has its own queue and its own token bucket, which refills
+ * {@code batch} tokens every {@code batchInterval} milliseconds, so a release of a hot key is paced without delaying
+ * the notifications of any other key. Queues are drained by a fixed number of worker threads, which also bounds the
+ * number of concurrent completions, and a key waiting for tokens never occupies a worker.</p>
+ */
+public class NotificationFanOutEngine {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationFanOutEngine.class);
+  private static final String TRACER_EVENT_FAN_OUT_COMPLETED = "Apollo.LongPoll.FanOutCompleted";
+
+  private final ConcurrentMap<String, KeyFanOut> keyFanOuts = new ConcurrentHashMap<>();
+  private final ExecutorService workerExecutorService;
+  private final ScheduledExecutorService pacingExecutorService;
+  private final IntSupplier batchSupplier;
+  private final IntSupplier batchIntervalInMilliSupplier;
+
+  public NotificationFanOutEngine(int workerThreads, IntSupplier batchSupplier,
+      IntSupplier batchIntervalInMilliSupplier) {
+    this.workerExecutorService = Executors.newFixedThreadPool(Math.max(1, workerThreads),
+        ApolloThreadFactory.create("NotificationFanOutEngine", true));
+    this.pacingExecutorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("NotificationFanOutEngine-Pacing", true));
+    this.batchSupplier = batchSupplier;
+    this.batchIntervalInMilliSupplier = batchIntervalInMilliSupplier;
+  }
+
+  /**
+   * Queue the notifications of the watch key, they will be run asynchronously in submission order
+   */
+  public void fanOut(String watchKey, Collection<? extends Runnable> notifications) {
+    if (notifications.isEmpty()) {
+      return;
+    }
+    KeyFanOut keyFanOut = keyFanOuts.compute(watchKey, (key, existing) -> {
+      KeyFanOut fanOut = existing != null ? existing : new KeyFanOut(key, batchSupplier.getAsInt(),
+          batchIntervalInMilliSupplier.getAsInt());
+      fanOut.enqueue(notifications);
+      return fanOut;
+    });
+    logger.debug("Async notify {} clients for key {}", notifications.size(), watchKey);
+    keyFanOut.schedule();
+  }
+
+  /**
+   * @return the progress of the watch keys which still have pending notifications
+   */
+  public Map<String, FanOutProgress> getProgress() {
+    Map<String, FanOutProgress> progress = Maps.newHashMapWithExpectedSize(keyFanOuts.size());
+    for (KeyFanOut keyFanOut : keyFanOuts.values()) {
+      progress.put(keyFanOut.watchKey, keyFanOut.progress());
+    }
+    return Collections.unmodifiableMap(progress);
+  }
+
+  public void shutdown() {
+    pacingExecutorService.shutdownNow();
+    workerExecutorService.shutdownNow();
+  }
+
+  private class KeyFanOut implements Runnable {
+    private final String watchKey;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final TokenBucket tokenBucket;
+    private final long startedAt = System.currentTimeMillis();
+
+    KeyFanOut(String watchKey, int batch, int batchIntervalInMilli) {
+      this.watchKey = watchKey;
+      this.tokenBucket = new TokenBucket(batch, batchIntervalInMilli);
+    }
+
+    void enqueue(Collection<? extends Runnable> notifications) {
+      pending.addAll(notifications);
+      submitted.addAndGet(notifications.size());
+    }
+
+    void schedule() {
+      if (scheduled.compareAndSet(false, true)) {
+        workerExecutorService.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        drain();
+      } catch (Throwable ex) {
+        logger.error("Notify clients for key {} failed", watchKey, ex);
+        Tracer.logError(ex);
+      } finally {
+        scheduled.set(false);
+      }
+      if (!pending.isEmpty()) {
+        // yield the worker after each batch, so that the other keys could make progress
+        long delayInNanos = tokenBucket.nanosToNextToken();
+        if (delayInNanos <= 0) {
+          schedule();
+        } else {
+          pacingExecutorService.schedule(this::schedule, delayInNanos, TimeUnit.NANOSECONDS);
+        }
+        return;
+      }
+      // remove the drained key atomically, notifications enqueued concurrently keep it alive
+      if (keyFanOuts.computeIfPresent(watchKey,
+          (key, keyFanOut) -> keyFanOut.pending.isEmpty() ? null : keyFanOut) == null) {
+        Tracer.logEvent(TRACER_EVENT_FAN_OUT_COMPLETED, watchKey);
+        logger.debug("Notified {} clients for key {} in {} ms", completed.get(), watchKey,
+            System.currentTimeMillis() - startedAt);
+      } else {
+        schedule();
+      }
+    }
+
+    private void drain() {
+      int permits = tokenBucket.tryAcquire();
+      int used = 0;
+      while (used < permits) {
+        Runnable notification = pending.poll();
+        if (notification == null) {
+          break;
+        }
+        used++;
+        try {
+          notification.run();
+        } catch (Throwable ex) {
+          logger.warn("Notify client for key {} failed", watchKey, ex);
+        }
+        completed.incrementAndGet();
+      }
+      tokenBucket.release(permits - used);
+    }
+
+    FanOutProgress progress() {
+      return new FanOutProgress(submitted.get(), completed.get(), System.currentTimeMillis() - startedAt);
+    }
+  }
+
+  /**
+   * Holds up to {@code capacity} tokens and refills {@code capacity} tokens every {@code intervalInMilli}
+   * milliseconds. Only accessed by the single worker draining its key, the lock is uncontended.
+   */
+  private static class TokenBucket {
+    private final int capacity;
+    private final double nanosPerToken;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(int capacity, int intervalInMilli) {
+      this.capacity = Math.max(1, capacity);
+      this.nanosPerToken = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalInMilli)) / (double) this.capacity;
+      this.tokens = this.capacity;
+      this.lastRefillNanos = System.nanoTime();
+    }
+
+    synchronized int tryAcquire() {
+      refill();
+      int acquired = (int) Math.floor(tokens);
+      tokens -= acquired;
+      return acquired;
+    }
+
+    synchronized void release(int permits) {
+      tokens = Math.min(capacity, tokens + permits);
+    }
+
+    synchronized long nanosToNextToken() {
+      refill();
+      if (tokens >= 1) {
+        return 0;
+      }
+      return (long) Math.ceil((1 - tokens) * nanosPerToken);
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / nanosPerToken);
+      lastRefillNanos = now;
+    }
+  }
+
+  public static class FanOutProgress {
+    private final long submitted;
+    private final long completed;
+    private final long elapsedInMilli;
+
+    FanOutProgress(long submitted, long completed, long elapsedInMilli) {
+      this.submitted = submitted;
+      this.completed = completed;
+      this.elapsedInMilli = elapsedInMilli;
+    }
+
+    public long getSubmitted() {
+      return submitted;
+    }
+
+    public long getCompleted() {
+      return completed;
+    }
+
+    public long getPending() {
+      return submitted - completed;
+    }
+
+    public long getElapsedInMilli() {
+      return elapsedInMilli;
+    }
+
+    @Override
+    public String toString() {
+      return "FanOutProgress{" +
+          "submitted=" + submitted +
+          ", completed=" + completed +
+          ", elapsedInMilli=" + elapsedInMilli +
+          '}';
+    }
+  }
+}
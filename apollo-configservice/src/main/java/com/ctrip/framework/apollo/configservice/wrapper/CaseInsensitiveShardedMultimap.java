@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent multimap whose keys are case insensitive, e.g. the watch keys of long polling clients.
+ *
+ * <p>Keys are folded to lower case and spread over a fixed number of shards, each value set is a concurrent set, so
+ * registering, unregistering and looking up values never contend on a single monitor. Values are compared by
+ * {@link Object#equals(Object)}.</p>
+ *
+ * @param <V> the value type
+ */
+public class CaseInsensitiveShardedMultimap<V> {
+  private static final int DEFAULT_SHARD_COUNT = 64;
+
+  private final ConcurrentMap<String, Set<V>>[] shards;
+  private final int shardMask;
+  private final LongAdder size = new LongAdder();
+
+  public CaseInsensitiveShardedMultimap() {
+    this(DEFAULT_SHARD_COUNT);
+  }
+
+  /**
+   * @param shardCount the number of shards, will be rounded up to a power of two
+   */
+  @SuppressWarnings("unchecked")
+  public CaseInsensitiveShardedMultimap(int shardCount) {
+    Preconditions.checkArgument(shardCount > 0, "shardCount must be positive");
+    int actualShardCount = Integer.highestOneBit(shardCount);
+    if (actualShardCount < shardCount) {
+      actualShardCount <<= 1;
+    }
+    shards = new ConcurrentMap[actualShardCount];
+    for (int i = 0; i < actualShardCount; i++) {
+      shards[i] = new ConcurrentHashMap<>();
+    }
+    shardMask = actualShardCount - 1;
+  }
+
+  /**
+   * @return true if the value is newly added for the key
+   */
+  public boolean put(String key, V value) {
+    String foldedKey = fold(key);
+    boolean[] added = new boolean[1];
+    shardOf(foldedKey).compute(foldedKey, (k, values) -> {
+      if (values == null) {
+        values = ConcurrentHashMap.newKeySet();
+      }
+      added[0] = values.add(value);
+      return values;
+    });
+    if (added[0]) {
+      size.increment();
+    }
+    return added[0];
+  }
+
+  /**
+   * @return true if the value was registered for the key
+   */
+  public boolean remove(String key, V value) {
+    String foldedKey = fold(key);
+    boolean[] removed = new boolean[1];
+    shardOf(foldedKey).computeIfPresent(foldedKey, (k, values) -> {
+      removed[0] = values.remove(value);
+      // drop the empty value set so that keys of disconnected clients do not pile up
+      return values.isEmpty() ? null : values;
+    });
+    if (removed[0]) {
+      size.decrement();
+    }
+    return removed[0];
+  }
+
+  /**
+   * @return a weakly consistent, unmodifiable view of the values registered for the key, never null
+   */
+  public Collection<V> get(String key) {
+    String foldedKey = fold(key);
+    Set<V> values = shardOf(foldedKey).get(foldedKey);
+    if (values == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(values);
+  }
+
+  public boolean containsKey(String key) {
+    String foldedKey = fold(key);
+    return shardOf(foldedKey).containsKey(foldedKey);
+  }
+
+  /**
+   * @return the total number of key-value pairs
+   */
+  public int size() {
+    return size.intValue();
+  }
+
+  private ConcurrentMap<String, Set<V>> shardOf(String foldedKey) {
+    int hash = foldedKey.hashCode();
+    // spread the higher bits as the shard count is usually small
+    hash ^= (hash >>> 16);
+    return shards[hash & shardMask];
+  }
+
+  private String fold(String key) {
+    return key.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+/**
+ * The WebSocket counterpart of {@link DeferredResultWrapper}, holds the subscription of a client session which lives
+ * across many notifications.
+ */
+public class WebSocketSessionWrapper {
+  private static final Logger logger = LoggerFactory.getLogger(WebSocketSessionWrapper.class);
+  private static final Gson GSON = new Gson();
+
+  private final WebSocketSession session;
+  private final String appId;
+  private final String cluster;
+  private final String dataCenter;
+  private volatile Set<String> watchedKeys = Collections.emptySet();
+  private volatile Map<String, String> normalizedNamespaceNameToOriginalNamespaceName = Collections.emptyMap();
+
+  /**
+   * @param session         the client session
+   * @param sendTimeLimit     the time limit in milliseconds to send a message
+   * @param bufferSizeLimit   the bytes of messages to buffer while a slow client is being sent to
+   * @param appId             the app id of the client
+   * @param cluster           the cluster of the client
+   * @param dataCenter        the data center of the client, might be null
+   */
+  public WebSocketSessionWrapper(WebSocketSession session, int sendTimeLimit, int bufferSizeLimit,
+      String appId, String cluster, String dataCenter) {
+    this.session = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit);
+    this.appId = appId;
+    this.cluster = cluster;
+    this.dataCenter = dataCenter;
+  }
+
+  public String getAppId() {
+    return appId;
+  }
+
+  public String getCluster() {
+    return cluster;
+  }
+
+  public String getDataCenter() {
+    return dataCenter;
+  }
+
+  public Set<String> getWatchedKeys() {
+    return watchedKeys;
+  }
+
+  /**
+   * Replace the subscription of the session
+   *
+   * @return the previously watched keys
+   */
+  public synchronized Set<String> subscribe(Set<String> watchedKeys,
+      Map<String, String> normalizedNamespaceNameToOriginalNamespaceName) {
+    Set<String> previous = this.watchedKeys;
+    this.normalizedNamespaceNameToOriginalNamespaceName = normalizedNamespaceNameToOriginalNamespaceName;
+    this.watchedKeys = watchedKeys;
+    return previous;
+  }
+
+  public void send(ApolloConfigNotification notification) {
+    send(Lists.newArrayList(notification));
+  }
+
+  /**
+   * The namespace name is used as a key in client side, so we have to send the original one instead of the correct
+   * one. The notifications are copied as they are shared by the sessions watching the same key.
+   */
+  public void send(List<ApolloConfigNotification> notifications) {
+    Map<String, String> originalNamespaceNames = normalizedNamespaceNameToOriginalNamespaceName;
+    List<ApolloConfigNotification> toSend = Lists.newArrayListWithCapacity(notifications.size());
+    for (ApolloConfigNotification notification : notifications) {
+      ApolloConfigNotification copy = new ApolloConfigNotification(
+          originalNamespaceNames.getOrDefault(notification.getNamespaceName(), notification.getNamespaceName()),
+          notification.getNotificationId());
+      copy.setMessages(notification.getMessages());
+      toSend.add(copy);
+    }
+
+    try {
+      session.sendMessage(new TextMessage(GSON.toJson(toSend)));
+    } catch (Throwable ex) {
+      // the client would resume from its notification ids after reconnecting
+      logger.debug("Send notifications to session {} failed, closing it", session.getId(), ex);
+      close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+  }
+
+  public void close(CloseStatus status) {
+    try {
+      session.close(status);
+    } catch (IOException ex) {
+      //ignore
+    }
+  }
+}
@@ -16,18 +16,25 @@
  */
 package com.ctrip.framework.apollo.configservice.controller;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import org.junit.Before;
@@ -35,10 +42,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -75,12 +86,17 @@ public class ConfigControllerTest {
   private InstanceConfigAuditUtil instanceConfigAuditUtil;
   @Mock
   private HttpServletRequest someRequest;
+  @Mock
+  private ConfigResponseCache configResponseCache;
+  @Mock
+  private BizConfig bizConfig;
   private Gson gson = new Gson();
 
   @Before
   public void setUp() throws Exception {
     configController = spy(new ConfigController(
-        configService, appNamespaceService, namespaceUtil, instanceConfigAuditUtil, gson
+        configService, appNamespaceService, namespaceUtil, instanceConfigAuditUtil, configResponseCache, bizConfig,
+        gson
     ));
 
     someAppId = "1";
@@ -105,6 +121,10 @@ public class ConfigControllerTest {
 
     someMessagesAsString = "someValidJson";
     when(configController.transformMessages(someMessagesAsString)).thenReturn(someNotificationMessages);
+    when(configResponseCache.getConfigurations(anyString(), anyList(), any())).thenAnswer(invocation -> {
+      Function<List<Release>, Map<String, String>> merger = invocation.getArgument(2);
+      return merger.apply(invocation.getArgument(1));
+    });
   }
 
   @Test
@@ -132,6 +152,137 @@ public class ConfigControllerTest {
         someClientIp, someAppId, someClusterName, defaultNamespaceName, someServerSideNewReleaseKey);
   }
 
+  @Test
+  public void testQueryConfigWithIncrementalSync() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    Release someClientSideRelease = mock(Release.class);
+    List<ConfigurationChange> someConfigurationChanges = Lists.newArrayList(
+        new ConfigurationChange("apollo.bar", "foo", ConfigurationChangeType.MODIFIED));
+
+    when(bizConfig.isConfigServiceIncrementalChangeEnabled()).thenReturn(true);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(someClientSideRelease.getAppId()).thenReturn(someAppId);
+    when(someClientSideRelease.getClusterName()).thenReturn(someClusterName);
+    when(someClientSideRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(someClientSideRelease.getConfigurations()).thenReturn("{\"apollo.bar\": \"bar\"}");
+    when(configService.findReleasesByReleaseKeys(Sets.newHashSet(someClientSideReleaseKey)))
+        .thenReturn(ImmutableMap.of(someClientSideReleaseKey, someClientSideRelease));
+    when(configResponseCache.getConfigurationChanges(eq(someClientSideReleaseKey), anyMap(),
+        eq(someServerSideNewReleaseKey), anyMap())).thenReturn(someConfigurationChanges);
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey,
+        someClientIp, someClientLabel, someMessagesAsString, true, someRequest, someResponse);
+
+    assertEquals(someServerSideNewReleaseKey, result.getReleaseKey());
+    assertEquals(ConfigSyncType.INCREMENTAL_SYNC, result.getConfigSyncType());
+    assertEquals(someConfigurationChanges, result.getConfigurationChanges());
+    assertNull(result.getConfigurations());
+  }
+
+  @Test
+  public void testQueryConfigWithIncrementalSyncAndClientSideReleaseNotFound() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(bizConfig.isConfigServiceIncrementalChangeEnabled()).thenReturn(true);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(configService.findReleasesByReleaseKeys(Sets.newHashSet(someClientSideReleaseKey)))
+        .thenReturn(Collections.emptyMap());
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey,
+        someClientIp, someClientLabel, someMessagesAsString, true, someRequest, someResponse);
+
+    assertNull(result.getConfigSyncType());
+    assertNull(result.getConfigurationChanges());
+    assertEquals("foo", result.getConfigurations().get("apollo.bar"));
+  }
+
+  @Test
+  public void testQueryConfigWithIncrementalSyncAndForeignClientSideRelease() throws Exception {
+    String someForeignReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    String someForeignAppId = "someForeignAppId";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    Release someForeignRelease = mock(Release.class);
+
+    when(bizConfig.isConfigServiceIncrementalChangeEnabled()).thenReturn(true);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someForeignRelease.getAppId()).thenReturn(someForeignAppId);
+    when(configService.findReleasesByReleaseKeys(Sets.newHashSet(someForeignReleaseKey)))
+        .thenReturn(ImmutableMap.of(someForeignReleaseKey, someForeignRelease));
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someForeignReleaseKey,
+        someClientIp, someClientLabel, someMessagesAsString, true, someRequest, someResponse);
+
+    assertNull(result.getConfigSyncType());
+    assertNull(result.getConfigurationChanges());
+    assertEquals("foo", result.getConfigurations().get("apollo.bar"));
+    verify(configResponseCache, never()).getConfigurationChanges(anyString(), anyMap(), anyString(), anyMap());
+    verify(someForeignRelease, never()).getConfigurations();
+  }
+
+  @Test
+  public void testQueryConfigs() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    String someNotFoundNamespaceName = "someNotFoundNamespace";
+
+    when(namespaceUtil.filterNamespaceName(someNotFoundNamespaceName)).thenReturn(someNotFoundNamespaceName);
+    when(namespaceUtil.normalizeNamespace(someAppId, someNotFoundNamespaceName)).thenReturn(someNotFoundNamespaceName);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+
+    Map<String, ApolloConfig> result = configController.queryConfigs(someAppId, someClusterName,
+        Joiner.on(",").join(defaultNamespaceName, someNotFoundNamespaceName),
+        Joiner.on(",").join(someClientSideReleaseKey, "-1"), someDataCenter, someClientIp, someClientLabel,
+        someMessagesAsString, false, someRequest);
+
+    assertEquals(1, result.size());
+    ApolloConfig apolloConfig = result.get(defaultNamespaceName);
+    assertEquals(someServerSideNewReleaseKey, apolloConfig.getReleaseKey());
+    assertEquals("foo", apolloConfig.getConfigurations().get("apollo.bar"));
+    verify(configService, times(1)).loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName,
+        someNotFoundNamespaceName, someDataCenter, someNotificationMessages);
+  }
+
+  @Test
+  public void testQueryConfigsWithNotModifiedNamespace() throws Exception {
+    String someServerSideReleaseKey = "1";
+
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+
+    Map<String, ApolloConfig> result = configController.queryConfigs(someAppId, someClusterName,
+        defaultNamespaceName, someServerSideReleaseKey, someDataCenter, someClientIp, someClientLabel,
+        someMessagesAsString, false, someRequest);
+
+    ApolloConfig apolloConfig = result.get(defaultNamespaceName);
+    assertEquals(someServerSideReleaseKey, apolloConfig.getReleaseKey());
+    assertNull(apolloConfig.getConfigurations());
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testQueryConfigsWithReleaseKeysMismatch() throws Exception {
+    configController.queryConfigs(someAppId, someClusterName, defaultNamespaceName, "1,2", someDataCenter,
+        someClientIp, someClientLabel, someMessagesAsString, false, someRequest);
+  }
+
   @Test
   public void testQueryConfigFile() throws Exception {
     String someClientSideReleaseKey = "1";
@@ -218,6 +369,43 @@ public class ConfigControllerTest {
     verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
   }
 
+  @Test
+  public void testQueryConfigWithIfNoneMatch() throws Exception {
+    String someServerSideReleaseKey = "1";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+    when(someRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("\"" + someServerSideReleaseKey + "\"");
+
+    ApolloConfig result =
+        configController.queryConfig(someAppId, someClusterName, defaultNamespaceName, someDataCenter,
+            "-1", someClientIp, someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertNull(result);
+    verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+  }
+
+  @Test
+  public void testQueryConfigWithIfNoneMatchNotMatched() throws Exception {
+    String someServerSideReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(someRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("W/\"1\"");
+
+    ApolloConfig result =
+        configController.queryConfig(someAppId, someClusterName, defaultNamespaceName, someDataCenter,
+            "-1", someClientIp, someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertEquals(someServerSideReleaseKey, result.getReleaseKey());
+    verify(someResponse, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+  }
+
   @Test
   public void testQueryConfigWithAppOwnNamespace() throws Exception {
     String someClientSideReleaseKey = "1";
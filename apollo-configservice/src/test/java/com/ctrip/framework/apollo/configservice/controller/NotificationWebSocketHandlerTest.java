@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.base.Joiner;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import java.net.URI;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationWebSocketHandlerTest {
+  private NotificationWebSocketHandler handler;
+  private String someAppId;
+  private String someCluster;
+  private String defaultNamespace;
+  private String someWatchKey;
+  @Mock
+  private ReleaseMessageServiceWithCache releaseMessageService;
+  @Mock
+  private EntityManagerUtil entityManagerUtil;
+  @Mock
+  private NamespaceUtil namespaceUtil;
+  @Mock
+  private WatchKeysUtil watchKeysUtil;
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private WebSocketSession session;
+
+  private Gson gson;
+
+  @Before
+  public void setUp() throws Exception {
+    gson = new Gson();
+    NotificationControllerV2 controller = new NotificationControllerV2(
+        watchKeysUtil, releaseMessageService, entityManagerUtil, namespaceUtil, gson, bizConfig);
+    handler = new NotificationWebSocketHandler(controller, watchKeysUtil, releaseMessageService, gson, bizConfig);
+
+    someAppId = "someAppId";
+    someCluster = "someCluster";
+    defaultNamespace = ConfigConsts.NAMESPACE_APPLICATION;
+    someWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).join(someAppId, someCluster, defaultNamespace);
+
+    when(session.getId()).thenReturn("someSessionId");
+    when(session.getUri()).thenReturn(
+        URI.create("ws://localhost/notifications/v2/ws?appId=" + someAppId + "&cluster=" + someCluster));
+  }
+
+  @Test
+  public void testSubscribeAndPushReleaseMessage() throws Exception {
+    long someNotificationId = 10;
+    mockWatchKeys();
+    when(bizConfig.releaseMessageNotificationBatch()).thenReturn(100);
+    handler.afterConnectionEstablished(session);
+    handler.handleTextMessage(session, subscription(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER));
+
+    verify(session, never()).sendMessage(any());
+
+    handler.handleMessage(assembleReleaseMessage(someNotificationId, someWatchKey), Topics.APOLLO_RELEASE_TOPIC);
+
+    List<ApolloConfigNotification> notifications = captureSentNotifications(1).get(0);
+    assertEquals(1, notifications.size());
+    assertEquals(defaultNamespace, notifications.get(0).getNamespaceName());
+    assertEquals(someNotificationId, notifications.get(0).getNotificationId());
+    assertEquals(someNotificationId, notifications.get(0).getMessages().get(someWatchKey).longValue());
+  }
+
+  @Test
+  public void testSubscribeWithOutdatedNotificationId() throws Exception {
+    long someNotificationId = 10;
+    mockWatchKeys();
+    when(releaseMessageService.findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(someWatchKey)))
+        .thenReturn(Lists.newArrayList(assembleReleaseMessage(someNotificationId, someWatchKey)));
+
+    handler.afterConnectionEstablished(session);
+    handler.handleTextMessage(session, subscription(someNotificationId - 1));
+
+    List<ApolloConfigNotification> notifications = captureSentNotifications(1).get(0);
+    assertEquals(1, notifications.size());
+    assertEquals(someNotificationId, notifications.get(0).getNotificationId());
+  }
+
+  @Test
+  public void testNoPushAfterConnectionClosed() throws Exception {
+    mockWatchKeys();
+    handler.afterConnectionEstablished(session);
+    handler.handleTextMessage(session, subscription(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER));
+    handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+    handler.handleMessage(assembleReleaseMessage(10, someWatchKey), Topics.APOLLO_RELEASE_TOPIC);
+
+    verify(session, never()).sendMessage(any());
+  }
+
+  @Test
+  public void testCloseWithInvalidSubscription() throws Exception {
+    handler.afterConnectionEstablished(session);
+    handler.handleTextMessage(session, new TextMessage("invalid"));
+
+    ArgumentCaptor<CloseStatus> closeStatus = ArgumentCaptor.forClass(CloseStatus.class);
+    verify(session, times(1)).close(closeStatus.capture());
+    assertTrue(closeStatus.getValue().equalsCode(CloseStatus.BAD_DATA));
+  }
+
+  private void mockWatchKeys() {
+    when(namespaceUtil.filterNamespaceName(defaultNamespace)).thenReturn(defaultNamespace);
+    when(namespaceUtil.normalizeNamespace(someAppId, defaultNamespace)).thenReturn(defaultNamespace);
+
+    Multimap<String, String> watchKeysMap = HashMultimap.create();
+    watchKeysMap.put(defaultNamespace, someWatchKey);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace), null))
+        .thenReturn(watchKeysMap);
+  }
+
+  private TextMessage subscription(long notificationId) {
+    return new TextMessage(
+        gson.toJson(Lists.newArrayList(new ApolloConfigNotification(defaultNamespace, notificationId))));
+  }
+
+  private List<List<ApolloConfigNotification>> captureSentNotifications(int times) throws Exception {
+    ArgumentCaptor<TextMessage> messages = ArgumentCaptor.forClass(TextMessage.class);
+    //the release messages are pushed asynchronously
+    verify(session, timeout(1000).times(times)).sendMessage(messages.capture());
+    List<List<ApolloConfigNotification>> result = Lists.newArrayList();
+    for (TextMessage message : messages.getAllValues()) {
+      result.add(gson.fromJson(message.getPayload(), new TypeToken<List<ApolloConfigNotification>>() {
+      }.getType()));
+    }
+    return result;
+  }
+
+  private ReleaseMessage assembleReleaseMessage(long id, String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+}
@@ -146,4 +146,35 @@ public class ClientAuthenticationFilterTest {
     verify(response, never()).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
     verify(filterChain, times(1)).doFilter(request, response);
   }
+
+  @Test
+  public void testVerifiedSignatureCached() throws Exception {
+    String appId = "someAppId";
+    String availableSignature = "someSignature";
+    List<String> secrets = Lists.newArrayList("someSecret");
+    String timestamp = Long.toString(System.currentTimeMillis());
+    String correctAuthorization = "Apollo someAppId:someSignature";
+
+    when(accessKeyUtil.extractAppIdFromRequest(any())).thenReturn(appId);
+    when(accessKeyUtil.findAvailableSecret(appId)).thenReturn(secrets);
+    when(accessKeyUtil.buildSignature(any(), any(), any(), any())).thenReturn(availableSignature);
+    when(request.getHeader(Signature.HTTP_HEADER_TIMESTAMP)).thenReturn(timestamp);
+    when(request.getHeader(HttpHeaders.AUTHORIZATION)).thenReturn(correctAuthorization);
+    when(bizConfig.accessKeyAuthTimeDiffTolerance()).thenReturn(60);
+
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+
+    verify(accessKeyUtil, times(1)).buildSignature(any(), any(), any(), any());
+    verify(filterChain, times(2)).doFilter(request, response);
+
+    // the secret is disabled since verified
+    when(accessKeyUtil.findAvailableSecret(appId)).thenReturn(Lists.newArrayList("anotherSecret"));
+    when(accessKeyUtil.buildSignature(any(), any(), any(), any())).thenReturn("anotherSignature");
+
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+
+    verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+    verify(filterChain, times(2)).doFilter(request, response);
+  }
 }
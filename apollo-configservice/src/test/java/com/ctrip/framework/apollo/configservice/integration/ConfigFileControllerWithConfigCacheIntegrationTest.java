@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.integration;
+
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.ConfigServiceTestConfiguration;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Namespace;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.biz.service.BizDBPropertySource;
+import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The config file requests with the config cache enabled
+ */
+@SpringBootTest(classes = ConfigFileControllerWithConfigCacheIntegrationTest.TestConfiguration.class,
+    webEnvironment = WebEnvironment.RANDOM_PORT)
+public class ConfigFileControllerWithConfigCacheIntegrationTest extends AbstractBaseIntegrationTest {
+  private String someAppId;
+  private String someCluster;
+  private String someNamespace;
+
+  @Autowired
+  private AppNamespaceServiceWithCache appNamespaceServiceWithCache;
+  @Autowired
+  private ConfigService configService;
+  @Autowired
+  private ReleaseMessageScanner releaseMessageScanner;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionTestUtils.invokeMethod(appNamespaceServiceWithCache, "reset");
+    someAppId = "someAppId";
+    someCluster = "someCluster";
+    someNamespace = "someNamespace";
+  }
+
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigAsPropertiesRightAfterRelease() throws Exception {
+    assertTrue(configService instanceof ConfigServiceWithCache);
+
+    String result = restTemplate.getForObject("http://{baseurl}/configfiles/{appId}/{clusterName}/{namespace}",
+        String.class, getHostUrl(), someAppId, someCluster, someNamespace);
+
+    assertTrue(result.contains("k2=v2"));
+
+    Namespace namespace = new Namespace();
+    namespace.setAppId(someAppId);
+    namespace.setClusterName(someCluster);
+    namespace.setNamespaceName(someNamespace);
+    buildRelease("someReleaseName", "someReleaseComment", namespace,
+        ImmutableMap.of("k1", "v1-changed", "k2", "v2-changed"), "someOwner");
+
+    //the clients are notified by the listeners added before
+    String message = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).join(someAppId, someCluster, someNamespace);
+    CountDownLatch clientsNotified = new CountDownLatch(1);
+    releaseMessageScanner.addMessageListener((releaseMessage, channel) -> {
+      if (message.equals(releaseMessage.getMessage())) {
+        clientsNotified.countDown();
+      }
+    });
+    sendReleaseMessage(message);
+    assertTrue(clientsNotified.await(5, TimeUnit.SECONDS));
+
+    result = restTemplate.getForObject("http://{baseurl}/configfiles/{appId}/{clusterName}/{namespace}",
+        String.class, getHostUrl(), someAppId, someCluster, someNamespace);
+
+    assertTrue(result.contains("k1=v1-changed"));
+    assertTrue(result.contains("k2=v2-changed"));
+  }
+
+  //not annotated with @Configuration, so it is not picked up by the component scan of the other tests
+  @Import(ConfigServiceTestConfiguration.class)
+  static class TestConfiguration {
+    @Bean
+    public BizConfig bizConfig(final BizDBPropertySource bizDBPropertySource) {
+      return new BizConfig(bizDBPropertySource) {
+        @Override
+        public boolean isConfigServiceCacheEnabled() {
+          return true;
+        }
+
+        @Override
+        public int appNamespaceCacheScanInterval() {
+          return 1;
+        }
+
+        @Override
+        public TimeUnit appNamespaceCacheScanIntervalTimeUnit() {
+          return TimeUnit.MILLISECONDS;
+        }
+      };
+    }
+  }
+}
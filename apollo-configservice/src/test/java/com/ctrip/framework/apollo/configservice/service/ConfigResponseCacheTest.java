@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ConfigResponseCacheTest {
+  private ConfigResponseCache configResponseCache;
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespaceName;
+  private String someReleaseKey;
+  private List<Release> someReleases;
+  private AtomicInteger mergeCounter;
+  private Function<List<Release>, Map<String, String>> someMerger;
+
+  @Before
+  public void setUp() throws Exception {
+    configResponseCache = new ConfigResponseCache();
+
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespaceName = "someNamespaceName";
+    someReleaseKey = "someReleaseKey";
+
+    Release someRelease = new Release();
+    someRelease.setAppId(someAppId);
+    someRelease.setClusterName(someClusterName);
+    someRelease.setNamespaceName(someNamespaceName);
+    someRelease.setReleaseKey(someReleaseKey);
+    someReleases = Lists.newArrayList(someRelease);
+
+    mergeCounter = new AtomicInteger();
+    someMerger = releases -> {
+      mergeCounter.incrementAndGet();
+      return ImmutableMap.of("someKey", "someValue");
+    };
+  }
+
+  @Test
+  public void testGetConfigurationsIsCached() throws Exception {
+    Map<String, String> configurations =
+        configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger);
+    Map<String, String> anotherConfigurations =
+        configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger);
+
+    assertEquals("someValue", configurations.get("someKey"));
+    assertSame(configurations, anotherConfigurations);
+    assertEquals(1, mergeCounter.get());
+  }
+
+  @Test
+  public void testCacheInvalidatedByReleaseMessage() throws Exception {
+    configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger);
+
+    ReleaseMessage someMessage = new ReleaseMessage(
+        ReleaseMessageKeyGenerator.generate(someAppId, someClusterName, someNamespaceName));
+    configResponseCache.handleMessage(someMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger);
+
+    assertEquals(2, mergeCounter.get());
+  }
+
+  @Test
+  public void testGetEncodedConfig() throws Exception {
+    ApolloConfig apolloConfig = new ApolloConfig(someAppId, someClusterName, someNamespaceName, someReleaseKey);
+    apolloConfig.setConfigurations(
+        configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger));
+    byte[] expected = new Gson().toJson(apolloConfig).getBytes(StandardCharsets.UTF_8);
+
+    byte[] encoded = configResponseCache.getEncodedConfig(apolloConfig, false);
+    byte[] gzipped = configResponseCache.getEncodedConfig(apolloConfig, true);
+
+    assertArrayEquals(expected, encoded);
+    assertSame(encoded, configResponseCache.getEncodedConfig(apolloConfig, false));
+    assertArrayEquals(expected, ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped))));
+  }
+
+  @Test
+  public void testEncodedConfigCountsTowardsWeight() throws Exception {
+    ApolloConfig apolloConfig = new ApolloConfig(someAppId, someClusterName, someNamespaceName, someReleaseKey);
+    apolloConfig.setConfigurations(
+        configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger));
+    int weightBeforeEncoding = getWeight(someReleaseKey);
+
+    byte[] encoded = configResponseCache.getEncodedConfig(apolloConfig, false);
+
+    assertEquals(weightBeforeEncoding + encoded.length, getWeight(someReleaseKey));
+
+    //the re-weighed entry is still invalidated by release messages
+    ReleaseMessage someMessage = new ReleaseMessage(
+        ReleaseMessageKeyGenerator.generate(someAppId, someClusterName, someNamespaceName));
+    configResponseCache.handleMessage(someMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    configResponseCache.getConfigurations(someReleaseKey, someReleases, someMerger);
+
+    assertEquals(2, mergeCounter.get());
+  }
+
+  @Test
+  public void testCalcConfigurationChanges() throws Exception {
+    Map<String, String> previous = ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3");
+    Map<String, String> latest = ImmutableMap.of("k1", "v1", "k2", "v2-new", "k4", "v4");
+
+    List<ConfigurationChange> changes = ConfigResponseCache.calcConfigurationChanges(previous, latest);
+
+    assertEquals(3, changes.size());
+    assertChange(changes.get(0), "k2", "v2-new", ConfigurationChangeType.MODIFIED);
+    assertChange(changes.get(1), "k4", "v4", ConfigurationChangeType.ADDED);
+    assertChange(changes.get(2), "k3", null, ConfigurationChangeType.DELETED);
+  }
+
+  private int getWeight(String mergedReleaseKey) {
+    Cache<String, ?> localCache = (Cache<String, ?>) ReflectionTestUtils.getField(configResponseCache, "localCache");
+    return (int) ReflectionTestUtils.getField(localCache.getIfPresent(mergedReleaseKey), "weight");
+  }
+
+  private void assertChange(ConfigurationChange change, String key, String newValue,
+      ConfigurationChangeType changeType) {
+    assertEquals(key, change.getKey());
+    assertEquals(newValue, change.getNewValue());
+    assertEquals(changeType, change.getChangeType());
+  }
+}
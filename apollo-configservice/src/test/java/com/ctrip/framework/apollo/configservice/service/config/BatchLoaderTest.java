@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchLoaderTest {
+  private List<Set<String>> loadedBatches;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() throws Exception {
+    loadedBatches = Lists.newCopyOnWriteArrayList();
+    executorService = Executors.newFixedThreadPool(10);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testLoadConcurrentKeysInBatch() throws Exception {
+    String someInFlightKey = "someInFlightKey";
+    CountDownLatch inFlightStartedLatch = new CountDownLatch(1);
+    CountDownLatch inFlightLatch = new CountDownLatch(1);
+    BatchLoader<String, String> batchLoader = new BatchLoader<>(keys -> {
+      if (keys.contains(someInFlightKey)) {
+        inFlightStartedLatch.countDown();
+        awaitQuietly(inFlightLatch);
+      }
+      loadedBatches.add(keys);
+      Map<String, String> values = Maps.newHashMap();
+      for (String key : keys) {
+        values.put(key, key + "-value");
+      }
+      return values;
+    }, 200, 100);
+
+    //keeps a load in flight, so that the keys below are concurrent misses no matter which one comes first
+    Future<String> inFlightFuture = executorService.submit(() -> batchLoader.load(someInFlightKey));
+    assertTrue(inFlightStartedLatch.await(5, TimeUnit.SECONDS));
+
+    int keyCount = 10;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    List<Future<String>> futures = Lists.newArrayList();
+    for (int i = 0; i < keyCount; i++) {
+      String key = "key" + i;
+      futures.add(executorService.submit(() -> {
+        startLatch.await();
+        return batchLoader.load(key);
+      }));
+    }
+    startLatch.countDown();
+
+    for (int i = 0; i < keyCount; i++) {
+      assertEquals("key" + i + "-value", futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, loadedBatches.size());
+    assertEquals(keyCount, loadedBatches.get(0).size());
+
+    inFlightLatch.countDown();
+    assertEquals(someInFlightKey + "-value", inFlightFuture.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testLoadAloneWithoutWaiting() throws Exception {
+    BatchLoader<String, String> batchLoader = new BatchLoader<>(keys -> {
+      loadedBatches.add(keys);
+      Map<String, String> values = Maps.newHashMap();
+      for (String key : keys) {
+        values.put(key, key + "-value");
+      }
+      return values;
+    }, TimeUnit.MINUTES.toMillis(1), 100);
+
+    Future<String> someFuture = executorService.submit(() -> batchLoader.load("someKey"));
+
+    //would take a minute if waiting for the window
+    assertEquals("someKey-value", someFuture.get(5, TimeUnit.SECONDS));
+    assertEquals(Lists.newArrayList(Sets.newHashSet("someKey")), loadedBatches);
+  }
+
+  @Test
+  public void testLoadWithMaxBatchSize() throws Exception {
+    BatchLoader<String, String> batchLoader = new BatchLoader<>(keys -> {
+      loadedBatches.add(keys);
+      Map<String, String> values = Maps.newHashMap();
+      for (String key : keys) {
+        values.put(key, key + "-value");
+      }
+      return values;
+    }, 200, 1);
+
+    Future<String> someFuture = executorService.submit(() -> batchLoader.load("someKey"));
+    Future<String> anotherFuture = executorService.submit(() -> batchLoader.load("anotherKey"));
+
+    assertEquals("someKey-value", someFuture.get(5, TimeUnit.SECONDS));
+    assertEquals("anotherKey-value", anotherFuture.get(5, TimeUnit.SECONDS));
+    assertEquals(Sets.newHashSet(Sets.newHashSet("someKey"), Sets.newHashSet("anotherKey")),
+        Sets.newHashSet(loadedBatches));
+  }
+
+  @Test
+  public void testLoadFailed() throws Exception {
+    IllegalStateException someException = new IllegalStateException("some error");
+    BatchLoader<String, String> batchLoader = new BatchLoader<>(keys -> {
+      throw someException;
+    }, 1, 100);
+
+    try {
+      batchLoader.load("someKey");
+      fail("should throw the exception of the bulk loader");
+    } catch (IllegalStateException ex) {
+      assertSame(someException, ex);
+    }
+  }
+
+  private void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
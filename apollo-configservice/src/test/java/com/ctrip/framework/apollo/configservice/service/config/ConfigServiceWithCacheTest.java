@@ -18,13 +18,17 @@ package com.ctrip.framework.apollo.configservice.service.config;
 
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.core.ConfigConsts;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -33,9 +37,16 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -52,6 +63,10 @@ public class ConfigServiceWithCacheTest {
   @Mock
   private ReleaseMessageService releaseMessageService;
   @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
   private Release someRelease;
   @Mock
   private ReleaseMessage someReleaseMessage;
@@ -68,6 +83,8 @@ public class ConfigServiceWithCacheTest {
     configServiceWithCache = new ConfigServiceWithCache();
     ReflectionTestUtils.setField(configServiceWithCache, "releaseService", releaseService);
     ReflectionTestUtils.setField(configServiceWithCache, "releaseMessageService", releaseMessageService);
+    ReflectionTestUtils.setField(configServiceWithCache, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(configServiceWithCache, "grayReleaseRulesHolder", grayReleaseRulesHolder);
 
     configServiceWithCache.initialize();
 
@@ -105,6 +122,31 @@ public class ConfigServiceWithCacheTest {
     verify(releaseService, times(1)).findActiveOne(someId);
   }
 
+  @Test
+  public void testFindReleasesByReleaseKeysMultipleTimes() throws Exception {
+    String someReleaseKey = "someReleaseKey";
+    String anotherReleaseKey = "anotherReleaseKey";
+    Release anotherRelease = mock(Release.class);
+
+    when(someRelease.getReleaseKey()).thenReturn(someReleaseKey);
+    when(anotherRelease.getReleaseKey()).thenReturn(anotherReleaseKey);
+    when(releaseService.findByReleaseKeys(Sets.newHashSet(someReleaseKey)))
+        .thenReturn(Lists.newArrayList(someRelease));
+    when(releaseService.findByReleaseKeys(Sets.newHashSet(anotherReleaseKey)))
+        .thenReturn(Lists.newArrayList(anotherRelease));
+
+    assertEquals(someRelease,
+        configServiceWithCache.findReleasesByReleaseKeys(Sets.newHashSet(someReleaseKey)).get(someReleaseKey));
+
+    Map<String, Release> releases =
+        configServiceWithCache.findReleasesByReleaseKeys(Sets.newHashSet(someReleaseKey, anotherReleaseKey));
+
+    assertEquals(someRelease, releases.get(someReleaseKey));
+    assertEquals(anotherRelease, releases.get(anotherReleaseKey));
+    verify(releaseService, times(1)).findByReleaseKeys(Sets.newHashSet(someReleaseKey));
+    verify(releaseService, times(1)).findByReleaseKeys(Sets.newHashSet(anotherReleaseKey));
+  }
+
   @Test
   public void testFindActiveOneWithMultipleIdMultipleTimes() throws Exception {
     long someId = 1;
@@ -292,4 +334,72 @@ public class ConfigServiceWithCacheTest {
     verify(releaseMessageService, times(1)).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
     verify(releaseService, times(1)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
   }
+
+  @Test
+  public void testWarmUpAndSaveKeys() throws Exception {
+    Path someKeysPath = Files.createTempFile("config-cache-keys", null);
+    Files.write(someKeysPath, Lists.newArrayList(someKey), StandardCharsets.UTF_8);
+    ReleaseMessage someLatestReleaseMessage = new ReleaseMessage(someKey);
+    someLatestReleaseMessage.setId(someNotificationId);
+
+    when(bizConfig.isConfigServiceCacheWarmUpEnabled()).thenReturn(true);
+    when(bizConfig.configServiceCacheWarmUpKeysPath()).thenReturn(someKeysPath.toString());
+    when(bizConfig.configServiceCacheWarmUpMaxNamespaces()).thenReturn(10);
+    when(releaseMessageService.findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(someKey)))
+        .thenReturn(Lists.newArrayList(someLatestReleaseMessage));
+    when(releaseService.findLatestActiveReleases(Sets.newHashSet(someKey)))
+        .thenReturn(Collections.singletonMap(someKey, someRelease));
+
+    try {
+      ConfigServiceWithCache anotherConfigServiceWithCache = new ConfigServiceWithCache();
+      ReflectionTestUtils.setField(anotherConfigServiceWithCache, "releaseService", releaseService);
+      ReflectionTestUtils.setField(anotherConfigServiceWithCache, "releaseMessageService", releaseMessageService);
+      ReflectionTestUtils.setField(anotherConfigServiceWithCache, "bizConfig", bizConfig);
+
+      anotherConfigServiceWithCache.initialize();
+
+      Release release = anotherConfigServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+          someNamespaceName, someNotificationMessages);
+
+      assertEquals(someRelease, release);
+      verify(releaseMessageService, never()).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
+      verify(releaseService, never()).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+
+      Files.delete(someKeysPath);
+      anotherConfigServiceWithCache.saveWarmUpKeys();
+
+      assertEquals(Lists.newArrayList(someKey), Files.readAllLines(someKeysPath, StandardCharsets.UTF_8));
+    } finally {
+      Files.deleteIfExists(someKeysPath);
+    }
+  }
+
+  @Test
+  public void testLoadConfigWithClusterAndDefaultInBatch() throws Exception {
+    String someClientAppId = "someClientAppId";
+    String someClientIp = "1.1.1.1";
+    String defaultKey = ReleaseMessageKeyGenerator.generate(someAppId, ConfigConsts.CLUSTER_NAME_DEFAULT,
+        someNamespaceName);
+    ReleaseMessage defaultReleaseMessage = new ReleaseMessage(defaultKey);
+    defaultReleaseMessage.setId(someNotificationId);
+
+    when(releaseMessageService.findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(someKey, defaultKey)))
+        .thenReturn(Lists.newArrayList(defaultReleaseMessage));
+    when(releaseService.findLatestActiveReleases(Sets.newHashSet(someKey, defaultKey)))
+        .thenReturn(Collections.singletonMap(defaultKey, someRelease));
+
+    Release release = configServiceWithCache.loadConfig(someClientAppId, someClientIp, null, someAppId,
+        someClusterName, someNamespaceName, null, someNotificationMessages);
+    Release anotherRelease = configServiceWithCache.loadConfig(someClientAppId, someClientIp, null, someAppId,
+        someClusterName, someNamespaceName, null, someNotificationMessages);
+
+    assertEquals(someRelease, release);
+    assertEquals(someRelease, anotherRelease);
+
+    verify(releaseMessageService, times(1))
+        .findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(someKey, defaultKey));
+    verify(releaseService, times(1)).findLatestActiveReleases(Sets.newHashSet(someKey, defaultKey));
+    verify(releaseMessageService, never()).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
+    verify(releaseService, never()).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
 }
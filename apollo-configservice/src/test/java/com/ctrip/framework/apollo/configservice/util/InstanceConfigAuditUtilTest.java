@@ -26,10 +26,15 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.Lists;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 /**
@@ -104,5 +109,104 @@ public class InstanceConfigAuditUtilTest {
     verify(instanceService, times(1)).createInstanceConfig(any(InstanceConfig.class));
   }
 
+  @Test
+  public void testDoAudits() throws Exception {
+    long someInstanceId = 1;
+    String anotherConfigNamespace = "anotherConfigNamespace";
+    String anotherReleaseKey = "anotherReleaseKey";
+    Instance someInstance = mock(Instance.class);
+    InstanceConfig someInstanceConfig = new InstanceConfig();
+    someInstanceConfig.setId(1);
+    someInstanceConfig.setInstanceId(someInstanceId);
+    someInstanceConfig.setConfigAppId(someConfigAppId);
+    someInstanceConfig.setConfigNamespaceName(someConfigNamespace);
+    someInstanceConfig.setReleaseKey(anotherReleaseKey);
+
+    when(someInstance.getId()).thenReturn(someInstanceId);
+    when(instanceService.findInstance(someAppId, someClusterName, someDataCenter, someIp))
+        .thenReturn(someInstance);
+    when(instanceService.findInstanceConfigsByInstanceIds(any()))
+        .thenReturn(Lists.newArrayList(someInstanceConfig));
+
+    InstanceConfigAuditUtil.InstanceConfigAuditModel anotherAuditModel =
+        new InstanceConfigAuditUtil.InstanceConfigAuditModel(someAppId, someClusterName,
+            someDataCenter, someIp, someConfigAppId, someConfigClusterName, anotherConfigNamespace,
+            someReleaseKey);
+
+    instanceConfigAuditUtil.doAudits(Lists.newArrayList(someAuditModel, anotherAuditModel));
+
+    verify(instanceService, times(1)).findInstance(someAppId, someClusterName, someDataCenter,
+        someIp);
+    verify(instanceService, never()).findInstanceConfig(anyLong(), anyString(), anyString());
+    verify(instanceService, times(1)).batchUpdateInstanceConfigs(
+        Lists.newArrayList(someInstanceConfig));
+    verify(instanceService, times(1)).batchCreateInstanceConfigs(argThat(instanceConfigs ->
+        instanceConfigs.size() == 1 && anotherConfigNamespace
+            .equals(instanceConfigs.get(0).getConfigNamespaceName())));
+    assertEquals(someReleaseKey, someInstanceConfig.getReleaseKey());
+  }
+
+  @Test
+  public void testDoAuditsRetriedAfterWriteFailed() throws Exception {
+    long someInstanceId = 1;
+    String anotherConfigNamespace = "anotherConfigNamespace";
+    Instance someInstance = mock(Instance.class);
+
+    when(someInstance.getId()).thenReturn(someInstanceId);
+    when(instanceService.findInstance(someAppId, someClusterName, someDataCenter, someIp))
+        .thenReturn(someInstance);
+    when(instanceService.findInstanceConfigsByInstanceIds(any())).thenReturn(Lists.newArrayList());
+    when(instanceService.batchCreateInstanceConfigs(anyList()))
+        .thenThrow(new RuntimeException("some write failure")).thenReturn(Lists.newArrayList());
+
+    InstanceConfigAuditUtil.InstanceConfigAuditModel anotherAuditModel =
+        new InstanceConfigAuditUtil.InstanceConfigAuditModel(someAppId, someClusterName,
+            someDataCenter, someIp, someConfigAppId, someConfigClusterName, anotherConfigNamespace,
+            someReleaseKey);
+    List<InstanceConfigAuditUtil.InstanceConfigAuditModel> someAudits =
+        Lists.newArrayList(someAuditModel, anotherAuditModel);
+
+    try {
+      instanceConfigAuditUtil.doAudits(someAudits);
+      fail("should throw the write failure");
+    } catch (RuntimeException ex) {
+      assertEquals("some write failure", ex.getMessage());
+    }
+
+    instanceConfigAuditUtil.doAudits(someAudits);
+
+    //written once succeeded, so the same audits are skipped afterwards
+    instanceConfigAuditUtil.doAudits(someAudits);
+
+    verify(instanceService, times(2)).batchCreateInstanceConfigs(argThat(instanceConfigs ->
+        instanceConfigs.size() == 2));
+  }
+
+  @Test
+  public void testDispatchWithDuplicateAudits() throws Exception {
+    String anotherReleaseKey = "anotherReleaseKey";
+    InstanceConfigAuditUtil.InstanceConfigAuditModel anotherAuditModel =
+        new InstanceConfigAuditUtil.InstanceConfigAuditModel(someAppId, someClusterName,
+            someDataCenter, someIp, someConfigAppId, someConfigClusterName, someConfigNamespace,
+            anotherReleaseKey);
+
+    instanceConfigAuditUtil.dispatch(Lists.newArrayList(someAuditModel, anotherAuditModel));
+
+    List<BlockingQueue<List<InstanceConfigAuditUtil.InstanceConfigAuditModel>>> workerAudits =
+        (List<BlockingQueue<List<InstanceConfigAuditUtil.InstanceConfigAuditModel>>>)
+            ReflectionTestUtils.getField(instanceConfigAuditUtil, "workerAudits");
+
+    List<InstanceConfigAuditUtil.InstanceConfigAuditModel> dispatched = null;
+    for (BlockingQueue<List<InstanceConfigAuditUtil.InstanceConfigAuditModel>> batches : workerAudits) {
+      List<InstanceConfigAuditUtil.InstanceConfigAuditModel> batch = batches.poll();
+      if (batch != null) {
+        assertNull(dispatched);
+        dispatched = batch;
+      }
+    }
+
+    assertEquals(Lists.newArrayList(anotherAuditModel), dispatched);
+  }
+
 
 }
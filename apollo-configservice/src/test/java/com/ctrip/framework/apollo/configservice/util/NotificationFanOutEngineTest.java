@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationFanOutEngineTest {
+  private NotificationFanOutEngine engine;
+  private int someBatch;
+  private int someBatchInterval;
+  //generous enough for loaded machines, the pacing of the tests is much slower than the scheduling
+  private static final long SOME_TIMEOUT_IN_MILLI = 5000;
+
+  @Before
+  public void setUp() throws Exception {
+    someBatch = 10;
+    //refill one token every 100ms, so the pacing is observable without depending on exact timing
+    someBatchInterval = 1000;
+    engine = new NotificationFanOutEngine(2, () -> someBatch, () -> someBatchInterval);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    engine.shutdown();
+  }
+
+  @Test
+  public void testFanOutIsPacedPerKey() throws Exception {
+    String someKey = "someKey";
+    AtomicInteger counter = new AtomicInteger();
+
+    engine.fanOut(someKey, assembleNotifications(someBatch * 3, counter));
+
+    //the first batch is sent immediately, the rest are paced and take two more intervals
+    await().atMost(SOME_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS)
+        .untilAsserted(() -> assertTrue(counter.get() >= someBatch));
+    assertTrue(counter.get() < someBatch * 3);
+
+    await().atMost(SOME_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS)
+        .untilAsserted(() -> assertEquals(someBatch * 3, counter.get()));
+    await().atMost(SOME_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS)
+        .untilAsserted(() -> assertTrue(engine.getProgress().isEmpty()));
+  }
+
+  @Test
+  public void testHotKeyDoesNotDelayOtherKeys() throws Exception {
+    String hotKey = "hotKey";
+    String anotherKey = "anotherKey";
+    AtomicInteger hotCounter = new AtomicInteger();
+    AtomicInteger anotherCounter = new AtomicInteger();
+
+    engine.fanOut(hotKey, assembleNotifications(someBatch * 100, hotCounter));
+    engine.fanOut(anotherKey, assembleNotifications(someBatch, anotherCounter));
+
+    await().atMost(SOME_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS)
+        .untilAsserted(() -> assertEquals(someBatch, anotherCounter.get()));
+    //the hot key needs about 100 intervals to finish
+    assertTrue(hotCounter.get() < someBatch * 100);
+    assertTrue(engine.getProgress().get(hotKey).getPending() > 0);
+  }
+
+  @Test
+  public void testFailedNotificationDoesNotStopFanOut() throws Exception {
+    String someKey = "someKey";
+    AtomicInteger counter = new AtomicInteger();
+    List<Runnable> notifications = Lists.newArrayList();
+    notifications.add(() -> {
+      throw new IllegalStateException("some failure");
+    });
+    notifications.addAll(assembleNotifications(someBatch, counter));
+
+    engine.fanOut(someKey, notifications);
+
+    await().atMost(SOME_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS)
+        .untilAsserted(() -> assertEquals(someBatch, counter.get()));
+  }
+
+  private List<Runnable> assembleNotifications(int size, AtomicInteger counter) {
+    List<Runnable> notifications = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      notifications.add(counter::incrementAndGet);
+    }
+    return notifications;
+  }
+}
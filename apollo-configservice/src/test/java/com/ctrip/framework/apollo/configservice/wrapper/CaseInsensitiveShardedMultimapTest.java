@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaseInsensitiveShardedMultimapTest {
+  private CaseInsensitiveShardedMultimap<Object> multimap;
+
+  @Before
+  public void setUp() throws Exception {
+    multimap = new CaseInsensitiveShardedMultimap<>(3);
+  }
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    String someKey = "someAppId+someCluster+someNamespace";
+    Object someValue = new Object();
+    Object anotherValue = new Object();
+
+    assertTrue(multimap.put(someKey, someValue));
+    assertTrue(multimap.put(someKey.toUpperCase(), anotherValue));
+    assertFalse(multimap.put(someKey.toLowerCase(), someValue));
+
+    assertEquals(2, multimap.size());
+    assertTrue(multimap.containsKey(someKey.toUpperCase()));
+    assertEquals(2, multimap.get(someKey).size());
+    assertTrue(multimap.get(someKey.toLowerCase()).contains(someValue));
+    assertTrue(multimap.get(someKey.toLowerCase()).contains(anotherValue));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    String someKey = "someKey";
+    Object someValue = new Object();
+    Object anotherValue = new Object();
+
+    multimap.put(someKey, someValue);
+
+    assertFalse(multimap.remove(someKey, anotherValue));
+    assertTrue(multimap.remove(someKey.toUpperCase(), someValue));
+    assertFalse(multimap.remove(someKey, someValue));
+
+    assertEquals(0, multimap.size());
+    assertFalse(multimap.containsKey(someKey));
+    assertTrue(multimap.get(someKey).isEmpty());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testGetIsUnmodifiable() throws Exception {
+    String someKey = "someKey";
+
+    multimap.put(someKey, new Object());
+
+    multimap.get(someKey).clear();
+  }
+
+  @Test
+  public void testConcurrentPutAndRemove() throws Exception {
+    int threads = 8;
+    int valuesPerThread = 1000;
+    String someKey = "someKey";
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+
+    for (int i = 0; i < threads; i++) {
+      executorService.submit(() -> {
+        try {
+          for (int j = 0; j < valuesPerThread; j++) {
+            Object value = new Object();
+            String key = j % 2 == 0 ? someKey : someKey + j % 10;
+            multimap.put(key, value);
+            multimap.get(key).forEach(v -> {
+            });
+            multimap.remove(key.toUpperCase(), value);
+          }
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    executorService.shutdown();
+
+    assertEquals(0, multimap.size());
+    assertFalse(multimap.containsKey(someKey));
+  }
+}
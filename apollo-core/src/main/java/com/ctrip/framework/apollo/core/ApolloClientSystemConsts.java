@@ -156,4 +156,44 @@ public class ApolloClientSystemConsts {
    * enable property names cache environment variables
    */
   public static final String APOLLO_CACHE_FILE_ENABLE_ENVIRONMENT_VARIABLES = "APOLLO_CACHE_FILE_ENABLE";
+
+  /**
+   * enable incremental sync of configurations
+   */
+  public static final String APOLLO_INCREMENTAL_SYNC_ENABLE = "apollo.incremental.sync.enable";
+
+  /**
+   * enable incremental sync of configurations environment variables
+   */
+  public static final String APOLLO_INCREMENTAL_SYNC_ENABLE_ENVIRONMENT_VARIABLES = "APOLLO_INCREMENTAL_SYNC_ENABLE";
+
+  /**
+   * enable loading the configs of multiple namespaces in one request
+   */
+  public static final String APOLLO_BATCH_FETCH_ENABLE = "apollo.batch.fetch.enable";
+
+  /**
+   * enable loading the configs of multiple namespaces in one request environment variables
+   */
+  public static final String APOLLO_BATCH_FETCH_ENABLE_ENVIRONMENT_VARIABLES = "APOLLO_BATCH_FETCH_ENABLE";
+
+  /**
+   * enable resolving properties from a precomputed snapshot
+   */
+  public static final String APOLLO_PROPERTY_RESOLUTION_SNAPSHOT_ENABLE = "apollo.property.resolution.snapshot.enable";
+
+  /**
+   * enable resolving properties from a precomputed snapshot environment variables
+   */
+  public static final String APOLLO_PROPERTY_RESOLUTION_SNAPSHOT_ENABLE_ENVIRONMENT_VARIABLES = "APOLLO_PROPERTY_RESOLUTION_SNAPSHOT_ENABLE";
+
+  /**
+   * enable the binary format of local cache files
+   */
+  public static final String APOLLO_CACHE_FILE_BINARY_ENABLE = "apollo.cache.file.binary.enable";
+
+  /**
+   * enable the binary format of local cache files environment variables
+   */
+  public static final String APOLLO_CACHE_FILE_BINARY_ENABLE_ENVIRONMENT_VARIABLES = "APOLLO_CACHE_FILE_BINARY_ENABLE";
 }
@@ -16,6 +16,8 @@
  */
 package com.ctrip.framework.apollo.core.dto;
 
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,6 +35,10 @@ public class ApolloConfig {
 
   private String releaseKey;
 
+  private ConfigSyncType configSyncType;
+
+  private List<ConfigurationChange> configurationChanges;
+
   public ApolloConfig() {
   }
 
@@ -86,6 +92,28 @@ public class ApolloConfig {
     this.configurations = configurations;
   }
 
+  /**
+   * @return the sync type, null means {@link ConfigSyncType#FULL_SYNC}
+   */
+  public ConfigSyncType getConfigSyncType() {
+    return configSyncType;
+  }
+
+  public void setConfigSyncType(ConfigSyncType configSyncType) {
+    this.configSyncType = configSyncType;
+  }
+
+  /**
+   * @return the configuration changes when the sync type is {@link ConfigSyncType#INCREMENTAL_SYNC}
+   */
+  public List<ConfigurationChange> getConfigurationChanges() {
+    return configurationChanges;
+  }
+
+  public void setConfigurationChanges(List<ConfigurationChange> configurationChanges) {
+    this.configurationChanges = configurationChanges;
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("ApolloConfig{");
@@ -94,6 +122,8 @@ public class ApolloConfig {
     sb.append(", namespaceName='").append(namespaceName).append('\'');
     sb.append(", configurations=").append(configurations);
     sb.append(", releaseKey='").append(releaseKey).append('\'');
+    sb.append(", configSyncType=").append(configSyncType);
+    sb.append(", configurationChanges=").append(configurationChanges);
     sb.append('}');
     return sb.toString();
   }
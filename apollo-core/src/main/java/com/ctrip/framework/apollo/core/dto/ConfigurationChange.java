@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.core.dto;
+
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
+
+/**
+ * A configuration change in incremental sync, the new value is null for deleted configurations
+ */
+public class ConfigurationChange {
+  private String key;
+  private String newValue;
+  private ConfigurationChangeType changeType;
+
+  //for json converter
+  public ConfigurationChange() {
+  }
+
+  public ConfigurationChange(String key, String newValue, ConfigurationChangeType changeType) {
+    this.key = key;
+    this.newValue = newValue;
+    this.changeType = changeType;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  public String getNewValue() {
+    return newValue;
+  }
+
+  public void setNewValue(String newValue) {
+    this.newValue = newValue;
+  }
+
+  public ConfigurationChangeType getChangeType() {
+    return changeType;
+  }
+
+  public void setChangeType(ConfigurationChangeType changeType) {
+    this.changeType = changeType;
+  }
+
+  @Override
+  public String toString() {
+    return "ConfigurationChange{" +
+        "key='" + key + '\'' +
+        ", newValue='" + newValue + '\'' +
+        ", changeType=" + changeType +
+        '}';
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.core.enums;
+
+/**
+ * How the configurations in {@link com.ctrip.framework.apollo.core.dto.ApolloConfig} should be applied by clients
+ */
+public enum ConfigSyncType {
+  /**
+   * the configurations are the full set of the release
+   */
+  FULL_SYNC,
+  /**
+   * only the changes relative to the release held by the client are returned
+   */
+  INCREMENTAL_SYNC
+}
@@ -17,9 +17,11 @@
 package com.ctrip.framework.apollo.core.signature;
 
 import com.google.common.io.BaseEncoding;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -29,18 +31,36 @@ import javax.crypto.spec.SecretKeySpec;
 public class HmacSha1Utils {
 
   private static final String ALGORITHM_NAME = "HmacSHA1";
-  private static final String ENCODING = "UTF-8";
+  // a thread usually signs with the secrets of a few apps only
+  private static final int MAX_CACHED_MACS_PER_THREAD = 64;
+
+  /**
+   * The initialized macs of each thread keyed by secret, as creating and initializing a mac costs far more than
+   * signing a short string. A mac is reset after {@link Mac#doFinal(byte[])}, so it could be reused directly.
+   */
+  private static final ThreadLocal<Map<String, Mac>> MACS = ThreadLocal.withInitial(
+      () -> new LinkedHashMap<String, Mac>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+          return size() > MAX_CACHED_MACS_PER_THREAD;
+        }
+      });
 
   public static String signString(String stringToSign, String accessKeySecret) {
     try {
-      Mac mac = Mac.getInstance(ALGORITHM_NAME);
-      mac.init(new SecretKeySpec(
-          accessKeySecret.getBytes(ENCODING),
-          ALGORITHM_NAME
-      ));
-      byte[] signData = mac.doFinal(stringToSign.getBytes(ENCODING));
+      Map<String, Mac> macs = MACS.get();
+      Mac mac = macs.get(accessKeySecret);
+      if (mac == null) {
+        mac = Mac.getInstance(ALGORITHM_NAME);
+        mac.init(new SecretKeySpec(
+            accessKeySecret.getBytes(StandardCharsets.UTF_8),
+            ALGORITHM_NAME
+        ));
+        macs.put(accessKeySecret, mac);
+      }
+      byte[] signData = mac.doFinal(stringToSign.getBytes(StandardCharsets.UTF_8));
       return BaseEncoding.base64().encode(signData);
-    } catch (NoSuchAlgorithmException | UnsupportedEncodingException | InvalidKeyException e) {
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
       throw new IllegalArgumentException(e.toString());
     }
   }
@@ -18,8 +18,6 @@ package com.ctrip.framework.apollo.core.signature;
 
 import com.google.common.collect.Maps;
 import com.google.common.net.HttpHeaders;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.Map;
 
 /**
@@ -32,6 +30,7 @@ public class Signature {
    */
   private static final String AUTHORIZATION_FORMAT = "Apollo %s:%s";
   private static final String DELIMITER = "\n";
+  private static final String SCHEME_SEPARATOR = "://";
 
   public static final String HTTP_HEADER_TIMESTAMP = "Timestamp";
 
@@ -53,19 +52,28 @@ public class Signature {
     return headers;
   }
 
-  private static String url2PathWithQuery(String urlString) {
-    try {
-      URL url = new URL(urlString);
-      String path = url.getPath();
-      String query = url.getQuery();
+  /**
+   * Same as the path and query of {@link java.net.URL}, but without parsing the whole url
+   */
+  static String url2PathWithQuery(String urlString) {
+    int schemeEnd = urlString == null ? -1 : urlString.indexOf(SCHEME_SEPARATOR);
+    if (schemeEnd <= 0) {
+      throw new IllegalArgumentException("Invalid url pattern: " + urlString);
+    }
 
-      String pathWithQuery = path;
-      if (query != null && query.length() > 0) {
-        pathWithQuery += "?" + query;
-      }
-      return pathWithQuery;
-    } catch (MalformedURLException e) {
-      throw new IllegalArgumentException("Invalid url pattern: " + urlString, e);
+    int authorityStart = schemeEnd + SCHEME_SEPARATOR.length();
+    int end = urlString.indexOf('#', authorityStart);
+    if (end < 0) {
+      end = urlString.length();
+    }
+    int pathStart = authorityStart;
+    while (pathStart < end && urlString.charAt(pathStart) != '/' && urlString.charAt(pathStart) != '?') {
+      pathStart++;
+    }
+    // empty query is dropped
+    if (end > pathStart && urlString.indexOf('?', pathStart) == end - 1) {
+      end--;
     }
+    return urlString.substring(pathStart, end);
   }
 }
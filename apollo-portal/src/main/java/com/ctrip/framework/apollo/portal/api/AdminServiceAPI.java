@@ -325,6 +325,14 @@ public class AdminServiceAPI {
       return releaseDTO;
     }
 
+    public List<ReleaseDTO> findLatestReleases(String appId, Env env, String clusterName,
+        Set<String> namespaceNames) {
+      ReleaseDTO[] releaseDTOs = restTemplate.get(
+          env, "apps/{appId}/clusters/{clusterName}/releases/latest?namespaceNames={namespaceNames}",
+          ReleaseDTO[].class, appId, clusterName, JOINER.join(namespaceNames));
+      return Arrays.asList(releaseDTOs);
+    }
+
     public ReleaseDTO createRelease(String appId, Env env, String clusterName, String namespace,
         String releaseName, String releaseComment, String operator,
         boolean isEmergencyPublish) {
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.portal.component;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.portal.environment.Env;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Orders the admin services of an env by their health and load, so that a dead or slow instance is not waited on by
+ * every request.
+ *
+ * <ul>
+ *   <li>Each instance has a circuit breaker, which opens after {@value #CIRCUIT_OPEN_THRESHOLD} consecutive network
+ *   failures and lets a single trial request through every {@value #CIRCUIT_OPEN_MILLIS} ms until it succeeds. The
+ *   trial is taken when the request is sent, not when the instances are ordered.</li>
+ *   <li>The first instance is chosen by the power of two choices, comparing the EWMA latency weighted by the in-flight
+ *   requests. The other ones follow as the fallbacks, the instances with open circuit are only tried last.</li>
+ *   <li>The stats and meters of the instances no longer returned by the discovery are removed.</li>
+ * </ul>
+ */
+@Component
+public class AdminServiceLoadBalancer {
+  private static final Logger logger = LoggerFactory.getLogger(AdminServiceLoadBalancer.class);
+  private static final double EWMA_ALPHA = 0.3;
+  private static final int CIRCUIT_OPEN_THRESHOLD = 3;
+  private static final long CIRCUIT_OPEN_MILLIS = 10000;
+  private static final String TRACER_EVENT_CIRCUIT_OPEN = "AdminService.Circuit.Open";
+  private static final String TRACER_EVENT_CIRCUIT_CLOSE = "AdminService.Circuit.Close";
+  private static final String METRIC_REQUESTS = "apollo.portal.admin-service.requests";
+  private static final String METRIC_LATENCY_EWMA = "apollo.portal.admin-service.latency.ewma";
+  private static final String METRIC_CIRCUIT_OPEN = "apollo.portal.admin-service.circuit.open";
+
+  private final ConcurrentMap<String, InstanceStats> instanceStats = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Env, Set<String>> knownInstances = new ConcurrentHashMap<>();
+  private final MeterRegistry meterRegistry;
+  private LongSupplier clock = System::currentTimeMillis;
+
+  public AdminServiceLoadBalancer(final ObjectProvider<MeterRegistry> meterRegistry) {
+    this.meterRegistry = meterRegistry.getIfAvailable();
+  }
+
+  /**
+   * @return the services in the order to try
+   */
+  public List<ServiceDTO> select(Env env, List<ServiceDTO> services) {
+    evictStaleInstances(env, services);
+    long now = clock.getAsLong();
+    List<InstanceStats> available = Lists.newArrayListWithCapacity(services.size());
+    List<InstanceStats> unavailable = Lists.newArrayList();
+    for (ServiceDTO service : services) {
+      InstanceStats stats = getStats(env, service);
+      if (stats.isAvailable(now)) {
+        available.add(stats);
+      } else {
+        unavailable.add(stats);
+      }
+    }
+
+    List<ServiceDTO> result = Lists.newArrayListWithCapacity(services.size());
+    if (available.size() > 1) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int first = random.nextInt(available.size());
+      int second = random.nextInt(available.size() - 1);
+      if (second >= first) {
+        second++;
+      }
+      InstanceStats chosen = available.get(first).score() <= available.get(second).score() ?
+          available.get(first) : available.get(second);
+      available.remove(chosen);
+      available.sort(Comparator.comparingDouble(InstanceStats::score));
+      available.add(0, chosen);
+    }
+    Collections.shuffle(unavailable);
+    for (InstanceStats stats : available) {
+      result.add(stats.service);
+    }
+    for (InstanceStats stats : unavailable) {
+      result.add(stats.service);
+    }
+    return result;
+  }
+
+  /**
+   * Invoke the call on the service and record its latency and result, only the network failures count against the
+   * circuit breaker as the other errors are returned by a working instance.
+   */
+  public <T> T invoke(Env env, ServiceDTO service, Function<ServiceDTO, T> call) {
+    InstanceStats stats = getStats(env, service);
+    stats.acquireTrial(clock.getAsLong());
+    stats.inFlight.incrementAndGet();
+    long start = System.nanoTime();
+    boolean success = false;
+    try {
+      T result = call.apply(service);
+      success = true;
+      return result;
+    } catch (RuntimeException ex) {
+      success = !(ex instanceof ResourceAccessException);
+      throw ex;
+    } finally {
+      stats.inFlight.decrementAndGet();
+      stats.record(System.nanoTime() - start, success);
+    }
+  }
+
+  /**
+   * Remove the stats and meters of the instances gone, only checked when the instances of the env are changed
+   */
+  private void evictStaleInstances(Env env, List<ServiceDTO> services) {
+    Set<String> current = services.stream().map(ServiceDTO::getHomepageUrl).collect(Collectors.toSet());
+    Set<String> previous = knownInstances.put(env, current);
+    if (current.equals(previous)) {
+      return;
+    }
+    instanceStats.values().removeIf(stats -> {
+      if (!stats.env.equals(env) || current.contains(stats.service.getHomepageUrl())) {
+        return false;
+      }
+      stats.removeMeters();
+      return true;
+    });
+  }
+
+  private InstanceStats getStats(Env env, ServiceDTO service) {
+    String key = env + " " + service.getHomepageUrl();
+    InstanceStats stats = instanceStats.get(key);
+    if (stats == null) {
+      stats = instanceStats.computeIfAbsent(key, k -> new InstanceStats(env, service));
+    }
+    return stats;
+  }
+
+  private class InstanceStats {
+    private final Env env;
+    private final ServiceDTO service;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong circuitOpenUntil = new AtomicLong();
+    private volatile double ewmaLatencyMillis;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final List<Meter> meters = Lists.newArrayListWithCapacity(4);
+
+    InstanceStats(Env env, ServiceDTO service) {
+      this.env = env;
+      this.service = service;
+      if (meterRegistry == null) {
+        successTimer = null;
+        failureTimer = null;
+        return;
+      }
+      Tags tags = Tags.of("env", env.getName(), "instance", service.getHomepageUrl());
+      successTimer = Timer.builder(METRIC_REQUESTS).tags(tags).tag("outcome", "success").register(meterRegistry);
+      failureTimer = Timer.builder(METRIC_REQUESTS).tags(tags).tag("outcome", "failure").register(meterRegistry);
+      meters.add(successTimer);
+      meters.add(failureTimer);
+      meters.add(Gauge.builder(METRIC_LATENCY_EWMA, this, stats -> stats.ewmaLatencyMillis).tags(tags)
+          .baseUnit("milliseconds").register(meterRegistry));
+      meters.add(Gauge.builder(METRIC_CIRCUIT_OPEN, this, stats -> stats.isCircuitOpen() ? 1 : 0).tags(tags)
+          .register(meterRegistry));
+    }
+
+    /**
+     * @return whether the instance could be tried first, i.e. the circuit is closed or its trial is due
+     */
+    boolean isAvailable(long now) {
+      return !isCircuitOpen() || now >= circuitOpenUntil.get();
+    }
+
+    /**
+     * Take the trial of a half open circuit when the request is sent, so the other callers only try it last until the
+     * next trial is due
+     */
+    void acquireTrial(long now) {
+      if (!isCircuitOpen()) {
+        return;
+      }
+      long openUntil = circuitOpenUntil.get();
+      if (now >= openUntil) {
+        circuitOpenUntil.compareAndSet(openUntil, now + CIRCUIT_OPEN_MILLIS);
+      }
+    }
+
+    void removeMeters() {
+      for (Meter meter : meters) {
+        meterRegistry.remove(meter);
+      }
+    }
+
+    boolean isCircuitOpen() {
+      return consecutiveFailures.get() >= CIRCUIT_OPEN_THRESHOLD;
+    }
+
+    double score() {
+      // the instances not requested yet have no latency and would be tried first
+      return (ewmaLatencyMillis + 1) * (inFlight.get() + 1);
+    }
+
+    void record(long elapsedNanos, boolean success) {
+      double elapsedMillis = elapsedNanos / 1000000.0;
+      synchronized (this) {
+        ewmaLatencyMillis = ewmaLatencyMillis == 0 ? elapsedMillis :
+            EWMA_ALPHA * elapsedMillis + (1 - EWMA_ALPHA) * ewmaLatencyMillis;
+      }
+      if (successTimer != null) {
+        (success ? successTimer : failureTimer).record(elapsedNanos, TimeUnit.NANOSECONDS);
+      }
+
+      if (success) {
+        if (consecutiveFailures.getAndSet(0) >= CIRCUIT_OPEN_THRESHOLD) {
+          logger.info("Circuit of admin service {} in env {} closed", service.getHomepageUrl(), env);
+          Tracer.logEvent(TRACER_EVENT_CIRCUIT_CLOSE, service.getHomepageUrl());
+        }
+        return;
+      }
+      if (consecutiveFailures.incrementAndGet() >= CIRCUIT_OPEN_THRESHOLD) {
+        circuitOpenUntil.set(clock.getAsLong() + CIRCUIT_OPEN_MILLIS);
+        if (consecutiveFailures.get() == CIRCUIT_OPEN_THRESHOLD) {
+          logger.warn("Circuit of admin service {} in env {} opened", service.getHomepageUrl(), env);
+          Tracer.logEvent(TRACER_EVENT_CIRCUIT_OPEN, service.getHomepageUrl());
+        }
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.ctrip.framework.apollo.portal.component;
 
 import com.ctrip.framework.apollo.common.exception.ServiceException;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.portal.component.config.PortalConfig;
 import com.ctrip.framework.apollo.portal.constant.TracerEventType;
 import com.ctrip.framework.apollo.portal.environment.Env;
@@ -25,6 +26,8 @@ import com.ctrip.framework.apollo.portal.environment.PortalMetaDomainService;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -32,6 +35,15 @@ import java.lang.reflect.Type;
 import java.net.SocketTimeoutException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import javax.annotation.PostConstruct;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.HttpHostConnectException;
@@ -52,6 +64,11 @@ import org.springframework.web.util.UriTemplateHandler;
 
 /**
  * 封装RestTemplate. admin server集群在某些机器宕机或者超时的情况下轮询重试
+ *
+ * <p>The admin services are tried in the order of {@link AdminServiceLoadBalancer}, and GET requests could be hedged
+ * to another admin service if {@link PortalConfig#hedgedGetDelay()} is set. The hedged requests run in a pool of at
+ * most {@value #HEDGED_GET_MAX_THREADS} threads, as a blocking read could not be interrupted by the cancellation, the
+ * requests run in the caller thread without hedging when the pool is full.</p>
  */
 @Component
 public class RetryableRestTemplate {
@@ -65,6 +82,7 @@ public class RetryableRestTemplate {
    * Admin service access tokens in "PortalDB.ServerConfig"
    */
   private static final Type ACCESS_TOKENS = new TypeToken<Map<String, String>>(){}.getType();
+  private static final int HEDGED_GET_MAX_THREADS = 64;
 
   private RestTemplate restTemplate;
 
@@ -72,6 +90,8 @@ public class RetryableRestTemplate {
   private final AdminServiceAddressLocator adminServiceAddressLocator;
   private final PortalMetaDomainService portalMetaDomainService;
   private final PortalConfig portalConfig;
+  private final AdminServiceLoadBalancer adminServiceLoadBalancer;
+  private final ExecutorService hedgedGetExecutorService;
   private volatile String lastAdminServiceAccessTokens;
   private volatile Map<Env, String> adminServiceAccessTokenMap;
 
@@ -79,12 +99,17 @@ public class RetryableRestTemplate {
       final @Lazy RestTemplateFactory restTemplateFactory,
       final @Lazy AdminServiceAddressLocator adminServiceAddressLocator,
       final PortalMetaDomainService portalMetaDomainService,
-      final PortalConfig portalConfig
+      final PortalConfig portalConfig,
+      final AdminServiceLoadBalancer adminServiceLoadBalancer
   ) {
     this.restTemplateFactory = restTemplateFactory;
     this.adminServiceAddressLocator = adminServiceAddressLocator;
     this.portalMetaDomainService = portalMetaDomainService;
     this.portalConfig = portalConfig;
+    this.adminServiceLoadBalancer = adminServiceLoadBalancer;
+    this.hedgedGetExecutorService = new ThreadPoolExecutor(0, HEDGED_GET_MAX_THREADS, 60L, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), ApolloThreadFactory.create("RetryableRestTemplate", true),
+        new ThreadPoolExecutor.CallerRunsPolicy());
   }
 
 
@@ -126,40 +151,11 @@ public class RetryableRestTemplate {
     }
 
     String uri = uriTemplateHandler.expand(path, uriVariables).getPath();
-    Transaction ct = Tracer.newTransaction("AdminAPI", uri);
-    ct.addData("Env", env);
-
-    List<ServiceDTO> services = getAdminServices(env, ct);
+    String relativePath = path;
     HttpHeaders extraHeaders = assembleExtraHeaders(env);
 
-    for (ServiceDTO serviceDTO : services) {
-      try {
-
-        T result = doExecute(method, extraHeaders, serviceDTO, path, request, responseType, uriVariables);
-
-        ct.setStatus(Transaction.SUCCESS);
-        ct.complete();
-        return result;
-      } catch (Throwable t) {
-        logger.error("Http request failed, uri: {}, method: {}", uri, method, t);
-        Tracer.logError(t);
-        if (canRetry(t, method)) {
-          Tracer.logEvent(TracerEventType.API_RETRY, uri);
-        } else {//biz exception rethrow
-          ct.setStatus(t);
-          ct.complete();
-          throw t;
-        }
-      }
-    }
-
-    //all admin server down
-    ServiceException e =
-        new ServiceException(String.format("Admin servers are unresponsive. meta server address: %s, admin servers: %s",
-                portalMetaDomainService.getDomain(env), services));
-    ct.setStatus(e);
-    ct.complete();
-    throw e;
+    return executeWithRetry(method, env, uri, serviceDTO ->
+        doExecute(method, extraHeaders, serviceDTO, relativePath, request, responseType, uriVariables));
   }
 
   private <T> ResponseEntity<T> exchangeGet(Env env, String path, ParameterizedTypeReference<T> reference,
@@ -169,32 +165,45 @@ public class RetryableRestTemplate {
     }
 
     String uri = uriTemplateHandler.expand(path, uriVariables).getPath();
+    String relativePath = path;
+    HttpEntity<Void> entity = new HttpEntity<>(assembleExtraHeaders(env));
+
+    return executeWithRetry(HttpMethod.GET, env, uri, serviceDTO ->
+        restTemplate.exchange(parseHost(serviceDTO) + relativePath, HttpMethod.GET, entity, reference, uriVariables));
+  }
+
+  private <T> T executeWithRetry(HttpMethod method, Env env, String uri, Function<ServiceDTO, T> call) {
     Transaction ct = Tracer.newTransaction("AdminAPI", uri);
     ct.addData("Env", env);
 
-    List<ServiceDTO> services = getAdminServices(env, ct);
-    HttpEntity<Void> entity = new HttpEntity<>(assembleExtraHeaders(env));
+    List<ServiceDTO> services = adminServiceLoadBalancer.select(env, getAdminServices(env, ct));
+    int hedgedGetDelay = method == HttpMethod.GET ? portalConfig.hedgedGetDelay() : 0;
 
-    for (ServiceDTO serviceDTO : services) {
+    int index = 0;
+    while (index < services.size()) {
       try {
 
-        ResponseEntity<T> result =
-            restTemplate.exchange(parseHost(serviceDTO) + path, HttpMethod.GET, entity, reference, uriVariables);
+        T result;
+        if (hedgedGetDelay > 0 && index + 1 < services.size()) {
+          index += 2;
+          result = hedgedExecute(env, uri, services.get(index - 2), services.get(index - 1), hedgedGetDelay, call);
+        } else {
+          result = adminServiceLoadBalancer.invoke(env, services.get(index++), call);
+        }
 
         ct.setStatus(Transaction.SUCCESS);
         ct.complete();
         return result;
       } catch (Throwable t) {
-        logger.error("Http request failed, uri: {}, method: {}", uri, HttpMethod.GET, t);
+        logger.error("Http request failed, uri: {}, method: {}", uri, method, t);
         Tracer.logError(t);
-        if (canRetry(t, HttpMethod.GET)) {
+        if (canRetry(t, method)) {
           Tracer.logEvent(TracerEventType.API_RETRY, uri);
-        } else {// biz exception rethrow
+        } else {//biz exception rethrow
           ct.setStatus(t);
           ct.complete();
           throw t;
         }
-
       }
     }
 
@@ -205,7 +214,50 @@ public class RetryableRestTemplate {
     ct.setStatus(e);
     ct.complete();
     throw e;
+  }
 
+  /**
+   * Send the GET request to the backup service as well if the primary one does not respond within the delay, the
+   * first successful response wins
+   */
+  private <T> T hedgedExecute(Env env, String uri, ServiceDTO primary, ServiceDTO backup, int delay,
+                              Function<ServiceDTO, T> call) {
+    CompletionService<T> completionService = new ExecutorCompletionService<>(hedgedGetExecutorService);
+    List<Future<T>> futures = Lists.newArrayListWithCapacity(2);
+    futures.add(completionService.submit(() -> adminServiceLoadBalancer.invoke(env, primary, call)));
+    try {
+      Future<T> completed = completionService.poll(delay, TimeUnit.MILLISECONDS);
+      if (completed == null) {
+        Tracer.logEvent(TracerEventType.API_HEDGED_GET, uri);
+        futures.add(completionService.submit(() -> adminServiceLoadBalancer.invoke(env, backup, call)));
+        completed = completionService.take();
+      }
+      try {
+        return completed.get();
+      } catch (ExecutionException ex) {
+        // the other request is still worth waiting for only if the failed one could be retried
+        if (!canRetry(ex.getCause(), HttpMethod.GET)) {
+          throw ex;
+        }
+        logger.warn("Hedged http request failed, uri: {}, service: {}", uri, completed == futures.get(0) ? primary
+            : backup, ex.getCause());
+        if (futures.size() == 1) {
+          // the primary failed within the delay, so the backup is sent right away
+          futures.add(completionService.submit(() -> adminServiceLoadBalancer.invoke(env, backup, call)));
+        }
+        return completionService.take().get();
+      }
+    } catch (ExecutionException ex) {
+      Throwables.throwIfUnchecked(ex.getCause());
+      throw new IllegalStateException(ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException("Interrupted while waiting for admin services", ex);
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
   }
 
   private HttpHeaders assembleExtraHeaders(Env env) {
@@ -169,6 +169,13 @@ public class PortalConfig extends RefreshableConfig {
     return getIntProperty("api.readTimeout", 10000);
   }
 
+  /**
+   * @return the delay in milliseconds to send a hedged GET request to another admin service, 0 to disable
+   */
+  public int hedgedGetDelay() {
+    return getIntProperty("api.hedgedGetDelay", 0);
+  }
+
   public List<Organization> organizations() {
 
     String organizations = getValue("organizations");
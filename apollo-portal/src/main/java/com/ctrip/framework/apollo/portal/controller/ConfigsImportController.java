@@ -30,11 +30,9 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.zip.ZipInputStream;
 
 /**
  * Import the configs from file.
@@ -85,10 +83,7 @@ public class ConfigsImportController {
         importEnvs =
         Splitter.on(ENV_SEPARATOR).splitToList(envs).stream().map(env -> Env.valueOf(env)).collect(Collectors.toList());
 
-    byte[] bytes = file.getBytes();
-    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(bytes))) {
-      configsImportService.importDataFromZipFile(importEnvs, zipInputStream, false);
-    }
+    configsImportService.importDataFromZipFile(importEnvs, file, false);
   }
 
   @PreAuthorize(value = "@permissionValidator.isSuperAdmin()")
@@ -100,9 +95,6 @@ public class ConfigsImportController {
         importEnvs =
         Splitter.on(ENV_SEPARATOR).splitToList(envs).stream().map(env -> Env.valueOf(env)).collect(Collectors.toList());
 
-    byte[] bytes = file.getBytes();
-    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(bytes))) {
-      configsImportService.importDataFromZipFile(importEnvs, zipInputStream, true);
-    }
+    configsImportService.importDataFromZipFile(importEnvs, file, true);
   }
 }
@@ -16,6 +16,8 @@
  */
 package com.ctrip.framework.apollo.portal.service;
 
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import com.google.gson.Gson;
 
 import com.ctrip.framework.apollo.common.dto.ClusterDTO;
@@ -23,7 +25,7 @@ import com.ctrip.framework.apollo.common.entity.App;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.common.exception.ServiceException;
-import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.portal.component.PermissionValidator;
 import com.ctrip.framework.apollo.portal.component.PortalSettings;
 import com.ctrip.framework.apollo.portal.entity.bo.ConfigBO;
@@ -39,13 +41,23 @@ import org.springframework.util.CollectionUtils;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -54,6 +66,11 @@ public class ConfigsExportService {
 
   private static final Logger logger = LoggerFactory.getLogger(ConfigsExportService.class);
 
+  // bounds the concurrent admin service calls of exporting
+  private static final int EXPORT_THREADS = 8;
+  // the apps exported ahead of the zip writing
+  private static final int EXPORT_WINDOW_SIZE = EXPORT_THREADS * 2;
+
   private final Gson gson = new Gson();
 
   private final AppService appService;
@@ -68,6 +85,8 @@ public class ConfigsExportService {
 
   private final PermissionValidator permissionValidator;
 
+  private final ExecutorService exportExecutorService;
+
   public ConfigsExportService(
       AppService appService,
       ClusterService clusterService,
@@ -81,6 +100,11 @@ public class ConfigsExportService {
     this.appNamespaceService = appNamespaceService;
     this.portalSettings = portalSettings;
     this.permissionValidator = permissionValidator;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(EXPORT_THREADS, EXPORT_THREADS,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        ApolloThreadFactory.create("ConfigsExportService", true));
+    executor.allowCoreThreadTimeOut(true);
+    this.exportExecutorService = executor;
   }
 
   /**
@@ -119,19 +143,44 @@ public class ConfigsExportService {
       exportAppNamespaces(zipOutputStream);
 
       //export app's clusters
-      exportEnvs.parallelStream().forEach(env -> {
-        try {
-          this.exportClusters(env, hasPermissionApps, zipOutputStream);
-        } catch (Exception e) {
-          logger.error("export cluster error. env = {}", env, e);
-        }
-      });
+      exportClusters(exportEnvs, hasPermissionApps, zipOutputStream);
     } catch (IOException e) {
       logger.error("export config error", e);
       throw new ServiceException("export config error", e);
     }
   }
 
+  /**
+   * The clusters and namespaces of each app in each env are loaded in parallel, and written by the caller thread in
+   * order. At most {@link #EXPORT_WINDOW_SIZE} apps are loaded ahead of the writing, so the memory is bounded no matter
+   * how many apps are exported.
+   */
+  private void exportClusters(final Collection<Env> exportEnvs, final List<App> exportApps,
+                              ZipOutputStream zipOutputStream) throws IOException {
+    Iterator<Callable<Map<String, String>>> tasks = exportEnvs.stream()
+        .flatMap(env -> exportApps.stream().map(exportApp -> (Callable<Map<String, String>>) () ->
+            exportCluster(env, exportApp)))
+        .iterator();
+    Deque<Future<Map<String, String>>> window = new ArrayDeque<>(EXPORT_WINDOW_SIZE);
+
+    try {
+      while (tasks.hasNext() || !window.isEmpty()) {
+        while (tasks.hasNext() && window.size() < EXPORT_WINDOW_SIZE) {
+          window.add(exportExecutorService.submit(tasks.next()));
+        }
+
+        Map<String, String> files = Futures.getUnchecked(window.poll());
+        for (Map.Entry<String, String> file : files.entrySet()) {
+          writeToZip(file.getKey(), file.getValue(), zipOutputStream);
+        }
+      }
+    } finally {
+      for (Future<Map<String, String>> future : window) {
+        future.cancel(true);
+      }
+    }
+  }
+
   private List<App> findHasPermissionApps() {
     // get all apps
     final List<App> apps = appService.findAll();
@@ -161,12 +210,10 @@ public class ConfigsExportService {
     final Consumer<App> appConsumer =
         app -> {
           try {
-            synchronized (zipOutputStream) {
-              String fileName = ConfigFileUtils.genAppInfoPath(app);
-              String content = gson.toJson(app);
+            String fileName = ConfigFileUtils.genAppInfoPath(app);
+            String content = gson.toJson(app);
 
-              writeToZip(fileName, content, zipOutputStream);
-            }
+            writeToZip(fileName, content, zipOutputStream);
           } catch (IOException e) {
             logger.error("Write error. {}", app);
             throw new ServiceException("Write app error. {}", e);
@@ -183,12 +230,10 @@ public class ConfigsExportService {
 
     Consumer<AppNamespace> appNamespaceConsumer = appNamespace -> {
       try {
-        synchronized (zipOutputStream) {
-          String fileName = ConfigFileUtils.genAppNamespaceInfoPath(appNamespace);
-          String content = gson.toJson(appNamespace);
+        String fileName = ConfigFileUtils.genAppNamespaceInfoPath(appNamespace);
+        String content = gson.toJson(appNamespace);
 
-          writeToZip(fileName, content, zipOutputStream);
-        }
+        writeToZip(fileName, content, zipOutputStream);
       } catch (Exception e) {
         logger.error("Write appnamespace error. {}", appNamespace);
         throw new IllegalStateException(e);
@@ -199,40 +244,41 @@ public class ConfigsExportService {
 
   }
 
-  private void exportClusters(final Env env, final List<App> exportApps, ZipOutputStream zipOutputStream) {
-    exportApps.parallelStream().forEach(exportApp -> {
-      try {
-        this.exportCluster(env, exportApp, zipOutputStream);
-      } catch (Exception e) {
-        logger.error("export cluster error. appId = {}", exportApp.getAppId(), e);
-      }
-    });
-  }
-
-  private void exportCluster(final Env env, final App exportApp, ZipOutputStream zipOutputStream) {
-    final List<ClusterDTO> exportClusters = clusterService.findClusters(env, exportApp.getAppId());
+  /**
+   * @return the content of the cluster and namespace files of the app in the env, keyed by the file path
+   */
+  private Map<String, String> exportCluster(final Env env, final App exportApp) {
+    Map<String, String> files = Maps.newLinkedHashMap();
+    try {
+      final List<ClusterDTO> exportClusters = clusterService.findClusters(env, exportApp.getAppId());
 
-    if (CollectionUtils.isEmpty(exportClusters)) {
-      return;
-    }
+      if (CollectionUtils.isEmpty(exportClusters)) {
+        return files;
+      }
 
-    //write cluster info to zip
-    writeClusterInfoToZip(env, exportApp, exportClusters, zipOutputStream);
+      //write cluster info to zip
+      for (ClusterDTO cluster : exportClusters) {
+        files.put(ConfigFileUtils.genClusterInfoPath(exportApp, env, cluster), gson.toJson(cluster));
+      }
 
-    //export namespaces
-    exportClusters.parallelStream().forEach(cluster -> {
-      try {
-        this.exportNamespaces(env, exportApp, cluster, zipOutputStream);
-      } catch (BadRequestException badRequestException) {
-        //ignore
-      } catch (Exception e) {
-        logger.error("export namespace error. appId = {}, cluster = {}", exportApp.getAppId(), cluster, e);
+      //export namespaces
+      for (ClusterDTO cluster : exportClusters) {
+        try {
+          this.exportNamespaces(env, exportApp, cluster, files);
+        } catch (BadRequestException badRequestException) {
+          //ignore
+        } catch (Exception e) {
+          logger.error("export namespace error. appId = {}, cluster = {}", exportApp.getAppId(), cluster, e);
+        }
       }
-    });
+    } catch (Exception e) {
+      logger.error("export cluster error. env = {}, appId = {}", env, exportApp.getAppId(), e);
+    }
+    return files;
   }
 
   private void exportNamespaces(final Env env, final App exportApp, final ClusterDTO exportCluster,
-                                ZipOutputStream zipOutputStream) {
+                                Map<String, String> files) {
     String clusterName = exportCluster.getName();
 
     List<NamespaceBO> namespaceBOS = namespaceService.findNamespaceBOs(exportApp.getAppId(), env, clusterName);
@@ -241,59 +287,16 @@ public class ConfigsExportService {
       return;
     }
 
-    Stream<ConfigBO> configBOStream = namespaceBOS.stream()
-        .map(
-            namespaceBO -> new ConfigBO(env, exportApp.getOwnerName(), exportApp.getAppId(), clusterName, namespaceBO));
+    for (NamespaceBO namespaceBO : namespaceBOS) {
+      ConfigBO configBO = new ConfigBO(env, exportApp.getOwnerName(), exportApp.getAppId(), clusterName, namespaceBO);
 
-    writeNamespacesToZip(configBOStream, zipOutputStream);
-  }
+      String configFileName = ConfigFileUtils.toFilename(configBO.getAppId(), clusterName, configBO.getNamespace(),
+          configBO.getFormat());
+      String filePath =
+          ConfigFileUtils.genNamespacePath(configBO.getOwnerName(), configBO.getAppId(), env, configFileName);
 
-  private void writeNamespacesToZip(Stream<ConfigBO> configBOStream, ZipOutputStream zipOutputStream) {
-    final Consumer<ConfigBO> configBOConsumer =
-        configBO -> {
-          try {
-            synchronized (zipOutputStream) {
-              String appId = configBO.getAppId();
-              String clusterName = configBO.getClusterName();
-              String namespace = configBO.getNamespace();
-              String configFileContent = configBO.getConfigFileContent();
-              ConfigFileFormat configFileFormat = configBO.getFormat();
-
-              String
-                  configFileName =
-                  ConfigFileUtils.toFilename(appId, clusterName, namespace, configFileFormat);
-              String filePath =
-                  ConfigFileUtils.genNamespacePath(configBO.getOwnerName(), appId, configBO.getEnv(), configFileName);
-
-              writeToZip(filePath, configFileContent, zipOutputStream);
-            }
-          } catch (IOException e) {
-            logger.error("Write error. {}", configBO);
-            throw new ServiceException("Write namespace error. {}", e);
-          }
-        };
-
-    configBOStream.forEach(configBOConsumer);
-  }
-
-  private void writeClusterInfoToZip(Env env, App app, List<ClusterDTO> exportClusters,
-                                     ZipOutputStream zipOutputStream) {
-    final Consumer<ClusterDTO> clusterConsumer =
-        cluster -> {
-          try {
-            synchronized (zipOutputStream) {
-              String fileName = ConfigFileUtils.genClusterInfoPath(app, env, cluster);
-              String content = gson.toJson(cluster);
-
-              writeToZip(fileName, content, zipOutputStream);
-            }
-          } catch (IOException e) {
-            logger.error("Write error. {}", cluster);
-            throw new ServiceException("Write error. {}", e);
-          }
-        };
-
-    exportClusters.forEach(clusterConsumer);
+      files.put(filePath, configBO.getConfigFileContent());
+    }
   }
 
   private void writeToZip(String filePath, String content, ZipOutputStream zipOutputStream)
@@ -301,10 +304,10 @@ public class ConfigsExportService {
     final ZipEntry zipEntry = new ZipEntry(filePath);
     try {
       zipOutputStream.putNextEntry(zipEntry);
-      zipOutputStream.write(content.getBytes());
+      zipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
       zipOutputStream.closeEntry();
     } catch (IOException e) {
-      String errorMsg = "write content to zip error. file = " + filePath + ", content = " + content;
+      String errorMsg = "write content to zip error. file = " + filePath;
       logger.error(errorMsg);
       throw new IOException(errorMsg, e);
     }
@@ -17,16 +17,19 @@
 package com.ctrip.framework.apollo.portal.service;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 
 import com.ctrip.framework.apollo.common.constants.GsonType;
 import com.ctrip.framework.apollo.common.dto.ClusterDTO;
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
 import com.ctrip.framework.apollo.common.dto.ItemDTO;
 import com.ctrip.framework.apollo.common.dto.NamespaceDTO;
 import com.ctrip.framework.apollo.common.entity.App;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.common.exception.ServiceException;
 import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.portal.environment.Env;
 import com.ctrip.framework.apollo.portal.listener.AppNamespaceCreationEvent;
 import com.ctrip.framework.apollo.portal.spi.UserInfoHolder;
@@ -37,11 +40,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.http.HttpStatus;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.HttpStatusCodeException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -49,8 +51,16 @@ import java.io.InputStream;
 import java.rmi.ServerException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -62,6 +72,11 @@ public class ConfigsImportService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ConfigsImportService.class);
 
+  // bounds the concurrent admin service calls of importing namespaces
+  private static final int IMPORT_THREADS = 8;
+  // the namespace files read ahead of the importing
+  private static final int IMPORT_WINDOW_SIZE = IMPORT_THREADS * 2;
+
   private Gson gson = new Gson();
 
   private final ItemService               itemService;
@@ -72,6 +87,7 @@ public class ConfigsImportService {
   private final ApplicationEventPublisher publisher;
   private final UserInfoHolder            userInfoHolder;
   private final RoleInitializationService roleInitializationService;
+  private final ExecutorService           importExecutorService;
 
   public ConfigsImportService(
       final ItemService itemService,
@@ -90,6 +106,11 @@ public class ConfigsImportService {
     this.publisher = publisher;
     this.userInfoHolder = userInfoHolder;
     this.roleInitializationService = roleInitializationService;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(IMPORT_THREADS, IMPORT_THREADS,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        ApolloThreadFactory.create("ConfigsImportService", true));
+    executor.allowCoreThreadTimeOut(true);
+    this.importExecutorService = executor;
   }
 
   /**
@@ -111,23 +132,17 @@ public class ConfigsImportService {
 
   /**
    * import all data include app、appnamespace、cluster、namespace、item
+   *
+   * <p>The zip is read twice, the metadata files are imported first and then the namespace files are streamed to the
+   * import workers, so the namespace files are never held in memory all together.</p>
    */
-  public void importDataFromZipFile(List<Env> importEnvs, ZipInputStream dataZip, boolean ignoreConflictNamespace)
+  public void importDataFromZipFile(List<Env> importEnvs, InputStreamSource dataZip, boolean ignoreConflictNamespace)
       throws IOException {
     List<String> toImportApps = Lists.newArrayList();
     List<String> toImportAppNSs = Lists.newArrayList();
     List<ImportClusterData> toImportClusters = Lists.newArrayList();
-    List<ImportNamespaceData> toImportNSs = Lists.newArrayList();
-
-    ZipEntry entry;
-    while ((entry = dataZip.getNextEntry()) != null) {
-      if (entry.isDirectory()) {
-        continue;
-      }
-
-      String filePath = entry.getName();
-      String content = readContent(dataZip);
 
+    forEachZipEntry(dataZip, (filePath, zipInputStream) -> {
       String[] info = filePath.split("/");
 
       String fileName;
@@ -135,38 +150,33 @@ public class ConfigsImportService {
         //app namespace metadata file. path format : ${namespaceName}.appnamespace.metadata
         fileName = info[0];
         if (fileName.endsWith(ConfigFileUtils.APP_NAMESPACE_METADATA_FILE_SUFFIX)) {
-          toImportAppNSs.add(content);
+          toImportAppNSs.add(readContent(zipInputStream));
         }
       } else if (info.length == 3) {
         fileName = info[2];
         if (fileName.equals(ConfigFileUtils.APP_METADATA_FILENAME)) {
           //app metadata file. path format : apollo/${appId}/app.metadata
-          toImportApps.add(content);
+          toImportApps.add(readContent(zipInputStream));
         }
-      } else {
-        String env = info[2];
+      } else if (info.length > 3) {
+        Env env = findImportEnv(importEnvs, info[2]);
         fileName = info[3];
-          for (Env importEnv : importEnvs) {
-            if (Objects.equals(importEnv.getName(), env)) {
-              if (fileName.endsWith(ConfigFileUtils.CLUSTER_METADATA_FILE_SUFFIX)) {
-                //cluster metadata file. path format : apollo/${appId}/${env}/${clusterName}.cluster.metadata
-                toImportClusters.add(new ImportClusterData(Env.transformEnv(env), content));
-              } else {
-                //namespace file.path format : apollo/${appId}/${env}/${appId}+${cluster}+${namespaceName}
-                toImportNSs.add(new ImportNamespaceData(Env.valueOf(env), fileName, content, ignoreConflictNamespace));
-              }
-            }
+        if (env != null && fileName.endsWith(ConfigFileUtils.CLUSTER_METADATA_FILE_SUFFIX)) {
+          //cluster metadata file. path format : apollo/${appId}/${env}/${clusterName}.cluster.metadata
+          toImportClusters.add(new ImportClusterData(env, readContent(zipInputStream)));
         }
       }
-    }
+    });
 
     try {
-      LOGGER.info("Import data. app = {}, appns = {}, cluster = {}, namespace = {}", toImportApps.size(),
-                  toImportAppNSs.size(),
-                  toImportClusters.size(), toImportNSs.size());
+      LOGGER.info("Import data. app = {}, appns = {}, cluster = {}", toImportApps.size(), toImportAppNSs.size(),
+                  toImportClusters.size());
+
+      String operator = userInfoHolder.getUser().getUserId();
 
-      doImport(importEnvs, toImportApps, toImportAppNSs, toImportClusters, toImportNSs);
+      doImport(importEnvs, toImportApps, toImportAppNSs, toImportClusters, operator);
 
+      importNamespaces(importEnvs, dataZip, ignoreConflictNamespace, operator);
     } catch (Exception e) {
       LOGGER.error("import config error.", e);
       throw new ServerException("import config error.", e);
@@ -174,12 +184,10 @@ public class ConfigsImportService {
   }
 
   private void doImport(List<Env> importEnvs, List<String> toImportApps, List<String> toImportAppNSs,
-                        List<ImportClusterData> toImportClusters, List<ImportNamespaceData> toImportNSs)
+                        List<ImportClusterData> toImportClusters, String operator)
       throws InterruptedException {
     LOGGER.info("Start to import app. size = {}", toImportApps.size());
 
-    String operator = userInfoHolder.getUser().getUserId();
-
     long startTime = System.currentTimeMillis();
     CountDownLatch appLatch = new CountDownLatch(toImportApps.size());
     toImportApps.parallelStream().forEach(app -> {
@@ -226,23 +234,73 @@ public class ConfigsImportService {
     clusterLatch.await();
 
     LOGGER.info("Finish to import cluster. duration = {}", System.currentTimeMillis() - startTime);
-    LOGGER.info("Start to import namespace. size = {}", toImportNSs.size());
+  }
 
-    startTime = System.currentTimeMillis();
-    CountDownLatch nsLatch = new CountDownLatch(toImportNSs.size());
-    toImportNSs.parallelStream().forEach(namespace -> {
-      try {
-        importNamespaceFromText(namespace.getEnv(), namespace.getFileName(), namespace.getContent(),
-                                namespace.isIgnoreConflictNamespace(), operator);
-      } catch (Exception e) {
-        LOGGER.error("import namespace error. namespace = {}", namespace, e);
-      } finally {
-        nsLatch.countDown();
+  /**
+   * Read the namespace files one by one and import them in parallel, at most {@link #IMPORT_WINDOW_SIZE} files are
+   * read ahead of the importing.
+   */
+  private void importNamespaces(List<Env> importEnvs, InputStreamSource dataZip, boolean ignoreConflictNamespace,
+                                String operator) throws IOException, InterruptedException {
+    LOGGER.info("Start to import namespace.");
+
+    long startTime = System.currentTimeMillis();
+    Semaphore window = new Semaphore(IMPORT_WINDOW_SIZE);
+    AtomicInteger size = new AtomicInteger();
+    forEachZipEntry(dataZip, (filePath, zipInputStream) -> {
+      String[] info = filePath.split("/");
+      if (info.length <= 3) {
+        return;
       }
+      Env env = findImportEnv(importEnvs, info[2]);
+      String fileName = info[3];
+      if (env == null || fileName.endsWith(ConfigFileUtils.CLUSTER_METADATA_FILE_SUFFIX)) {
+        return;
+      }
+
+      //namespace file.path format : apollo/${appId}/${env}/${appId}+${cluster}+${namespaceName}
+      ImportNamespaceData namespace =
+          new ImportNamespaceData(env, fileName, readContent(zipInputStream), ignoreConflictNamespace);
+      window.acquireUninterruptibly();
+      size.incrementAndGet();
+      importExecutorService.execute(() -> {
+        try {
+          importNamespaceFromText(namespace.getEnv(), namespace.getFileName(), namespace.getContent(),
+                                  namespace.isIgnoreConflictNamespace(), operator);
+        } catch (Exception e) {
+          LOGGER.error("import namespace error. namespace = {}", namespace, e);
+        } finally {
+          window.release();
+        }
+      });
     });
-    nsLatch.await();
+    //wait for the namespaces being imported
+    window.acquire(IMPORT_WINDOW_SIZE);
+    window.release(IMPORT_WINDOW_SIZE);
+
+    LOGGER.info("Finish to import namespace. size = {}, duration = {}", size.get(),
+                System.currentTimeMillis() - startTime);
+  }
 
-    LOGGER.info("Finish to import namespace. duration = {}", System.currentTimeMillis() - startTime);
+  private void forEachZipEntry(InputStreamSource dataZip, BiConsumer<String, ZipInputStream> consumer)
+      throws IOException {
+    try (ZipInputStream zipInputStream = new ZipInputStream(dataZip.getInputStream())) {
+      ZipEntry entry;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        if (!entry.isDirectory()) {
+          consumer.accept(entry.getName(), zipInputStream);
+        }
+      }
+    }
+  }
+
+  private Env findImportEnv(List<Env> importEnvs, String env) {
+    for (Env importEnv : importEnvs) {
+      if (Objects.equals(importEnv.getName(), env)) {
+        return importEnv;
+      }
+    }
+    return null;
   }
 
   private void importApp(String appInfo, List<Env> importEnvs, String operator) {
@@ -373,14 +431,31 @@ public class ConfigsImportService {
       return;
     }
 
-    importItems(appId, env, clusterName, namespaceName, configText, namespaceDTO, operator);
+    importItems(appId, env, clusterName, namespaceName, configText, namespaceDTO, itemDTOS, operator);
   }
 
+  /**
+   * Import the items of a namespace in one batch, the items with existed keys are updated and the others are created.
+   * The batch is applied in one transaction by the admin service, so it is retried item by item if failed, then only
+   * the bad items are skipped.
+   */
   private void importItems(String appId, Env env, String clusterName, String namespaceName, String configText,
-                           NamespaceDTO namespaceDTO, String operator) {
+                           NamespaceDTO namespaceDTO, List<ItemDTO> existedItems, String operator) {
     List<ItemDTO> toImportItems = gson.fromJson(configText, GsonType.ITEM_DTOS);
 
-    toImportItems.parallelStream().forEach(newItem -> {
+    Map<String, ItemDTO> existedItemsByKey = Maps.newHashMap();
+    if (existedItems != null) {
+      for (ItemDTO existedItem : existedItems) {
+        if (StringUtils.hasText(existedItem.getKey())) {
+          existedItemsByKey.putIfAbsent(existedItem.getKey(), existedItem);
+        }
+      }
+    }
+
+    ItemChangeSets changeSets = new ItemChangeSets();
+    changeSets.setDataChangeLastModifiedBy(operator);
+    List<ItemDTO> commentItems = Lists.newArrayList();
+    for (ItemDTO newItem : toImportItems) {
       String key = newItem.getKey();
       newItem.setNamespaceId(namespaceDTO.getId());
       newItem.setDataChangeCreatedBy(operator);
@@ -390,29 +465,58 @@ public class ConfigsImportService {
 
       if (StringUtils.hasText(key)) {
         //create or update normal item
-        try {
-          ItemDTO oldItem = itemService.loadItem(env, appId, clusterName, namespaceName, key);
+        ItemDTO oldItem = existedItemsByKey.get(key);
+        if (oldItem == null) {
+          changeSets.addCreateItem(newItem);
+        } else {
           newItem.setId(oldItem.getId());
-          //existed
-          itemService.updateItem(appId, env, clusterName, namespaceName, newItem);
-        } catch (Exception e) {
-          if (e instanceof HttpStatusCodeException && ((HttpStatusCodeException) e).getStatusCode()
-              .equals(HttpStatus.NOT_FOUND)) {
-            //not existed
-            itemService.createItem(appId, env, clusterName, namespaceName, newItem);
-          } else {
-            LOGGER.error("Load or update item error. appId = {}, env = {}, cluster = {}, namespace = {}", appId, env,
-                         clusterName, namespaceDTO, e);
-          }
+          changeSets.addUpdateItem(newItem);
         }
       } else if (StringUtils.hasText(newItem.getComment())){
-        //create comment item
-        itemService.createCommentItem(appId, env, clusterName, namespaceName, newItem);
+        commentItems.add(newItem);
       }
+    }
 
-    });
+    if (!changeSets.isEmpty()) {
+      try {
+        itemService.updateItems(appId, env, clusterName, namespaceName, changeSets);
+      } catch (Exception e) {
+        LOGGER.warn("Import items in batch error, retry item by item. appId = {}, env = {}, cluster = {}, "
+                    + "namespace = {}", appId, env, clusterName, namespaceName, e);
+        importItemsOneByOne(appId, env, clusterName, namespaceName, changeSets);
+      }
+    }
+
+    //create comment item
+    for (ItemDTO commentItem : commentItems) {
+      try {
+        itemService.createCommentItem(appId, env, clusterName, namespaceName, commentItem);
+      } catch (Exception e) {
+        LOGGER.error("Create comment item error. appId = {}, env = {}, cluster = {}, namespace = {}", appId, env,
+                     clusterName, namespaceName, e);
+      }
+    }
   }
 
+  private void importItemsOneByOne(String appId, Env env, String clusterName, String namespaceName,
+                                   ItemChangeSets changeSets) {
+    for (ItemDTO item : changeSets.getCreateItems()) {
+      try {
+        itemService.createItem(appId, env, clusterName, namespaceName, item);
+      } catch (Exception e) {
+        LOGGER.error("Create item error. appId = {}, env = {}, cluster = {}, namespace = {}, key = {}", appId, env,
+                     clusterName, namespaceName, item.getKey(), e);
+      }
+    }
+    for (ItemDTO item : changeSets.getUpdateItems()) {
+      try {
+        itemService.updateItem(appId, env, clusterName, namespaceName, item);
+      } catch (Exception e) {
+        LOGGER.error("Update item error. appId = {}, env = {}, cluster = {}, namespace = {}, key = {}", appId, env,
+                     clusterName, namespaceName, item.getKey(), e);
+      }
+    }
+  }
 
   private String readContent(ZipInputStream zipInputStream) {
     try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
@@ -25,6 +25,7 @@ import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.common.utils.BeanUtils;
 import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
 import com.ctrip.framework.apollo.portal.api.AdminServiceAPI;
 import com.ctrip.framework.apollo.portal.component.PortalSettings;
@@ -38,14 +39,23 @@ import com.ctrip.framework.apollo.portal.environment.Env;
 import com.ctrip.framework.apollo.portal.spi.UserInfoHolder;
 import com.ctrip.framework.apollo.portal.util.RoleUtils;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
@@ -58,6 +68,8 @@ public class NamespaceService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceService.class);
   private static final Gson GSON = new Gson();
+  // bounds the concurrent admin service calls of loading namespaces
+  private static final int NAMESPACE_LOAD_THREADS = 20;
 
   private final PortalConfig portalConfig;
   private final PortalSettings portalSettings;
@@ -70,6 +82,7 @@ public class NamespaceService {
   private final NamespaceBranchService branchService;
   private final RolePermissionService rolePermissionService;
   private final AdditionalUserInfoEnrichService additionalUserInfoEnrichService;
+  private final ExecutorService namespaceLoadExecutorService;
 
   public NamespaceService(
       final PortalConfig portalConfig,
@@ -94,6 +107,11 @@ public class NamespaceService {
     this.branchService = branchService;
     this.rolePermissionService = rolePermissionService;
     this.additionalUserInfoEnrichService = additionalUserInfoEnrichService;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(NAMESPACE_LOAD_THREADS, NAMESPACE_LOAD_THREADS,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        ApolloThreadFactory.create("NamespaceService", true));
+    executor.allowCoreThreadTimeOut(true);
+    this.namespaceLoadExecutorService = executor;
   }
 
 
@@ -165,16 +183,30 @@ public class NamespaceService {
       throw new BadRequestException("namespaces not exist");
     }
 
-    List<NamespaceBO> namespaceBOs = new LinkedList<>();
+    Map<String, ReleaseDTO> latestReleases = findLatestReleases(appId, env, clusterName, namespaces);
+
+    //the namespaces are loaded concurrently, as each of them costs a few admin service calls
+    List<CompletableFuture<NamespaceBO>> futures = new ArrayList<>(namespaces.size());
     for (NamespaceDTO namespace : namespaces) {
+      Supplier<NamespaceBO> loader = () -> {
+        try {
+          return transformNamespace2BO(env, namespace, latestReleases);
+        } catch (Exception e) {
+          LOGGER.error("parse namespace error. app id:{}, env:{}, clusterName:{}, namespace:{}",
+              appId, env, clusterName, namespace.getNamespaceName(), e);
+          throw e;
+        }
+      };
+      futures.add(namespaces.size() == 1 ? CompletableFuture.completedFuture(loader.get())
+          : CompletableFuture.supplyAsync(loader, namespaceLoadExecutorService));
+    }
 
-      NamespaceBO namespaceBO;
+    List<NamespaceBO> namespaceBOs = new LinkedList<>();
+    for (CompletableFuture<NamespaceBO> future : futures) {
       try {
-        namespaceBO = transformNamespace2BO(env, namespace);
-        namespaceBOs.add(namespaceBO);
-      } catch (Exception e) {
-        LOGGER.error("parse namespace error. app id:{}, env:{}, clusterName:{}, namespace:{}",
-            appId, env, clusterName, namespace.getNamespaceName(), e);
+        namespaceBOs.add(future.join());
+      } catch (CompletionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
         throw e;
       }
     }
@@ -182,6 +214,28 @@ public class NamespaceService {
     return namespaceBOs;
   }
 
+  /**
+   * @return the latest releases keyed by namespace name, or null if not loaded in batch, e.g. the admin services
+   * are of older versions
+   */
+  private Map<String, ReleaseDTO> findLatestReleases(String appId, Env env, String clusterName,
+      List<NamespaceDTO> namespaces) {
+    if (namespaces.size() == 1) {
+      return null;
+    }
+    Set<String> namespaceNames = Sets.newLinkedHashSet();
+    for (NamespaceDTO namespace : namespaces) {
+      namespaceNames.add(namespace.getNamespaceName());
+    }
+    try {
+      return releaseService.findLatestReleases(appId, env, clusterName, namespaceNames);
+    } catch (Throwable ex) {
+      LOGGER.warn("Load latest releases in batch failed, will load them one by one. app id:{}, env:{}, "
+          + "clusterName:{}, reason: {}", appId, env, clusterName, ex.getMessage());
+      return null;
+    }
+  }
+
   public List<NamespaceDTO> findNamespaces(String appId, Env env, String clusterName) {
     return namespaceAPI.findNamespaceByCluster(appId, env, clusterName);
   }
@@ -240,6 +294,13 @@ public class NamespaceService {
   }
 
   private NamespaceBO transformNamespace2BO(Env env, NamespaceDTO namespace) {
+    return transformNamespace2BO(env, namespace, null);
+  }
+
+  /**
+   * @param latestReleases the latest releases loaded in batch, null if not loaded
+   */
+  private NamespaceBO transformNamespace2BO(Env env, NamespaceDTO namespace, Map<String, ReleaseDTO> latestReleases) {
     NamespaceBO namespaceBO = new NamespaceBO();
     namespaceBO.setBaseInfo(namespace);
 
@@ -256,7 +317,8 @@ public class NamespaceService {
     ReleaseDTO latestRelease;
     Map<String, String> releaseItems = new HashMap<>();
     Map<String, ItemDTO> deletedItemDTOs = new HashMap<>();
-    latestRelease = releaseService.loadLatestRelease(appId, env, clusterName, namespaceName);
+    latestRelease = latestReleases != null ? latestReleases.get(namespaceName)
+        : releaseService.loadLatestRelease(appId, env, clusterName, namespaceName);
     if (latestRelease != null) {
       releaseItems = GSON.fromJson(latestRelease.getConfigurations(), GsonType.CONFIG);
     }
@@ -44,6 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 public class ReleaseService {
@@ -155,6 +156,21 @@ public class ReleaseService {
     return releaseAPI.loadLatestRelease(appId, env, clusterName, namespaceName);
   }
 
+  /**
+   * @return the latest releases keyed by namespace name, the namespaces without release are left out
+   */
+  public Map<String, ReleaseDTO> findLatestReleases(String appId, Env env, String clusterName,
+      Set<String> namespaceNames) {
+    Map<String, ReleaseDTO> releases = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    if (CollectionUtils.isEmpty(namespaceNames)) {
+      return releases;
+    }
+    for (ReleaseDTO release : releaseAPI.findLatestReleases(appId, env, clusterName, namespaceNames)) {
+      releases.put(release.getNamespaceName(), release);
+    }
+    return releases;
+  }
+
   public void rollback(Env env, long releaseId, String operator) {
     releaseAPI.rollback(env, releaseId, operator);
   }
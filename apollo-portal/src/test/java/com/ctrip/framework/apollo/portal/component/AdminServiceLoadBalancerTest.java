@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.portal.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.portal.environment.Env;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdminServiceLoadBalancerTest {
+  private static final String METRIC_CIRCUIT_OPEN = "apollo.portal.admin-service.circuit.open";
+  private static final String METRIC_REQUESTS = "apollo.portal.admin-service.requests";
+
+  @Mock
+  private ObjectProvider<MeterRegistry> meterRegistryProvider;
+  private SimpleMeterRegistry meterRegistry;
+  private AdminServiceLoadBalancer loadBalancer;
+  private AtomicLong now;
+  private Env someEnv;
+  private ServiceDTO someService;
+  private ServiceDTO anotherService;
+  private ServiceDTO yetAnotherService;
+
+  @Before
+  public void setUp() throws Exception {
+    meterRegistry = new SimpleMeterRegistry();
+    when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+    loadBalancer = new AdminServiceLoadBalancer(meterRegistryProvider);
+    now = new AtomicLong(1000);
+    ReflectionTestUtils.setField(loadBalancer, "clock", (LongSupplier) now::get);
+
+    someEnv = Env.DEV;
+    someService = assembleService("http://someHost:8090");
+    anotherService = assembleService("http://anotherHost:8090");
+    yetAnotherService = assembleService("http://yetAnotherHost:8090");
+  }
+
+  @Test
+  public void testEjectInstanceAfterConsecutiveFailures() throws Exception {
+    List<ServiceDTO> services = Lists.newArrayList(someService, anotherService);
+
+    for (int i = 0; i < 3; i++) {
+      failOn(someService);
+    }
+
+    for (int i = 0; i < 10; i++) {
+      List<ServiceDTO> selected = loadBalancer.select(someEnv, services);
+      assertSame(anotherService, selected.get(0));
+      assertSame(someService, selected.get(1));
+    }
+    assertEquals(1, circuitOpen(someService), 0);
+    assertEquals(0, circuitOpen(anotherService), 0);
+  }
+
+  @Test
+  public void testHalfOpenTrialTakenOnlyWhenSent() throws Exception {
+    List<ServiceDTO> services = Lists.newArrayList(someService, anotherService, yetAnotherService);
+    loadBalancer.select(someEnv, services);
+
+    for (int i = 0; i < 3; i++) {
+      failOn(someService);
+    }
+    now.addAndGet(5000);
+    for (int i = 0; i < 3; i++) {
+      failOn(anotherService);
+    }
+    now.addAndGet(5000);
+
+    // the trial of someService is due, ordering the services should not take it
+    for (int i = 0; i < 10; i++) {
+      assertSame(anotherService, loadBalancer.select(someEnv, services).get(2));
+    }
+
+    AtomicReference<List<ServiceDTO>> selectedDuringTrial = new AtomicReference<>();
+    String result = loadBalancer.invoke(someEnv, someService, service -> {
+      selectedDuringTrial.set(loadBalancer.select(someEnv, services));
+      return "ok";
+    });
+
+    assertEquals("ok", result);
+    assertSame(yetAnotherService, selectedDuringTrial.get().get(0));
+    assertEquals(0, circuitOpen(someService), 0);
+    assertEquals(1, circuitOpen(anotherService), 0);
+    for (int i = 0; i < 10; i++) {
+      assertSame(anotherService, loadBalancer.select(someEnv, services).get(2));
+    }
+  }
+
+  @Test
+  public void testHalfOpenTrialFailed() throws Exception {
+    List<ServiceDTO> services = Lists.newArrayList(someService, anotherService);
+
+    for (int i = 0; i < 3; i++) {
+      failOn(someService);
+    }
+    now.addAndGet(10000);
+    failOn(someService);
+
+    for (int i = 0; i < 10; i++) {
+      assertSame(someService, loadBalancer.select(someEnv, services).get(1));
+    }
+    assertEquals(1, circuitOpen(someService), 0);
+  }
+
+  @Test
+  public void testEvictInstancesGone() throws Exception {
+    loadBalancer.select(someEnv, Lists.newArrayList(someService, anotherService));
+    loadBalancer.invoke(someEnv, someService, service -> "ok");
+    loadBalancer.invoke(someEnv, anotherService, service -> "ok");
+
+    assertNotNull(meterRegistry.find(METRIC_REQUESTS).tag("instance", someService.getHomepageUrl()).timer());
+
+    loadBalancer.select(someEnv, Lists.newArrayList(anotherService));
+
+    assertNull(meterRegistry.find(METRIC_REQUESTS).tag("instance", someService.getHomepageUrl()).timer());
+    assertNull(meterRegistry.find(METRIC_CIRCUIT_OPEN).tag("instance", someService.getHomepageUrl()).gauge());
+    assertNotNull(meterRegistry.find(METRIC_REQUESTS).tag("instance", anotherService.getHomepageUrl()).timer());
+  }
+
+  private void failOn(ServiceDTO service) {
+    try {
+      loadBalancer.invoke(someEnv, service, s -> {
+        throw new ResourceAccessException("some error");
+      });
+    } catch (ResourceAccessException ex) {
+      // expected
+    }
+  }
+
+  private double circuitOpen(ServiceDTO service) {
+    return meterRegistry.find(METRIC_CIRCUIT_OPEN).tag("instance", service.getHomepageUrl()).gauge().value();
+  }
+
+  private ServiceDTO assembleService(String homepageUrl) {
+    ServiceDTO service = new ServiceDTO();
+    service.setHomepageUrl(homepageUrl);
+    return service;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.portal.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.portal.component.config.PortalConfig;
+import com.ctrip.framework.apollo.portal.environment.Env;
+import com.ctrip.framework.apollo.portal.environment.PortalMetaDomainService;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RetryableRestTemplateTest {
+  @Mock
+  private RestTemplateFactory restTemplateFactory;
+  @Mock
+  private AdminServiceAddressLocator adminServiceAddressLocator;
+  @Mock
+  private PortalMetaDomainService portalMetaDomainService;
+  @Mock
+  private PortalConfig portalConfig;
+  @Mock
+  private ObjectProvider<MeterRegistry> meterRegistryProvider;
+  @Mock
+  private RestTemplate restTemplate;
+  private RetryableRestTemplate retryableRestTemplate;
+  private Env someEnv;
+  private String somePath;
+
+  @Before
+  public void setUp() throws Exception {
+    retryableRestTemplate = new RetryableRestTemplate(restTemplateFactory, adminServiceAddressLocator,
+        portalMetaDomainService, portalConfig, new AdminServiceLoadBalancer(meterRegistryProvider));
+    ReflectionTestUtils.setField(retryableRestTemplate, "restTemplate", restTemplate);
+
+    someEnv = Env.DEV;
+    somePath = "/apps/someAppId";
+    when(adminServiceAddressLocator.getServiceList(someEnv)).thenReturn(
+        Lists.newArrayList(assembleService("http://someHost:8090"), assembleService("http://anotherHost:8090")));
+  }
+
+  @Test
+  public void testGetRetriedOnConnectTimeout() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .thenAnswer(invocation -> {
+          if (calls.getAndIncrement() == 0) {
+            throw new ResourceAccessException("some error", new ConnectTimeoutException("some timeout"));
+          }
+          return ResponseEntity.ok("some response");
+        });
+
+    assertEquals("some response", retryableRestTemplate.get(someEnv, somePath, String.class));
+
+    ArgumentCaptor<String> urls = ArgumentCaptor.forClass(String.class);
+    verify(restTemplate, times(2))
+        .exchange(urls.capture(), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class));
+    assertNotEquals(urls.getAllValues().get(0), urls.getAllValues().get(1));
+  }
+
+  @Test(expected = ResourceAccessException.class)
+  public void testPostNotRetriedOnReadTimeout() throws Exception {
+    when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+        .thenThrow(new ResourceAccessException("some error", new SocketTimeoutException("some timeout")));
+
+    try {
+      retryableRestTemplate.post(someEnv, somePath, "some request", String.class);
+    } finally {
+      verify(restTemplate, times(1))
+          .exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
+    }
+  }
+
+  @Test
+  public void testHedgedGetWonByBackupAndPrimaryCancelled() throws Exception {
+    when(portalConfig.hedgedGetDelay()).thenReturn(50);
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch primaryCancelled = new CountDownLatch(1);
+    when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .thenAnswer(invocation -> {
+          if (calls.getAndIncrement() == 0) {
+            try {
+              TimeUnit.SECONDS.sleep(10);
+            } catch (InterruptedException ex) {
+              primaryCancelled.countDown();
+            }
+            return ResponseEntity.ok("primary response");
+          }
+          return ResponseEntity.ok("backup response");
+        });
+
+    assertEquals("backup response", retryableRestTemplate.get(someEnv, somePath, String.class));
+    assertTrue(primaryCancelled.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testHedgedGetSendsBackupWhenPrimaryFailsFast() throws Exception {
+    when(portalConfig.hedgedGetDelay()).thenReturn(5000);
+    AtomicInteger calls = new AtomicInteger();
+    when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .thenAnswer(invocation -> {
+          if (calls.getAndIncrement() == 0) {
+            throw new ResourceAccessException("some error", new ConnectTimeoutException("some timeout"));
+          }
+          return ResponseEntity.ok("backup response");
+        });
+
+    long start = System.currentTimeMillis();
+    assertEquals("backup response", retryableRestTemplate.get(someEnv, somePath, String.class));
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    verify(restTemplate, times(2))
+        .exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class));
+  }
+
+  private ServiceDTO assembleService(String homepageUrl) {
+    ServiceDTO service = new ServiceDTO();
+    service.setHomepageUrl(homepageUrl);
+    return service;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.portal.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.common.dto.ClusterDTO;
+import com.ctrip.framework.apollo.common.dto.ItemDTO;
+import com.ctrip.framework.apollo.common.dto.NamespaceDTO;
+import com.ctrip.framework.apollo.common.entity.App;
+import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+import com.ctrip.framework.apollo.portal.component.PermissionValidator;
+import com.ctrip.framework.apollo.portal.component.PortalSettings;
+import com.ctrip.framework.apollo.portal.entity.bo.ItemBO;
+import com.ctrip.framework.apollo.portal.entity.bo.NamespaceBO;
+import com.ctrip.framework.apollo.portal.environment.Env;
+import com.ctrip.framework.apollo.portal.util.ConfigFileUtils;
+import com.google.common.collect.Lists;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigsExportServiceTest {
+  @Mock
+  private AppService appService;
+  @Mock
+  private ClusterService clusterService;
+  @Mock
+  private NamespaceService namespaceService;
+  @Mock
+  private AppNamespaceService appNamespaceService;
+  @Mock
+  private PortalSettings portalSettings;
+  @Mock
+  private PermissionValidator permissionValidator;
+  private ConfigsExportService configsExportService;
+
+  @Before
+  public void setUp() throws Exception {
+    configsExportService = new ConfigsExportService(appService, clusterService, namespaceService,
+        appNamespaceService, portalSettings, permissionValidator);
+  }
+
+  @Test
+  public void testExportDataInOrder() throws Exception {
+    // more apps than the export window, loaded in random durations
+    int appSize = 40;
+    List<Env> exportEnvs = Lists.newArrayList(Env.DEV, Env.PRO);
+    List<App> apps = Lists.newArrayList();
+    for (int i = 0; i < appSize; i++) {
+      apps.add(assembleApp("someAppId" + i));
+    }
+    when(appService.findAll()).thenReturn(apps);
+    when(permissionValidator.isAppAdmin(anyString())).thenReturn(true);
+    when(appNamespaceService.findAll()).thenReturn(Lists.newArrayList(assembleAppNamespace("someAppId0")));
+    when(clusterService.findClusters(any(Env.class), anyString())).thenAnswer(invocation -> {
+      TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(10));
+      return Lists.newArrayList(assembleCluster(invocation.getArgument(1)));
+    });
+    when(namespaceService.findNamespaceBOs(anyString(), any(Env.class), eq("default"))).thenAnswer(invocation ->
+        Lists.newArrayList(assembleNamespaceBO(invocation.getArgument(0))));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    configsExportService.exportData(out, exportEnvs);
+
+    List<String> expected = Lists.newArrayList();
+    for (App app : apps) {
+      expected.add(ConfigFileUtils.genAppInfoPath(app));
+    }
+    expected.add(ConfigFileUtils.genAppNamespaceInfoPath(assembleAppNamespace("someAppId0")));
+    for (Env env : exportEnvs) {
+      for (App app : apps) {
+        expected.add(ConfigFileUtils.genClusterInfoPath(app, env, assembleCluster(app.getAppId())));
+        expected.add(ConfigFileUtils.genNamespacePath(app.getOwnerName(), app.getAppId(), env,
+            ConfigFileUtils.toFilename(app.getAppId(), "default", "application", ConfigFileFormat.Properties)));
+      }
+    }
+    assertEquals(expected, readEntryNames(out.toByteArray()));
+  }
+
+  private List<String> readEntryNames(byte[] zip) throws Exception {
+    List<String> names = Lists.newArrayList();
+    try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+      ZipEntry entry;
+      while ((entry = in.getNextEntry()) != null) {
+        names.add(entry.getName());
+      }
+    }
+    return names;
+  }
+
+  static App assembleApp(String appId) {
+    App app = new App();
+    app.setAppId(appId);
+    app.setName(appId);
+    app.setOwnerName("someOwner");
+    return app;
+  }
+
+  static AppNamespace assembleAppNamespace(String appId) {
+    AppNamespace appNamespace = new AppNamespace();
+    appNamespace.setAppId(appId);
+    appNamespace.setName("application");
+    appNamespace.setFormat(ConfigFileFormat.Properties.getValue());
+    return appNamespace;
+  }
+
+  static ClusterDTO assembleCluster(String appId) {
+    ClusterDTO cluster = new ClusterDTO();
+    cluster.setAppId(appId);
+    cluster.setName("default");
+    return cluster;
+  }
+
+  static NamespaceBO assembleNamespaceBO(String appId) {
+    NamespaceDTO baseInfo = new NamespaceDTO();
+    baseInfo.setAppId(appId);
+    baseInfo.setClusterName("default");
+    baseInfo.setNamespaceName("application");
+
+    NamespaceBO namespaceBO = new NamespaceBO();
+    namespaceBO.setBaseInfo(baseInfo);
+    namespaceBO.setFormat(ConfigFileFormat.Properties.getValue());
+    namespaceBO.setItems(Lists.newArrayList(
+        assembleItemBO(new ItemDTO("", "", "#some comment", 1)),
+        assembleItemBO(new ItemDTO(appId + ".key", "someValue", "", 2))));
+    return namespaceBO;
+  }
+
+  private static ItemBO assembleItemBO(ItemDTO item) {
+    ItemBO itemBO = new ItemBO();
+    itemBO.setItem(item);
+    return itemBO;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.portal.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
+import com.ctrip.framework.apollo.common.dto.ItemDTO;
+import com.ctrip.framework.apollo.common.dto.NamespaceDTO;
+import com.ctrip.framework.apollo.common.entity.App;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+import com.ctrip.framework.apollo.portal.component.PermissionValidator;
+import com.ctrip.framework.apollo.portal.component.PortalSettings;
+import com.ctrip.framework.apollo.portal.entity.bo.UserInfo;
+import com.ctrip.framework.apollo.portal.environment.Env;
+import com.ctrip.framework.apollo.portal.spi.UserInfoHolder;
+import com.ctrip.framework.apollo.portal.util.ConfigFileUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigsImportServiceTest {
+  @Mock
+  private ItemService itemService;
+  @Mock
+  private AppService appService;
+  @Mock
+  private ClusterService clusterService;
+  @Mock
+  private NamespaceService namespaceService;
+  @Mock
+  private AppNamespaceService appNamespaceService;
+  @Mock
+  private ApplicationEventPublisher publisher;
+  @Mock
+  private UserInfoHolder userInfoHolder;
+  @Mock
+  private RoleInitializationService roleInitializationService;
+  @Mock
+  private PortalSettings portalSettings;
+  @Mock
+  private PermissionValidator permissionValidator;
+  private ConfigsImportService configsImportService;
+  private Env someEnv;
+  private long someNamespaceId;
+
+  @Before
+  public void setUp() throws Exception {
+    configsImportService = new ConfigsImportService(itemService, appService, clusterService, namespaceService,
+        appNamespaceService, publisher, userInfoHolder, roleInitializationService);
+    someEnv = Env.DEV;
+    someNamespaceId = 1;
+
+    when(userInfoHolder.getUser()).thenReturn(new UserInfo("someOperator"));
+    NamespaceDTO namespace = new NamespaceDTO();
+    namespace.setId(someNamespaceId);
+    when(namespaceService.loadNamespaceBaseInfo(anyString(), eq(someEnv), eq("default"), eq("application")))
+        .thenReturn(namespace);
+  }
+
+  @Test
+  public void testImportExportedData() throws Exception {
+    int appSize = 40;
+    List<App> apps = Lists.newArrayList();
+    Set<String> expectedKeys = Sets.newHashSet();
+    for (int i = 0; i < appSize; i++) {
+      apps.add(ConfigsExportServiceTest.assembleApp("someAppId" + i));
+      expectedKeys.add("someAppId" + i + ".key");
+    }
+    byte[] exported = exportData(apps);
+
+    configsImportService.importDataFromZipFile(Lists.newArrayList(someEnv), new ByteArrayResource(exported), false);
+
+    verify(appService, times(appSize)).importAppInLocal(any(App.class));
+    verify(appNamespaceService, times(1)).importAppNamespaceInLocal(any());
+    verify(clusterService, times(appSize)).loadCluster(anyString(), eq(someEnv), eq("default"));
+
+    ArgumentCaptor<ItemChangeSets> changeSets = ArgumentCaptor.forClass(ItemChangeSets.class);
+    verify(itemService, times(appSize))
+        .updateItems(anyString(), eq(someEnv), eq("default"), eq("application"), changeSets.capture());
+    Set<String> importedKeys = Sets.newHashSet();
+    for (ItemChangeSets changeSet : changeSets.getAllValues()) {
+      assertEquals(1, changeSet.getCreateItems().size());
+      assertEquals(someNamespaceId, changeSet.getCreateItems().get(0).getNamespaceId());
+      importedKeys.add(changeSet.getCreateItems().get(0).getKey());
+    }
+    assertEquals(expectedKeys, importedKeys);
+    verify(itemService, times(appSize)).createCommentItem(anyString(), eq(someEnv), eq("default"),
+        eq("application"), argThat(item -> "#some comment".equals(item.getComment())));
+  }
+
+  @Test
+  public void testImportItemsOneByOneIfBatchFailed() throws Exception {
+    String someAppId = "someAppId";
+    ItemDTO existedItem = new ItemDTO("existedKey", "someValue", "", 1);
+    existedItem.setId(10);
+    when(itemService.findItems(someAppId, someEnv, "default", "application"))
+        .thenReturn(Lists.newArrayList(existedItem));
+    doAnswer(invocation -> {
+      throw new BadRequestException("value too long");
+    }).when(itemService).updateItems(eq(someAppId), eq(someEnv), eq("default"), eq("application"),
+        any(ItemChangeSets.class));
+    doAnswer(invocation -> {
+      ItemDTO item = invocation.getArgument(4);
+      if ("badKey".equals(item.getKey())) {
+        throw new BadRequestException("value too long");
+      }
+      return item;
+    }).when(itemService).createItem(eq(someAppId), eq(someEnv), eq("default"), eq("application"),
+        any(ItemDTO.class));
+
+    List<ItemDTO> items = Lists.newArrayList(
+        new ItemDTO("", "", "#some comment", 1),
+        new ItemDTO("goodKey", "someValue", "", 2),
+        new ItemDTO("badKey", "someLongValue", "", 3),
+        new ItemDTO("existedKey", "anotherValue", "", 4));
+    String fileName = ConfigFileUtils.toFilename(someAppId, "default", "application", ConfigFileFormat.Properties);
+    byte[] zip = zip("someOwner/" + someAppId + "/" + someEnv.getName() + "/" + fileName, new Gson().toJson(items));
+
+    configsImportService.importDataFromZipFile(Lists.newArrayList(someEnv), new ByteArrayResource(zip), false);
+
+    verify(itemService, times(1)).createItem(eq(someAppId), eq(someEnv), eq("default"), eq("application"),
+        argThat(item -> "goodKey".equals(item.getKey())));
+    verify(itemService, times(1)).createItem(eq(someAppId), eq(someEnv), eq("default"), eq("application"),
+        argThat(item -> "badKey".equals(item.getKey())));
+    verify(itemService, times(1)).updateItem(eq(someAppId), eq(someEnv), eq("default"), eq("application"),
+        argThat(item -> "existedKey".equals(item.getKey()) && item.getId() == 10));
+    verify(itemService, times(1)).createCommentItem(eq(someAppId), eq(someEnv), eq("default"), eq("application"),
+        argThat(item -> "#some comment".equals(item.getComment())));
+  }
+
+  private byte[] exportData(List<App> apps) throws Exception {
+    when(appService.findAll()).thenReturn(apps);
+    when(permissionValidator.isAppAdmin(anyString())).thenReturn(true);
+    when(appNamespaceService.findAll())
+        .thenReturn(Lists.newArrayList(ConfigsExportServiceTest.assembleAppNamespace("someAppId0")));
+    when(clusterService.findClusters(eq(someEnv), anyString())).thenAnswer(invocation ->
+        Lists.newArrayList(ConfigsExportServiceTest.assembleCluster(invocation.getArgument(1))));
+    when(namespaceService.findNamespaceBOs(anyString(), eq(someEnv), eq("default"))).thenAnswer(invocation ->
+        Lists.newArrayList(ConfigsExportServiceTest.assembleNamespaceBO(invocation.getArgument(0))));
+
+    ConfigsExportService configsExportService = new ConfigsExportService(appService, clusterService,
+        namespaceService, appNamespaceService, portalSettings, permissionValidator);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    configsExportService.exportData(out, Lists.newArrayList(someEnv));
+    return out.toByteArray();
+  }
+
+  private byte[] zip(String filePath, String content) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
+      zipOutputStream.putNextEntry(new ZipEntry(filePath));
+      zipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+      zipOutputStream.closeEntry();
+    }
+    return out.toByteArray();
+  }
+}